@@ -37,9 +37,15 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.applications.RunningState;
+import com.android.settings.core.AvailabilityCache;
+import com.android.settings.core.ControllerLatencyTracker;
 import com.android.settings.datausage.lib.DataUsageLib;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
+import com.android.settings.homepage.contextualcards.logging.ContextualCardLogUtils;
 import com.android.settings.network.MobileNetworkRepository;
+import com.android.settings.notification.NotificationUsageIndex;
+import com.android.settings.search.NonIndexableKeysCache;
 import com.android.settingslib.net.DataUsageController;
 
 import org.json.JSONArray;
@@ -68,6 +74,18 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_SEARCH_NON_INDEXABLE_KEYS = "search_non_indexable_keys";
+    @VisibleForTesting
+    static final String KEY_NOTIFICATION_USAGE_INDEX = "notification_usage_index";
+    @VisibleForTesting
+    static final String KEY_RUNNING_STATE = "running_state";
+    @VisibleForTesting
+    static final String KEY_AVAILABILITY_CACHE = "availability_cache";
+    @VisibleForTesting
+    static final String KEY_CONTROLLER_LATENCY = "controller_latency";
+    @VisibleForTesting
+    static final String KEY_CARD_ELIGIBILITY_LATENCY = "card_eligibility_latency";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -100,6 +118,16 @@ public class SettingsDumpService extends Service {
                 dump.put(KEY_MEMORY, dumpMemory());
                 dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
                 dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+                dump.put(KEY_SEARCH_NON_INDEXABLE_KEYS,
+                        NonIndexableKeysCache.getInstance().dumpStats());
+                dump.put(KEY_NOTIFICATION_USAGE_INDEX,
+                        NotificationUsageIndex.getInstance().dumpStats());
+                dump.put(KEY_RUNNING_STATE, RunningState.dumpRefreshStats());
+                dump.put(KEY_AVAILABILITY_CACHE, AvailabilityCache.getInstance().dumpStats());
+                dump.put(KEY_CONTROLLER_LATENCY,
+                        ControllerLatencyTracker.getInstance().dumpStats());
+                dump.put(KEY_CARD_ELIGIBILITY_LATENCY,
+                        ContextualCardLogUtils.dumpEligibilityLatency());
             } catch (Exception e) {
                 Log.w(TAG, "exception in dump: ", e);
             }
@@ -524,5 +524,11 @@ public class AccessibilitySettings extends DashboardFragment {
                             .getAccessibilitySearchFeatureProvider().getSearchIndexableRawData(
                                     context);
                 }
+
+                @Override
+                public boolean isIndexDataStatic() {
+                    // The feature provider may change the data at runtime.
+                    return false;
+                }
             };
 }
@@ -150,6 +150,12 @@ public class AccountDashboardFragment extends DashboardFragment {
                     return List.of(sir);
                 }
 
+                @Override
+                public boolean isIndexDataStatic() {
+                    // The layout depends on whether the credential manager is enabled.
+                    return false;
+                }
+
                 @Override
                 public List<AbstractPreferenceController> createPreferenceControllers(
                         Context context) {
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.AppOpsManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.applications.AppStateAppOpsBridge.PermissionState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Process-wide store of the {@link PermissionState}s loaded by {@link AppStateAppOpsBridge}.
+ *
+ * <p>Snapshots are keyed by the op codes, permissions and profiles of a bridge, so coming back to
+ * a special access list reuses the states loaded the last time. App op and package changes only
+ * invalidate the affected package: bridges reload just those packages on their next load, and
+ * resumed bridges are told right away so they can update that single entry.
+ */
+public class AppOpsStateStore {
+
+    private static final int MAX_SNAPSHOTS = 8;
+
+    /** Called when the state of a package may have changed. May be called on any thread. */
+    interface Listener {
+        void onPackageInvalidated(String packageName);
+    }
+
+    private static AppOpsStateStore sInstance;
+
+    private final LruCache<String, Snapshot> mSnapshots = new LruCache<>(MAX_SNAPSHOTS);
+    private final List<Listener> mListeners = new ArrayList<>();
+    private final ArraySet<Integer> mWatchedOps = new ArraySet<>();
+    private boolean mPackageReceiverRegistered;
+
+    private static class Snapshot {
+        final SparseArray<ArrayMap<String, PermissionState>> mEntries;
+        final ArraySet<String> mInvalidPackages = new ArraySet<>();
+
+        Snapshot(SparseArray<ArrayMap<String, PermissionState>> entries) {
+            mEntries = entries;
+        }
+    }
+
+    /** Returns the process-wide instance. */
+    public static synchronized AppOpsStateStore getInstance() {
+        if (sInstance == null) {
+            sInstance = new AppOpsStateStore();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppOpsStateStore() {
+    }
+
+    /**
+     * Returns the entries stored for {@code key}, or {@code null} if there are none, and moves
+     * the packages invalidated since the last call to {@code outInvalidPackages}.
+     */
+    synchronized SparseArray<ArrayMap<String, PermissionState>> getSnapshot(String key,
+            Set<String> outInvalidPackages) {
+        final Snapshot snapshot = mSnapshots.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        outInvalidPackages.addAll(snapshot.mInvalidPackages);
+        snapshot.mInvalidPackages.clear();
+        return snapshot.mEntries;
+    }
+
+    /** Stores fully loaded entries for {@code key}. */
+    synchronized void putSnapshot(String key,
+            SparseArray<ArrayMap<String, PermissionState>> entries) {
+        mSnapshots.put(key, new Snapshot(entries));
+    }
+
+    /**
+     * Starts watching {@code opCodes} and the package changes of all users, once per op for the
+     * lifetime of the process.
+     */
+    synchronized void startWatching(Context context, int[] opCodes) {
+        final Context appContext = context.getApplicationContext();
+        final AppOpsManager appOpsManager = appContext.getSystemService(AppOpsManager.class);
+        for (int opCode : opCodes) {
+            if (mWatchedOps.add(opCode)) {
+                appOpsManager.startWatchingMode(opCode, null /* packageName */,
+                        (op, packageName) -> invalidatePackage(packageName));
+            }
+        }
+        if (!mPackageReceiverRegistered) {
+            final IntentFilter filter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addDataScheme("package");
+            appContext.registerReceiverAsUser(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    final Uri data = intent.getData();
+                    if (data != null) {
+                        invalidatePackage(data.getSchemeSpecificPart());
+                    }
+                }
+            }, UserHandle.ALL, filter, null /* broadcastPermission */, null /* scheduler */);
+            mPackageReceiverRegistered = true;
+        }
+    }
+
+    synchronized void addListener(Listener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    synchronized void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /** Marks {@code packageName} as changed in every snapshot and notifies the listeners. */
+    @VisibleForTesting
+    void invalidatePackage(String packageName) {
+        if (packageName == null) {
+            return;
+        }
+        final List<Listener> listeners;
+        synchronized (this) {
+            for (Snapshot snapshot : mSnapshots.snapshot().values()) {
+                snapshot.mInvalidPackages.add(packageName);
+            }
+            listeners = new ArrayList<>(mListeners);
+        }
+        for (Listener listener : listeners) {
+            listener.onPackageInvalidated(packageName);
+        }
+    }
+
+    /** Drops every snapshot, the next load of each bridge reads everything again. */
+    public synchronized void clear() {
+        mSnapshots.evictAll();
+    }
+}
@@ -26,6 +26,7 @@ import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -54,6 +55,9 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     private final Context mContext;
     private final int[] mAppOpsOpCodes;
     private final String[] mPermissions;
+    private final AppOpsStateStore mStateStore;
+    private final String mSnapshotKey;
+    private final AppOpsStateStore.Listener mStateListener = this::forceUpdate;
 
     public AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int appOpsOpCode, String[] permissions) {
@@ -84,6 +88,31 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
         mAppOpsOpCodes = appOpsOpCodes;
         mPermissions = permissions;
+        mStateStore = AppOpsStateStore.getInstance();
+        mSnapshotKey = getSnapshotKey();
+    }
+
+    private String getSnapshotKey() {
+        final StringBuilder key = new StringBuilder(getClass().getName())
+                .append('|').append(Arrays.toString(mAppOpsOpCodes))
+                .append('|').append(Arrays.toString(mPermissions));
+        for (UserHandle profile : mProfiles) {
+            key.append('|').append(profile.getIdentifier());
+        }
+        return key.toString();
+    }
+
+    @Override
+    public void resume(boolean forceLoadAllApps) {
+        mStateStore.startWatching(mContext, mAppOpsOpCodes);
+        mStateStore.addListener(mStateListener);
+        super.resume(forceLoadAllApps);
+    }
+
+    @Override
+    public void pause() {
+        mStateStore.removeListener(mStateListener);
+        super.pause();
     }
 
     private boolean isThisUserAProfileOfCurrentUser(final int userId) {
@@ -144,11 +173,24 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
 
     @Override
     protected void loadAllExtraInfo() {
-        SparseArray<ArrayMap<String, PermissionState>> entries = getEntries();
+        final Set<String> invalidPackages = new ArraySet<>();
+        SparseArray<ArrayMap<String, PermissionState>> entries =
+                mStateStore.getSnapshot(mSnapshotKey, invalidPackages);
+        if (entries != null) {
+            // Only reload the packages that changed since the last load.
+            for (String packageName : invalidPackages) {
+                reloadPackage(entries, packageName);
+            }
+        } else {
+            entries = getEntries();
 
-        // Load state info.
-        loadPermissionsStates(entries);
-        loadAppOpsStates(entries);
+            // Load state info.
+            loadPermissionsStates(entries);
+            loadAppOpsStates(entries);
+            if (entries != null) {
+                mStateStore.putSnapshot(mSnapshotKey, entries);
+            }
+        }
 
         // Map states to application info.
         List<AppEntry> apps = mAppSession.getAllApps();
@@ -165,6 +207,44 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         }
     }
 
+    /*
+     * Reloads the state of a single package of every profile, dropping it if it's gone or doesn't
+     * request any of mPermissions anymore.
+     */
+    private void reloadPackage(SparseArray<ArrayMap<String, PermissionState>> entries,
+            String packageName) {
+        final PackageManager packageManager = mContext.getPackageManager();
+        for (final UserHandle profile : mProfiles) {
+            final int profileId = profile.getIdentifier();
+            ArrayMap<String, PermissionState> entriesForProfile = entries.get(profileId);
+            if (entriesForProfile != null) {
+                entriesForProfile.remove(packageName);
+            }
+            if (shouldIgnorePackage(packageName)) {
+                continue;
+            }
+            final PermissionState state;
+            try {
+                if (!mIPackageManager.isPackageAvailable(packageName, profileId)) {
+                    continue;
+                }
+                state = getPermissionInfo(packageName,
+                        packageManager.getPackageUidAsUser(packageName, profileId));
+            } catch (RemoteException | PackageManager.NameNotFoundException e) {
+                Log.w(TAG, "Can't reload state of " + packageName + " for user " + profileId, e);
+                continue;
+            }
+            if (!state.permissionDeclared) {
+                continue;
+            }
+            if (entriesForProfile == null) {
+                entriesForProfile = new ArrayMap<>();
+                entries.put(profileId, entriesForProfile);
+            }
+            entriesForProfile.put(packageName, state);
+        }
+    }
+
     /*
      * Gets a sparse array that describes every user on the device and all the associated packages
      * of each user, together with the packages available for that user.
@@ -18,6 +18,7 @@ package com.android.settings.applications;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
 
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
@@ -75,6 +76,11 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         mHandler.obtainMessage(BackgroundHandler.MSG_FORCE_LOAD_PKG, uid, 0, pkg).sendToTarget();
     }
 
+    /** Same as {@link #forceUpdate(String, int)}, for the package of every user. */
+    public void forceUpdate(String pkg) {
+        forceUpdate(pkg, Process.INVALID_UID);
+    }
+
     @Override
     public void onPackageListChanged() {
         mHandler.sendEmptyMessage(BackgroundHandler.MSG_LOAD_ALL);
@@ -158,8 +164,10 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
                     int uid = msg.arg1;
                     for (int i = 0; i < N; i++) {
                         AppEntry app = apps.get(i);
-                        if (app.info.uid == uid && pkg.equals(app.info.packageName)) {
-                            updateExtraInfo(app, pkg, uid);
+                        if ((uid == Process.INVALID_UID || app.info.uid == uid)
+                                && pkg.equals(app.info.packageName)) {
+                            // Use the uid of the entry, forceUpdate(String) doesn't give one.
+                            updateExtraInfo(app, pkg, app.info.uid);
                         }
                     }
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
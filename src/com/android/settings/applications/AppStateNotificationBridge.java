@@ -16,19 +16,20 @@
 package com.android.settings.applications;
 
 import android.app.usage.IUsageStatsManager;
-import android.app.usage.UsageEvents;
 import android.content.Context;
-import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
-import android.text.format.DateUtils;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.widget.CompoundButton;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationUsageIndex;
+import com.android.settings.notification.NotificationUsageIndex.SentStats;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
@@ -51,15 +52,26 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     private IUsageStatsManager mUsageStatsManager;
     protected List<Integer> mUserIds;
     private NotificationBackend mBackend;
+    private final NotificationUsageIndex mUsageIndex;
     private static final int DAYS_TO_CHECK = 7;
 
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
             Callback callback, IUsageStatsManager usageStatsManager,
             UserManager userManager, NotificationBackend backend) {
+        this(context, appState, callback, usageStatsManager, userManager, backend,
+                NotificationUsageIndex.getInstance());
+    }
+
+    @VisibleForTesting
+    AppStateNotificationBridge(Context context, ApplicationsState appState,
+            Callback callback, IUsageStatsManager usageStatsManager,
+            UserManager userManager, NotificationBackend backend,
+            NotificationUsageIndex usageIndex) {
         super(appState, callback);
         mContext = context;
         mUsageStatsManager = usageStatsManager;
         mBackend = backend;
+        mUsageIndex = usageIndex;
         mUserIds = new ArrayList<>();
         mUserIds.add(mContext.getUserId());
         int workUserId = Utils.getManagedProfileId(userManager, mContext.getUserId());
@@ -139,69 +151,27 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     protected Map<String, NotificationsSentState> getAggregatedUsageEvents() {
         ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>();
 
-        long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
         for (int userId : mUserIds) {
-            UsageEvents events = null;
-            try {
-                events = mUsageStatsManager.queryEventsForUser(
-                        startTime, now, userId, mContext.getPackageName());
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            }
-            if (events != null) {
-                UsageEvents.Event event = new UsageEvents.Event();
-                while (events.hasNextEvent()) {
-                    events.getNextEvent(event);
-                    NotificationsSentState stats =
-                            aggregatedStats.get(getKey(userId, event.getPackageName()));
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                        aggregatedStats.put(getKey(userId, event.getPackageName()), stats);
-                    }
-
-                    if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                        if (event.getTimeStamp() > stats.lastSent) {
-                            stats.lastSent = event.getTimeStamp();
-                        }
-                        stats.sentCount++;
-                    }
-
-                }
+            final Map<String, SentStats> sentStats = mUsageIndex.getSentStatsByPackage(
+                    mUsageStatsManager, userId, mContext.getPackageName());
+            for (Map.Entry<String, SentStats> entry : sentStats.entrySet()) {
+                aggregatedStats.put(getKey(userId, entry.getKey()),
+                        toNotificationsSentState(entry.getValue()));
             }
         }
         return aggregatedStats;
     }
 
     protected NotificationsSentState getAggregatedUsageEvents(int userId, String pkg) {
-        NotificationsSentState stats = null;
-
-        long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
-        UsageEvents events = null;
-        try {
-            events = mUsageStatsManager.queryEventsForPackageForUser(
-                    startTime, now, userId, pkg, mContext.getPackageName());
-        } catch (RemoteException e) {
-            e.printStackTrace();
-        }
-        if (events != null) {
-            UsageEvents.Event event = new UsageEvents.Event();
-            while (events.hasNextEvent()) {
-                events.getNextEvent(event);
-
-                if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                    }
-                    if (event.getTimeStamp() > stats.lastSent) {
-                        stats.lastSent = event.getTimeStamp();
-                    }
-                    stats.sentCount++;
-                }
+        final SentStats sentStats = mUsageIndex.getSentStatsForPackage(
+                mUsageStatsManager, userId, pkg, mContext.getPackageName());
+        return sentStats == null ? null : toNotificationsSentState(sentStats);
+    }
 
-            }
-        }
+    private static NotificationsSentState toNotificationsSentState(SentStats sentStats) {
+        NotificationsSentState stats = new NotificationsSentState();
+        stats.sentCount = sentStats.sentCount;
+        stats.lastSent = sentStats.lastSent;
         return stats;
     }
 
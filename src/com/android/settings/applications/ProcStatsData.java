@@ -23,12 +23,15 @@ import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 import android.os.ServiceManager;
 import android.os.SystemClock;
+import android.text.format.DateUtils;
 import android.text.format.Formatter;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.util.LongSparseArray;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.internal.app.ProcessMap;
 import com.android.internal.app.procstats.DumpUtils;
 import com.android.internal.app.procstats.IProcessStats;
@@ -40,12 +43,15 @@ import com.android.internal.app.procstats.ServiceState;
 import com.android.internal.util.MemInfoReader;
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 public class ProcStatsData {
 
@@ -53,8 +59,14 @@ public class ProcStatsData {
 
     private static final boolean DEBUG = ProcessStatsUi.DEBUG;
 
+    /** How long stats read from the service are reused before they are read again. */
+    @VisibleForTesting
+    static final long MAX_STATS_AGE_MS = 2 * DateUtils.MINUTE_IN_MILLIS;
+
     private static ProcessStats sStatsXfer;
 
+    private static StatsCache sStatsCache = new StatsCache(SystemClock::elapsedRealtime);
+
     private PackageManager mPm;
     private Context mContext;
     private long memTotalTime;
@@ -74,10 +86,15 @@ public class ProcStatsData {
     private ArrayList<ProcStatsPackageEntry> pkgEntries;
 
     public ProcStatsData(Context context, boolean useXfer) {
+        this(context, IProcessStats.Stub.asInterface(
+                ServiceManager.getService(ProcessStats.SERVICE_NAME)), useXfer);
+    }
+
+    @VisibleForTesting
+    ProcStatsData(Context context, IProcessStats processStats, boolean useXfer) {
         mContext = context;
         mPm = context.getPackageManager();
-        mProcessStats = IProcessStats.Stub.asInterface(
-                ServiceManager.getService(ProcessStats.SERVICE_NAME));
+        mProcessStats = processStats;
         mMemStates = ProcessStats.ALL_MEM_ADJ;
         mStates = ProcessStats.BACKGROUND_PROC_STATES;
         if (useXfer) {
@@ -125,8 +142,36 @@ public class ProcStatsData {
     public void setDuration(long duration) {
         if (duration != mDuration) {
             mDuration = duration;
-            refreshStats(true);
+            mStats = null;
+            refreshStats(false);
+        }
+    }
+
+    /**
+     * Reads the stats of {@code durations} on a background thread, so that switching to one of
+     * them later only has to look up the cache.
+     */
+    public void prefetchDurations(long[] durations) {
+        final IProcessStats processStats = mProcessStats;
+        if (processStats == null) {
+            return;
         }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            for (long duration : durations) {
+                if (sStatsCache.get(duration) != null) {
+                    continue;
+                }
+                try {
+                    final ProcessStats stats = readStats(processStats, duration);
+                    if (stats.mReadError == null) {
+                        sStatsCache.put(duration, stats);
+                    }
+                } catch (RemoteException e) {
+                    Log.e(TAG, "RemoteException:", e);
+                    return;
+                }
+            }
+        });
     }
 
     public long getDuration() {
@@ -137,9 +182,19 @@ public class ProcStatsData {
         return pkgEntries;
     }
 
+    /**
+     * Recomputes the entries and memory info. Stats are read from the service again when
+     * {@code forceLoad} is set or when the cached ones are older than {@link #MAX_STATS_AGE_MS}.
+     */
     public void refreshStats(boolean forceLoad) {
-        if (mStats == null || forceLoad) {
-            load();
+        CachedStats cached = sStatsCache.get(mDuration);
+        if (mStats == null || forceLoad || cached == null || cached.mStats != mStats) {
+            load(forceLoad);
+            cached = sStatsCache.get(mDuration);
+        }
+
+        if (cached != null && cached.mStats == mStats && cached.applyResult(this)) {
+            return;
         }
 
         pkgEntries = new ArrayList<>();
@@ -168,6 +223,10 @@ public class ProcStatsData {
         ProcStatsPackageEntry osPkg = createOsEntry(bgTotals, runTotals, totalMem,
                 mMemInfo.baseCacheRam);
         pkgEntries.add(osPkg);
+
+        if (cached != null && cached.mStats == mStats) {
+            cached.setResult(mMemStates, mStates, pkgEntries, mMemInfo, memTotalTime);
+        }
     }
 
     private void createPkgMap(ArrayList<ProcStatsEntry> procEntries, ProcessDataCollection bgTotals,
@@ -341,24 +400,149 @@ public class ProcStatsData {
         return procEntries;
     }
 
-    private void load() {
-        try {
-            ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(mDuration);
-            mStats = new ProcessStats(false);
-            InputStream is = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
-            mStats.read(is);
-            try {
-                is.close();
-            } catch (IOException e) {
+    private void load(boolean forceLoad) {
+        if (!forceLoad) {
+            final CachedStats cached = sStatsCache.get(mDuration);
+            if (cached != null) {
+                mStats = cached.mStats;
+                return;
             }
-            if (mStats.mReadError != null) {
-                Log.w(TAG, "Failure reading process stats: " + mStats.mReadError);
+        }
+        try {
+            mStats = readStats(mProcessStats, mDuration);
+            if (mStats.mReadError == null) {
+                sStatsCache.put(mDuration, mStats);
             }
         } catch (RemoteException e) {
             Log.e(TAG, "RemoteException:", e);
         }
     }
 
+    private static ProcessStats readStats(IProcessStats processStats, long duration)
+            throws RemoteException {
+        ParcelFileDescriptor pfd = processStats.getStatsOverTime(duration);
+        ProcessStats stats = new ProcessStats(false);
+        InputStream is = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+        stats.read(is);
+        try {
+            is.close();
+        } catch (IOException e) {
+        }
+        if (stats.mReadError != null) {
+            Log.w(TAG, "Failure reading process stats: " + stats.mReadError);
+        }
+        return stats;
+    }
+
+    /** Drops the stats cached for all durations. */
+    public static void clearCache() {
+        sStatsCache.clear();
+    }
+
+    @VisibleForTesting
+    static void setStatsCache(StatsCache statsCache) {
+        sStatsCache = statsCache;
+    }
+
+    /**
+     * Stats read from the service for one duration, along with the entries last computed from
+     * them.
+     */
+    @VisibleForTesting
+    static class CachedStats {
+        final ProcessStats mStats;
+        final long mLoadTime;
+
+        // The result may be computed on a background thread, e.g. by the memory preference of
+        // developer options, so it is guarded by this object. Callers update the metrics of the
+        // entries and sort them, so each ProcStatsData gets its own copy.
+
+        private int[] mMemStates;
+        private int[] mStates;
+        private ArrayList<ProcStatsPackageEntry> mEntries;
+        private MemInfo mMemInfo;
+        private long mMemTotalTime;
+
+        CachedStats(ProcessStats stats, long loadTime) {
+            mStats = stats;
+            mLoadTime = loadTime;
+        }
+
+        synchronized boolean hasResult(int[] memStates, int[] states) {
+            return mEntries != null && Arrays.equals(mMemStates, memStates)
+                    && Arrays.equals(mStates, states);
+        }
+
+        /** Copies the cached result to {@code data} if it was computed for its states. */
+        synchronized boolean applyResult(ProcStatsData data) {
+            if (!hasResult(data.mMemStates, data.mStates)) {
+                return false;
+            }
+            data.pkgEntries = copyEntries(mEntries);
+            data.mMemInfo = new MemInfo(mMemInfo);
+            data.memTotalTime = mMemTotalTime;
+            return true;
+        }
+
+        synchronized void setResult(int[] memStates, int[] states,
+                ArrayList<ProcStatsPackageEntry> entries, MemInfo memInfo, long memTotalTime) {
+            mMemStates = memStates;
+            mStates = states;
+            mEntries = copyEntries(entries);
+            mMemInfo = new MemInfo(memInfo);
+            mMemTotalTime = memTotalTime;
+        }
+
+        private static ArrayList<ProcStatsPackageEntry> copyEntries(
+                ArrayList<ProcStatsPackageEntry> entries) {
+            final ArrayList<ProcStatsPackageEntry> copy = new ArrayList<>(entries.size());
+            for (ProcStatsPackageEntry entry : entries) {
+                copy.add(new ProcStatsPackageEntry(entry));
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Process-wide cache of the stats of each duration, so that switching between durations or
+     * between the memory screens does not read and parse the stats again.
+     */
+    @VisibleForTesting
+    static class StatsCache {
+        private final LongSupplier mClock;
+        private final LongSparseArray<CachedStats> mStats = new LongSparseArray<>();
+
+        StatsCache(LongSupplier clock) {
+            mClock = clock;
+        }
+
+        /** Returns the stats cached for {@code duration}, or {@code null} if they are too old. */
+        synchronized CachedStats get(long duration) {
+            trim();
+            return mStats.get(duration);
+        }
+
+        synchronized CachedStats put(long duration, ProcessStats stats) {
+            final CachedStats cached = new CachedStats(stats, mClock.getAsLong());
+            mStats.put(duration, cached);
+            return cached;
+        }
+
+        synchronized void clear() {
+            mStats.clear();
+        }
+
+        private void trim() {
+            final long now = mClock.getAsLong();
+            for (int i = mStats.size() - 1; i >= 0; i--) {
+                final long age = now - mStats.valueAt(i).mLoadTime;
+                if (age < 0 || age > MAX_STATS_AGE_MS) {
+                    mStats.removeAt(i);
+                }
+            }
+        }
+    }
+
     public static class MemInfo {
         public double realUsedRam;
         public double realFreeRam;
@@ -377,6 +561,20 @@ public class ProcStatsData {
             return weightToRam;
         }
 
+        private MemInfo(MemInfo other) {
+            realUsedRam = other.realUsedRam;
+            realFreeRam = other.realFreeRam;
+            realTotalRam = other.realTotalRam;
+            baseCacheRam = other.baseCacheRam;
+            mMemStateWeights = other.mMemStateWeights.clone();
+            freeWeight = other.freeWeight;
+            usedWeight = other.usedWeight;
+            weightToRam = other.weightToRam;
+            totalRam = other.totalRam;
+            totalScale = other.totalScale;
+            memTotalTime = other.memTotalTime;
+        }
+
         private MemInfo(Context context, ProcessStats.TotalMemoryUseCollection totalMem,
                 long memTotalTime) {
             this.memTotalTime = memTotalTime;
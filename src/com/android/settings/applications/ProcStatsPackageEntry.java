@@ -56,6 +56,26 @@ public class ProcStatsPackageEntry implements Parcelable {
         mWindowLength = windowLength;
     }
 
+    /**
+     * Copies {@code other}, so that its metrics can be updated independently. The process
+     * entries aren't modified once computed and are shared.
+     */
+    ProcStatsPackageEntry(ProcStatsPackageEntry other) {
+        mPackage = other.mPackage;
+        mEntries.addAll(other.mEntries);
+        mBgDuration = other.mBgDuration;
+        mAvgBgMem = other.mAvgBgMem;
+        mMaxBgMem = other.mMaxBgMem;
+        mBgWeight = other.mBgWeight;
+        mRunDuration = other.mRunDuration;
+        mAvgRunMem = other.mAvgRunMem;
+        mMaxRunMem = other.mMaxRunMem;
+        mRunWeight = other.mRunWeight;
+        mUiTargetApp = other.mUiTargetApp;
+        mUiLabel = other.mUiLabel;
+        mWindowLength = other.mWindowLength;
+    }
+
     public ProcStatsPackageEntry(Parcel in) {
         mPackage = in.readString();
         in.readTypedList(mEntries, ProcStatsEntry.CREATOR);
@@ -76,6 +76,7 @@ public abstract class ProcessStatsBase extends SettingsPreferenceFragment
                 : args != null ? args.getInt(ARG_DURATION_INDEX) : 0;
         mStatsManager.setDuration(icicle != null
                 ? icicle.getLong(DURATION, sDurations[0]) : sDurations[0]);
+        mStatsManager.prefetchDurations(sDurations);
     }
 
     @Override
@@ -32,27 +32,34 @@ import android.content.pm.UserInfo;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.Drawable.ConstantState;
+import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.format.Formatter;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.SparseArray;
 
 import com.android.settings.R;
 import com.android.settingslib.Utils;
 import com.android.settingslib.applications.InterestingConfigChanges;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Singleton for retrieving and monitoring the state about all running
@@ -72,8 +79,11 @@ public class RunningState {
 
     static final long TIME_UPDATE_DELAY = 1000;
     static final long CONTENTS_UPDATE_DELAY = 2000;
+    // The refresh backs off up to this delay while nothing changes.
+    static final long MAX_CONTENTS_UPDATE_DELAY = 16000;
 
     static final int MAX_SERVICES = 100;
+    static final int MAX_CACHED_SERVICE_INFOS = MAX_SERVICES * 2;
 
     final Context mApplicationContext;
     final ActivityManager mAm;
@@ -137,6 +147,11 @@ public class RunningState {
     // Temporary structure used when updating above information.
     final SparseArray<AppProcessInfo> mTmpAppProcesses = new SparseArray<AppProcessInfo>();
 
+    final ServiceInfoCache mServiceInfoCache = new ServiceInfoCache();
+
+    // Only touched by the background thread, and reset by resume() and updateNow().
+    volatile long mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
+
     int mSequence = 0;
 
     final Comparator<RunningState.MergedItem> mBackgroundComparator =
@@ -223,6 +238,11 @@ public class RunningState {
     int mNumServiceProcesses;
     long mServiceProcessMemory;
 
+    int mRefreshCount;
+    long mLastRefreshCpuTime;
+    long mMaxRefreshCpuTime;
+    long mTotalRefreshCpuTime;
+
     // ----- BACKGROUND MONITORING THREAD -----
 
     final HandlerThread mBackgroundThread;
@@ -245,11 +265,16 @@ public class RunningState {
                         }
                     }
                     Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
-                    cmd.arg1 = update(mApplicationContext, mAm) ? 1 : 0;
+                    final long startCpuTime = SystemClock.currentThreadTimeMillis();
+                    final boolean changed = update(mApplicationContext, mAm);
+                    recordRefresh(SystemClock.currentThreadTimeMillis() - startCpuTime);
+                    cmd.arg1 = changed ? 1 : 0;
                     mHandler.sendMessage(cmd);
+                    mContentsUpdateDelay = getNextContentsUpdateDelay(mContentsUpdateDelay,
+                            changed);
                     removeMessages(MSG_UPDATE_CONTENTS);
                     msg = obtainMessage(MSG_UPDATE_CONTENTS);
-                    sendMessageDelayed(msg, CONTENTS_UPDATE_DELAY);
+                    sendMessageDelayed(msg, mContentsUpdateDelay);
                     break;
             }
         }
@@ -325,6 +350,35 @@ public class RunningState {
     private final UserManagerBroadcastReceiver mUmBroadcastReceiver =
             new UserManagerBroadcastReceiver();
 
+    /** Drops the cached services of a package once it is updated, changed or removed. */
+    static final class PackageChangeReceiver extends BroadcastReceiver {
+        private final ServiceInfoCache mCache;
+
+        PackageChangeReceiver(ServiceInfoCache cache) {
+            mCache = cache;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                mCache.evictPackage(data.getSchemeSpecificPart());
+            }
+        }
+
+        void register(Context context) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.registerReceiverAsUser(this, UserHandle.ALL, filter, null, null);
+        }
+    }
+
+    private final PackageChangeReceiver mPackageChangeReceiver =
+            new PackageChangeReceiver(mServiceInfoCache);
+
     // ----- DATA STRUCTURES -----
 
     static interface OnRefreshUiListener {
@@ -374,10 +428,57 @@ public class RunningState {
         }
     }
 
+    static class CachedServiceInfo {
+        final ServiceInfo mServiceInfo;
+        final CharSequence mLabel;
+
+        CachedServiceInfo(ServiceInfo serviceInfo, CharSequence label) {
+            mServiceInfo = serviceInfo;
+            mLabel = label;
+        }
+    }
+
+    /**
+     * Resolved info and labels of the services seen recently, by user and component, so that
+     * services that stop and start again don't go through the package manager again.
+     */
+    static class ServiceInfoCache {
+        private final LruCache<String, CachedServiceInfo> mCache =
+                new LruCache<String, CachedServiceInfo>(MAX_CACHED_SERVICE_INFOS);
+
+        CachedServiceInfo get(int userId, ComponentName service) {
+            return mCache.get(getKey(userId, service));
+        }
+
+        void put(int userId, ComponentName service, CachedServiceInfo info) {
+            mCache.put(getKey(userId, service), info);
+        }
+
+        /** Drops the services of {@code packageName} of all users. */
+        void evictPackage(String packageName) {
+            for (Map.Entry<String, CachedServiceInfo> entry : mCache.snapshot().entrySet()) {
+                if (packageName.equals(entry.getValue().mServiceInfo.packageName)) {
+                    mCache.remove(entry.getKey());
+                }
+            }
+        }
+
+        void evictAll() {
+            mCache.evictAll();
+        }
+
+        private static String getKey(int userId, ComponentName service) {
+            return userId + "/" + service.flattenToShortString();
+        }
+    }
+
     static class ServiceItem extends BaseItem {
         ActivityManager.RunningServiceInfo mRunningService;
         ServiceInfo mServiceInfo;
         boolean mShownAsStarted;
+        // The client the description was built for.
+        String mClientPackage;
+        int mClientLabel;
 
         MergedItem mMergedItem;
 
@@ -495,7 +596,8 @@ public class RunningState {
             }
         }
 
-        boolean updateService(Context context, ActivityManager.RunningServiceInfo service) {
+        boolean updateService(Context context, ActivityManager.RunningServiceInfo service,
+                ServiceInfoCache serviceInfoCache) {
             final PackageManager pm = context.getPackageManager();
 
             boolean changed = false;
@@ -504,20 +606,26 @@ public class RunningState {
                 changed = true;
                 si = new ServiceItem(mUserId);
                 si.mRunningService = service;
-                try {
-                    si.mServiceInfo = ActivityThread.getPackageManager().getServiceInfo(
-                            service.service, PackageManager.MATCH_ANY_USER,
-                            UserHandle.getUserId(service.uid));
-
-                    if (si.mServiceInfo == null) {
+                final int userId = UserHandle.getUserId(service.uid);
+                CachedServiceInfo cached = serviceInfoCache.get(userId, service.service);
+                if (cached == null) {
+                    ServiceInfo serviceInfo = null;
+                    try {
+                        serviceInfo = ActivityThread.getPackageManager().getServiceInfo(
+                                service.service, PackageManager.MATCH_ANY_USER, userId);
+                    } catch (RemoteException e) {
+                    }
+                    if (serviceInfo == null) {
                         Log.d("RunningService", "getServiceInfo returned null for: "
                                 + service.service);
                         return false;
                     }
-                } catch (RemoteException e) {
+                    cached = new CachedServiceInfo(serviceInfo,
+                            makeLabel(pm, service.service.getClassName(), serviceInfo));
+                    serviceInfoCache.put(userId, service.service, cached);
                 }
-                si.mDisplayLabel = makeLabel(pm,
-                        si.mRunningService.service.getClassName(), si.mServiceInfo);
+                si.mServiceInfo = cached.mServiceInfo;
+                si.mDisplayLabel = cached.mLabel;
                 mLabel = mDisplayLabel != null ? mDisplayLabel.toString() : null;
                 si.mPackageInfo = si.mServiceInfo.applicationInfo;
                 mServices.put(service.service, si);
@@ -534,19 +642,27 @@ public class RunningState {
                     si.mShownAsStarted = false;
                     changed = true;
                 }
-                try {
-                    Resources clientr = pm.getResourcesForApplication(service.clientPackage);
-                    String label = clientr.getString(service.clientLabel);
-                    si.mDescription = context.getResources().getString(
-                            R.string.service_client_name, label);
-                } catch (PackageManager.NameNotFoundException e) {
-                    si.mDescription = null;
+                // Only load the client resources again when the client changed.
+                if (si.mClientLabel != service.clientLabel
+                        || !service.clientPackage.equals(si.mClientPackage)) {
+                    si.mClientPackage = service.clientPackage;
+                    si.mClientLabel = service.clientLabel;
+                    try {
+                        Resources clientr = pm.getResourcesForApplication(service.clientPackage);
+                        String label = clientr.getString(service.clientLabel);
+                        si.mDescription = context.getResources().getString(
+                                R.string.service_client_name, label);
+                    } catch (PackageManager.NameNotFoundException e) {
+                        si.mDescription = null;
+                    }
                 }
             } else {
                 if (!si.mShownAsStarted) {
                     si.mShownAsStarted = true;
                     changed = true;
                 }
+                si.mClientPackage = null;
+                si.mClientLabel = 0;
                 si.mDescription = context.getResources().getString(
                         R.string.service_started_by_app);
             }
@@ -793,11 +909,13 @@ public class RunningState {
         mBackgroundThread.start();
         mBackgroundHandler = new BackgroundHandler(mBackgroundThread.getLooper());
         mUmBroadcastReceiver.register(mApplicationContext);
+        mPackageChangeReceiver.register(mApplicationContext);
     }
 
     void resume(OnRefreshUiListener listener) {
         synchronized (mLock) {
             mResumed = true;
+            mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
             mRefreshUiListener = listener;
             boolean usersChanged = mUmBroadcastReceiver.checkUsersChangedLocked();
             boolean configChanged =
@@ -817,6 +935,7 @@ public class RunningState {
 
     void updateNow() {
         synchronized (mLock) {
+            mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
             mBackgroundHandler.removeMessages(MSG_UPDATE_CONTENTS);
             mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_CONTENTS);
         }
@@ -861,7 +980,44 @@ public class RunningState {
         return false;
     }
 
+    /** Polls slower while nothing changes, and quickly again after a change. */
+    static long getNextContentsUpdateDelay(long delay, boolean changed) {
+        return changed ? CONTENTS_UPDATE_DELAY : Math.min(delay * 2, MAX_CONTENTS_UPDATE_DELAY);
+    }
+
+    private void recordRefresh(long cpuTime) {
+        synchronized (mLock) {
+            mRefreshCount++;
+            mLastRefreshCpuTime = cpuTime;
+            mMaxRefreshCpuTime = Math.max(mMaxRefreshCpuTime, cpuTime);
+            mTotalRefreshCpuTime += cpuTime;
+        }
+    }
+
+    /**
+     * Returns the CPU time spent by the background refreshes, without creating the instance if
+     * Running Services was never opened.
+     */
+    public static JSONObject dumpRefreshStats() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        final RunningState state;
+        synchronized (sGlobalLock) {
+            state = sInstance;
+        }
+        if (state != null) {
+            synchronized (state.mLock) {
+                obj.put("refreshes", state.mRefreshCount);
+                obj.put("last_cpu_ms", state.mLastRefreshCpuTime);
+                obj.put("max_cpu_ms", state.mMaxRefreshCpuTime);
+                obj.put("total_cpu_ms", state.mTotalRefreshCpuTime);
+                obj.put("poll_delay_ms", state.mContentsUpdateDelay);
+            }
+        }
+        return obj;
+    }
+
     private void reset() {
+        mServiceInfoCache.evictAll();
         mServiceProcessesByName.clear();
         mServiceProcessesByPid.clear();
         mInterestingProcesses.clear();
@@ -1025,7 +1181,7 @@ public class RunningState {
                 proc.mDependentProcesses.clear();
                 proc.mCurSeq = mSequence;
             }
-            changed |= proc.updateService(context, si);
+            changed |= proc.updateService(context, si, mServiceInfoCache);
         }
 
         // Now update the map of other processes that are running (but
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.text.TextUtils;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Search index over the labels of the app list in {@link ManageApplications}.
+ *
+ * <p>Labels are normalized once when the index is built, instead of on every keystroke. A query
+ * that extends the previous one only scans the entries the previous query matched.
+ */
+class AppSearchIndex {
+
+    private final ArrayList<AppEntry> mEntries;
+    private final Locale mLocale;
+    private final String[] mLabels;
+
+    private String mLastQuery;
+    private int[] mLastMatches;
+    private int mLastMatchCount;
+
+    AppSearchIndex(ArrayList<AppEntry> entries, Locale locale) {
+        mEntries = entries;
+        mLocale = locale;
+        final int size = entries.size();
+        mLabels = new String[size];
+        for (int i = 0; i < size; i++) {
+            mLabels[i] = normalize(entries.get(i).label, locale);
+        }
+    }
+
+    /** Returns the entries this index was built from. */
+    ArrayList<AppEntry> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * Returns the entries whose label contains {@code query}, ignoring case and diacritics, in
+     * their original order.
+     */
+    ArrayList<AppEntry> search(CharSequence query) {
+        final String normalizedQuery = normalize(query, mLocale);
+        if (normalizedQuery.isEmpty()) {
+            mLastQuery = null;
+            return mEntries;
+        }
+
+        final boolean narrowing = mLastQuery != null && normalizedQuery.startsWith(mLastQuery);
+        final int candidateCount = narrowing ? mLastMatchCount : mLabels.length;
+        final int[] matches = new int[candidateCount];
+        int matchCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            final int index = narrowing ? mLastMatches[i] : i;
+            if (mLabels[index].contains(normalizedQuery)) {
+                matches[matchCount++] = index;
+            }
+        }
+        mLastQuery = normalizedQuery;
+        mLastMatches = matches;
+        mLastMatchCount = matchCount;
+
+        final ArrayList<AppEntry> result = new ArrayList<>(matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            result.add(mEntries.get(matches[i]));
+        }
+        return result;
+    }
+
+    /** Decomposes {@code text}, drops its combining marks and lowercases it. */
+    @VisibleForTesting
+    static String normalize(CharSequence text, Locale locale) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        final StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            final char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase(locale);
+    }
+}
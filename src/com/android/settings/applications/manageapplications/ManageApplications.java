@@ -88,7 +88,9 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.internal.compat.IPlatformCompat;
@@ -179,6 +181,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -1945,30 +1949,107 @@ public class ManageApplications extends InstrumentedFragment
          * Item that does not contains the specified substring will be removed from the list.</p>
          */
         private class SearchFilter extends Filter {
+            // Only accessed on the filter thread.
+            private AppSearchIndex mSearchIndex;
+
             @WorkerThread
             @Override
             protected FilterResults performFiltering(CharSequence query) {
-                final ArrayList<ApplicationsState.AppEntry> matchedEntries;
-                if (TextUtils.isEmpty(query)) {
-                    matchedEntries = mOriginalEntries;
-                } else {
-                    matchedEntries = new ArrayList<>();
-                    for (ApplicationsState.AppEntry entry : mOriginalEntries) {
-                        if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(entry);
-                        }
-                    }
+                final ArrayList<ApplicationsState.AppEntry> originalEntries = mOriginalEntries;
+                if (mSearchIndex == null || mSearchIndex.getEntries() != originalEntries) {
+                    mSearchIndex = new AppSearchIndex(originalEntries, Locale.getDefault());
+                }
+                final ArrayList<ApplicationsState.AppEntry> matchedEntries =
+                        mSearchIndex.search(query);
+                final ArrayList<ApplicationsState.AppEntry> shownEntries = mEntries;
+                final SearchResults searchResults = new SearchResults();
+                searchResults.mEntries = matchedEntries;
+                searchResults.mShownEntries = shownEntries;
+                if (shownEntries != null && !shownEntries.isEmpty()
+                        && !matchedEntries.isEmpty()) {
+                    searchResults.mDiffResult = DiffUtil.calculateDiff(
+                            new AppEntryDiffCallback(shownEntries, matchedEntries),
+                            false /* detectMoves */);
                 }
                 final FilterResults results = new FilterResults();
-                results.values = matchedEntries;
+                results.values = searchResults;
                 results.count = matchedEntries.size();
                 return results;
             }
 
             @Override
             protected void publishResults(CharSequence constraint, FilterResults results) {
-                mEntries = (ArrayList<ApplicationsState.AppEntry>) results.values;
-                notifyDataSetChanged();
+                final SearchResults searchResults = (SearchResults) results.values;
+                // The diff is stale if the list changed meanwhile. The header of some list types
+                // is only shown with entries, so it's also skipped when either list is empty.
+                final boolean canDispatchDiff = searchResults.mDiffResult != null
+                        && searchResults.mShownEntries == mEntries;
+                mEntries = searchResults.mEntries;
+                if (!canDispatchDiff) {
+                    notifyDataSetChanged();
+                    return;
+                }
+                final int headerCount = getItemCount() - getApplicationCount();
+                searchResults.mDiffResult.dispatchUpdatesTo(new ListUpdateCallback() {
+                    @Override
+                    public void onInserted(int position, int count) {
+                        notifyItemRangeInserted(position + headerCount, count);
+                    }
+
+                    @Override
+                    public void onRemoved(int position, int count) {
+                        notifyItemRangeRemoved(position + headerCount, count);
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                        notifyItemMoved(fromPosition + headerCount, toPosition + headerCount);
+                    }
+
+                    @Override
+                    public void onChanged(int position, int count, Object payload) {
+                        notifyItemRangeChanged(position + headerCount, count, payload);
+                    }
+                });
+            }
+        }
+
+        private static class SearchResults {
+            ArrayList<ApplicationsState.AppEntry> mEntries;
+            ArrayList<ApplicationsState.AppEntry> mShownEntries;
+            DiffUtil.DiffResult mDiffResult;
+        }
+
+        /** Entries come from the same rebuild, so matching entries are the same objects. */
+        @VisibleForTesting
+        static class AppEntryDiffCallback extends DiffUtil.Callback {
+            private final List<ApplicationsState.AppEntry> mOldEntries;
+            private final List<ApplicationsState.AppEntry> mNewEntries;
+
+            AppEntryDiffCallback(List<ApplicationsState.AppEntry> oldEntries,
+                    List<ApplicationsState.AppEntry> newEntries) {
+                mOldEntries = oldEntries;
+                mNewEntries = newEntries;
+            }
+
+            @Override
+            public int getOldListSize() {
+                return mOldEntries.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return mNewEntries.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return mOldEntries.get(oldItemPosition) == mNewEntries.get(newItemPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return true;
             }
         }
     }
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationSources;
 
 public class PictureInPictureController extends BasePreferenceController {
 
@@ -34,4 +35,10 @@ public class PictureInPictureController extends BasePreferenceController {
                 && mContext.getPackageManager().hasSystemFeature(
                 PackageManager.FEATURE_PICTURE_IN_PICTURE) ? AVAILABLE : UNSUPPORTED_ON_DEVICE;
     }
+
+    @Override
+    protected InvalidationSources getAvailabilityInvalidationSources() {
+        // Device features don't change at runtime.
+        return new InvalidationSources.Builder().build();
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of the availability status of the controllers that declare their
+ * invalidation sources through
+ * {@link BasePreferenceController#getAvailabilityInvalidationSources()}.
+ *
+ * <p>Entries are keyed by controller class and preference key, so the status computed for a
+ * dashboard is reused by search indexing and slices until one of the sources fires.
+ */
+public class AvailabilityCache {
+
+    private static AvailabilityCache sInstance;
+
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private final Map<String, ControllerStats> mStats = new ConcurrentHashMap<>();
+    private final InvalidationMonitor mMonitor;
+
+    /** Returns the process-wide instance. */
+    public static synchronized AvailabilityCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new AvailabilityCache();
+        }
+        return sInstance;
+    }
+
+    private AvailabilityCache() {
+        this(null /* monitor */);
+    }
+
+    /** Uses {@code monitor} instead of the process-wide {@link InvalidationMonitor}. */
+    @VisibleForTesting
+    AvailabilityCache(InvalidationMonitor monitor) {
+        mMonitor = monitor;
+    }
+
+    /**
+     * Returns the cached availability status of {@code controller}, computing it if the cached
+     * one was invalidated by {@code sources}.
+     */
+    int getAvailabilityStatus(Context context, BasePreferenceController controller,
+            InvalidationSources sources) {
+        final String key = controller.getClass().getName() + "/" + controller.getPreferenceKey();
+        final ControllerStats stats = mStats.computeIfAbsent(key, k -> new ControllerStats());
+        final Entry entry = mEntries.computeIfAbsent(key, k -> {
+            final Entry newEntry = new Entry();
+            final InvalidationMonitor monitor =
+                    mMonitor != null ? mMonitor : InvalidationMonitor.getInstance(context);
+            monitor.register(sources, () -> {
+                newEntry.mGeneration++;
+                newEntry.mValid = false;
+            });
+            return newEntry;
+        });
+        if (entry.mValid) {
+            stats.mCacheHits++;
+            return entry.mStatus;
+        }
+
+        final int generation = entry.mGeneration;
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        final int status = controller.getAvailabilityStatus();
+        final long durationUs = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+        stats.mComputeCount++;
+        stats.mMaxMicros = Math.max(stats.mMaxMicros, durationUs);
+        stats.mTotalMicros += durationUs;
+
+        entry.mStatus = status;
+        // Don't cache a status if it was invalidated while being computed.
+        entry.mValid = generation == entry.mGeneration;
+        return status;
+    }
+
+    /** Drops all cached statuses. */
+    public void invalidateAll() {
+        for (Entry entry : mEntries.values()) {
+            entry.mGeneration++;
+            entry.mValid = false;
+        }
+    }
+
+    /** Returns the per-controller hit rate and compute time, for {@code SettingsDumpService}. */
+    public JSONObject dumpStats() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        for (Map.Entry<String, ControllerStats> stats : mStats.entrySet()) {
+            final ControllerStats value = stats.getValue();
+            final JSONObject controllerObj = new JSONObject();
+            controllerObj.put("computed", value.mComputeCount);
+            controllerObj.put("cache_hits", value.mCacheHits);
+            controllerObj.put("max_us", value.mMaxMicros);
+            controllerObj.put("total_us", value.mTotalMicros);
+            obj.put(stats.getKey(), controllerObj);
+        }
+        return obj;
+    }
+
+    private static class Entry {
+        volatile int mStatus;
+        volatile boolean mValid;
+        volatile int mGeneration;
+    }
+
+    private static class ControllerStats {
+        volatile int mComputeCount;
+        volatile int mCacheHits;
+        volatile long mMaxMicros;
+        volatile long mTotalMicros;
+    }
+}
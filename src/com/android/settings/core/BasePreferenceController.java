@@ -131,10 +131,16 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     /**
      * Instantiate a controller as specified controller type and user-defined key.
      * <p/>
-     * This is done through reflection. Do not use this method unless you know what you are doing.
+     * This is done through the generated {@link PreferenceControllerRegistry}, or reflection for
+     * controllers it does not know. Do not use this method unless you know what you are doing.
      */
     public static BasePreferenceController createInstance(Context context,
             String controllerName, String key) {
+        final BasePreferenceController controller =
+                PreferenceControllerRegistry.create(context, controllerName, key);
+        if (controller != null) {
+            return controller;
+        }
         try {
             final Class<?> clazz = Class.forName(controllerName);
             final Constructor<?> preferenceConstructor =
@@ -151,9 +157,15 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     /**
      * Instantiate a controller as specified controller type.
      * <p/>
-     * This is done through reflection. Do not use this method unless you know what you are doing.
+     * This is done through the generated {@link PreferenceControllerRegistry}, or reflection for
+     * controllers it does not know. Do not use this method unless you know what you are doing.
      */
     public static BasePreferenceController createInstance(Context context, String controllerName) {
+        final BasePreferenceController controller =
+                PreferenceControllerRegistry.create(context, controllerName);
+        if (controller != null) {
+            return controller;
+        }
         try {
             final Class<?> clazz = Class.forName(controllerName);
             final Constructor<?> preferenceConstructor = clazz.getConstructor(Context.class);
@@ -169,7 +181,8 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     /**
      * Instantiate a controller as specified controller type and work profile
      * <p/>
-     * This is done through reflection. Do not use this method unless you know what you are doing.
+     * This is done through the generated {@link PreferenceControllerRegistry}, or reflection for
+     * controllers it does not know. Do not use this method unless you know what you are doing.
      *
      * @param context        application context
      * @param controllerName class name of the {@link BasePreferenceController}
@@ -178,20 +191,9 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      */
     public static BasePreferenceController createInstance(Context context, String controllerName,
             String key, boolean isWorkProfile) {
-        try {
-            final Class<?> clazz = Class.forName(controllerName);
-            final Constructor<?> preferenceConstructor =
-                    clazz.getConstructor(Context.class, String.class);
-            final Object[] params = new Object[]{context, key};
-            final BasePreferenceController controller =
-                    (BasePreferenceController) preferenceConstructor.newInstance(params);
-            controller.setForWork(isWorkProfile);
-            return controller;
-        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException
-                | IllegalArgumentException | InvocationTargetException | IllegalAccessException e) {
-            throw new IllegalStateException(
-                    "Invalid preference controller: " + controllerName, e);
-        }
+        final BasePreferenceController controller = createInstance(context, controllerName, key);
+        controller.setForWork(isWorkProfile);
+        return controller;
     }
 
     public BasePreferenceController(Context context, String preferenceKey) {
@@ -217,6 +219,32 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     @AvailabilityStatus
     public abstract int getAvailabilityStatus();
 
+    /**
+     * Returns the sources that invalidate {@link #getAvailabilityStatus()}, or null if the status
+     * can't be cached and must be recomputed every time. A status that never changes while the
+     * process runs, e.g. one based on device features, can return empty sources.
+     * <p/>
+     * The cached status is shared by all controllers of the same class and key in the process.
+     * Controllers whose status also depends on their own state must not override this.
+     */
+    @Nullable
+    protected InvalidationSources getAvailabilityInvalidationSources() {
+        return null;
+    }
+
+    /**
+     * Returns {@link #getAvailabilityStatus()}, served from {@link AvailabilityCache} when the
+     * controller declares {@link #getAvailabilityInvalidationSources()}.
+     */
+    @AvailabilityStatus
+    public final int getCachedAvailabilityStatus() {
+        final InvalidationSources sources = getAvailabilityInvalidationSources();
+        if (sources == null) {
+            return getAvailabilityStatus();
+        }
+        return AvailabilityCache.getInstance().getAvailabilityStatus(mContext, this, sources);
+    }
+
     @Override
     public String getPreferenceKey() {
         return mPreferenceKey;
@@ -257,7 +285,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
             return false;
         }
 
-        final int availabilityStatus = getAvailabilityStatus();
+        final int availabilityStatus = getCachedAvailabilityStatus();
         return (availabilityStatus == AVAILABLE
                 || availabilityStatus == AVAILABLE_UNSEARCHABLE
                 || availabilityStatus == DISABLED_DEPENDENT_SETTING);
@@ -271,7 +299,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      * Note that a return value of {@code true} does not mean that the setting is available.
      */
     public final boolean isSupported() {
-        return getAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
+        return getCachedAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
     }
 
     /**
@@ -280,7 +308,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
-        if (getAvailabilityStatus() == DISABLED_DEPENDENT_SETTING) {
+        if (getCachedAvailabilityStatus() == DISABLED_DEPENDENT_SETTING) {
             // Disable preference if it depends on another setting.
             final Preference preference = screen.findPreference(getPreferenceKey());
             if (preference != null) {
@@ -304,7 +332,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      */
     public void updateNonIndexableKeys(List<String> keys) {
         final boolean shouldSuppressFromSearch = !isAvailable()
-                || getAvailabilityStatus() == AVAILABLE_UNSEARCHABLE;
+                || getCachedAvailabilityStatus() == AVAILABLE_UNSEARCHABLE;
         if (shouldSuppressFromSearch) {
             final String key = getPreferenceKey();
             if (TextUtils.isEmpty(key)) {
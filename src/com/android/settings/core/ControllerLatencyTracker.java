@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.os.Trace;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Measures how long each preference controller takes in every phase of a dashboard screen.
+ *
+ * <p>Each phase runs in a trace section named after the controller whenever tracing is on. When
+ * the developer option is on, the latest durations are also kept per controller class and phase,
+ * reported by {@code SettingsDumpService}, and the calls over {@link #BUDGET_MS} are logged.
+ * With both off, {@link #begin} and {@link #end} only check two flags.
+ */
+public class ControllerLatencyTracker {
+
+    private static final String TAG = "ControllerLatency";
+
+    /** System property backing the developer option. */
+    @VisibleForTesting
+    static final String PROPERTY = "debug.settings.controller_latency";
+
+    public static final String PHASE_CREATE = "create";
+    public static final String PHASE_DISPLAY = "displayPreference";
+    public static final String PHASE_UPDATE_STATE = "updateState";
+    public static final String PHASE_ON_START = "onStart";
+
+    /** Calls longer than this are logged and counted as over budget. */
+    @VisibleForTesting
+    static final long BUDGET_MS = 8;
+    @VisibleForTesting
+    static final int MAX_SAMPLES = 32;
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+    /** Set in the token of {@link #begin} when it opened a trace section. */
+    private static final long TOKEN_TRACED = 1L << 62;
+
+    private static ControllerLatencyTracker sInstance;
+
+    private final ArrayMap<String, ArrayMap<String, Histogram>> mHistograms = new ArrayMap<>();
+    private volatile boolean mEnabled;
+
+    /** Returns the process-wide instance. */
+    public static synchronized ControllerLatencyTracker getInstance() {
+        if (sInstance == null) {
+            sInstance = new ControllerLatencyTracker();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ControllerLatencyTracker() {
+        mEnabled = SystemProperties.getBoolean(PROPERTY, false /* default */);
+    }
+
+    /** Returns whether the durations are being kept. */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /** Turns the developer option on or off, dropping the durations kept so far. */
+    public void setEnabled(boolean enabled) {
+        SystemProperties.set(PROPERTY, Boolean.toString(enabled));
+        mEnabled = enabled;
+        synchronized (mHistograms) {
+            mHistograms.clear();
+        }
+    }
+
+    /**
+     * Starts {@code phase} of the controller named {@code controllerName}.
+     *
+     * @return the token to pass to {@link #end}, holding the start time and whether a trace
+     * section was opened
+     */
+    public long begin(String phase, String controllerName) {
+        long token = mEnabled ? SystemClock.elapsedRealtimeNanos() : 0;
+        if (isTraceEnabled()) {
+            Trace.beginSection(getSectionName(phase, controllerName));
+            token |= TOKEN_TRACED;
+        }
+        return token;
+    }
+
+    /**
+     * Ends the phase started by {@link #begin} on the same thread. The trace section is only
+     * closed if {@link #begin} opened one, even if tracing was turned on or off in between.
+     */
+    public void end(String phase, String controllerName, long token) {
+        if ((token & TOKEN_TRACED) != 0) {
+            Trace.endSection();
+        }
+        final long startTime = token & ~TOKEN_TRACED;
+        if (startTime == 0 || !mEnabled) {
+            return;
+        }
+        final long durationUs = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+        record(phase, controllerName, durationUs);
+    }
+
+    @VisibleForTesting
+    boolean isTraceEnabled() {
+        return Trace.isEnabled();
+    }
+
+    @VisibleForTesting
+    void record(String phase, String controllerName, long durationUs) {
+        synchronized (mHistograms) {
+            ArrayMap<String, Histogram> phases = mHistograms.get(controllerName);
+            if (phases == null) {
+                phases = new ArrayMap<>();
+                mHistograms.put(controllerName, phases);
+            }
+            Histogram histogram = phases.get(phase);
+            if (histogram == null) {
+                histogram = new Histogram();
+                phases.put(phase, histogram);
+            }
+            histogram.add(durationUs);
+        }
+        if (durationUs > BUDGET_MS * 1000) {
+            Log.w(TAG, controllerName + "#" + phase + " took " + durationUs / 1000
+                    + "ms, over the " + BUDGET_MS + "ms budget");
+        }
+    }
+
+    /** Returns the latest durations of each controller and phase, for SettingsDumpService. */
+    public JSONObject dumpStats() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("enabled", mEnabled);
+        obj.put("budget_ms", BUDGET_MS);
+        synchronized (mHistograms) {
+            for (int i = 0; i < mHistograms.size(); i++) {
+                final ArrayMap<String, Histogram> phases = mHistograms.valueAt(i);
+                final JSONObject controllerObj = new JSONObject();
+                for (int j = 0; j < phases.size(); j++) {
+                    controllerObj.put(phases.keyAt(j), phases.valueAt(j).toJson());
+                }
+                obj.put(mHistograms.keyAt(i), controllerObj);
+            }
+        }
+        return obj;
+    }
+
+    private static String getSectionName(String phase, String controllerName) {
+        final String name = phase + " "
+                + controllerName.substring(controllerName.lastIndexOf('.') + 1);
+        return name.length() > MAX_SECTION_NAME_LENGTH
+                ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name;
+    }
+
+    /** The latest {@link #MAX_SAMPLES} durations of one controller phase. */
+    private static class Histogram {
+        final long[] mSamplesUs = new long[MAX_SAMPLES];
+        int mCount;
+        int mOverBudgetCount;
+        long mMaxUs;
+
+        void add(long durationUs) {
+            mSamplesUs[mCount % MAX_SAMPLES] = durationUs;
+            mCount++;
+            if (durationUs > BUDGET_MS * 1000) {
+                mOverBudgetCount++;
+            }
+            mMaxUs = Math.max(mMaxUs, durationUs);
+        }
+
+        JSONObject toJson() throws JSONException {
+            final long[] samples = Arrays.copyOf(mSamplesUs, Math.min(mCount, MAX_SAMPLES));
+            Arrays.sort(samples);
+            final JSONObject obj = new JSONObject();
+            obj.put("count", mCount);
+            obj.put("p50_us", samples[samples.length / 2]);
+            obj.put("p90_us", samples[samples.length * 9 / 10]);
+            obj.put("max_us", mMaxUs);
+            obj.put("over_budget", mOverBudgetCount);
+            return obj;
+        }
+    }
+}
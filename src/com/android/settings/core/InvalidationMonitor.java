@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.telephony.CarrierConfigManager;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide monitor that notifies listeners when one of their {@link InvalidationSources}
+ * fires. Observers and receivers are registered lazily, once per source, and shared by all
+ * listeners.
+ */
+public class InvalidationMonitor {
+
+    private static final String DATA_SCHEME_PKG = "package";
+
+    /** Callback for an invalidated source. May be called on any thread. */
+    public interface Listener {
+        void onInvalidated();
+    }
+
+    private static InvalidationMonitor sInstance;
+
+    private final Context mContext;
+    private final Map<Uri, List<Listener>> mUriListeners = new ArrayMap<>();
+    private final List<Listener> mPackageListeners = new ArrayList<>();
+    private final List<Listener> mUserListeners = new ArrayList<>();
+    private final List<Listener> mCarrierConfigListeners = new ArrayList<>();
+
+    private boolean mPackageReceiverRegistered;
+    private boolean mUserReceiverRegistered;
+    private boolean mCarrierConfigReceiverRegistered;
+
+    /** Returns the process-wide instance. */
+    public static synchronized InvalidationMonitor getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new InvalidationMonitor(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    InvalidationMonitor(Context context) {
+        mContext = context;
+    }
+
+    /** Calls {@code listener} every time one of {@code sources} fires. */
+    public synchronized void register(InvalidationSources sources, Listener listener) {
+        for (Uri uri : sources.getUris()) {
+            List<Listener> listeners = mUriListeners.get(uri);
+            if (listeners == null) {
+                listeners = new ArrayList<>();
+                mUriListeners.put(uri, listeners);
+                mContext.getContentResolver().registerContentObserver(uri,
+                        false /* notifyForDescendants */, new UriObserver(uri));
+            }
+            listeners.add(listener);
+        }
+        if ((sources.getFlags() & InvalidationSources.FLAG_PACKAGES) != 0) {
+            registerPackageReceiverIfNeeded();
+            mPackageListeners.add(listener);
+        }
+        if ((sources.getFlags() & InvalidationSources.FLAG_USERS) != 0) {
+            registerUserReceiverIfNeeded();
+            mUserListeners.add(listener);
+        }
+        if ((sources.getFlags() & InvalidationSources.FLAG_CARRIER_CONFIG) != 0) {
+            registerCarrierConfigReceiverIfNeeded();
+            mCarrierConfigListeners.add(listener);
+        }
+    }
+
+    /** Stops calling {@code listener}, the underlying observers stay registered. */
+    public synchronized void unregister(Listener listener) {
+        for (List<Listener> listeners : mUriListeners.values()) {
+            listeners.remove(listener);
+        }
+        mPackageListeners.remove(listener);
+        mUserListeners.remove(listener);
+        mCarrierConfigListeners.remove(listener);
+    }
+
+    @VisibleForTesting
+    void dispatchUriChanged(Uri uri) {
+        final List<Listener> listeners;
+        synchronized (this) {
+            final List<Listener> registered = mUriListeners.get(uri);
+            if (registered == null) {
+                return;
+            }
+            listeners = new ArrayList<>(registered);
+        }
+        notifyListeners(listeners);
+    }
+
+    @VisibleForTesting
+    void dispatchPackagesChanged() {
+        final List<Listener> listeners;
+        synchronized (this) {
+            listeners = new ArrayList<>(mPackageListeners);
+        }
+        notifyListeners(listeners);
+    }
+
+    @VisibleForTesting
+    void dispatchUsersChanged() {
+        final List<Listener> listeners;
+        synchronized (this) {
+            listeners = new ArrayList<>(mUserListeners);
+        }
+        notifyListeners(listeners);
+    }
+
+    @VisibleForTesting
+    void dispatchCarrierConfigChanged() {
+        final List<Listener> listeners;
+        synchronized (this) {
+            listeners = new ArrayList<>(mCarrierConfigListeners);
+        }
+        notifyListeners(listeners);
+    }
+
+    private static void notifyListeners(List<Listener> listeners) {
+        for (Listener listener : listeners) {
+            listener.onInvalidated();
+        }
+    }
+
+    private void registerPackageReceiverIfNeeded() {
+        if (mPackageReceiverRegistered) {
+            return;
+        }
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme(DATA_SCHEME_PKG);
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                dispatchPackagesChanged();
+            }
+        }, filter, Context.RECEIVER_EXPORTED_UNAUDITED);
+        mPackageReceiverRegistered = true;
+    }
+
+    private void registerUserReceiverIfNeeded() {
+        if (mUserReceiverRegistered) {
+            return;
+        }
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_USER_SWITCHED);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_ADDED);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_REMOVED);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_AVAILABLE);
+        filter.addAction(Intent.ACTION_MANAGED_PROFILE_UNAVAILABLE);
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                dispatchUsersChanged();
+            }
+        }, filter, Context.RECEIVER_EXPORTED_UNAUDITED);
+        mUserReceiverRegistered = true;
+    }
+
+    private void registerCarrierConfigReceiverIfNeeded() {
+        if (mCarrierConfigReceiverRegistered) {
+            return;
+        }
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                dispatchCarrierConfigChanged();
+            }
+        }, new IntentFilter(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED),
+                Context.RECEIVER_EXPORTED_UNAUDITED);
+        mCarrierConfigReceiverRegistered = true;
+    }
+
+    private class UriObserver extends ContentObserver {
+        private final Uri mUri;
+
+        UriObserver(Uri uri) {
+            super(null /* handler */);
+            mUri = uri;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            dispatchUriChanged(mUri);
+        }
+    }
+}
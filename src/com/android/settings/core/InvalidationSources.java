@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.net.Uri;
+import android.util.ArraySet;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Declares the events that invalidate a cached value, see {@link InvalidationMonitor}.
+ */
+public final class InvalidationSources {
+
+    /** Invalidated when a package is added, removed, replaced or changed. */
+    public static final int FLAG_PACKAGES = 1 << 0;
+    /** Invalidated when the foreground user switches or a profile is added or removed. */
+    public static final int FLAG_USERS = 1 << 1;
+    /** Invalidated when the carrier config of any subscription changes. */
+    public static final int FLAG_CARRIER_CONFIG = 1 << 2;
+
+    private final Set<Uri> mUris;
+    private final int mFlags;
+
+    private InvalidationSources(Builder builder) {
+        mUris = Collections.unmodifiableSet(new ArraySet<>(builder.mUris));
+        mFlags = builder.mFlags;
+    }
+
+    /** Returns the content uris to observe. */
+    public Set<Uri> getUris() {
+        return mUris;
+    }
+
+    /** Returns the broadcast based sources, a combination of the {@code FLAG_*} constants. */
+    public int getFlags() {
+        return mFlags;
+    }
+
+    public static class Builder {
+        private final Set<Uri> mUris = new ArraySet<>();
+        private int mFlags;
+
+        /** Invalidates when the given uri, typically a {@code Settings} uri, changes. */
+        public Builder addUri(Uri uri) {
+            mUris.add(uri);
+            return this;
+        }
+
+        /** Invalidates on the events described by the given {@code FLAG_*} constants. */
+        public Builder addFlags(int flags) {
+            mFlags |= flags;
+            return this;
+        }
+
+        public InvalidationSources build() {
+            return new InvalidationSources(this);
+        }
+    }
+}
@@ -62,36 +62,58 @@ public class PreferenceControllerListHelper {
             return controllers;
         }
 
+        final ControllerLatencyTracker tracker = ControllerLatencyTracker.getInstance();
         for (Bundle metadata : preferenceMetadata) {
             final String controllerName = metadata.getString(METADATA_CONTROLLER);
             if (TextUtils.isEmpty(controllerName)) {
                 continue;
             }
-            BasePreferenceController controller;
+            final long token =
+                    tracker.begin(ControllerLatencyTracker.PHASE_CREATE, controllerName);
+            final BasePreferenceController controller;
             try {
-                controller = BasePreferenceController.createInstance(context, controllerName);
-            } catch (IllegalStateException e) {
-                Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
-                final String key = metadata.getString(METADATA_KEY);
-                final boolean isWorkProfile = metadata.getBoolean(METADATA_FOR_WORK, false);
-                if (TextUtils.isEmpty(key)) {
-                    Log.w(TAG, "Controller requires key but it's not defined in xml: "
-                            + controllerName);
-                    continue;
-                }
-                try {
-                    controller = BasePreferenceController.createInstance(context, controllerName,
-                            key, isWorkProfile);
-                } catch (IllegalStateException e2) {
-                    Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
-                    continue;
-                }
+                controller = createController(context, controllerName, metadata);
+            } finally {
+                tracker.end(ControllerLatencyTracker.PHASE_CREATE, controllerName, token);
+            }
+            if (controller != null) {
+                controllers.add(controller);
             }
-            controllers.add(controller);
         }
         return controllers;
     }
 
+    private static BasePreferenceController createController(Context context,
+            String controllerName, Bundle metadata) {
+        // Most controllers are known to the generated factory, which picks their constructor
+        // without trying the (Context) one through reflection first.
+        final BasePreferenceController controller = PreferenceControllerRegistry.create(context,
+                controllerName, metadata.getString(METADATA_KEY),
+                metadata.getBoolean(METADATA_FOR_WORK, false));
+        if (controller != null || PreferenceControllerRegistry.isKnown(controllerName)) {
+            return controller;
+        }
+        try {
+            return BasePreferenceController.createInstance(context, controllerName);
+        } catch (IllegalStateException e) {
+            Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
+            final String key = metadata.getString(METADATA_KEY);
+            final boolean isWorkProfile = metadata.getBoolean(METADATA_FOR_WORK, false);
+            if (TextUtils.isEmpty(key)) {
+                Log.w(TAG, "Controller requires key but it's not defined in xml: "
+                        + controllerName);
+                return null;
+            }
+            try {
+                return BasePreferenceController.createInstance(context, controllerName, key,
+                        isWorkProfile);
+            } catch (IllegalStateException e2) {
+                Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
+                return null;
+            }
+        }
+    }
+
     /**
      * Return a sub list of {@link AbstractPreferenceController} to only contain controller that
      * doesn't exist in filter.
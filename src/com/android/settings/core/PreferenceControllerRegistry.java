@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Creates the preference controllers named in the preference XML through the factory generated
+ * at build time by tools/gen_controller_registry.py, instead of through reflection.
+ *
+ * <p>The generated factory only knows the controllers it could resolve from the sources. For the
+ * other names, and for builds that do not generate the factory, the methods return {@code null}
+ * and {@link BasePreferenceController#createInstance} falls back to reflection.
+ */
+final class PreferenceControllerRegistry {
+
+    private static final String TAG = "PrefControllerRegistry";
+
+    private static final String GENERATED_FACTORY =
+            "com.android.settings.core.GeneratedPreferenceControllerFactory";
+
+    /** Implemented by the generated factory. */
+    interface Factory {
+        /**
+         * Returns whether the factory resolved {@code controllerName}. If it did, a {@code null}
+         * result from the create methods means the controller has no such public constructor.
+         */
+        boolean isKnown(String controllerName);
+
+        /** Calls the (Context, String) constructor, or returns {@code null} if there is none. */
+        BasePreferenceController create(String controllerName, Context context, String key);
+
+        /** Calls the (Context) constructor, or returns {@code null} if there is none. */
+        BasePreferenceController create(String controllerName, Context context);
+    }
+
+    private static Factory sFactory;
+    private static boolean sFactoryLoaded;
+
+    private PreferenceControllerRegistry() {
+    }
+
+    /**
+     * Returns a controller created with its (Context, String) constructor, or {@code null} if the
+     * controller is unknown to the generated factory.
+     *
+     * @throws IllegalStateException if the controller is known but has no such constructor, or
+     *                               if the constructor throws
+     */
+    static BasePreferenceController create(Context context, String controllerName, String key) {
+        final Factory factory = getFactory();
+        if (factory == null || !factory.isKnown(controllerName)) {
+            return null;
+        }
+        final BasePreferenceController controller;
+        try {
+            controller = factory.create(controllerName, context, key);
+        } catch (RuntimeException e) {
+            // Same as a constructor failing through reflection.
+            throw new IllegalStateException("Invalid preference controller: " + controllerName, e);
+        }
+        if (controller == null) {
+            throw new IllegalStateException("Invalid preference controller: " + controllerName);
+        }
+        return controller;
+    }
+
+    /**
+     * Returns a controller created with its (Context) constructor, or {@code null} if the
+     * controller is unknown to the generated factory.
+     *
+     * @throws IllegalStateException if the controller is known but has no such constructor, or
+     *                               if the constructor throws
+     */
+    static BasePreferenceController create(Context context, String controllerName) {
+        final Factory factory = getFactory();
+        if (factory == null || !factory.isKnown(controllerName)) {
+            return null;
+        }
+        final BasePreferenceController controller;
+        try {
+            controller = factory.create(controllerName, context);
+        } catch (RuntimeException e) {
+            // Same as a constructor failing through reflection.
+            throw new IllegalStateException("Invalid preference controller: " + controllerName, e);
+        }
+        if (controller == null) {
+            throw new IllegalStateException("Invalid preference controller: " + controllerName);
+        }
+        return controller;
+    }
+
+    /**
+     * Returns a controller created with its (Context) constructor, or with its (Context, String)
+     * constructor and {@code key} if it has none, as declared in the preference XML. Returns
+     * {@code null} without throwing if the controller is unknown to the generated factory, has
+     * neither constructor, or its constructor throws.
+     */
+    @Nullable
+    static BasePreferenceController create(Context context, String controllerName,
+            @Nullable String key, boolean isWorkProfile) {
+        final Factory factory = getFactory();
+        if (factory == null || !factory.isKnown(controllerName)) {
+            return null;
+        }
+        try {
+            final BasePreferenceController controller = factory.create(controllerName, context);
+            if (controller != null) {
+                return controller;
+            }
+            if (TextUtils.isEmpty(key)) {
+                Log.w(TAG, "Controller requires key but it's not defined in xml: "
+                        + controllerName);
+                return null;
+            }
+            final BasePreferenceController keyedController =
+                    factory.create(controllerName, context, key);
+            if (keyedController == null) {
+                Log.w(TAG, "No public constructor for controller: " + controllerName);
+                return null;
+            }
+            keyedController.setForWork(isWorkProfile);
+            return keyedController;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot instantiate controller: " + controllerName, e);
+            return null;
+        }
+    }
+
+    /** Returns whether the generated factory resolved {@code controllerName}. */
+    static boolean isKnown(String controllerName) {
+        final Factory factory = getFactory();
+        return factory != null && factory.isKnown(controllerName);
+    }
+
+    private static synchronized Factory getFactory() {
+        if (!sFactoryLoaded) {
+            sFactoryLoaded = true;
+            try {
+                // Loaded once by name, so that source sets built without the generated file
+                // still compile.
+                sFactory = (Factory) Class.forName(GENERATED_FACTORY)
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                Log.w(TAG, "No generated controller factory, using reflection");
+            }
+        }
+        return sFactory;
+    }
+
+    /** Replaces the generated factory, {@code null} loads it again on the next use. */
+    @VisibleForTesting
+    static synchronized void setFactory(Factory factory) {
+        sFactory = factory;
+        sFactoryLoaded = factory != null;
+    }
+}
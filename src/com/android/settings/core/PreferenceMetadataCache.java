@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_APPEND;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_FOR_WORK;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_HIGHLIGHTABLE_MENU_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_ICON;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEYWORDS;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_PREF_TYPE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SUMMARY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_TITLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_UNAVAILABLE_SLICE_SUBTITLE;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the preference metadata compiled from preference xml.
+ *
+ * <p>Each xml is parsed once per configuration into immutable {@link CompiledPreference}
+ * records holding every attribute {@link PreferenceXmlParserUtils#extractMetadata} can return,
+ * so search indexing, slice indexing and controller creation share a single parse. The cache is
+ * bounded by the number of compiled preferences and mirrored to a compact file so the next
+ * process start doesn't need to parse again. The file is read on a background thread, xml
+ * requested before it is read are parsed as if they weren't cached. The file is dropped after an
+ * OTA or a change of the resource overlays.
+ */
+public class PreferenceMetadataCache {
+
+    private static final String TAG = "PrefMetadataCache";
+
+    @VisibleForTesting
+    static final String FILE_NAME = "preference_metadata_cache";
+    @VisibleForTesting
+    static final int MAX_PREFERENCES = 4096;
+    private static final int VERSION = 2;
+
+    private static PreferenceMetadataCache sInstance;
+
+    private final LruCache<String, List<CompiledPreference>> mCache =
+            new LruCache<String, List<CompiledPreference>>(MAX_PREFERENCES) {
+                @Override
+                protected int sizeOf(String key, List<CompiledPreference> value) {
+                    return Math.max(1, value.size());
+                }
+            };
+    private final File mFile;
+    private final String mFileKey;
+    private boolean mLoaded;
+    private boolean mWritePending;
+
+    /** Returns the process-wide instance. */
+    public static synchronized PreferenceMetadataCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PreferenceMetadataCache(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME),
+                    Build.FINGERPRINT + "|" + getOverlayKey(context));
+            ThreadUtils.postOnBackgroundThread(sInstance::loadIfNeeded);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param fileKey the key of the build and overlays, the file is only read if it was written
+     *                with the same key
+     */
+    @VisibleForTesting
+    PreferenceMetadataCache(File file, String fileKey) {
+        mFile = file;
+        mFileKey = fileKey;
+    }
+
+    /**
+     * Returns the compiled preferences of an xml, or null if it isn't cached yet. Never reads the
+     * file, entries that are only on disk are returned once it has been read.
+     */
+    @Nullable
+    List<CompiledPreference> get(String key) {
+        return mCache.get(key);
+    }
+
+    /** Caches the compiled preferences of an xml and schedules a write of the cache file. */
+    void put(String key, List<CompiledPreference> preferences) {
+        mCache.put(key, Collections.unmodifiableList(preferences));
+        scheduleWrite();
+    }
+
+    /** Drops every cached entry, in memory and on disk. */
+    public synchronized void clear() {
+        mCache.evictAll();
+        mLoaded = true;
+        mFile.delete();
+    }
+
+    /**
+     * Returns the cache key of {@code xmlResId} for the current configuration. The key holds every
+     * resource qualifier of the configuration, since the xml and the strings it references may
+     * have alternatives for any of them.
+     */
+    static String getKey(Context context, int xmlResId) {
+        final Configuration config = context.getResources().getConfiguration();
+        return xmlResId + "|" + Configuration.resourceQualifierString(config)
+                + "|" + getOverlayKey(context);
+    }
+
+    /**
+     * Returns a key of the resource overlays (RROs) applied to Settings, which change the
+     * compiled strings without a build or configuration change.
+     */
+    public static String getOverlayKey(Context context) {
+        final ApplicationInfo info = context.getApplicationInfo();
+        if (info == null) {
+            return "";
+        }
+        return Arrays.hashCode(info.resourceDirs) + "|" + Arrays.hashCode(info.overlayPaths);
+    }
+
+    /** Reads the file into memory, unless it was already read. Must not run on the main thread. */
+    @VisibleForTesting
+    synchronized void loadIfNeeded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != VERSION || !mFileKey.equals(in.readUTF())) {
+                return;
+            }
+            final int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                final String key = in.readUTF();
+                final int count = in.readInt();
+                final List<CompiledPreference> preferences = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    preferences.add(CompiledPreference.readFrom(in));
+                }
+                // Keep the entries parsed while the file was being read.
+                if (mCache.get(key) == null) {
+                    mCache.put(key, Collections.unmodifiableList(preferences));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read " + mFile, e);
+            mCache.evictAll();
+        }
+    }
+
+    private synchronized void scheduleWrite() {
+        if (mWritePending) {
+            return;
+        }
+        mWritePending = true;
+        ThreadUtils.postOnBackgroundThread(this::write);
+    }
+
+    @VisibleForTesting
+    void write() {
+        // Merge the file first, otherwise entries only on disk would be dropped from it.
+        loadIfNeeded();
+        final Map<String, List<CompiledPreference>> snapshot;
+        synchronized (this) {
+            mWritePending = false;
+            snapshot = mCache.snapshot();
+        }
+        final File tmpFile = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(VERSION);
+            out.writeUTF(mFileKey);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, List<CompiledPreference>> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (CompiledPreference preference : entry.getValue()) {
+                    preference.writeTo(out);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + mFile, e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(mFile)) {
+            tmpFile.delete();
+        }
+    }
+
+    /** Immutable metadata of a single preference in a preference xml. */
+    static final class CompiledPreference {
+        final String mType;
+        final boolean mIsPreferenceScreen;
+        final String mKey;
+        final String mController;
+        final String mTitle;
+        final String mSummary;
+        final int mIcon;
+        final String mKeywords;
+        final boolean mSearchable;
+        final boolean mAppended;
+        final String mUnavailableSliceSubtitle;
+        final boolean mForWork;
+        final String mHighlightableMenuKey;
+
+        CompiledPreference(String type, boolean isPreferenceScreen, String key,
+                String controller, String title, String summary, int icon, String keywords,
+                boolean searchable, boolean appended, String unavailableSliceSubtitle,
+                boolean forWork, String highlightableMenuKey) {
+            mType = type;
+            mIsPreferenceScreen = isPreferenceScreen;
+            mKey = key;
+            mController = controller;
+            mTitle = title;
+            mSummary = summary;
+            mIcon = icon;
+            mKeywords = keywords;
+            mSearchable = searchable;
+            mAppended = appended;
+            mUnavailableSliceSubtitle = unavailableSliceSubtitle;
+            mForWork = forWork;
+            mHighlightableMenuKey = highlightableMenuKey;
+        }
+
+        /** Returns the subset of the metadata requested by {@code flags}. */
+        Bundle toBundle(int flags) {
+            final Bundle bundle = new Bundle();
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
+                bundle.putString(METADATA_PREF_TYPE, mType);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
+                bundle.putString(METADATA_KEY, mKey);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
+                bundle.putString(METADATA_CONTROLLER, mController);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
+                bundle.putString(METADATA_TITLE, mTitle);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
+                bundle.putString(METADATA_SUMMARY, mSummary);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
+                bundle.putInt(METADATA_ICON, mIcon);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
+                bundle.putString(METADATA_KEYWORDS, mKeywords);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
+                bundle.putBoolean(METADATA_SEARCHABLE, mSearchable);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND)
+                    && hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN)) {
+                bundle.putBoolean(METADATA_APPEND, mAppended);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
+                bundle.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE, mUnavailableSliceSubtitle);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_FOR_WORK)) {
+                bundle.putBoolean(METADATA_FOR_WORK, mForWork);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_HIGHLIGHTABLE_MENU_KEY)) {
+                bundle.putString(METADATA_HIGHLIGHTABLE_MENU_KEY, mHighlightableMenuKey);
+            }
+            return bundle;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            writeString(out, mType);
+            out.writeBoolean(mIsPreferenceScreen);
+            writeString(out, mKey);
+            writeString(out, mController);
+            writeString(out, mTitle);
+            writeString(out, mSummary);
+            out.writeInt(mIcon);
+            writeString(out, mKeywords);
+            out.writeBoolean(mSearchable);
+            out.writeBoolean(mAppended);
+            writeString(out, mUnavailableSliceSubtitle);
+            out.writeBoolean(mForWork);
+            writeString(out, mHighlightableMenuKey);
+        }
+
+        static CompiledPreference readFrom(DataInputStream in) throws IOException {
+            return new CompiledPreference(readString(in), in.readBoolean(), readString(in),
+                    readString(in), readString(in), readString(in), in.readInt(),
+                    readString(in), in.readBoolean(), in.readBoolean(), readString(in),
+                    in.readBoolean(), readString(in));
+        }
+
+        private static boolean hasFlag(int flags, int flag) {
+            return (flags & flag) != 0;
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import androidx.annotation.IntDef;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.core.PreferenceMetadataCache.CompiledPreference;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -173,6 +174,9 @@ public class PreferenceXmlParserUtils {
     /**
      * Extracts metadata from preference xml and put them into a {@link Bundle}.
      *
+     * <p>The xml is parsed once per configuration and kept in {@link PreferenceMetadataCache},
+     * later calls only copy the requested metadata out of the cache.
+     *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
      */
@@ -184,6 +188,31 @@ public class PreferenceXmlParserUtils {
             Log.d(TAG, xmlResId + " is invalid.");
             return metadata;
         }
+        final PreferenceMetadataCache cache = PreferenceMetadataCache.getInstance(context);
+        final String key = PreferenceMetadataCache.getKey(context, xmlResId);
+        List<CompiledPreference> preferences = cache.get(key);
+        if (preferences == null) {
+            preferences = compileMetadata(context, xmlResId);
+            cache.put(key, preferences);
+        }
+
+        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
+        for (CompiledPreference preference : preferences) {
+            if (!hasPrefScreenFlag && preference.mIsPreferenceScreen) {
+                continue;
+            }
+            metadata.add(preference.toBundle(flags));
+        }
+        return metadata;
+    }
+
+    /**
+     * Parses every supported preference of an xml with all of its metadata.
+     */
+    @VisibleForTesting
+    static List<CompiledPreference> compileMetadata(Context context, @XmlRes int xmlResId)
+            throws IOException, XmlPullParserException {
+        final List<CompiledPreference> preferences = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
@@ -192,78 +221,41 @@ public class PreferenceXmlParserUtils {
             // Parse next until start tag is found
         }
         final int outerDepth = parser.getDepth();
-        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
         do {
             if (type != XmlPullParser.START_TAG) {
                 continue;
             }
             final String nodeName = parser.getName();
-            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, nodeName)) {
-                continue;
-            }
             if (!SUPPORTED_PREF_TYPES.contains(nodeName) && !nodeName.endsWith("Preference")) {
                 continue;
             }
-            final Bundle preferenceMetadata = new Bundle();
             final AttributeSet attrs = Xml.asAttributeSet(parser);
-
             final TypedArray preferenceAttributes = context.obtainStyledAttributes(attrs,
                     R.styleable.Preference);
-            TypedArray preferenceScreenAttributes = null;
-            if (hasPrefScreenFlag) {
-                preferenceScreenAttributes = context.obtainStyledAttributes(
-                        attrs, R.styleable.PreferenceScreen);
-            }
-
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
-                preferenceMetadata.putString(METADATA_PREF_TYPE, nodeName);
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
-                preferenceMetadata.putString(METADATA_KEY, getKey(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
-                preferenceMetadata.putString(METADATA_CONTROLLER,
-                        getController(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
-                preferenceMetadata.putString(METADATA_TITLE, getTitle(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
-                preferenceMetadata.putString(METADATA_SUMMARY, getSummary(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
-                preferenceMetadata.putInt(METADATA_ICON, getIcon(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
-                preferenceMetadata.putString(METADATA_KEYWORDS, getKeywords(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
-                preferenceMetadata.putBoolean(METADATA_SEARCHABLE,
-                        isSearchable(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND) && hasPrefScreenFlag) {
-                preferenceMetadata.putBoolean(METADATA_APPEND,
-                        isAppended(preferenceScreenAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
-                preferenceMetadata.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE,
-                        getUnavailableSliceSubtitle(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_FOR_WORK)) {
-                preferenceMetadata.putBoolean(METADATA_FOR_WORK,
-                        isForWork(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_HIGHLIGHTABLE_MENU_KEY)) {
-                preferenceMetadata.putString(METADATA_HIGHLIGHTABLE_MENU_KEY,
-                        getHighlightableMenuKey(preferenceAttributes));
-            }
-            metadata.add(preferenceMetadata);
+            final TypedArray preferenceScreenAttributes = context.obtainStyledAttributes(
+                    attrs, R.styleable.PreferenceScreen);
+
+            preferences.add(new CompiledPreference(
+                    nodeName,
+                    TextUtils.equals(PREF_SCREEN_TAG, nodeName),
+                    getKey(preferenceAttributes),
+                    getController(preferenceAttributes),
+                    getTitle(preferenceAttributes),
+                    getSummary(preferenceAttributes),
+                    getIcon(preferenceAttributes),
+                    getKeywords(preferenceAttributes),
+                    isSearchable(preferenceAttributes),
+                    isAppended(preferenceScreenAttributes),
+                    getUnavailableSliceSubtitle(preferenceAttributes),
+                    isForWork(preferenceAttributes),
+                    getHighlightableMenuKey(preferenceAttributes)));
 
             preferenceAttributes.recycle();
+            preferenceScreenAttributes.recycle();
         } while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
                 && (type != XmlPullParser.END_TAG || parser.getDepth() > outerDepth));
         parser.close();
-        return metadata;
+        return preferences;
     }
 
     /**
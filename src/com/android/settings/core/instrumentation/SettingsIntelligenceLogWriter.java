@@ -36,30 +36,97 @@ import com.android.settings.intelligence.LogProto.SettingsLog;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.LogWriter;
 
-import java.io.ByteArrayOutputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Sends the Settings events to SettingsIntelligence in batches.
+ *
+ * <p>The caller's thread only copies the fields of an event into a preallocated ring buffer,
+ * without locks or allocations. The worker thread turns them into {@link SettingsLog}s, appends
+ * them to a small spill file every few seconds so they survive the process dying, and sends them
+ * once a minute, or right away once {@link #CACHE_LOG_THRESHOLD} of them are waiting.
+ */
 public class SettingsIntelligenceLogWriter implements LogWriter {
     private static final String TAG = "IntelligenceLogWriter";
 
     private static final String LOG = "logs";
-    private static final long MESSAGE_DELAY = DateUtils.MINUTE_IN_MILLIS; // 1 minute
+    @VisibleForTesting
+    static final long MESSAGE_DELAY = DateUtils.MINUTE_IN_MILLIS; // 1 minute
+    @VisibleForTesting
+    static final long SPILL_DELAY = 5 * DateUtils.SECOND_IN_MILLIS;
     // Based on the exp, 99.5% users collect less than 150 data in 1 minute.
-    private static final int CACHE_LOG_THRESHOLD = 150;
+    @VisibleForTesting
+    static final int CACHE_LOG_THRESHOLD = 150;
+    // Must be a power of two, larger than CACHE_LOG_THRESHOLD.
+    @VisibleForTesting
+    static final int RING_CAPACITY = 256;
+    private static final int RING_MASK = RING_CAPACITY - 1;
+    private static final String SPILL_FILE_NAME = "settings_intelligence_logs";
+    // A spill file larger than this is dropped instead of restored.
+    private static final long MAX_SPILL_FILE_SIZE = 64 * 1024;
 
-    private List<SettingsLog> mSettingsLogList;
-    private SendLogHandler mLogHandler;
+    // Ring buffer, filled by the callers and drained by the worker thread. A slot is readable
+    // once mPublished holds its sequence, and writable again once mDrainedSequence passed it.
+    private final long[] mTimestamps = new long[RING_CAPACITY];
+    private final int[] mAttributions = new int[RING_CAPACITY];
+    private final int[] mActions = new int[RING_CAPACITY];
+    private final int[] mPageIds = new int[RING_CAPACITY];
+    private final int[] mValues = new int[RING_CAPACITY];
+    private final String[] mKeys = new String[RING_CAPACITY];
+    private final AtomicLongArray mPublished = new AtomicLongArray(RING_CAPACITY);
+    private final AtomicLong mNextSequence = new AtomicLong();
+    private volatile long mDrainedSequence;
+    private volatile long mSentSequence;
+    private final AtomicBoolean mSendScheduled = new AtomicBoolean();
+    private final AtomicBoolean mSpillScheduled = new AtomicBoolean();
+
+    // Only accessed on the worker thread.
+    private final List<SettingsLog> mSettingsLogList = new ArrayList<>();
+    private File mSpillFile;
+    private final SendLogHandler mLogHandler;
 
     public SettingsIntelligenceLogWriter() {
-        mSettingsLogList = new LinkedList<>();
+        this(startWorkerThread(), null /* spillFile */);
+    }
+
+    /**
+     * @param spillFile the file to spill the logs to, or {@code null} for the default one of the
+     *                  app context
+     */
+    @VisibleForTesting
+    SettingsIntelligenceLogWriter(Looper looper, File spillFile) {
+        for (int i = 0; i < RING_CAPACITY; i++) {
+            mPublished.set(i, -1);
+        }
+        mSpillFile = spillFile;
+        mLogHandler = new SendLogHandler(looper);
+        mLogHandler.post(mRestoreLogsRunnable);
+    }
+
+    private static Looper startWorkerThread() {
         final HandlerThread workerThread = new HandlerThread("SettingsIntelligenceLogWriter",
                 Process.THREAD_PRIORITY_BACKGROUND);
         workerThread.start();
-        mLogHandler = new SendLogHandler(workerThread.getLooper());
+        return workerThread.getLooper();
     }
 
     @Override
@@ -126,64 +193,204 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
 
     @Override
     public void action(int attribution, int action, int pageId, String key, int value) {
-        final ZonedDateTime now = ZonedDateTime.now(ZoneId.systemDefault());
-        final SettingsLog settingsLog = SettingsLog.newBuilder()
-                .setAttribution(attribution)
-                .setAction(action)
-                .setPageId(pageId)
-                .setChangedPreferenceKey(key != null ? key : "")
-                .setChangedPreferenceIntValue(value)
-                .setTimestamp(now.toString())
-                .build();
-        mLogHandler.post(() -> {
-            mSettingsLogList.add(settingsLog);
-        });
+        final long timestamp = System.currentTimeMillis();
+        long sequence;
+        do {
+            sequence = mNextSequence.get();
+            if (sequence - mDrainedSequence >= RING_CAPACITY) {
+                // The worker thread is far behind, hand this event over to it directly.
+                mLogHandler.post(() -> mSettingsLogList.add(
+                        buildLog(timestamp, attribution, action, pageId, key, value)));
+                mLogHandler.sendLog();
+                return;
+            }
+        } while (!mNextSequence.compareAndSet(sequence, sequence + 1));
+
+        final int slot = (int) (sequence & RING_MASK);
+        mTimestamps[slot] = timestamp;
+        mAttributions[slot] = attribution;
+        mActions[slot] = action;
+        mPageIds[slot] = pageId;
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        mPublished.lazySet(slot, sequence);
+
         if (action == SettingsEnums.ACTION_CONTEXTUAL_CARD_DISMISS
-                || mSettingsLogList.size() >= CACHE_LOG_THRESHOLD) {
+                || sequence + 1 - mSentSequence == CACHE_LOG_THRESHOLD) {
             // Directly send this event to notify SI instantly that the card is dismissed
             mLogHandler.sendLog();
-        } else {
-            mLogHandler.scheduleSendLog();
+            return;
+        }
+        if (!mSpillScheduled.get() && mSpillScheduled.compareAndSet(false, true)) {
+            mLogHandler.postDelayed(mSpillLogsRunnable, SPILL_DELAY);
+        }
+        if (!mSendScheduled.get() && mSendScheduled.compareAndSet(false, true)) {
+            mLogHandler.postDelayed(mSendLogsRunnable, MESSAGE_DELAY);
         }
     }
 
     @VisibleForTesting
     static byte[] serialize(List<SettingsLog> settingsLogs) {
         final int size = settingsLogs.size();
-        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        final DataOutputStream output = new DataOutputStream(bout);
         // The data format is "size, length, byte array, length, byte array ..."
+        int length = Integer.BYTES;
+        for (SettingsLog settingsLog : settingsLogs) {
+            length += Integer.BYTES + settingsLog.getSerializedSize();
+        }
+        final byte[] data = new byte[length];
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
         try {
-            output.writeInt(size);
+            buffer.putInt(size);
             for (SettingsLog settingsLog : settingsLogs) {
-                final byte[] data = settingsLog.toByteArray();
-                output.writeInt(data.length);
-                output.write(data);
+                final int logLength = settingsLog.getSerializedSize();
+                buffer.putInt(logLength);
+                final CodedOutputStream output =
+                        CodedOutputStream.newInstance(data, buffer.position(), logLength);
+                settingsLog.writeTo(output);
+                output.checkNoSpaceLeft();
+                buffer.position(buffer.position() + logLength);
             }
-            return bout.toByteArray();
+            return data;
         } catch (Exception e) {
             Log.e(TAG, "serialize error", e);
             return null;
-        } finally {
-            try {
-                output.close();
-            } catch (Exception e) {
-                Log.e(TAG, "close error", e);
+        }
+    }
+
+    /** Returns the logs waiting to be sent. Must be called on the worker thread. */
+    @VisibleForTesting
+    List<SettingsLog> getPendingLogs() {
+        return mSettingsLogList;
+    }
+
+    private static SettingsLog buildLog(long timestamp, int attribution, int action, int pageId,
+            String key, int value) {
+        final ZonedDateTime time =
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        return SettingsLog.newBuilder()
+                .setAttribution(attribution)
+                .setAction(action)
+                .setPageId(pageId)
+                .setChangedPreferenceKey(key != null ? key : "")
+                .setChangedPreferenceIntValue(value)
+                .setTimestamp(time.toString())
+                .build();
+    }
+
+    /**
+     * Moves the published events from the ring buffer to {@link #mSettingsLogList}, returns the
+     * index of the first one moved.
+     */
+    private int drainRingBuffer() {
+        final int firstIndex = mSettingsLogList.size();
+        long sequence = mDrainedSequence;
+        while (true) {
+            final int slot = (int) (sequence & RING_MASK);
+            if (mPublished.get(slot) != sequence) {
+                break;
+            }
+            mSettingsLogList.add(buildLog(mTimestamps[slot], mAttributions[slot],
+                    mActions[slot], mPageIds[slot], mKeys[slot], mValues[slot]));
+            mKeys[slot] = null;
+            sequence++;
+            mDrainedSequence = sequence;
+        }
+        return firstIndex;
+    }
+
+    private File getSpillFile() {
+        if (mSpillFile == null) {
+            final Context context = FeatureFactory.getAppContext();
+            if (context != null) {
+                mSpillFile = new File(context.getNoBackupFilesDir(), SPILL_FILE_NAME);
             }
         }
+        return mSpillFile;
     }
 
+    /** Appends {@code settingsLogs} to the spill file, in the same format as one batch. */
+    private void appendToSpillFile(List<SettingsLog> settingsLogs) {
+        final File file = getSpillFile();
+        if (file == null || settingsLogs.isEmpty()) {
+            return;
+        }
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true /* append */)))) {
+            for (SettingsLog settingsLog : settingsLogs) {
+                output.writeInt(settingsLog.getSerializedSize());
+                settingsLog.writeTo(output);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to spill logs", e);
+        }
+    }
+
+    private void deleteSpillFile() {
+        final File file = getSpillFile();
+        if (file != null && file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete spilled logs");
+        }
+    }
+
+    private final Runnable mRestoreLogsRunnable = () -> {
+        final File file = getSpillFile();
+        if (file == null || !file.exists()) {
+            return;
+        }
+        boolean corrupt = false;
+        if (file.length() <= MAX_SPILL_FILE_SIZE) {
+            long remaining = file.length();
+            try (DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                while (remaining > 0) {
+                    final int length = input.readInt();
+                    remaining -= Integer.BYTES;
+                    // A torn or zero-filled tail after a power loss may hold any length.
+                    if (length <= 0 || length > remaining) {
+                        corrupt = true;
+                        break;
+                    }
+                    final byte[] data = new byte[length];
+                    input.readFully(data);
+                    remaining -= length;
+                    mSettingsLogList.add(SettingsLog.parseFrom(data));
+                }
+            } catch (EOFException e) {
+                // The last record was cut short by the process dying.
+                corrupt = true;
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to restore spilled logs", e);
+                corrupt = true;
+            }
+        }
+        if (corrupt) {
+            // Logs spilled later would be appended after the broken record and be lost too, so
+            // only keep the records read so far.
+            Log.w(TAG, "Dropping the broken tail of the spilled logs");
+            deleteSpillFile();
+            appendToSpillFile(mSettingsLogList);
+        }
+        if (!mSettingsLogList.isEmpty()) {
+            Log.d(TAG, "Restored " + mSettingsLogList.size() + " spilled logs");
+            // The restored logs are sent with the next batch, so keep them in the file until then.
+            mLogHandler.sendLog();
+        } else {
+            deleteSpillFile();
+        }
+    };
+
+    private final Runnable mSpillLogsRunnable = () -> {
+        mSpillScheduled.set(false);
+        final int firstIndex = drainRingBuffer();
+        appendToSpillFile(mSettingsLogList.subList(firstIndex, mSettingsLogList.size()));
+    };
+
     private class SendLogHandler extends Handler {
 
         SendLogHandler(Looper looper) {
             super(looper);
         }
 
-        void scheduleSendLog() {
-            removeCallbacks(mSendLogsRunnable);
-            postDelayed(mSendLogsRunnable, MESSAGE_DELAY);
-        }
-
         void sendLog() {
             removeCallbacks(mSendLogsRunnable);
             post(mSendLogsRunnable);
@@ -191,6 +398,9 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
     }
 
     private final Runnable mSendLogsRunnable = () -> {
+        mSendScheduled.set(false);
+        drainRingBuffer();
+        mSentSequence = mDrainedSequence;
         final Context context = FeatureFactory.getAppContext();
         if (context == null) {
             Log.e(TAG, "context is null");
@@ -205,7 +415,8 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
             intent.setAction(action);
             intent.putExtra(LOG, serialize(mSettingsLogList));
             context.sendBroadcastAsUser(intent, UserHandle.CURRENT);
-            mSettingsLogList.clear();
         }
+        mSettingsLogList.clear();
+        deleteSpillFile();
     };
 }
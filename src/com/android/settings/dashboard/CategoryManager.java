@@ -25,6 +25,8 @@ import android.util.Pair;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.core.InvalidationMonitor;
+import com.android.settings.core.InvalidationSources;
 import com.android.settings.homepage.HighlightableMenu;
 import com.android.settings.safetycenter.SafetyCenterManagerWrapper;
 import com.android.settingslib.applications.InterestingConfigChanges;
@@ -33,11 +35,15 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.drawer.TileUtils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import com.google.android.setupcompat.util.WizardManagerHelper;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -60,6 +66,12 @@ public class CategoryManager {
 
     private List<DashboardCategory> mCategories;
 
+    // Published copy of the categories, replaced as a whole so readers don't need to lock.
+    private volatile CategorySnapshot mSnapshot;
+
+    private DashboardTileCache mDiskCache;
+    private boolean mTilesFromDiskCache;
+
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
             sInstance = new CategoryManager(context);
@@ -74,18 +86,17 @@ public class CategoryManager {
         mInterestingConfigChanges.applyNewConfig(context.getResources());
     }
 
-    public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
-        tryInitCategories(context);
-
-        return mCategoryByKeyMap.get(categoryKey);
+    public DashboardCategory getTilesByCategory(Context context, String categoryKey) {
+        final CategorySnapshot snapshot = getSnapshot(context);
+        return snapshot == null ? null : snapshot.mCategoryByKeyMap.get(categoryKey);
     }
 
-    public synchronized List<DashboardCategory> getCategories(Context context) {
+    public List<DashboardCategory> getCategories(Context context) {
         if (!WizardManagerHelper.isUserSetupComplete(context)) {
             return new ArrayList<>();
         }
-        tryInitCategories(context);
-        return mCategories;
+        final CategorySnapshot snapshot = getSnapshot(context);
+        return snapshot == null ? null : snapshot.mCategories;
     }
 
     public synchronized void reloadAllCategories(Context context) {
@@ -104,25 +115,46 @@ public class CategoryManager {
             Log.w(TAG, "Category is null, skipping denylist update");
             return;
         }
+        boolean changed = false;
         for (int i = 0; i < mCategories.size(); i++) {
-            DashboardCategory category = mCategories.get(i);
+            final DashboardCategory category = mCategories.get(i);
+            DashboardCategory filtered = null;
             for (int j = 0; j < category.getTilesCount(); j++) {
-                Tile tile = category.getTile(j);
+                final Tile tile = category.getTile(j);
                 if (tileDenylist.contains(tile.getIntent().getComponent())) {
-                    category.removeTile(j--);
+                    if (filtered == null) {
+                        // Copy on write, the published category may be in use by readers.
+                        filtered = new DashboardCategory(category.key);
+                        for (int k = 0; k < j; k++) {
+                            filtered.addTile(category.getTile(k));
+                        }
+                    }
+                } else if (filtered != null) {
+                    filtered.addTile(tile);
                 }
             }
+            if (filtered != null) {
+                mCategories.set(i, filtered);
+                if (mCategoryByKeyMap.get(category.key) == category) {
+                    mCategoryByKeyMap.put(category.key, filtered);
+                }
+                changed = true;
+            }
+        }
+        if (changed) {
+            publishSnapshot();
         }
     }
 
     /** Return the current tile map */
-    public synchronized Map<ComponentName, Tile> getTileByComponentMap() {
+    public Map<ComponentName, Tile> getTileByComponentMap() {
         final Map<ComponentName, Tile> result = new ArrayMap<>();
-        if (mCategories == null) {
+        final CategorySnapshot snapshot = mSnapshot;
+        if (snapshot == null) {
             Log.w(TAG, "Category is null, no tiles");
             return result;
         }
-        mCategories.forEach(category -> {
+        snapshot.mCategories.forEach(category -> {
             for (int i = 0; i < category.getTilesCount(); i++) {
                 final Tile tile = category.getTile(i);
                 result.put(tile.getIntent().getComponent(), tile);
@@ -140,6 +172,15 @@ public class CategoryManager {
         }
     }
 
+    private CategorySnapshot getSnapshot(Context context) {
+        CategorySnapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            tryInitCategories(context);
+            snapshot = mSnapshot;
+        }
+        return snapshot;
+    }
+
     private synchronized void tryInitCategories(Context context) {
         // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
         // happens.
@@ -153,11 +194,17 @@ public class CategoryManager {
         }
         if (mCategories == null) {
             final boolean firstLoading = mCategoryByKeyMap.isEmpty();
-            if (forceClearCache) {
+            if (forceClearCache || mTilesFromDiskCache) {
+                // Tiles from the disk cache may be keyed differently than TileUtils does.
                 mTileByComponentCache.clear();
             }
             mCategoryByKeyMap.clear();
-            mCategories = TileUtils.getCategories(context, mTileByComponentCache);
+            mCategories = firstLoading && !forceClearCache ? loadFromDiskCache(context) : null;
+            mTilesFromDiskCache = mCategories != null;
+            if (mCategories == null) {
+                mCategories = TileUtils.getCategories(context, mTileByComponentCache);
+                saveToDiskCache(context, mCategories);
+            }
             for (DashboardCategory category : mCategories) {
                 mCategoryByKeyMap.put(category.key, category);
             }
@@ -165,6 +212,7 @@ public class CategoryManager {
             mergeSecurityPrivacyKeys(context, mTileByComponentCache, mCategoryByKeyMap);
             sortCategories(context, mCategoryByKeyMap);
             filterDuplicateTiles(mCategoryByKeyMap);
+            publishSnapshot();
             if (firstLoading) {
                 logTiles(context);
 
@@ -185,6 +233,77 @@ public class CategoryManager {
         }
     }
 
+    private void publishSnapshot() {
+        mSnapshot = new CategorySnapshot(mCategories, mCategoryByKeyMap);
+    }
+
+    private DashboardTileCache getDiskCache(Context context) {
+        if (mDiskCache == null) {
+            final Context appContext = context.getApplicationContext();
+            mDiskCache = new DashboardTileCache(
+                    new File(appContext.getCacheDir(), DashboardTileCache.FILE_NAME));
+            // The next cold start must not use tiles of packages that changed in the meantime.
+            InvalidationMonitor.getInstance(appContext).register(
+                    new InvalidationSources.Builder()
+                            .addFlags(InvalidationSources.FLAG_PACKAGES
+                                    | InvalidationSources.FLAG_USERS)
+                            .build(),
+                    mDiskCache::invalidate);
+        }
+        return mDiskCache;
+    }
+
+    /**
+     * Returns the categories as {@link TileUtils#getCategories} would, built from the disk cache,
+     * or null if the cache isn't valid.
+     */
+    private List<DashboardCategory> loadFromDiskCache(Context context) {
+        final List<DashboardTileCache.Entry> entries = getDiskCache(context).read(context);
+        if (entries == null) {
+            return null;
+        }
+        final Map<String, DashboardCategory> categoryByKey = new ArrayMap<>();
+        final List<DashboardCategory> categories = new ArrayList<>();
+        for (DashboardTileCache.Entry entry : entries) {
+            entry.mTile.setCategory(entry.mCategory);
+            mTileByComponentCache.put(entry.mKey, entry.mTile);
+            DashboardCategory category = categoryByKey.get(entry.mCategory);
+            if (category == null) {
+                category = new DashboardCategory(entry.mCategory);
+                categoryByKey.put(entry.mCategory, category);
+                categories.add(category);
+            }
+            category.addTile(entry.mTile);
+        }
+        Log.d(TAG, "Loaded " + entries.size() + " tiles from disk cache");
+        return categories;
+    }
+
+    private void saveToDiskCache(Context context, List<DashboardCategory> categories) {
+        // Tiles get re-categorized later on, so record the category they were discovered with.
+        final Map<Tile, Pair<String, String>> keyByTile = new IdentityHashMap<>();
+        for (Entry<Pair<String, String>, Tile> entry : mTileByComponentCache.entrySet()) {
+            keyByTile.put(entry.getValue(), entry.getKey());
+        }
+        final List<DashboardTileCache.Entry> entries = new ArrayList<>();
+        for (DashboardCategory category : categories) {
+            for (Tile tile : category.getTiles()) {
+                final Pair<String, String> key = keyByTile.get(tile);
+                if (key != null) {
+                    entries.add(new DashboardTileCache.Entry(key, category.key, tile));
+                }
+            }
+        }
+        final DashboardTileCache diskCache = getDiskCache(context);
+        final int generation = diskCache.getGeneration();
+        final Context appContext = context.getApplicationContext();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            synchronized (CategoryManager.this) {
+                diskCache.write(appContext, entries, generation);
+            }
+        });
+    }
+
     @VisibleForTesting
     synchronized void backwardCompatCleanupForCategory(
             Map<Pair<String, String>, Tile> tileByComponentCache,
@@ -312,4 +431,15 @@ public class CategoryManager {
             }
         }
     }
+
+    private static final class CategorySnapshot {
+        final List<DashboardCategory> mCategories;
+        final Map<String, DashboardCategory> mCategoryByKeyMap;
+
+        CategorySnapshot(List<DashboardCategory> categories,
+                Map<String, DashboardCategory> categoryByKeyMap) {
+            mCategories = Collections.unmodifiableList(new ArrayList<>(categories));
+            mCategoryByKeyMap = Collections.unmodifiableMap(new ArrayMap<>(categoryByKeyMap));
+        }
+    }
 }
@@ -45,6 +45,7 @@ import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
+import com.android.settings.core.ControllerLatencyTracker;
 import com.android.settings.core.PreferenceControllerListHelper;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.PrimarySwitchPreference;
@@ -53,6 +54,7 @@ import com.android.settingslib.core.lifecycle.Lifecycle;
 import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -63,8 +65,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -85,9 +86,12 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
+    private final ControllerLatencyTracker mLatencyTracker =
+            ControllerLatencyTracker.getInstance();
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
     private boolean mListeningToCategoryChange;
     private List<String> mSuppressInjectedTileKeys;
+    private int mObserverUpdateGeneration;
 
     @Override
     public void onAttach(Context context) {
@@ -214,7 +218,13 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     @Override
     public void onStart() {
+        // The lifecycle observers are all started by super, so they are timed together under
+        // the fragment.
+        final String fragmentName = getClass().getName();
+        final long token =
+                mLatencyTracker.begin(ControllerLatencyTracker.PHASE_ON_START, fragmentName);
         super.onStart();
+        mLatencyTracker.end(ControllerLatencyTracker.PHASE_ON_START, fragmentName, token);
         final DashboardCategory category =
                 mDashboardFeatureProvider.getTilesForCategory(getCategoryKey());
         if (category == null) {
@@ -375,7 +385,13 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      */
     protected void displayResourceTilesToScreen(PreferenceScreen screen) {
         mPreferenceControllers.values().stream().flatMap(Collection::stream).forEach(
-                controller -> controller.displayPreference(screen));
+                controller -> {
+                    final String name = controller.getClass().getName();
+                    final long token =
+                            mLatencyTracker.begin(ControllerLatencyTracker.PHASE_DISPLAY, name);
+                    controller.displayPreference(screen);
+                    mLatencyTracker.end(ControllerLatencyTracker.PHASE_DISPLAY, name, token);
+                });
     }
 
     /**
@@ -411,11 +427,19 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
-                controller.updateState(preference);
+                updateState(controller, preference);
             }
         }
     }
 
+    private void updateState(AbstractPreferenceController controller, Preference preference) {
+        final String name = controller.getClass().getName();
+        final long token =
+                mLatencyTracker.begin(ControllerLatencyTracker.PHASE_UPDATE_STATE, name);
+        controller.updateState(preference);
+        mLatencyTracker.end(ControllerLatencyTracker.PHASE_UPDATE_STATE, name, token);
+    }
+
     /**
      * Refresh all preference items, including both static prefs from xml, and dynamic items from
      * DashboardCategory.
@@ -459,7 +483,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 }
                 final boolean available = controller.isAvailable();
                 if (available) {
-                    controller.updateState(preference);
+                    updateState(controller, preference);
                 }
                 preference.setVisible(available);
             }
@@ -571,18 +595,24 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             unregisterDynamicDataObservers(entry.getValue());
         }
 
-        // Wait for pending observers to update UI.
+        // Apply the first load of pending observers in one pass once they are all resolved.
         if (!pendingObservers.isEmpty()) {
-            final CountDownLatch mainLatch = new CountDownLatch(1);
-            new Thread(() -> {
-                pendingObservers.forEach(observer ->
-                        awaitObserverLatch(observer.getCountDownLatch()));
-                mainLatch.countDown();
-            }).start();
-            Log.d(tag, "Start waiting observers");
-            awaitObserverLatch(mainLatch);
-            Log.d(tag, "Stop waiting observers");
-            pendingObservers.forEach(DynamicDataObserver::updateUi);
+            applyObserverUpdates(tag, pendingObservers);
+        }
+    }
+
+    /**
+     * Applies the first load of {@code observers} in a single pass on the main thread, once they
+     * have all loaded or after {@link #TIMEOUT_MILLIS}. Observers that load later update the UI on
+     * their own.
+     */
+    @VisibleForTesting
+    void applyObserverUpdates(String tag, List<DynamicDataObserver> observers) {
+        final ObserverUpdateBatch batch =
+                new ObserverUpdateBatch(tag, observers, ++mObserverUpdateGeneration);
+        ThreadUtils.getUiThreadHandler().postDelayed(batch, TIMEOUT_MILLIS);
+        for (DynamicDataObserver observer : observers) {
+            observer.setFirstLoadListener(batch::onObserverLoaded);
         }
     }
 
@@ -647,11 +677,49 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         });
     }
 
-    private void awaitObserverLatch(CountDownLatch latch) {
-        try {
-            latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // Do nothing
+    /** The observers of one refresh of the dashboard tiles, whose first load is applied at once. */
+    private class ObserverUpdateBatch implements Runnable {
+        private final String mTag;
+        private final List<DynamicDataObserver> mObservers;
+        private final int mGeneration;
+        private final AtomicInteger mPendingCount;
+        private boolean mApplied;
+
+        ObserverUpdateBatch(String tag, List<DynamicDataObserver> observers, int generation) {
+            mTag = tag;
+            mObservers = observers;
+            mGeneration = generation;
+            mPendingCount = new AtomicInteger(observers.size());
+        }
+
+        /** Called on the loading thread of an observer when its data first arrives. */
+        void onObserverLoaded() {
+            if (mPendingCount.decrementAndGet() == 0) {
+                ThreadUtils.postOnMainThread(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mApplied) {
+                return;
+            }
+            mApplied = true;
+            ThreadUtils.getUiThreadHandler().removeCallbacks(this);
+            if (!isAdded()) {
+                Log.d(mTag, "Fragment not added, skip updates of " + mObservers.size()
+                        + " observers");
+                return;
+            }
+            // A later refresh rebinds the tiles with new observers, so only the observers still
+            // registered need the update of an older batch.
+            final boolean stale = mGeneration != mObserverUpdateGeneration;
+            Log.d(mTag, "Apply updates of " + mObservers.size() + " observers, stale: " + stale);
+            for (DynamicDataObserver observer : mObservers) {
+                if (!stale || mRegisteredObservers.contains(observer)) {
+                    observer.updateUi();
+                }
+            }
         }
     }
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.android.settingslib.drawer.TileUtils.EXTRA_SETTINGS_ACTION;
+import static com.android.settingslib.drawer.TileUtils.IA_SETTINGS_ACTION;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.Pair;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.drawer.Tile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of the tiles discovered by {@link com.android.settingslib.drawer.TileUtils}.
+ *
+ * <p>The cache remembers the version code of every package contributing tiles and the package
+ * change sequence number at the time it was written. It is only used in the same boot, when none
+ * of these packages changed and no other changed package declares tiles, so a cold start can skip
+ * the PackageManager queries of all tile actions.
+ */
+class DashboardTileCache {
+
+    private static final String TAG = "DashboardTileCache";
+
+    @VisibleForTesting
+    static final String FILE_NAME = "dashboard_tile_cache";
+    private static final int VERSION = 1;
+
+    /** A cached tile, with the component key and category it was discovered with. */
+    static final class Entry {
+        final Pair<String, String> mKey;
+        final String mCategory;
+        final Tile mTile;
+
+        Entry(Pair<String, String> key, String category, Tile tile) {
+            mKey = key;
+            mCategory = category;
+            mTile = tile;
+        }
+    }
+
+    private final File mFile;
+    private volatile int mGeneration;
+
+    DashboardTileCache(File file) {
+        mFile = file;
+    }
+
+    /** Returns the generation of the cache, incremented on every {@link #invalidate()}. */
+    int getGeneration() {
+        return mGeneration;
+    }
+
+    /** Returns the cached tiles, or null if there is no valid cache. */
+    @Nullable
+    List<Entry> read(Context context) {
+        if (!mFile.exists()) {
+            return null;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try {
+            final byte[] data = readFile();
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            if (parcel.readInt() != VERSION
+                    || !Build.FINGERPRINT.equals(parcel.readString())
+                    || !getProfilesKey(context).equals(parcel.readString())) {
+                return null;
+            }
+            final int bootCount = parcel.readInt();
+            final int sequenceNumber = parcel.readInt();
+            final Map<String, Long> versions = new ArrayMap<>();
+            final int packageCount = parcel.readInt();
+            for (int i = 0; i < packageCount; i++) {
+                versions.put(parcel.readString(), parcel.readLong());
+            }
+            if (!arePackagesUnchanged(context, versions, bootCount, sequenceNumber)) {
+                return null;
+            }
+            final int count = parcel.readInt();
+            final List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final Pair<String, String> key = new Pair<>(parcel.readString(),
+                        parcel.readString());
+                final String category = parcel.readString();
+                entries.add(new Entry(key, category, Tile.CREATOR.createFromParcel(parcel)));
+            }
+            return entries;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read " + mFile, e);
+            invalidate();
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Replaces the cache with {@code entries}, unless it was invalidated since {@code generation}.
+     * Must not be called on the main thread.
+     */
+    synchronized void write(Context context, List<Entry> entries, int generation) {
+        final PackageManager pm = context.getPackageManager();
+        final Map<String, Long> versions = new ArrayMap<>();
+        for (Entry entry : entries) {
+            final String packageName = entry.mKey.first;
+            if (versions.containsKey(packageName)) {
+                continue;
+            }
+            final Long version = getVersionCode(pm, packageName);
+            if (version == null) {
+                // Already gone, the cache would be invalid right away.
+                invalidate();
+                return;
+            }
+            versions.put(packageName, version);
+        }
+        final ChangedPackages changedPackages = pm.getChangedPackages(0);
+
+        final Parcel parcel = Parcel.obtain();
+        final File tmpFile = new File(mFile.getPath() + ".tmp");
+        try {
+            parcel.writeInt(VERSION);
+            parcel.writeString(Build.FINGERPRINT);
+            parcel.writeString(getProfilesKey(context));
+            parcel.writeInt(getBootCount(context));
+            parcel.writeInt(changedPackages == null ? 0 : changedPackages.getSequenceNumber());
+            parcel.writeInt(versions.size());
+            for (Map.Entry<String, Long> version : versions.entrySet()) {
+                parcel.writeString(version.getKey());
+                parcel.writeLong(version.getValue());
+            }
+            parcel.writeInt(entries.size());
+            for (Entry entry : entries) {
+                parcel.writeString(entry.mKey.first);
+                parcel.writeString(entry.mKey.second);
+                parcel.writeString(entry.mCategory);
+                entry.mTile.writeToParcel(parcel, 0 /* flags */);
+            }
+            try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+                out.write(parcel.marshall());
+            }
+            if (generation != mGeneration || !tmpFile.renameTo(mFile)) {
+                tmpFile.delete();
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to write " + mFile, e);
+            tmpFile.delete();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /** Deletes the cache. */
+    synchronized void invalidate() {
+        mGeneration++;
+        mFile.delete();
+    }
+
+    private byte[] readFile() throws IOException {
+        final byte[] data = new byte[(int) mFile.length()];
+        try (FileInputStream in = new FileInputStream(mFile)) {
+            int offset = 0;
+            while (offset < data.length) {
+                final int read = in.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                offset += read;
+            }
+        }
+        return data;
+    }
+
+    private static boolean arePackagesUnchanged(Context context, Map<String, Long> versions,
+            int bootCount, int sequenceNumber) {
+        final PackageManager pm = context.getPackageManager();
+        for (Map.Entry<String, Long> version : versions.entrySet()) {
+            if (!version.getValue().equals(getVersionCode(pm, version.getKey()))) {
+                return false;
+            }
+        }
+        if (bootCount != getBootCount(context)) {
+            // Sequence numbers are reset on reboot, so the packages that changed between the
+            // write and the reboot, e.g. a tile app installed or a tile component disabled, can't
+            // be told apart anymore.
+            return false;
+        }
+        final ChangedPackages changedPackages = pm.getChangedPackages(sequenceNumber);
+        if (changedPackages == null) {
+            return true;
+        }
+        for (String packageName : changedPackages.getPackageNames()) {
+            if (versions.containsKey(packageName) || declaresTiles(pm, packageName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean declaresTiles(PackageManager pm, String packageName) {
+        return !pm.queryIntentActivities(
+                new Intent(EXTRA_SETTINGS_ACTION).setPackage(packageName), 0).isEmpty()
+                || !pm.queryIntentActivities(
+                new Intent(IA_SETTINGS_ACTION).setPackage(packageName), 0).isEmpty()
+                || !pm.queryIntentContentProviders(
+                new Intent(EXTRA_SETTINGS_ACTION).setPackage(packageName), 0).isEmpty();
+    }
+
+    @Nullable
+    private static Long getVersionCode(PackageManager pm, String packageName) {
+        try {
+            final PackageInfo info = pm.getPackageInfo(packageName,
+                    PackageManager.MATCH_DISABLED_COMPONENTS);
+            return info.getLongVersionCode();
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static int getBootCount(Context context) {
+        return Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT,
+                -1);
+    }
+
+    private static String getProfilesKey(Context context) {
+        final StringBuilder sb = new StringBuilder();
+        for (UserHandle user : context.getSystemService(UserManager.class).getUserProfiles()) {
+            sb.append(user.getIdentifier()).append(',');
+        }
+        return sb.toString();
+    }
+}
@@ -32,6 +32,7 @@ public abstract class DynamicDataObserver extends ContentObserver {
     private Runnable mUpdateRunnable;
     private CountDownLatch mCountDownLatch;
     private boolean mUpdateDelegated;
+    private Runnable mFirstLoadListener;
 
     protected DynamicDataObserver() {
         super(new Handler(Looper.getMainLooper()));
@@ -59,6 +60,18 @@ public abstract class DynamicDataObserver extends ContentObserver {
         return mCountDownLatch;
     }
 
+    /**
+     * Sets a callback for the first load of the data, run on the loading thread. Runs it right
+     * away if the data is already loaded.
+     */
+    synchronized void setFirstLoadListener(Runnable listener) {
+        if (mCountDownLatch.getCount() == 0) {
+            listener.run();
+        } else {
+            mFirstLoadListener = listener;
+        }
+    }
+
     @Override
     public void onChange(boolean selfChange) {
         onDataChanged();
@@ -70,6 +83,10 @@ public abstract class DynamicDataObserver extends ContentObserver {
         } else {
             mUpdateRunnable = runnable;
             mCountDownLatch.countDown();
+            if (mFirstLoadListener != null) {
+                mFirstLoadListener.run();
+                mFirstLoadListener = null;
+            }
         }
     }
 }
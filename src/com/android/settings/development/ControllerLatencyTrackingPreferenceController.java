@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.development;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.SwitchPreference;
+
+import com.android.settings.core.ControllerLatencyTracker;
+import com.android.settings.core.PreferenceControllerMixin;
+import com.android.settingslib.development.DeveloperOptionsPreferenceController;
+
+/**
+ * Turns on keeping the latency of each preference controller of the Settings screens, see
+ * {@link ControllerLatencyTracker}.
+ */
+public class ControllerLatencyTrackingPreferenceController extends
+        DeveloperOptionsPreferenceController implements Preference.OnPreferenceChangeListener,
+        PreferenceControllerMixin {
+
+    private static final String CONTROLLER_LATENCY_TRACKING_KEY = "controller_latency_tracking";
+
+    private final ControllerLatencyTracker mTracker;
+
+    public ControllerLatencyTrackingPreferenceController(Context context) {
+        this(context, ControllerLatencyTracker.getInstance());
+    }
+
+    @VisibleForTesting
+    ControllerLatencyTrackingPreferenceController(Context context,
+            ControllerLatencyTracker tracker) {
+        super(context);
+        mTracker = tracker;
+    }
+
+    @Override
+    public String getPreferenceKey() {
+        return CONTROLLER_LATENCY_TRACKING_KEY;
+    }
+
+    @Override
+    public boolean onPreferenceChange(Preference preference, Object newValue) {
+        mTracker.setEnabled((Boolean) newValue);
+        return true;
+    }
+
+    @Override
+    public void updateState(Preference preference) {
+        ((SwitchPreference) mPreference).setChecked(mTracker.isEnabled());
+    }
+
+    @Override
+    protected void onDeveloperOptionsSwitchDisabled() {
+        super.onDeveloperOptionsSwitchDisabled();
+        mTracker.setEnabled(false);
+        ((SwitchPreference) mPreference).setChecked(false);
+    }
+}
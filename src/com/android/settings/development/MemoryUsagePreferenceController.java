@@ -57,9 +57,9 @@ public class MemoryUsagePreferenceController extends DeveloperOptionsPreferenceC
     @Override
     public void updateState(Preference preference) {
         // This is posted on the background thread to speed up fragment launch time for dev options
-        // mProcStasData.refreshStats(true) takes ~20ms to run.
+        // mProcStasData.refreshStats() takes ~20ms to run when the stats are not cached.
         ThreadUtils.postOnBackgroundThread(() -> {
-            mProcStatsData.refreshStats(true);
+            mProcStatsData.refreshStats(false);
             final ProcStatsData.MemInfo memInfo = mProcStatsData.getMemInfo();
             final String usedResult = Formatter.formatShortFileSize(mContext,
                     (long) memInfo.realUsedRam);
@@ -30,21 +30,33 @@ import android.content.pm.UserInfo;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.MediaStore;
 import android.provider.MediaStore.Files.FileColumns;
 import android.provider.MediaStore.MediaColumns;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
@@ -55,10 +67,17 @@ public class StorageAsyncLoader
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
 
+    private static final int MAX_THREADS = 4;
+    private static final long KEEP_ALIVE_MS = 10000L;
+    // Cache quotas are only recomputed by the system every few hours.
+    private static final long CACHE_QUOTA_TTL_MS = DateUtils.HOUR_IN_MILLIS;
+
+    private static final ThreadPoolExecutor sExecutor = createExecutor();
+    private static final CacheQuotaCache sCacheQuotas = new CacheQuotaCache();
+
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
@@ -75,7 +94,6 @@ public class StorageAsyncLoader
     }
 
     private SparseArray<StorageResult> getStorageResultsForUsers() {
-        mSeenPackages = new ArraySet<>();
         final SparseArray<StorageResult> results = new SparseArray<>();
         final List<UserInfo> infos = mUserManager.getUsers();
 
@@ -83,39 +101,77 @@ public class StorageAsyncLoader
         Collections.sort(infos,
                 (userInfo, otherUser) -> Integer.compare(userInfo.id, otherUser.id));
 
-        for (UserInfo info : infos) {
-            final StorageResult result = getAppsAndGamesSize(info.id);
-            final Bundle media = new Bundle();
-            media.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaColumns.VOLUME_NAME
-                    + "= '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "'");
-            result.imagesSize = getFilesSize(info.id, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-            result.videosSize = getFilesSize(info.id, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-            result.audioSize = getFilesSize(info.id, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-
-            final Bundle documentsAndOtherQueryArgs = new Bundle();
-            documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
-                    FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
-                    + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
-            result.documentsAndOtherSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
-                    documentsAndOtherQueryArgs);
-
-            final Bundle trashQueryArgs = new Bundle();
-            trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
-            result.trashSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
-                    trashQueryArgs);
-
-            results.put(info.id, result);
+        // Users are loaded in parallel, the first one on the loader thread itself.
+        final List<Future<UserLoad>> futures = new ArrayList<>();
+        for (int i = 1; i < infos.size(); i++) {
+            final int userId = infos.get(i).id;
+            futures.add(sExecutor.submit(() -> loadUser(userId)));
+        }
+        final List<UserLoad> loads = new ArrayList<>();
+        try {
+            if (!infos.isEmpty()) {
+                loads.add(loadUser(infos.get(0).id));
+            }
+            for (Future<UserLoad> future : futures) {
+                loads.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return results;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<UserLoad> future : futures) {
+                future.cancel(true /* mayInterruptIfRunning */);
+            }
+        }
+
+        // Code bytes may share between different profiles. To know all the duplicate code size
+        // and we can get a reasonable system size in StorageItemPreferenceController.
+        final ArraySet<String> seenPackages = new ArraySet<>();
+        for (UserLoad load : loads) {
+            for (int i = 0, size = load.mCodeBytes.size(); i < size; i++) {
+                if (!seenPackages.add(load.mCodeBytes.keyAt(i))) {
+                    load.mResult.duplicateCodeSize += load.mCodeBytes.valueAt(i);
+                }
+            }
+            results.put(load.mUserId, load.mResult);
         }
         return results;
     }
 
+    private UserLoad loadUser(int userId) {
+        final UserLoad load = new UserLoad(userId);
+        final StorageResult result = getAppsAndGamesSize(userId, load.mCodeBytes);
+        load.mResult = result;
+        final Bundle media = new Bundle();
+        media.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaColumns.VOLUME_NAME
+                + "= '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "'");
+        result.imagesSize = getFilesSize(userId, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */);
+        result.videosSize = getFilesSize(userId, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */);
+        result.audioSize = getFilesSize(userId, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                media /* queryArgs */);
+
+        final Bundle documentsAndOtherQueryArgs = new Bundle();
+        documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
+                + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
+        result.documentsAndOtherSize = getFilesSize(userId,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                documentsAndOtherQueryArgs);
+
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        result.trashSize = getFilesSize(userId,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
+                trashQueryArgs);
+        return load;
+    }
+
     private long getFilesSize(int userId, Uri uri, Bundle queryArgs) {
         final Context perUserContext;
         try {
@@ -140,7 +196,7 @@ public class StorageAsyncLoader
         }
     }
 
-    private StorageResult getAppsAndGamesSize(int userId) {
+    private StorageResult getAppsAndGamesSize(int userId, ArrayMap<String, Long> outCodeBytes) {
         Log.d(TAG, "Loading apps");
         final List<ApplicationInfo> applicationInfos =
                 mPackageManager.getInstalledApplicationsAsUser(0, userId);
@@ -159,7 +215,7 @@ public class StorageAsyncLoader
             }
 
             final long dataSize = stats.getDataBytes();
-            final long cacheQuota = mStatsManager.getCacheQuotaBytes(mUuid, app.uid);
+            final long cacheQuota = getCacheQuotaBytes(app);
             final long cacheBytes = stats.getCacheBytes();
             long blamedSize = dataSize + stats.getCodeBytes();
             // Technically, we could overages as freeable on the storage settings screen.
@@ -170,13 +226,7 @@ public class StorageAsyncLoader
                 blamedSize = blamedSize - cacheBytes + cacheQuota;
             }
 
-            // Code bytes may share between different profiles. To know all the duplicate code size
-            // and we can get a reasonable system size in StorageItemPreferenceController.
-            if (mSeenPackages.contains(app.packageName)) {
-                result.duplicateCodeSize += stats.getCodeBytes();
-            } else {
-                mSeenPackages.add(app.packageName);
-            }
+            outCodeBytes.put(app.packageName, stats.getCodeBytes());
 
             switch (app.category) {
                 case CATEGORY_GAME:
@@ -209,10 +259,93 @@ public class StorageAsyncLoader
         return result;
     }
 
+    /**
+     * Returns the cache quota of {@code app}, reusing the last one queried for the same install of
+     * the package.
+     */
+    private long getCacheQuotaBytes(ApplicationInfo app) {
+        final Long cached = sCacheQuotas.get(mUuid, app);
+        if (cached != null) {
+            return cached;
+        }
+        final long cacheQuota = mStatsManager.getCacheQuotaBytes(mUuid, app.uid);
+        sCacheQuotas.put(mUuid, app, cacheQuota);
+        return cacheQuota;
+    }
+
     @Override
     protected void onDiscardResult(SparseArray<StorageResult> result) {
     }
 
+    /** Drops the cache quotas cached for all packages. */
+    @VisibleForTesting
+    static void clearCache() {
+        sCacheQuotas.clear();
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** The result of one user, along with the code bytes of each of its packages. */
+    private static class UserLoad {
+        final int mUserId;
+        final ArrayMap<String, Long> mCodeBytes = new ArrayMap<>();
+        StorageResult mResult;
+
+        UserLoad(int userId) {
+            mUserId = userId;
+        }
+    }
+
+    /**
+     * Process-wide cache of the cache quota of each package and user. An entry is only used for
+     * the install of the package it was queried for, identified by its version and code path.
+     */
+    private static class CacheQuotaCache {
+        private final ArrayMap<String, Entry> mEntries = new ArrayMap<>();
+
+        private static class Entry {
+            final long mVersionCode;
+            final String mSourceDir;
+            final long mCacheQuota;
+            final long mTime;
+
+            Entry(ApplicationInfo app, long cacheQuota, long time) {
+                mVersionCode = app.longVersionCode;
+                mSourceDir = app.sourceDir;
+                mCacheQuota = cacheQuota;
+                mTime = time;
+            }
+        }
+
+        synchronized Long get(String uuid, ApplicationInfo app) {
+            final Entry entry = mEntries.get(getKey(uuid, app));
+            if (entry == null || entry.mVersionCode != app.longVersionCode
+                    || !Objects.equals(entry.mSourceDir, app.sourceDir)
+                    || SystemClock.elapsedRealtime() - entry.mTime > CACHE_QUOTA_TTL_MS) {
+                return null;
+            }
+            return entry.mCacheQuota;
+        }
+
+        synchronized void put(String uuid, ApplicationInfo app, long cacheQuota) {
+            mEntries.put(getKey(uuid, app),
+                    new Entry(app, cacheQuota, SystemClock.elapsedRealtime()));
+        }
+
+        synchronized void clear() {
+            mEntries.clear();
+        }
+
+        private static String getKey(String uuid, ApplicationInfo app) {
+            return uuid + "/" + app.uid + "/" + app.packageName;
+        }
+    }
+
     /** Storage result for displaying file categories size in Storage Settings. */
     public static class StorageResult {
         // APP based sizes.
@@ -72,5 +72,11 @@ public class DeviceStateAutoRotateDetailsFragment extends DashboardFragment {
                         boolean enabled) {
                     return DeviceStateAutoRotationHelper.getRawDataToIndex(context, enabled);
                 }
+
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Depends on the device state rotation settings.
+                    return false;
+                }
             };
 }
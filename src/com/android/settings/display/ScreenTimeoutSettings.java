@@ -348,5 +348,11 @@ public class ScreenTimeoutSettings extends RadioButtonPickerFragment implements
                     result.add(data);
                     return result;
                 }
+
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Depends on whether the attention service is installed.
+                    return false;
+                }
             };
 }
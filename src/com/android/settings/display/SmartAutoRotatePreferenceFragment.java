@@ -146,5 +146,11 @@ public class SmartAutoRotatePreferenceFragment extends DashboardFragment {
                         Context context, boolean enabled) {
                     return DeviceStateAutoRotationHelper.getRawDataToIndex(context, enabled);
                 }
+
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Depends on the device state rotation settings.
+                    return false;
+                }
             };
 }
@@ -192,6 +192,12 @@ public class EnterprisePrivacySettings extends DashboardFragment {
                     return mPrivacySettingsPreference.getXmlResourcesToIndex();
                 }
 
+                @Override
+                public boolean isIndexDataStatic() {
+                    // The layout depends on whether the device is financed.
+                    return false;
+                }
+
                 @Override
                 public List<AbstractPreferenceController> createPreferenceControllers(
                         Context context) {
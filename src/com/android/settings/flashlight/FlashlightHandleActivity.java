@@ -24,6 +24,7 @@ import android.provider.Settings;
 import android.util.Log;
 
 import com.android.settings.R;
+import com.android.settings.core.InvalidationSources;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexable;
@@ -93,5 +94,14 @@ public class FlashlightHandleActivity extends Activity implements Indexable {
                     }
                     return keys;
                 }
+
+                @Override
+                public InvalidationSources getNonIndexableKeysInvalidationSources(
+                        Context context) {
+                    return new InvalidationSources.Builder()
+                            .addUri(Settings.Secure.getUriFor(
+                                    Settings.Secure.FLASHLIGHT_AVAILABLE))
+                            .build();
+                }
             };
 }
@@ -77,6 +77,12 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     private final Rect[] mPercentageBounds = new Rect[]{new Rect(), new Rect(), new Rect()};
     private final List<Rect> mAxisLabelsBounds = new ArrayList<>();
     private final Set<Integer> mLabelDrawnIndexes = new ArraySet<>();
+    // Geometry computed once per view model, size and text bounds change, then reused by draw().
+    private boolean mGeometryDirty = true;
+    private float mAxisLabelBaselineY;
+    private Rect[] mAxisLabelDisplayAreas = new Rect[0];
+    private boolean[] mAxisLabelShown = new boolean[0];
+    private Path[] mTrapezoidPaths = new Path[0];
     private final int mLayoutDirection =
             getContext().getResources().getConfiguration().getLayoutDirection();
 
@@ -137,6 +143,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                 "setViewModel(): size: %d, selectedIndex: %d, getHighlightSlotIndex: %d",
                 viewModel.size(), viewModel.selectedIndex(), viewModel.getHighlightSlotIndex()));
         mViewModel = viewModel;
+        mGeometryDirty = true;
         initializeAxisLabelsBounds();
         initializeTrapezoidSlots(viewModel.size() - 1);
         setClickable(hasAnyValidTrapezoid(viewModel));
@@ -158,6 +165,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         } else {
             mTextPaint = null;
         }
+        mGeometryDirty = true;
         requestLayout();
     }
 
@@ -194,6 +202,13 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         } else {
             mIndent.set(0, 0, 0, 0);
         }
+        mGeometryDirty = true;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mGeometryDirty = true;
     }
 
     @Override
@@ -205,6 +220,10 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         if (mViewModel == null) {
             return;
         }
+        if (mGeometryDirty) {
+            updateGeometry();
+            mGeometryDirty = false;
+        }
         drawVerticalDividers(canvas);
         drawTrapezoids(canvas);
         drawTransomLine(canvas);
@@ -424,6 +443,50 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         }
     }
 
+    /**
+     * Computes the trapezoid slots and shapes, and which axis labels fit into the chart. Only
+     * needs to run again after the view model, the size or the text bounds change.
+     */
+    private void updateGeometry() {
+        final int width = getWidth() - abs(mIndent.width());
+        final int dividerCount = mTrapezoidSlots.length + 1;
+        final float dividerSpace = dividerCount * mDividerWidth;
+        final float unitWidth = (width - dividerSpace) / (float) mTrapezoidSlots.length;
+        final float trapezoidSlotOffset = mTrapezoidHOffset + mDividerWidth * .5f;
+        // Updates the trapezoid slots for drawing.
+        float startX = mDividerWidth * .5f + mIndent.left;
+        for (int index = 0; index < mTrapezoidSlots.length; index++) {
+            final float nextX = startX + mDividerWidth + unitWidth;
+            final int trapezoidIndex = isRTL() ? mTrapezoidSlots.length - index - 1 : index;
+            mTrapezoidSlots[trapezoidIndex].mLeft = round(startX + trapezoidSlotOffset);
+            mTrapezoidSlots[trapezoidIndex].mRight = round(nextX - trapezoidSlotOffset);
+            startX = nextX;
+        }
+        // Computes the axis label slot information.
+        mAxisLabelBaselineY = getHeight() - mTextPadding;
+        switch (mViewModel.axisLabelPosition()) {
+            case CENTER_OF_TRAPEZOIDS:
+                mAxisLabelDisplayAreas = getAxisLabelDisplayAreas(
+                        /* size= */ mViewModel.size() - 1,
+                        /* baselineX= */ mIndent.left + mDividerWidth + unitWidth * .5f,
+                        /* offsetX= */ mDividerWidth + unitWidth,
+                        mAxisLabelBaselineY,
+                        /* shiftFirstAndLast= */ false);
+                break;
+            case BETWEEN_TRAPEZOIDS:
+            default:
+                mAxisLabelDisplayAreas = getAxisLabelDisplayAreas(
+                        /* size= */ mViewModel.size(),
+                        /* baselineX= */ mIndent.left + mDividerWidth * .5f,
+                        /* offsetX= */ mDividerWidth + unitWidth,
+                        mAxisLabelBaselineY,
+                        /* shiftFirstAndLast= */ true);
+                break;
+        }
+        layoutAxisLabels(mAxisLabelDisplayAreas);
+        updateTrapezoidPaths();
+    }
+
     private void drawVerticalDividers(Canvas canvas) {
         final int width = getWidth() - abs(mIndent.width());
         final int dividerCount = mTrapezoidSlots.length + 1;
@@ -431,31 +494,13 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         final float unitWidth = (width - dividerSpace) / (float) mTrapezoidSlots.length;
         final float bottomY = getHeight() - mIndent.bottom;
         final float startY = bottomY - mDividerHeight;
-        final float trapezoidSlotOffset = mTrapezoidHOffset + mDividerWidth * .5f;
         // Draws the axis label slot information.
-        if (mViewModel != null) {
-            final float baselineY = getHeight() - mTextPadding;
-            Rect[] axisLabelDisplayAreas;
-            switch (mViewModel.axisLabelPosition()) {
-                case CENTER_OF_TRAPEZOIDS:
-                    axisLabelDisplayAreas = getAxisLabelDisplayAreas(
-                            /* size= */ mViewModel.size() - 1,
-                            /* baselineX= */ mIndent.left + mDividerWidth + unitWidth * .5f,
-                            /* offsetX= */ mDividerWidth + unitWidth,
-                            baselineY,
-                            /* shiftFirstAndLast= */ false);
-                    break;
-                case BETWEEN_TRAPEZOIDS:
-                default:
-                    axisLabelDisplayAreas = getAxisLabelDisplayAreas(
-                            /* size= */ mViewModel.size(),
-                            /* baselineX= */ mIndent.left + mDividerWidth * .5f,
-                            /* offsetX= */ mDividerWidth + unitWidth,
-                            baselineY,
-                            /* shiftFirstAndLast= */ true);
-                    break;
+        if (mTextPaint != null) {
+            for (int index = 0; index < mAxisLabelShown.length; index++) {
+                if (mAxisLabelShown[index]) {
+                    drawAxisLabelText(canvas, index);
+                }
             }
-            drawAxisLabels(canvas, axisLabelDisplayAreas, baselineY);
         }
         // Draws each vertical dividers.
         float startX = mDividerWidth * .5f + mIndent.left;
@@ -469,14 +514,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                 mDividerPaint.setColor(DIVIDER_COLOR);
             }
             canvas.drawLine(startX, startY, startX, dividerY, mDividerPaint);
-            final float nextX = startX + mDividerWidth + unitWidth;
-            // Updates the trapezoid slots for drawing.
-            if (index < mTrapezoidSlots.length) {
-                final int trapezoidIndex = isRTL() ? mTrapezoidSlots.length - index - 1 : index;
-                mTrapezoidSlots[trapezoidIndex].mLeft = round(startX + trapezoidSlotOffset);
-                mTrapezoidSlots[trapezoidIndex].mRight = round(nextX - trapezoidSlotOffset);
-            }
-            startX = nextX;
+            startX += mDividerWidth + unitWidth;
         }
     }
 
@@ -504,27 +542,25 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         return result;
     }
 
-    private void drawAxisLabels(Canvas canvas, final Rect[] displayAreas, final float baselineY) {
+    private void layoutAxisLabels(final Rect[] displayAreas) {
         final int lastIndex = displayAreas.length - 1;
+        mAxisLabelShown = new boolean[displayAreas.length];
         mLabelDrawnIndexes.clear();
         // Suppose first and last labels are always able to draw.
-        drawAxisLabelText(canvas, 0, displayAreas[0], baselineY);
-        mLabelDrawnIndexes.add(0);
-        drawAxisLabelText(canvas, lastIndex, displayAreas[lastIndex], baselineY);
-        mLabelDrawnIndexes.add(lastIndex);
-        drawAxisLabelsBetweenStartIndexAndEndIndex(canvas, displayAreas, 0, lastIndex, baselineY);
+        showAxisLabel(0);
+        showAxisLabel(lastIndex);
+        layoutAxisLabelsBetweenStartIndexAndEndIndex(displayAreas, 0, lastIndex);
     }
 
     /**
-     * Recursively draws axis labels between the start index and the end index. If the inner number
-     * can be exactly divided into 2 parts, check and draw the middle index label and then
-     * recursively draw the 2 parts. Otherwise, divide into 3 parts. Check and draw the middle two
-     * labels and then recursively draw the 3 parts. If there are any overlaps, skip drawing and go
-     * back to the uplevel of the recursion.
+     * Recursively lays out axis labels between the start index and the end index. If the inner
+     * number can be exactly divided into 2 parts, check and show the middle index label and then
+     * recursively lay out the 2 parts. Otherwise, divide into 3 parts. Check and show the middle
+     * two labels and then recursively lay out the 3 parts. If there are any overlaps, skip showing
+     * and go back to the uplevel of the recursion.
      */
-    private void drawAxisLabelsBetweenStartIndexAndEndIndex(Canvas canvas,
-            final Rect[] displayAreas, final int startIndex, final int endIndex,
-            final float baselineY) {
+    private void layoutAxisLabelsBetweenStartIndexAndEndIndex(
+            final Rect[] displayAreas, final int startIndex, final int endIndex) {
         if (endIndex - startIndex <= 1) {
             return;
         }
@@ -534,12 +570,9 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                     || hasOverlap(displayAreas, middleIndex, endIndex)) {
                 return;
             }
-            drawAxisLabelText(canvas, middleIndex, displayAreas[middleIndex], baselineY);
-            mLabelDrawnIndexes.add(middleIndex);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, startIndex, middleIndex, baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, middleIndex, endIndex, baselineY);
+            showAxisLabel(middleIndex);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(displayAreas, startIndex, middleIndex);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(displayAreas, middleIndex, endIndex);
         } else {
             int middleIndex1 = startIndex + round((endIndex - startIndex) / 3f);
             int middleIndex2 = startIndex + round((endIndex - startIndex) * 2 / 3f);
@@ -548,19 +581,20 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                     || hasOverlap(displayAreas, middleIndex2, endIndex)) {
                 return;
             }
-            drawAxisLabelText(canvas, middleIndex1, displayAreas[middleIndex1], baselineY);
-            mLabelDrawnIndexes.add(middleIndex1);
-            drawAxisLabelText(canvas, middleIndex2, displayAreas[middleIndex2], baselineY);
-            mLabelDrawnIndexes.add(middleIndex2);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, startIndex, middleIndex1, baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, middleIndex1, middleIndex2, baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, middleIndex2, endIndex, baselineY);
+            showAxisLabel(middleIndex1);
+            showAxisLabel(middleIndex2);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(displayAreas, startIndex, middleIndex1);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(displayAreas, middleIndex1, middleIndex2);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(displayAreas, middleIndex2, endIndex);
         }
     }
 
+    private void showAxisLabel(int index) {
+        mAxisLabelShown[index] = true;
+        mLabelDrawnIndexes.add(index);
+        mLabelDrawnIndexes.add(getAxisLabelTextIndex(index));
+    }
+
     private boolean hasOverlap(
             final Rect[] displayAreas, final int leftIndex, final int rightIndex) {
         return displayAreas[leftIndex].right + mTextPadding * 2.3f > displayAreas[rightIndex].left;
@@ -570,51 +604,39 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         return mLayoutDirection == View.LAYOUT_DIRECTION_RTL;
     }
 
-    private void drawAxisLabelText(
-            Canvas canvas, int index, final Rect displayArea, final float baselineY) {
-        mTextPaint.setColor(mTrapezoidSolidColor);
-        mTextPaint.setTextAlign(Paint.Align.CENTER);
+    private int getAxisLabelTextIndex(int index) {
         // Reverse the sort of axis labels for RTL
         if (isRTL()) {
-            index = mViewModel.axisLabelPosition() == BETWEEN_TRAPEZOIDS
-                            ? mViewModel.size() - index - 1     // for hourly
-                            : mViewModel.size() - index - 2;    // for daily
+            return mViewModel.axisLabelPosition() == BETWEEN_TRAPEZOIDS
+                    ? mViewModel.size() - index - 1     // for hourly
+                    : mViewModel.size() - index - 2;    // for daily
         }
+        return index;
+    }
+
+    private void drawAxisLabelText(Canvas canvas, int index) {
+        mTextPaint.setColor(mTrapezoidSolidColor);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
         canvas.drawText(
-                mViewModel.getText(index),
-                displayArea.centerX(),
-                baselineY,
+                mViewModel.getText(getAxisLabelTextIndex(index)),
+                mAxisLabelDisplayAreas[index].centerX(),
+                mAxisLabelBaselineY,
                 mTextPaint);
-        mLabelDrawnIndexes.add(index);
     }
 
-    private void drawTrapezoids(Canvas canvas) {
-        // Ignores invalid trapezoid data.
-        if (mViewModel == null) {
-            return;
-        }
+    private void updateTrapezoidPaths() {
         final float trapezoidBottom =
                 getHeight() - mIndent.bottom - mDividerHeight - mDividerWidth
                         - mTrapezoidVOffset;
         final float availableSpace =
                 trapezoidBottom - mDividerWidth * .5f - mIndent.top - mTrapezoidVOffset;
         final float unitHeight = availableSpace / 100f;
-        // Draws all trapezoid shapes into the canvas.
-        final Path trapezoidPath = new Path();
-        Path trapezoidCurvePath = null;
+        mTrapezoidPaths = new Path[mTrapezoidSlots.length];
         for (int index = 0; index < mTrapezoidSlots.length; index++) {
             // Not draws the trapezoid for corner or not initialization cases.
             if (!isValidToDraw(mViewModel, index)) {
                 continue;
             }
-            // Configures the trapezoid paint color.
-            final int trapezoidColor = (mViewModel.selectedIndex() == index
-                    || mViewModel.selectedIndex() == BatteryChartViewModel.SELECTED_INDEX_ALL)
-                    ? mTrapezoidSolidColor : mTrapezoidColor;
-            final boolean isHoverState = mHoveredIndex == index && isValidToDraw(mViewModel,
-                    mHoveredIndex);
-            mTrapezoidPaint.setColor(isHoverState ? mTrapezoidHoverColor : trapezoidColor);
-
             float leftTop = round(
                     trapezoidBottom - requireNonNull(mViewModel.getLevel(index)) * unitHeight);
             float rightTop = round(trapezoidBottom
@@ -625,7 +647,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
                 leftTop = rightTop;
                 rightTop = temp;
             }
-            trapezoidPath.reset();
+            final Path trapezoidPath = new Path();
             trapezoidPath.moveTo(mTrapezoidSlots[index].mLeft, trapezoidBottom);
             trapezoidPath.lineTo(mTrapezoidSlots[index].mLeft, leftTop);
             trapezoidPath.lineTo(mTrapezoidSlots[index].mRight, rightTop);
@@ -633,8 +655,29 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
             // A tricky way to make the trapezoid shape drawing the rounded corner.
             trapezoidPath.lineTo(mTrapezoidSlots[index].mLeft, trapezoidBottom);
             trapezoidPath.lineTo(mTrapezoidSlots[index].mLeft, leftTop);
+            mTrapezoidPaths[index] = trapezoidPath;
+        }
+    }
+
+    private void drawTrapezoids(Canvas canvas) {
+        // Ignores invalid trapezoid data.
+        if (mViewModel == null) {
+            return;
+        }
+        // Draws all trapezoid shapes into the canvas.
+        for (int index = 0; index < mTrapezoidPaths.length; index++) {
+            if (mTrapezoidPaths[index] == null) {
+                continue;
+            }
+            // Configures the trapezoid paint color.
+            final int trapezoidColor = (mViewModel.selectedIndex() == index
+                    || mViewModel.selectedIndex() == BatteryChartViewModel.SELECTED_INDEX_ALL)
+                    ? mTrapezoidSolidColor : mTrapezoidColor;
+            final boolean isHoverState = mHoveredIndex == index && isValidToDraw(mViewModel,
+                    mHoveredIndex);
+            mTrapezoidPaint.setColor(isHoverState ? mTrapezoidHoverColor : trapezoidColor);
             // Draws the trapezoid shape into canvas.
-            canvas.drawPath(trapezoidPath, mTrapezoidPaint);
+            canvas.drawPath(mTrapezoidPaths[index], mTrapezoidPaint);
         }
     }
 
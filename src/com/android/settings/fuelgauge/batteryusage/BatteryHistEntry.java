@@ -127,7 +127,8 @@ public class BatteryHistEntry {
         mBatteryHealth = deviceBatteryState.getBatteryHealth();
     }
 
-    private BatteryHistEntry(
+    /** Creates a copy of {@code fromEntry} with other timestamps and usage values. */
+    BatteryHistEntry(
             BatteryHistEntry fromEntry,
             long bootTimestamp,
             long timestamp,
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.util.ArrayMap;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Battery history of a list of time slots, stored column by column.
+ *
+ * <p>Consumer keys are interned into ids, and the usage of a consumer in a slot is stored in
+ * primitive columns at {@code slot * keyCapacity + keyId}. Interpolating the history into hourly
+ * slots and computing the usage diff of each slot work on these columns, instead of creating a
+ * {@link BatteryHistEntry} and a map per slot and consumer.
+ *
+ * <p>Each cell also keeps the record its values come from, for the consumer information such as
+ * the uid and package name. A consumer without a record in a slot reads as zero usage.
+ */
+final class BatteryHistoryTable {
+    private static final int MIN_KEY_CAPACITY = 16;
+
+    private final long[] mTimestamps;
+    // Whether each slot has records. A slot without records doesn't have enough data.
+    private final boolean[] mHasRecords;
+    // Whether each slot waits for the records of the current time.
+    private final boolean[] mIsCurrentTime;
+    private final ArrayMap<String, Integer> mKeyIds = new ArrayMap<>();
+    private final List<String> mKeys = new ArrayList<>();
+    private int mKeyCapacity;
+
+    // Cells, indexed by slot * mKeyCapacity + keyId.
+    private BatteryHistEntry[] mRecords;
+    private boolean[] mInterpolated;
+    private long[] mBootTimestamps;
+    private double[] mTotalPower;
+    private double[] mConsumePower;
+    private double[] mForegroundUsageConsumePower;
+    private double[] mForegroundServiceUsageConsumePower;
+    private double[] mBackgroundUsageConsumePower;
+    private double[] mCachedUsageConsumePower;
+    private long[] mForegroundUsageTimeInMs;
+    private long[] mBackgroundUsageTimeInMs;
+    private int[] mBatteryLevels;
+
+    /** Creates a table of empty slots, for timestamps in ascending order. */
+    BatteryHistoryTable(long[] timestamps) {
+        this(timestamps, MIN_KEY_CAPACITY);
+    }
+
+    /**
+     * Creates a table of empty slots, for timestamps in ascending order, with room for
+     * {@code expectedKeyCount} consumers before it grows.
+     */
+    BatteryHistoryTable(long[] timestamps, int expectedKeyCount) {
+        mTimestamps = timestamps;
+        mHasRecords = new boolean[timestamps.length];
+        mIsCurrentTime = new boolean[timestamps.length];
+        allocateCells(Math.max(MIN_KEY_CAPACITY, expectedKeyCount));
+    }
+
+    int getSlotCount() {
+        return mTimestamps.length;
+    }
+
+    long getTimestamp(int slot) {
+        return mTimestamps[slot];
+    }
+
+    /** Returns the slot at {@code timestamp}, or a negative value if there is none. */
+    int getSlot(long timestamp) {
+        return Arrays.binarySearch(mTimestamps, timestamp);
+    }
+
+    int getKeyCount() {
+        return mKeys.size();
+    }
+
+    @Nullable
+    String getKey(int keyId) {
+        return mKeys.get(keyId);
+    }
+
+    /** Returns the id of {@code key}, adding it to the table if needed. */
+    int internKey(@Nullable String key) {
+        final Integer keyId = mKeyIds.get(key);
+        if (keyId != null) {
+            return keyId;
+        }
+        final int newKeyId = mKeys.size();
+        if (newKeyId == mKeyCapacity) {
+            growKeyCapacity(mKeyCapacity * 2);
+        }
+        mKeys.add(key);
+        mKeyIds.put(key, newKeyId);
+        return newKeyId;
+    }
+
+    boolean hasRecords(int slot) {
+        return mHasRecords[slot];
+    }
+
+    /** Marks {@code slot} to be filled by {@link #setCurrentTimeRecords(Map)}. */
+    void markCurrentTime(int slot) {
+        clearSlot(slot);
+        mIsCurrentTime[slot] = true;
+        mHasRecords[slot] = true;
+    }
+
+    boolean isCurrentTime(int slot) {
+        return mIsCurrentTime[slot];
+    }
+
+    /** Fills the slots marked by {@link #markCurrentTime(int)} with {@code records}. */
+    void setCurrentTimeRecords(Map<String, BatteryHistEntry> records) {
+        for (int slot = 0; slot < mTimestamps.length; slot++) {
+            if (mIsCurrentTime[slot]) {
+                setRecords(slot, records);
+            }
+        }
+    }
+
+    /** Replaces the cells of {@code slot} with {@code records}, by consumer key. */
+    void setRecords(int slot, Map<String, BatteryHistEntry> records) {
+        clearSlot(slot);
+        mHasRecords[slot] = !records.isEmpty();
+        for (Map.Entry<String, BatteryHistEntry> record : records.entrySet()) {
+            setRecord(slot, record.getKey(), record.getValue());
+        }
+    }
+
+    /** Sets the cell of {@code key} in {@code slot} to the values of {@code record}. */
+    void setRecord(int slot, @Nullable String key, BatteryHistEntry record) {
+        final int keyId = internKey(key);
+        final int cell = slot * mKeyCapacity + keyId;
+        mHasRecords[slot] = true;
+        mRecords[cell] = record;
+        mInterpolated[cell] = false;
+        mBootTimestamps[cell] = record.mBootTimestamp;
+        mTotalPower[cell] = record.mTotalPower;
+        mConsumePower[cell] = record.mConsumePower;
+        mForegroundUsageConsumePower[cell] = record.mForegroundUsageConsumePower;
+        mForegroundServiceUsageConsumePower[cell] = record.mForegroundServiceUsageConsumePower;
+        mBackgroundUsageConsumePower[cell] = record.mBackgroundUsageConsumePower;
+        mCachedUsageConsumePower[cell] = record.mCachedUsageConsumePower;
+        mForegroundUsageTimeInMs[cell] = record.mForegroundUsageTimeInMs;
+        mBackgroundUsageTimeInMs[cell] = record.mBackgroundUsageTimeInMs;
+        mBatteryLevels[cell] = record.mBatteryLevel;
+    }
+
+    /**
+     * Sets the cell of {@code key} in {@code slot} to the values between {@code lowerRecord} and
+     * {@code upperRecord} at {@code ratio}, as {@link BatteryHistEntry#interpolate} does.
+     */
+    void setInterpolatedRecord(int slot, @Nullable String key, long upperTimestamp, double ratio,
+            @Nullable BatteryHistEntry lowerRecord, BatteryHistEntry upperRecord) {
+        final int keyId = internKey(key);
+        final int cell = slot * mKeyCapacity + keyId;
+        final boolean hasLower = lowerRecord != null;
+        mHasRecords[slot] = true;
+        mRecords[cell] = upperRecord;
+        mInterpolated[cell] = true;
+        mBootTimestamps[cell] =
+                upperRecord.mBootTimestamp - (upperTimestamp - mTimestamps[slot]);
+        mTotalPower[cell] = interpolate(
+                hasLower ? lowerRecord.mTotalPower : 0, upperRecord.mTotalPower, ratio);
+        mConsumePower[cell] = interpolate(
+                hasLower ? lowerRecord.mConsumePower : 0, upperRecord.mConsumePower, ratio);
+        mForegroundUsageConsumePower[cell] = interpolate(
+                hasLower ? lowerRecord.mForegroundUsageConsumePower : 0,
+                upperRecord.mForegroundUsageConsumePower, ratio);
+        mForegroundServiceUsageConsumePower[cell] = interpolate(
+                hasLower ? lowerRecord.mForegroundServiceUsageConsumePower : 0,
+                upperRecord.mForegroundServiceUsageConsumePower, ratio);
+        mBackgroundUsageConsumePower[cell] = interpolate(
+                hasLower ? lowerRecord.mBackgroundUsageConsumePower : 0,
+                upperRecord.mBackgroundUsageConsumePower, ratio);
+        mCachedUsageConsumePower[cell] = interpolate(
+                hasLower ? lowerRecord.mCachedUsageConsumePower : 0,
+                upperRecord.mCachedUsageConsumePower, ratio);
+        mForegroundUsageTimeInMs[cell] = Math.round(interpolate(
+                hasLower ? lowerRecord.mForegroundUsageTimeInMs : 0,
+                upperRecord.mForegroundUsageTimeInMs, ratio));
+        mBackgroundUsageTimeInMs[cell] = Math.round(interpolate(
+                hasLower ? lowerRecord.mBackgroundUsageTimeInMs : 0,
+                upperRecord.mBackgroundUsageTimeInMs, ratio));
+        mBatteryLevels[cell] = hasLower
+                ? (int) Math.round(interpolate(
+                        lowerRecord.mBatteryLevel, upperRecord.mBatteryLevel, ratio))
+                : upperRecord.mBatteryLevel;
+    }
+
+    /**
+     * Returns the record the values of {@code keyId} in {@code slot} come from, or null if the
+     * consumer has no record in the slot.
+     */
+    @Nullable
+    BatteryHistEntry getRecord(int slot, int keyId) {
+        return mRecords[slot * mKeyCapacity + keyId];
+    }
+
+    double getConsumePower(int slot, int keyId) {
+        return mConsumePower[slot * mKeyCapacity + keyId];
+    }
+
+    double getForegroundUsageConsumePower(int slot, int keyId) {
+        return mForegroundUsageConsumePower[slot * mKeyCapacity + keyId];
+    }
+
+    double getForegroundServiceUsageConsumePower(int slot, int keyId) {
+        return mForegroundServiceUsageConsumePower[slot * mKeyCapacity + keyId];
+    }
+
+    double getBackgroundUsageConsumePower(int slot, int keyId) {
+        return mBackgroundUsageConsumePower[slot * mKeyCapacity + keyId];
+    }
+
+    double getCachedUsageConsumePower(int slot, int keyId) {
+        return mCachedUsageConsumePower[slot * mKeyCapacity + keyId];
+    }
+
+    long getForegroundUsageTimeInMs(int slot, int keyId) {
+        return mForegroundUsageTimeInMs[slot * mKeyCapacity + keyId];
+    }
+
+    long getBackgroundUsageTimeInMs(int slot, int keyId) {
+        return mBackgroundUsageTimeInMs[slot * mKeyCapacity + keyId];
+    }
+
+    int getBatteryLevel(int slot, int keyId) {
+        return mBatteryLevels[slot * mKeyCapacity + keyId];
+    }
+
+    /**
+     * Returns the cell of {@code keyId} in {@code slot} as a {@link BatteryHistEntry}, or null if
+     * the consumer has no record in the slot. Interpolated cells create a new entry.
+     */
+    @Nullable
+    BatteryHistEntry toEntry(int slot, int keyId) {
+        final int cell = slot * mKeyCapacity + keyId;
+        final BatteryHistEntry record = mRecords[cell];
+        if (record == null || !mInterpolated[cell]) {
+            return record;
+        }
+        return new BatteryHistEntry(
+                record,
+                mBootTimestamps[cell],
+                mTimestamps[slot],
+                mTotalPower[cell],
+                mConsumePower[cell],
+                mForegroundUsageConsumePower[cell],
+                mForegroundServiceUsageConsumePower[cell],
+                mBackgroundUsageConsumePower[cell],
+                mCachedUsageConsumePower[cell],
+                mForegroundUsageTimeInMs[cell],
+                mBackgroundUsageTimeInMs[cell],
+                mBatteryLevels[cell]);
+    }
+
+    private void clearSlot(int slot) {
+        final int from = slot * mKeyCapacity;
+        final int to = from + mKeyCapacity;
+        mHasRecords[slot] = false;
+        mIsCurrentTime[slot] = false;
+        Arrays.fill(mRecords, from, to, null);
+        Arrays.fill(mInterpolated, from, to, false);
+        Arrays.fill(mBootTimestamps, from, to, 0L);
+        Arrays.fill(mTotalPower, from, to, 0);
+        Arrays.fill(mConsumePower, from, to, 0);
+        Arrays.fill(mForegroundUsageConsumePower, from, to, 0);
+        Arrays.fill(mForegroundServiceUsageConsumePower, from, to, 0);
+        Arrays.fill(mBackgroundUsageConsumePower, from, to, 0);
+        Arrays.fill(mCachedUsageConsumePower, from, to, 0);
+        Arrays.fill(mForegroundUsageTimeInMs, from, to, 0L);
+        Arrays.fill(mBackgroundUsageTimeInMs, from, to, 0L);
+        Arrays.fill(mBatteryLevels, from, to, 0);
+    }
+
+    private void allocateCells(int keyCapacity) {
+        final int cellCount = mTimestamps.length * keyCapacity;
+        mKeyCapacity = keyCapacity;
+        mRecords = new BatteryHistEntry[cellCount];
+        mInterpolated = new boolean[cellCount];
+        mBootTimestamps = new long[cellCount];
+        mTotalPower = new double[cellCount];
+        mConsumePower = new double[cellCount];
+        mForegroundUsageConsumePower = new double[cellCount];
+        mForegroundServiceUsageConsumePower = new double[cellCount];
+        mBackgroundUsageConsumePower = new double[cellCount];
+        mCachedUsageConsumePower = new double[cellCount];
+        mForegroundUsageTimeInMs = new long[cellCount];
+        mBackgroundUsageTimeInMs = new long[cellCount];
+        mBatteryLevels = new int[cellCount];
+    }
+
+    private void growKeyCapacity(int keyCapacity) {
+        final int oldKeyCapacity = mKeyCapacity;
+        final BatteryHistEntry[] records = mRecords;
+        final boolean[] interpolated = mInterpolated;
+        final long[] bootTimestamps = mBootTimestamps;
+        final double[] totalPower = mTotalPower;
+        final double[] consumePower = mConsumePower;
+        final double[] foregroundUsageConsumePower = mForegroundUsageConsumePower;
+        final double[] foregroundServiceUsageConsumePower = mForegroundServiceUsageConsumePower;
+        final double[] backgroundUsageConsumePower = mBackgroundUsageConsumePower;
+        final double[] cachedUsageConsumePower = mCachedUsageConsumePower;
+        final long[] foregroundUsageTimeInMs = mForegroundUsageTimeInMs;
+        final long[] backgroundUsageTimeInMs = mBackgroundUsageTimeInMs;
+        final int[] batteryLevels = mBatteryLevels;
+        allocateCells(keyCapacity);
+        for (int slot = 0; slot < mTimestamps.length; slot++) {
+            final int from = slot * oldKeyCapacity;
+            final int to = slot * keyCapacity;
+            System.arraycopy(records, from, mRecords, to, oldKeyCapacity);
+            System.arraycopy(interpolated, from, mInterpolated, to, oldKeyCapacity);
+            System.arraycopy(bootTimestamps, from, mBootTimestamps, to, oldKeyCapacity);
+            System.arraycopy(totalPower, from, mTotalPower, to, oldKeyCapacity);
+            System.arraycopy(consumePower, from, mConsumePower, to, oldKeyCapacity);
+            System.arraycopy(foregroundUsageConsumePower, from, mForegroundUsageConsumePower, to,
+                    oldKeyCapacity);
+            System.arraycopy(foregroundServiceUsageConsumePower, from,
+                    mForegroundServiceUsageConsumePower, to, oldKeyCapacity);
+            System.arraycopy(backgroundUsageConsumePower, from, mBackgroundUsageConsumePower, to,
+                    oldKeyCapacity);
+            System.arraycopy(cachedUsageConsumePower, from, mCachedUsageConsumePower, to,
+                    oldKeyCapacity);
+            System.arraycopy(foregroundUsageTimeInMs, from, mForegroundUsageTimeInMs, to,
+                    oldKeyCapacity);
+            System.arraycopy(backgroundUsageTimeInMs, from, mBackgroundUsageTimeInMs, to,
+                    oldKeyCapacity);
+            System.arraycopy(batteryLevels, from, mBatteryLevels, to, oldKeyCapacity);
+        }
+    }
+
+    private static double interpolate(double v1, double v2, double ratio) {
+        return v1 + ratio * (v2 - v1);
+    }
+}
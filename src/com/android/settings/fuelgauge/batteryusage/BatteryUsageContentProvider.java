@@ -28,6 +28,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.fuelgauge.BatteryUsageHistoricalLogEntry.Action;
+import com.android.settings.fuelgauge.batteryusage.bugreport.BatteryUsageLogUtils;
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventDao;
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventEntity;
 import com.android.settings.fuelgauge.batteryusage.db.BatteryEventDao;
@@ -43,6 +45,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 /** {@link ContentProvider} class to fetch battery usage data. */
 public class BatteryUsageContentProvider extends ContentProvider {
@@ -171,7 +174,10 @@ public class BatteryUsageContentProvider extends ContentProvider {
                     mBatteryEventDao.insert(BatteryEventEntity.create(contentValues));
                     break;
                 case BATTERY_USAGE_SLOT_CODE:
-                    mBatteryUsageSlotDao.insert(BatteryUsageSlotEntity.create(contentValues));
+                    final BatteryUsageSlotEntity entity =
+                            BatteryUsageSlotEntity.create(contentValues);
+                    mBatteryUsageSlotDao.insert(entity);
+                    BatteryUsageSlotCache.getInstance().onSlotsChanged(entity.timestamp);
                     break;
                 default:
                     throw new IllegalArgumentException("unknown URI: " + uri);
@@ -186,6 +192,58 @@ public class BatteryUsageContentProvider extends ContentProvider {
         return uri;
     }
 
+    /**
+     * Inserts all {@code allValues} into the table of {@code uri} in a single transaction, so
+     * either all rows are inserted or none of them.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] allValues) {
+        final long timestamp = mClock.millis();
+        try {
+            switch (sUriMatcher.match(uri)) {
+                case BATTERY_STATE_CODE:
+                    mBatteryStateDao.insertAll(createEntities(allValues, BatteryState::create));
+                    break;
+                case APP_USAGE_EVENT_CODE:
+                    mAppUsageEventDao.insertAll(
+                            createEntities(allValues, AppUsageEventEntity::create));
+                    break;
+                case BATTERY_EVENT_CODE:
+                    mBatteryEventDao.insertAll(
+                            createEntities(allValues, BatteryEventEntity::create));
+                    break;
+                case BATTERY_USAGE_SLOT_CODE:
+                    final List<BatteryUsageSlotEntity> entities =
+                            createEntities(allValues, BatteryUsageSlotEntity::create);
+                    mBatteryUsageSlotDao.insertAll(entities);
+                    long earliestTimestamp = Long.MAX_VALUE;
+                    for (BatteryUsageSlotEntity entity : entities) {
+                        earliestTimestamp = Math.min(earliestTimestamp, entity.timestamp);
+                    }
+                    BatteryUsageSlotCache.getInstance().onSlotsChanged(earliestTimestamp);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown URI: " + uri);
+            }
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            Log.e(TAG, "bulkInsert() from:" + uri + " error:", e);
+            BatteryUsageLogUtils.writeLog(getContext(), Action.INSERT_USAGE_DATA,
+                    "bulkInsert() " + uri.getLastPathSegment() + " size=" + allValues.length
+                            + " failed: " + e);
+            return 0;
+        }
+        final long elapsedTime = mClock.millis() - timestamp;
+        Log.d(TAG, String.format("bulkInsert() %s size=%d in %d/ms",
+                uri.getLastPathSegment(), allValues.length, elapsedTime));
+        BatteryUsageLogUtils.writeLog(getContext(), Action.INSERT_USAGE_DATA,
+                String.format("bulkInsert() %s size=%d in %d/ms",
+                        uri.getLastPathSegment(), allValues.length, elapsedTime));
+        return allValues.length;
+    }
+
     @Override
     public int delete(@NonNull Uri uri, @Nullable String s, @Nullable String[] strings) {
         throw new UnsupportedOperationException("unsupported!");
@@ -200,6 +258,15 @@ public class BatteryUsageContentProvider extends ContentProvider {
         throw new UnsupportedOperationException("unsupported!");
     }
 
+    private static <T> List<T> createEntities(
+            ContentValues[] allValues, Function<ContentValues, T> creator) {
+        final List<T> entities = new ArrayList<>(allValues.length);
+        for (ContentValues values : allValues) {
+            entities.add(creator.apply(values));
+        }
+        return entities;
+    }
+
     private Cursor getLastFullChargeTimestamp(Uri uri) {
         final long timestamp = mClock.millis();
         Cursor cursor = null;
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.content.Context;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory cache of the {@link BatteryUsageSlot}s stored in the battery usage database.
+ *
+ * <p>Slots are finalized once by the periodic job, so opening the battery usage page only loads
+ * the slots stored since the previous load, plus the ones rewritten since then, instead of
+ * reading and parsing all of them again. The cache also keeps the {@link BatteryDiffData} of the
+ * cached slots and the rollups accumulated from them, so the daily and all-time usage only
+ * accumulates the hours that are not finalized yet.
+ */
+final class BatteryUsageSlotCache {
+    private static final String TAG = "BatteryUsageSlotCache";
+
+    /** Loads the stored slots starting no earlier than a timestamp. */
+    @VisibleForTesting
+    interface SlotLoader {
+        List<BatteryUsageSlot> load(Context context, Calendar calendar, long startTimestamp);
+    }
+
+    /** Accumulates the usage of a list of diff data. */
+    @VisibleForTesting
+    interface DiffDataAccumulator {
+        @Nullable
+        BatteryDiffData accumulate(Context context, Collection<BatteryDiffData> diffDataList);
+    }
+
+    private static BatteryUsageSlotCache sInstance;
+
+    private final SlotLoader mLoader;
+    private final DiffDataAccumulator mAccumulator;
+    private final TreeMap<Long, BatteryUsageSlot> mSlots = new TreeMap<>();
+    private long mLoadedFromTimestamp = Long.MAX_VALUE;
+    private long mChangedFromTimestamp = Long.MAX_VALUE;
+
+    // The diff data of the cached slots (key: slot start timestamp).
+    private final Map<Long, BatteryDiffData> mDiffData = new ArrayMap<>();
+    // The rollups of cached diff data (key: the first accumulated diff data).
+    private final Map<BatteryDiffData, Rollup> mRollups = new ArrayMap<>();
+    private Set<String> mSystemAppsPackageNames;
+    private Set<Integer> mSystemAppsUids;
+
+    static synchronized BatteryUsageSlotCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new BatteryUsageSlotCache(DatabaseUtils::getBatteryUsageSlots,
+                    DataProcessor::getAccumulatedUsageDiffData);
+        }
+        return sInstance;
+    }
+
+    /** Replaces the process-wide instance, {@code null} restores the default one. */
+    @VisibleForTesting
+    static synchronized void setTestInstance(@Nullable BatteryUsageSlotCache cache) {
+        sInstance = cache;
+    }
+
+    @VisibleForTesting
+    BatteryUsageSlotCache(SlotLoader loader, DiffDataAccumulator accumulator) {
+        mLoader = loader;
+        mAccumulator = accumulator;
+    }
+
+    /**
+     * Returns the stored slots starting no earlier than {@code rawStartTimestamp} and six days
+     * ago, sorted by their start timestamps.
+     */
+    synchronized List<BatteryUsageSlot> getBatteryUsageSlots(
+            Context context, final Calendar calendar, final long rawStartTimestamp) {
+        final long queryTimestamp = Math.max(
+                rawStartTimestamp, DatabaseUtils.getTimestampSixDaysAgo(calendar));
+        if (queryTimestamp < mLoadedFromTimestamp) {
+            clearSlots();
+        }
+        dropSlots(mSlots.headMap(queryTimestamp).keySet());
+        mLoadedFromTimestamp = queryTimestamp;
+        // The latest slot is loaded again, since more slots can be stored with the same start.
+        long loadTimestamp = mSlots.isEmpty() ? queryTimestamp : mSlots.lastKey();
+        loadTimestamp = Math.max(queryTimestamp, Math.min(loadTimestamp, mChangedFromTimestamp));
+        mChangedFromTimestamp = Long.MAX_VALUE;
+        dropSlots(mSlots.tailMap(loadTimestamp).keySet());
+        final List<BatteryUsageSlot> loadedSlots = mLoader.load(context, calendar, loadTimestamp);
+        for (BatteryUsageSlot slot : loadedSlots) {
+            if (slot.getStartTimestamp() >= queryTimestamp) {
+                mSlots.put(slot.getStartTimestamp(), slot);
+            }
+        }
+        Log.d(TAG, String.format("getBatteryUsageSlots() loaded=%d cached=%d",
+                loadedSlots.size(), mSlots.size()));
+        return new ArrayList<>(mSlots.values());
+    }
+
+    /**
+     * Returns the diff data of {@code slot}, converted once while the slot is cached. The diff
+     * data of cached slots uses the application context, since it outlives the page.
+     */
+    synchronized BatteryDiffData getBatteryDiffData(
+            Context context,
+            final BatteryUsageSlot slot,
+            @NonNull final Set<String> systemAppsPackageNames,
+            @NonNull final Set<Integer> systemAppsUids) {
+        if (!Objects.equals(systemAppsPackageNames, mSystemAppsPackageNames)
+                || !Objects.equals(systemAppsUids, mSystemAppsUids)) {
+            mDiffData.clear();
+            mRollups.clear();
+            mSystemAppsPackageNames = systemAppsPackageNames;
+            mSystemAppsUids = systemAppsUids;
+        }
+        final long startTimestamp = slot.getStartTimestamp();
+        if (mSlots.get(startTimestamp) != slot) {
+            return ConvertUtils.convertToBatteryDiffData(
+                    context, slot, systemAppsPackageNames, systemAppsUids);
+        }
+        BatteryDiffData diffData = mDiffData.get(startTimestamp);
+        if (diffData == null) {
+            diffData = ConvertUtils.convertToBatteryDiffData(
+                    context.getApplicationContext(), slot, systemAppsPackageNames,
+                    systemAppsUids);
+            mDiffData.put(startTimestamp, diffData);
+        }
+        return diffData;
+    }
+
+    /**
+     * Returns the accumulated usage of {@code diffDataList}. The leading diff data that come from
+     * this cache, either of a slot or of a rollup, is accumulated once and reused while it stays
+     * cached, so only the rest is accumulated again.
+     */
+    @Nullable
+    synchronized BatteryDiffData getAccumulatedDiffData(
+            Context context, final Collection<BatteryDiffData> diffDataList) {
+        final List<BatteryDiffData> cachedDiffData = new ArrayList<>();
+        final List<BatteryDiffData> otherDiffData = new ArrayList<>();
+        for (BatteryDiffData diffData : diffDataList) {
+            if (otherDiffData.isEmpty() && (diffData == null || isCached(diffData))) {
+                cachedDiffData.add(diffData);
+            } else {
+                otherDiffData.add(diffData);
+            }
+        }
+        final BatteryDiffData cachedRollup = getRollup(context, cachedDiffData);
+        if (otherDiffData.isEmpty()) {
+            return cachedRollup;
+        }
+        otherDiffData.add(cachedRollup);
+        return mAccumulator.accumulate(context, otherDiffData);
+    }
+
+    /** Drops the cached slots starting at or after {@code timestamp}, after they were written. */
+    synchronized void onSlotsChanged(long timestamp) {
+        mChangedFromTimestamp = Math.min(mChangedFromTimestamp, timestamp);
+    }
+
+    /** Drops all cached slots, e.g. after the database was cleared. */
+    synchronized void clear() {
+        clearSlots();
+        mLoadedFromTimestamp = Long.MAX_VALUE;
+        mChangedFromTimestamp = Long.MAX_VALUE;
+    }
+
+    @Nullable
+    private BatteryDiffData getRollup(Context context, List<BatteryDiffData> diffDataList) {
+        BatteryDiffData firstDiffData = null;
+        for (BatteryDiffData diffData : diffDataList) {
+            if (diffData != null) {
+                firstDiffData = diffData;
+                break;
+            }
+        }
+        if (firstDiffData == null) {
+            return null;
+        }
+        Rollup rollup = mRollups.get(firstDiffData);
+        if (rollup == null || !rollup.isOf(diffDataList)) {
+            rollup = new Rollup(diffDataList, mAccumulator.accumulate(
+                    context.getApplicationContext(), diffDataList));
+            mRollups.put(firstDiffData, rollup);
+        }
+        return rollup.mDiffData;
+    }
+
+    private boolean isCached(BatteryDiffData diffData) {
+        if (mDiffData.get(diffData.getStartTimestamp()) == diffData) {
+            return true;
+        }
+        for (Rollup rollup : mRollups.values()) {
+            if (rollup.mDiffData == diffData) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dropSlots(Collection<Long> startTimestamps) {
+        if (startTimestamps.isEmpty()) {
+            return;
+        }
+        for (Long startTimestamp : startTimestamps) {
+            mDiffData.remove(startTimestamp);
+        }
+        startTimestamps.clear();
+        mRollups.clear();
+    }
+
+    private void clearSlots() {
+        mSlots.clear();
+        mDiffData.clear();
+        mRollups.clear();
+    }
+
+    /** The accumulated usage of a list of cached diff data. */
+    private static final class Rollup {
+        final List<BatteryDiffData> mDiffDataList;
+        final BatteryDiffData mDiffData;
+
+        Rollup(List<BatteryDiffData> diffDataList, BatteryDiffData diffData) {
+            mDiffDataList = diffDataList;
+            mDiffData = diffData;
+        }
+
+        boolean isOf(List<BatteryDiffData> diffDataList) {
+            if (diffDataList.size() != mDiffDataList.size()) {
+                return false;
+            }
+            for (int i = 0; i < diffDataList.size(); i++) {
+                if (diffDataList.get(i) != mDiffDataList.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -90,7 +90,7 @@ public class DataProcessManager {
     private final List<BatteryEvent> mBatteryEventList = new ArrayList<>();
     private final List<BatteryUsageSlot> mBatteryUsageSlotList = new ArrayList<>();
     private final List<BatteryLevelData.PeriodBatteryLevelData> mHourlyBatteryLevelsPerDay;
-    private final Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+    private final BatteryHistoryTable mBatteryHistoryTable;
 
     private boolean mIsCurrentBatteryHistoryLoaded = false;
     private boolean mIsCurrentAppUsageLoaded = false;
@@ -129,7 +129,7 @@ public class DataProcessManager {
             final long lastFullChargeTimestamp,
             @NonNull final OnBatteryDiffDataMapLoadedListener callbackFunction,
             @NonNull final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay,
-            @NonNull final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+            @NonNull final BatteryHistoryTable batteryHistoryTable) {
         mContext = context.getApplicationContext();
         mHandler = handler;
         mUserManager = mContext.getSystemService(UserManager.class);
@@ -137,7 +137,7 @@ public class DataProcessManager {
         mLastFullChargeTimestamp = lastFullChargeTimestamp;
         mCallbackFunction = callbackFunction;
         mHourlyBatteryLevelsPerDay = hourlyBatteryLevelsPerDay;
-        mBatteryHistoryMap = batteryHistoryMap;
+        mBatteryHistoryTable = batteryHistoryTable;
     }
 
     /**
@@ -154,7 +154,7 @@ public class DataProcessManager {
         mRawStartTimestamp = 0L;
         mLastFullChargeTimestamp = 0L;
         mHourlyBatteryLevelsPerDay = null;
-        mBatteryHistoryMap = null;
+        mBatteryHistoryTable = null;
         // When there is no battery level data, don't show screen-on time and battery level chart on
         // the UI.
         mShowScreenOnTime = false;
@@ -249,15 +249,9 @@ public class DataProcessManager {
             @Override
             protected void onPostExecute(
                     final Map<String, BatteryHistEntry> currentBatteryHistoryMap) {
-                if (mBatteryHistoryMap != null) {
-                    // Replaces the placeholder in mBatteryHistoryMap.
-                    for (Map.Entry<Long, Map<String, BatteryHistEntry>> mapEntry
-                            : mBatteryHistoryMap.entrySet()) {
-                        if (mapEntry.getValue().containsKey(
-                                DataProcessor.CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
-                            mapEntry.setValue(currentBatteryHistoryMap);
-                        }
-                    }
+                if (mBatteryHistoryTable != null) {
+                    // Fills the current time slot of mBatteryHistoryTable.
+                    mBatteryHistoryTable.setCurrentTimeRecords(currentBatteryHistoryMap);
                 }
                 mIsCurrentBatteryHistoryLoaded = true;
                 tryToGenerateFinalDataAndApplyCallback();
@@ -393,9 +387,9 @@ public class DataProcessManager {
             @Override
             protected List<BatteryUsageSlot> doInBackground(Void... voids) {
                 final long startTime = System.currentTimeMillis();
-                // Loads the battery usage slot data from the database.
+                // Loads the battery usage slot data stored since the last load from the database.
                 final List<BatteryUsageSlot> batteryUsageSlotList =
-                        DatabaseUtils.getBatteryUsageSlots(
+                        BatteryUsageSlotCache.getInstance().getBatteryUsageSlots(
                                 mContext, Calendar.getInstance(), mLastFullChargeTimestamp);
                 Log.d(TAG, String.format("execute loadBatteryUsageSlotList size=%d in %d/ms",
                         batteryUsageSlotList.size(), (System.currentTimeMillis() - startTime)));
@@ -483,12 +477,12 @@ public class DataProcessManager {
                 final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
                 for (BatteryUsageSlot batteryUsageSlot : mBatteryUsageSlotList) {
                     batteryDiffDataMap.put(batteryUsageSlot.getStartTimestamp(),
-                            ConvertUtils.convertToBatteryDiffData(
+                            BatteryUsageSlotCache.getInstance().getBatteryDiffData(
                                     mContext, batteryUsageSlot, getSystemAppsPackageNames(),
                                     getSystemAppsUids()));
                 }
                 batteryDiffDataMap.putAll(DataProcessor.getBatteryDiffDataMap(mContext,
-                        mHourlyBatteryLevelsPerDay, mBatteryHistoryMap, mAppUsagePeriodMap,
+                        mHourlyBatteryLevelsPerDay, mBatteryHistoryTable, mAppUsagePeriodMap,
                         getSystemAppsPackageNames(), getSystemAppsUids()));
 
                 Log.d(TAG, String.format(
@@ -618,12 +612,12 @@ public class DataProcessManager {
         }
 
         // Process raw history map data into hourly timestamps.
-        final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap =
-                DataProcessor.getHistoryMapWithExpectedTimestamps(context, batteryHistoryMap);
-        // Wrap and processed history map into easy-to-use format for UI rendering.
+        final BatteryHistoryTable processedBatteryHistoryTable =
+                DataProcessor.getHistoryTableWithExpectedTimestamps(context, batteryHistoryMap);
+        // Wrap and processed history table into easy-to-use format for UI rendering.
         final BatteryLevelData batteryLevelData =
-                DataProcessor.getLevelDataThroughProcessedHistoryMap(
-                        context, processedBatteryHistoryMap);
+                DataProcessor.getLevelDataThroughProcessedHistoryTable(
+                        context, processedBatteryHistoryTable);
         if (batteryLevelData == null) {
             new DataProcessManager(context, handler, onBatteryDiffDataMapLoadedListener).start();
             Log.d(TAG, "getBatteryLevelData() returns null");
@@ -638,7 +632,7 @@ public class DataProcessManager {
                 lastFullChargeTime,
                 onBatteryDiffDataMapLoadedListener,
                 batteryLevelData.getHourlyBatteryLevelsPerDay(),
-                processedBatteryHistoryMap).start(isFromPeriodJob);
+                processedBatteryHistoryTable).start(isFromPeriodJob);
 
         return batteryLevelData;
     }
@@ -62,6 +62,7 @@ import com.google.common.base.Preconditions;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -85,7 +86,6 @@ public final class DataProcessor {
     private static final int MAX_DIFF_SECONDS_OF_UPPER_TIMESTAMP = 5;
     private static final String MEDIASERVER_PACKAGE_NAME = "mediaserver";
     private static final String ANDROID_CORE_APPS_SHARED_USER_ID = "android.uid.shared";
-    private static final Map<String, BatteryHistEntry> EMPTY_BATTERY_MAP = new ArrayMap<>();
     private static final BatteryHistEntry EMPTY_BATTERY_HIST_ENTRY =
             new BatteryHistEntry(new ContentValues());
 
@@ -144,27 +144,21 @@ public final class DataProcessor {
             return null;
         }
         // Process raw history map data into hourly timestamps.
-        final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap =
-                getHistoryMapWithExpectedTimestamps(context, batteryHistoryMap);
-        // Wrap and processed history map into easy-to-use format for UI rendering.
+        final BatteryHistoryTable processedBatteryHistoryTable =
+                getHistoryTableWithExpectedTimestamps(context, batteryHistoryMap);
+        // Wrap and processed history table into easy-to-use format for UI rendering.
         final BatteryLevelData batteryLevelData =
-                getLevelDataThroughProcessedHistoryMap(context, processedBatteryHistoryMap);
-        // Loads the current battery usage data from the battery stats service.
-        final Map<String, BatteryHistEntry> currentBatteryHistoryMap =
-                getCurrentBatteryHistoryMapFromStatsService(context);
-        // Replaces the placeholder in processedBatteryHistoryMap.
-        for (Map.Entry<Long, Map<String, BatteryHistEntry>> mapEntry
-                : processedBatteryHistoryMap.entrySet()) {
-            if (mapEntry.getValue().containsKey(CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
-                mapEntry.setValue(currentBatteryHistoryMap);
-            }
-        }
+                getLevelDataThroughProcessedHistoryTable(context, processedBatteryHistoryTable);
+        // Loads the current battery usage data from the battery stats service, in place of the
+        // current time slot.
+        processedBatteryHistoryTable.setCurrentTimeRecords(
+                getCurrentBatteryHistoryMapFromStatsService(context));
         return batteryLevelData == null
                 ? null
                 : generateBatteryUsageMap(context,
                         getBatteryDiffDataMap(context,
                                 batteryLevelData.getHourlyBatteryLevelsPerDay(),
-                                processedBatteryHistoryMap,
+                                processedBatteryHistoryTable,
                                 /*appUsagePeriodMap=*/ null,
                                 getSystemAppsPackageNames(context),
                                 getSystemAppsUids(context)),
@@ -417,40 +411,117 @@ public final class DataProcessor {
     static Map<Long, Map<String, BatteryHistEntry>> getHistoryMapWithExpectedTimestamps(
             Context context,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        return toHistoryMap(getHistoryTableWithExpectedTimestamps(context, batteryHistoryMap));
+    }
+
+    /**
+     * Same as {@link #getHistoryMapWithExpectedTimestamps}, with the processed history in a
+     * {@link BatteryHistoryTable}.
+     */
+    static BatteryHistoryTable getHistoryTableWithExpectedTimestamps(
+            Context context,
+            final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
         final long startTime = System.currentTimeMillis();
         final List<Long> rawTimestampList = new ArrayList<>(batteryHistoryMap.keySet());
-        final Map<Long, Map<String, BatteryHistEntry>> resultMap = new ArrayMap();
         if (rawTimestampList.isEmpty()) {
-            Log.d(TAG, "empty batteryHistoryMap in getHistoryMapWithExpectedTimestamps()");
-            return resultMap;
+            Log.d(TAG, "empty batteryHistoryMap in getHistoryTableWithExpectedTimestamps()");
+            return new BatteryHistoryTable(new long[0]);
         }
         Collections.sort(rawTimestampList);
         final long currentTime = getCurrentTimeMillis();
         final List<Long> expectedTimestampList = getTimestampSlots(rawTimestampList, currentTime);
-        interpolateHistory(
-                context, rawTimestampList, expectedTimestampList, batteryHistoryMap, resultMap);
-        Log.d(TAG, String.format("getHistoryMapWithExpectedTimestamps() size=%d in %d/ms",
-                resultMap.size(), (System.currentTimeMillis() - startTime)));
-        return resultMap;
+        final long[] expectedTimestamps = new long[expectedTimestampList.size()];
+        for (int index = 0; index < expectedTimestamps.length; index++) {
+            expectedTimestamps[index] = expectedTimestampList.get(index);
+        }
+        int maxKeyCount = 0;
+        for (Map<String, BatteryHistEntry> entryMap : batteryHistoryMap.values()) {
+            maxKeyCount = Math.max(maxKeyCount, entryMap.size());
+        }
+        final BatteryHistoryTable resultTable =
+                new BatteryHistoryTable(expectedTimestamps, maxKeyCount);
+        interpolateHistory(context, rawTimestampList, batteryHistoryMap, resultTable);
+        Log.d(TAG, String.format("getHistoryTableWithExpectedTimestamps() size=%d in %d/ms",
+                resultTable.getSlotCount(), (System.currentTimeMillis() - startTime)));
+        return resultTable;
     }
 
     @Nullable
     static BatteryLevelData getLevelDataThroughProcessedHistoryMap(
             Context context,
             final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap) {
+        return getLevelDataThroughProcessedHistoryTable(
+                context, toHistoryTable(processedBatteryHistoryMap));
+    }
+
+    @Nullable
+    static BatteryLevelData getLevelDataThroughProcessedHistoryTable(
+            Context context,
+            final BatteryHistoryTable processedBatteryHistoryTable) {
         // There should be at least the start and end timestamps. Otherwise, return null to not show
         // data in usage chart.
-        if (processedBatteryHistoryMap.size() < MIN_DAILY_DATA_SIZE) {
+        if (processedBatteryHistoryTable.getSlotCount() < MIN_DAILY_DATA_SIZE) {
             return null;
         }
         Map<Long, Integer> batteryLevelMap = new ArrayMap<>();
-        for (Long timestamp : processedBatteryHistoryMap.keySet()) {
-            batteryLevelMap.put(
-                    timestamp, getLevel(context, processedBatteryHistoryMap, timestamp));
+        for (int slot = 0; slot < processedBatteryHistoryTable.getSlotCount(); slot++) {
+            batteryLevelMap.put(processedBatteryHistoryTable.getTimestamp(slot),
+                    getLevel(context, processedBatteryHistoryTable, slot));
         }
         return new BatteryLevelData(batteryLevelMap);
     }
 
+    /**
+     * Converts a processed history map to a {@link BatteryHistoryTable}, the slot of a map with
+     * {@link #CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER} waits for the current time records.
+     */
+    static BatteryHistoryTable toHistoryTable(
+            final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap) {
+        final List<Long> timestampList = new ArrayList<>(processedBatteryHistoryMap.keySet());
+        Collections.sort(timestampList);
+        final long[] timestamps = new long[timestampList.size()];
+        for (int index = 0; index < timestamps.length; index++) {
+            timestamps[index] = timestampList.get(index);
+        }
+        final BatteryHistoryTable table = new BatteryHistoryTable(timestamps);
+        for (int slot = 0; slot < timestamps.length; slot++) {
+            final Map<String, BatteryHistEntry> entryMap =
+                    processedBatteryHistoryMap.get(timestamps[slot]);
+            if (entryMap == null) {
+                continue;
+            }
+            if (entryMap.containsKey(CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
+                table.markCurrentTime(slot);
+            } else {
+                table.setRecords(slot, entryMap);
+            }
+        }
+        return table;
+    }
+
+    /** Converts a {@link BatteryHistoryTable} to the processed history map form. */
+    static Map<Long, Map<String, BatteryHistEntry>> toHistoryMap(
+            final BatteryHistoryTable processedBatteryHistoryTable) {
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap = new ArrayMap<>();
+        for (int slot = 0; slot < processedBatteryHistoryTable.getSlotCount(); slot++) {
+            final long timestamp = processedBatteryHistoryTable.getTimestamp(slot);
+            if (processedBatteryHistoryTable.isCurrentTime(slot)) {
+                resultMap.put(timestamp,
+                        Map.of(CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER, EMPTY_BATTERY_HIST_ENTRY));
+                continue;
+            }
+            final Map<String, BatteryHistEntry> entryMap = new ArrayMap<>();
+            for (int keyId = 0; keyId < processedBatteryHistoryTable.getKeyCount(); keyId++) {
+                final BatteryHistEntry entry = processedBatteryHistoryTable.toEntry(slot, keyId);
+                if (entry != null) {
+                    entryMap.put(processedBatteryHistoryTable.getKey(keyId), entry);
+                }
+            }
+            resultMap.put(timestamp, entryMap);
+        }
+        return resultMap;
+    }
+
     /**
      * Computes expected timestamp slots. The start timestamp is the first timestamp in
      * rawTimestampList. The end timestamp is current time. The middle timestamps are the sharp hour
@@ -512,6 +583,23 @@ public final class DataProcessor {
         return results;
     }
 
+    /**
+     * Same as {@link #findNearestTimestamp(List, long)} with a binary search, for timestamps
+     * sorted in ascending order.
+     */
+    @VisibleForTesting
+    static long[] findNearestTimestamp(final long[] sortedTimestamps, final long target) {
+        final int index = Arrays.binarySearch(sortedTimestamps, target);
+        if (index >= 0) {
+            return new long[]{target, target};
+        }
+        final int insertionIndex = -index - 1;
+        // Uses zero value to represent invalid searching result.
+        return new long[]{
+                insertionIndex == 0 ? 0 : sortedTimestamps[insertionIndex - 1],
+                insertionIndex == sortedTimestamps.length ? 0 : sortedTimestamps[insertionIndex]};
+    }
+
     static Map<Long, BatteryDiffData> getBatteryDiffDataMap(
             Context context,
             final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay,
@@ -520,6 +608,19 @@ public final class DataProcessor {
                     appUsagePeriodMap,
             final @NonNull Set<String> systemAppsPackageNames,
             final @NonNull Set<Integer> systemAppsUids) {
+        return getBatteryDiffDataMap(context, hourlyBatteryLevelsPerDay,
+                toHistoryTable(batteryHistoryMap), appUsagePeriodMap, systemAppsPackageNames,
+                systemAppsUids);
+    }
+
+    static Map<Long, BatteryDiffData> getBatteryDiffDataMap(
+            Context context,
+            final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay,
+            final BatteryHistoryTable batteryHistoryTable,
+            final Map<Integer, Map<Integer, Map<Long, Map<String, List<AppUsagePeriod>>>>>
+                    appUsagePeriodMap,
+            final @NonNull Set<String> systemAppsPackageNames,
+            final @NonNull Set<Integer> systemAppsUids) {
         final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
         final int currentUserId = context.getUserId();
         final UserHandle userHandle =
@@ -543,16 +644,17 @@ public final class DataProcessor {
                 final int endBatteryLevel =
                         hourlyBatteryLevelsPerDay.get(dailyIndex).getLevels().get(hourlyIndex + 1);
                 final long slotDuration = endTimestamp - startTimestamp;
-                List<Map<String, BatteryHistEntry>> slotBatteryHistoryList = new ArrayList<>();
-                slotBatteryHistoryList.add(
-                        batteryHistoryMap.getOrDefault(startTimestamp, EMPTY_BATTERY_MAP));
-                for (Long timestamp = TimestampUtils.getNextHourTimestamp(startTimestamp);
-                        timestamp < endTimestamp; timestamp += DateUtils.HOUR_IN_MILLIS) {
-                    slotBatteryHistoryList.add(
-                            batteryHistoryMap.getOrDefault(timestamp, EMPTY_BATTERY_MAP));
+                // The table slots of the start, every hour in between and the end timestamp.
+                final long firstHourTimestamp = TimestampUtils.getNextHourTimestamp(startTimestamp);
+                final int hourCount = (int) Math.max(0, (endTimestamp - firstHourTimestamp
+                        + DateUtils.HOUR_IN_MILLIS - 1) / DateUtils.HOUR_IN_MILLIS);
+                final int[] historySlots = new int[hourCount + 2];
+                historySlots[0] = batteryHistoryTable.getSlot(startTimestamp);
+                for (int hour = 0; hour < hourCount; hour++) {
+                    historySlots[hour + 1] = batteryHistoryTable.getSlot(
+                            firstHourTimestamp + hour * DateUtils.HOUR_IN_MILLIS);
                 }
-                slotBatteryHistoryList.add(
-                        batteryHistoryMap.getOrDefault(endTimestamp, EMPTY_BATTERY_MAP));
+                historySlots[hourCount + 1] = batteryHistoryTable.getSlot(endTimestamp);
 
                 final BatteryDiffData hourlyBatteryDiffData =
                         insertHourlyUsageDiffDataPerSlot(
@@ -570,7 +672,8 @@ public final class DataProcessor {
                                         || appUsagePeriodMap.get(dailyIndex) == null
                                         ? null
                                         : appUsagePeriodMap.get(dailyIndex).get(hourlyIndex),
-                                slotBatteryHistoryList);
+                                batteryHistoryTable,
+                                historySlots);
                 batteryDiffDataMap.put(startTimestamp, hourlyBatteryDiffData);
             }
         }
@@ -1079,71 +1182,74 @@ public final class DataProcessor {
     private static void interpolateHistory(
             Context context,
             final List<Long> rawTimestampList,
-            final List<Long> expectedTimestampSlots,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
-            final Map<Long, Map<String, BatteryHistEntry>> resultMap) {
-        if (rawTimestampList.isEmpty() || expectedTimestampSlots.isEmpty()) {
+            final BatteryHistoryTable resultTable) {
+        final int expectedTimestampSlotsSize = resultTable.getSlotCount();
+        if (rawTimestampList.isEmpty() || expectedTimestampSlotsSize == 0) {
             return;
         }
-        final int expectedTimestampSlotsSize = expectedTimestampSlots.size();
-        final long startTimestamp = expectedTimestampSlots.get(0);
-        final long endTimestamp = expectedTimestampSlots.get(expectedTimestampSlotsSize - 1);
+        final long startTimestamp = resultTable.getTimestamp(0);
+
+        // Unboxes the sorted raw timestamps once to search them for every slot.
+        final long[] sortedRawTimestamps = new long[rawTimestampList.size()];
+        for (int index = 0; index < sortedRawTimestamps.length; index++) {
+            sortedRawTimestamps[index] = rawTimestampList.get(index);
+        }
 
-        resultMap.put(startTimestamp, batteryHistoryMap.get(startTimestamp));
+        resultTable.setRecords(/* slot= */ 0, batteryHistoryMap.get(startTimestamp));
         for (int index = 1; index < expectedTimestampSlotsSize - 1; index++) {
-            interpolateHistoryForSlot(context, expectedTimestampSlots.get(index), rawTimestampList,
-                    batteryHistoryMap, resultMap);
+            interpolateHistoryForSlot(
+                    context, index, sortedRawTimestamps, batteryHistoryMap, resultTable);
         }
-        resultMap.put(endTimestamp,
-                Map.of(CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER, EMPTY_BATTERY_HIST_ENTRY));
+        resultTable.markCurrentTime(expectedTimestampSlotsSize - 1);
     }
 
     private static void interpolateHistoryForSlot(
             Context context,
-            final long currentSlot,
-            final List<Long> rawTimestampList,
+            final int slot,
+            final long[] sortedRawTimestamps,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
-            final Map<Long, Map<String, BatteryHistEntry>> resultMap) {
-        final long[] nearestTimestamps = findNearestTimestamp(rawTimestampList, currentSlot);
+            final BatteryHistoryTable resultTable) {
+        final long currentSlot = resultTable.getTimestamp(slot);
+        final long[] nearestTimestamps = findNearestTimestamp(sortedRawTimestamps, currentSlot);
         final long lowerTimestamp = nearestTimestamps[0];
         final long upperTimestamp = nearestTimestamps[1];
         // Case 1: upper timestamp is zero since scheduler is delayed!
         if (upperTimestamp == 0) {
             log(context, "job scheduler is delayed", currentSlot, null);
-            resultMap.put(currentSlot, new ArrayMap<>());
             return;
         }
         // Case 2: upper timestamp is closed to the current timestamp.
         if ((upperTimestamp - currentSlot)
                 < MAX_DIFF_SECONDS_OF_UPPER_TIMESTAMP * DateUtils.SECOND_IN_MILLIS) {
             log(context, "force align into the nearest slot", currentSlot, null);
-            resultMap.put(currentSlot, batteryHistoryMap.get(upperTimestamp));
+            resultTable.setRecords(slot, batteryHistoryMap.get(upperTimestamp));
             return;
         }
         // Case 3: lower timestamp is zero before starting to collect data.
         if (lowerTimestamp == 0) {
             log(context, "no lower timestamp slot data", currentSlot, null);
-            resultMap.put(currentSlot, new ArrayMap<>());
             return;
         }
         interpolateHistoryForSlot(
-                context, currentSlot, lowerTimestamp, upperTimestamp, batteryHistoryMap, resultMap);
+                context, slot, lowerTimestamp, upperTimestamp, batteryHistoryMap, resultTable);
     }
 
     private static void interpolateHistoryForSlot(
             Context context,
-            final long currentSlot,
+            final int slot,
             final long lowerTimestamp,
             final long upperTimestamp,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
-            final Map<Long, Map<String, BatteryHistEntry>> resultMap) {
+            final BatteryHistoryTable resultTable) {
+        final long currentSlot = resultTable.getTimestamp(slot);
         final Map<String, BatteryHistEntry> lowerEntryDataMap =
                 batteryHistoryMap.get(lowerTimestamp);
         final Map<String, BatteryHistEntry> upperEntryDataMap =
                 batteryHistoryMap.get(upperTimestamp);
         // Verifies whether the lower data is valid to use or not by checking boot time.
         final BatteryHistEntry upperEntryDataFirstEntry =
-                upperEntryDataMap.values().stream().findFirst().get();
+                upperEntryDataMap.values().iterator().next();
         final long upperEntryDataBootTimestamp =
                 upperEntryDataFirstEntry.mTimestamp - upperEntryDataFirstEntry.mBootTimestamp;
         // Lower data is captured before upper data corresponding device is booting.
@@ -1154,21 +1260,20 @@ public final class DataProcessor {
             // Provides an opportunity to force align the slot directly.
             if ((upperTimestamp - currentSlot) < 10 * DateUtils.MINUTE_IN_MILLIS) {
                 log(context, "force align into the nearest slot", currentSlot, null);
-                resultMap.put(currentSlot, upperEntryDataMap);
+                resultTable.setRecords(slot, upperEntryDataMap);
             } else {
                 log(context, "in the different booting section", currentSlot, null);
-                resultMap.put(currentSlot, new ArrayMap<>());
             }
             return;
         }
         log(context, "apply interpolation arithmetic", currentSlot, null);
-        final Map<String, BatteryHistEntry> newHistEntryMap = new ArrayMap<>();
         final double timestampLength = upperTimestamp - lowerTimestamp;
         final double timestampDiff = currentSlot - lowerTimestamp;
         // Applies interpolation arithmetic for each BatteryHistEntry.
-        for (String entryKey : upperEntryDataMap.keySet()) {
+        for (Map.Entry<String, BatteryHistEntry> upperEntryData : upperEntryDataMap.entrySet()) {
+            final String entryKey = upperEntryData.getKey();
             final BatteryHistEntry lowerEntry = lowerEntryDataMap.get(entryKey);
-            final BatteryHistEntry upperEntry = upperEntryDataMap.get(entryKey);
+            final BatteryHistEntry upperEntry = upperEntryData.getValue();
             // Checks whether there is any abnormal battery reset conditions.
             if (lowerEntry != null) {
                 final boolean invalidForegroundUsageTime =
@@ -1176,48 +1281,50 @@ public final class DataProcessor {
                 final boolean invalidBackgroundUsageTime =
                         lowerEntry.mBackgroundUsageTimeInMs > upperEntry.mBackgroundUsageTimeInMs;
                 if (invalidForegroundUsageTime || invalidBackgroundUsageTime) {
-                    newHistEntryMap.put(entryKey, upperEntry);
+                    resultTable.setRecord(slot, entryKey, upperEntry);
                     log(context, "abnormal reset condition is found", currentSlot, upperEntry);
                     continue;
                 }
             }
-            final BatteryHistEntry newEntry =
-                    BatteryHistEntry.interpolate(
-                            currentSlot,
-                            upperTimestamp,
-                            /*ratio=*/ timestampDiff / timestampLength,
-                            lowerEntry,
-                            upperEntry);
-            newHistEntryMap.put(entryKey, newEntry);
+            resultTable.setInterpolatedRecord(
+                    slot,
+                    entryKey,
+                    upperTimestamp,
+                    /*ratio=*/ timestampDiff / timestampLength,
+                    lowerEntry,
+                    upperEntry);
             if (lowerEntry == null) {
                 log(context, "cannot find lower entry data", currentSlot, upperEntry);
                 continue;
             }
         }
-        resultMap.put(currentSlot, newHistEntryMap);
     }
 
     private static Integer getLevel(
             Context context,
-            final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap,
-            final long timestamp) {
-        final Map<String, BatteryHistEntry> entryMap = processedBatteryHistoryMap.get(timestamp);
-        if (entryMap == null || entryMap.isEmpty()) {
+            final BatteryHistoryTable processedBatteryHistoryTable,
+            final int slot) {
+        if (!processedBatteryHistoryTable.hasRecords(slot)) {
             Log.e(TAG, "abnormal entry list in the timestamp:"
-                    + ConvertUtils.utcToLocalTimeForLogging(timestamp));
+                    + ConvertUtils.utcToLocalTimeForLogging(
+                            processedBatteryHistoryTable.getTimestamp(slot)));
             return BATTERY_LEVEL_UNKNOWN;
         }
         // The current time battery history hasn't been loaded yet, returns the current battery
         // level.
-        if (entryMap.containsKey(CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
+        if (processedBatteryHistoryTable.isCurrentTime(slot)) {
             return getCurrentLevel(context);
         }
         // Averages the battery level in each time slot to avoid corner conditions.
         float batteryLevelCounter = 0;
-        for (BatteryHistEntry entry : entryMap.values()) {
-            batteryLevelCounter += entry.mBatteryLevel;
+        int entryCount = 0;
+        for (int keyId = 0; keyId < processedBatteryHistoryTable.getKeyCount(); keyId++) {
+            if (processedBatteryHistoryTable.getRecord(slot, keyId) != null) {
+                batteryLevelCounter += processedBatteryHistoryTable.getBatteryLevel(slot, keyId);
+                entryCount++;
+            }
         }
-        return Math.round(batteryLevelCounter / entryMap.size());
+        return Math.round(batteryLevelCounter / entryCount);
     }
 
     private static int getCurrentLevel(Context context) {
@@ -1259,7 +1366,8 @@ public final class DataProcessor {
             }
             dailyUsageMap.put(
                     SELECTED_INDEX_ALL,
-                    getAccumulatedUsageDiffData(context, dailyUsageMap.values()));
+                    BatteryUsageSlotCache.getInstance().getAccumulatedDiffData(
+                            context, dailyUsageMap.values()));
         }
     }
 
@@ -1270,7 +1378,8 @@ public final class DataProcessor {
         resultMap.keySet().forEach(
                 key -> diffDataList.add(resultMap.get(key).get(SELECTED_INDEX_ALL)));
         final Map<Integer, BatteryDiffData> allUsageMap = new ArrayMap<>();
-        allUsageMap.put(SELECTED_INDEX_ALL, getAccumulatedUsageDiffData(context, diffDataList));
+        allUsageMap.put(SELECTED_INDEX_ALL, BatteryUsageSlotCache.getInstance()
+                .getAccumulatedDiffData(context, diffDataList));
         resultMap.put(SELECTED_INDEX_ALL, allUsageMap);
     }
 
@@ -1287,7 +1396,8 @@ public final class DataProcessor {
             final Set<String> systemAppsPackageNames,
             final Set<Integer> systemAppsUids,
             final Map<Long, Map<String, List<AppUsagePeriod>>> appUsageMap,
-            final List<Map<String, BatteryHistEntry>> slotBatteryHistoryList) {
+            final BatteryHistoryTable batteryHistoryTable,
+            final int[] historySlots) {
         long slotScreenOnTime = 0L;
         if (appUsageMap != null) {
             final List<AppUsagePeriod> flatAppUsagePeriodList = new ArrayList<>();
@@ -1311,32 +1421,28 @@ public final class DataProcessor {
         final List<BatteryDiffEntry> appEntries = new ArrayList<>();
         final List<BatteryDiffEntry> systemEntries = new ArrayList<>();
 
-        // Collects all keys in these three time slot records as all populations.
-        final Set<String> allBatteryHistEntryKeys = new ArraySet<>();
-        for (Map<String, BatteryHistEntry> slotBatteryHistMap : slotBatteryHistoryList) {
-            if (slotBatteryHistMap.isEmpty()) {
+        for (int slot : historySlots) {
+            if (slot < 0 || !batteryHistoryTable.hasRecords(slot)) {
                 // We should not get the empty list since we have at least one fake data to record
                 // the battery level and status in each time slot, the empty list is used to
                 // represent there is no enough data to apply interpolation arithmetic.
                 return null;
             }
-            allBatteryHistEntryKeys.addAll(slotBatteryHistMap.keySet());
         }
 
-        // Calculates all packages diff usage data in a specific time slot.
-        for (String key : allBatteryHistEntryKeys) {
-            if (key == null) {
+        // Calculates all packages diff usage data in a specific time slot, the consumers without
+        // a record in these time slots are skipped below.
+        for (int keyId = 0; keyId < batteryHistoryTable.getKeyCount(); keyId++) {
+            if (batteryHistoryTable.getKey(keyId) == null) {
                 continue;
             }
 
             BatteryHistEntry selectedBatteryEntry = null;
-            final List<BatteryHistEntry> batteryHistEntries = new ArrayList<>();
-            for (Map<String, BatteryHistEntry> slotBatteryHistMap : slotBatteryHistoryList) {
-                BatteryHistEntry entry =
-                        slotBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-                batteryHistEntries.add(entry);
-                if (selectedBatteryEntry == null && entry != EMPTY_BATTERY_HIST_ENTRY) {
+            for (int slot : historySlots) {
+                final BatteryHistEntry entry = batteryHistoryTable.getRecord(slot, keyId);
+                if (entry != null) {
                     selectedBatteryEntry = entry;
+                    break;
                 }
             }
             if (selectedBatteryEntry == null) {
@@ -1358,37 +1464,43 @@ public final class DataProcessor {
             double foregroundServiceUsageConsumePower = 0;
             double backgroundUsageConsumePower = 0;
             double cachedUsageConsumePower = 0;
-            for (int i = 0; i < batteryHistEntries.size() - 1; i++) {
-                final BatteryHistEntry currentEntry = batteryHistEntries.get(i);
-                final BatteryHistEntry nextEntry = batteryHistEntries.get(i + 1);
+            for (int i = 0; i < historySlots.length - 1; i++) {
+                final int currentSlot = historySlots[i];
+                final int nextSlot = historySlots[i + 1];
                 foregroundUsageTimeInMs +=
                         getDiffValue(
-                                currentEntry.mForegroundUsageTimeInMs,
-                                nextEntry.mForegroundUsageTimeInMs);
+                                batteryHistoryTable.getForegroundUsageTimeInMs(currentSlot, keyId),
+                                batteryHistoryTable.getForegroundUsageTimeInMs(nextSlot, keyId));
                 backgroundUsageTimeInMs +=
                         getDiffValue(
-                                currentEntry.mBackgroundUsageTimeInMs,
-                                nextEntry.mBackgroundUsageTimeInMs);
+                                batteryHistoryTable.getBackgroundUsageTimeInMs(currentSlot, keyId),
+                                batteryHistoryTable.getBackgroundUsageTimeInMs(nextSlot, keyId));
                 consumePower +=
                         getDiffValue(
-                                currentEntry.mConsumePower,
-                                nextEntry.mConsumePower);
+                                batteryHistoryTable.getConsumePower(currentSlot, keyId),
+                                batteryHistoryTable.getConsumePower(nextSlot, keyId));
                 foregroundUsageConsumePower +=
                         getDiffValue(
-                                currentEntry.mForegroundUsageConsumePower,
-                                nextEntry.mForegroundUsageConsumePower);
+                                batteryHistoryTable.getForegroundUsageConsumePower(
+                                        currentSlot, keyId),
+                                batteryHistoryTable.getForegroundUsageConsumePower(
+                                        nextSlot, keyId));
                 foregroundServiceUsageConsumePower +=
                         getDiffValue(
-                                currentEntry.mForegroundServiceUsageConsumePower,
-                                nextEntry.mForegroundServiceUsageConsumePower);
+                                batteryHistoryTable.getForegroundServiceUsageConsumePower(
+                                        currentSlot, keyId),
+                                batteryHistoryTable.getForegroundServiceUsageConsumePower(
+                                        nextSlot, keyId));
                 backgroundUsageConsumePower +=
                         getDiffValue(
-                                currentEntry.mBackgroundUsageConsumePower,
-                                nextEntry.mBackgroundUsageConsumePower);
+                                batteryHistoryTable.getBackgroundUsageConsumePower(
+                                        currentSlot, keyId),
+                                batteryHistoryTable.getBackgroundUsageConsumePower(
+                                        nextSlot, keyId));
                 cachedUsageConsumePower +=
                         getDiffValue(
-                                currentEntry.mCachedUsageConsumePower,
-                                nextEntry.mCachedUsageConsumePower);
+                                batteryHistoryTable.getCachedUsageConsumePower(currentSlot, keyId),
+                                batteryHistoryTable.getCachedUsageConsumePower(nextSlot, keyId));
             }
             if (isSystemConsumer(selectedBatteryEntry.mConsumerType)
                     && selectedBatteryEntry.mDrainType == BatteryConsumer.POWER_COMPONENT_SCREEN) {
@@ -1522,7 +1634,7 @@ public final class DataProcessor {
     }
 
     @Nullable
-    private static BatteryDiffData getAccumulatedUsageDiffData(
+    static BatteryDiffData getAccumulatedUsageDiffData(
             final Context context, final Collection<BatteryDiffData> batteryDiffDataList) {
         final Map<String, BatteryDiffEntry> diffEntryMap = new ArrayMap<>();
         final List<BatteryDiffEntry> appEntries = new ArrayList<>();
@@ -384,6 +384,7 @@ public final class DatabaseUtils {
                 database.batteryEventDao().clearAll();
                 database.batteryStateDao().clearAll();
                 database.batteryUsageSlotDao().clearAll();
+                BatteryUsageSlotCache.getInstance().clear();
             } catch (RuntimeException e) {
                 Log.e(TAG, "clearAll() failed", e);
             }
@@ -402,6 +403,7 @@ public final class DatabaseUtils {
                 database.batteryEventDao().clearAllBefore(earliestTimestamp);
                 database.batteryStateDao().clearAllBefore(earliestTimestamp);
                 database.batteryUsageSlotDao().clearAllBefore(earliestTimestamp);
+                BatteryUsageSlotCache.getInstance().clear();
             } catch (RuntimeException e) {
                 Log.e(TAG, "clearAllBefore() failed", e);
             }
@@ -398,6 +398,12 @@ public class SystemNavigationGestureSettings extends RadioButtonPickerFragment i
 
                     return result;
                 }
+
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Depends on the installed navigation bar overlays.
+                    return false;
+                }
             };
 
     // From HelpResourceProvider
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.homepage.contextualcards.logging.ContextualCardLogUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Evaluates the eligibility of contextual cards on a shared, bounded executor.
+ *
+ * <p>Results are cached per slice uri for {@link #RESULT_TTL_MS}, or until the cards are
+ * refreshed. A card with an old result is shown with it right away and checked again in the
+ * background. Only cards that were never checked are waited for. A card whose check doesn't
+ * finish in time is dropped, and the check keeps running. Once a background check changes whether
+ * a card is shown, the caller is told to load again.
+ */
+class CardEligibilityEvaluator {
+
+    private static final String TAG = "CardEligibilityEval";
+
+    @VisibleForTesting
+    static final long RESULT_TTL_MS = 30000L;
+    private static final int MAX_THREADS = 4;
+    private static final long KEEP_ALIVE_MS = 10000L;
+
+    private static CardEligibilityEvaluator sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final BiFunction<Context, ContextualCard, Callable<ContextualCard>> mCheckerFactory;
+    private final Map<Uri, Result> mResults = new ArrayMap<>();
+    private final Map<Uri, Check> mPendingChecks = new ArrayMap<>();
+
+    static synchronized CardEligibilityEvaluator getInstance() {
+        if (sInstance == null) {
+            sInstance = new CardEligibilityEvaluator(EligibleCardChecker::new);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    CardEligibilityEvaluator(
+            BiFunction<Context, ContextualCard, Callable<ContextualCard>> checkerFactory) {
+        mCheckerFactory = checkerFactory;
+        mExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_MS,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the eligible cards among {@code candidates}, waiting at most {@code timeoutMs} for
+     * the cards that were never checked.
+     *
+     * @param owner       the caller, only its own checks are cancelled by
+     *                    {@link #cancelPendingChecks}
+     * @param onRefreshed called on a background thread once a check that finished too late, or
+     *                    that refreshed an old result, changed whether a card is eligible
+     */
+    List<ContextualCard> filterEligibleCards(Context context, List<ContextualCard> candidates,
+            long timeoutMs, Object owner, @Nullable Runnable onRefreshed) {
+        final long now = SystemClock.elapsedRealtime();
+        final ContextualCard[] eligibleCards = new ContextualCard[candidates.size()];
+        final Map<Integer, Check> checks = new ArrayMap<>();
+        synchronized (this) {
+            for (int i = 0; i < candidates.size(); i++) {
+                final ContextualCard card = candidates.get(i);
+                final Result result = mResults.get(card.getSliceUri());
+                if (result == null) {
+                    final Check check = getOrStartCheck(context, card);
+                    check.mOwners.add(owner);
+                    checks.put(i, check);
+                    continue;
+                }
+                eligibleCards[i] = result.applyTo(card);
+                if (result.mExpired || now - result.mTime >= RESULT_TTL_MS) {
+                    addRefreshListener(getOrStartCheck(context, card), onRefreshed);
+                }
+            }
+        }
+
+        final long deadline = now + timeoutMs;
+        for (Map.Entry<Integer, Check> entry : checks.entrySet()) {
+            final ContextualCard card = candidates.get(entry.getKey());
+            final Check check = entry.getValue();
+            try {
+                final ContextualCard checkedCard = check.get(
+                        Math.max(deadline - SystemClock.elapsedRealtime(), 0L),
+                        TimeUnit.MILLISECONDS);
+                eligibleCards[entry.getKey()] = checkedCard == null ? null
+                        : Result.applyTo(card, checkedCard);
+            } catch (TimeoutException | CancellationException | ExecutionException
+                    | InterruptedException e) {
+                Log.w(TAG, "Failed to get eligible state in time for card: "
+                        + card.getSliceUri());
+                synchronized (this) {
+                    if (mPendingChecks.get(check.mUri) == check) {
+                        addRefreshListener(check, onRefreshed);
+                    } else {
+                        // The check finished or was cancelled meanwhile.
+                        final Result result = mResults.get(check.mUri);
+                        eligibleCards[entry.getKey()] =
+                                result == null ? null : result.applyTo(card);
+                    }
+                }
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                synchronized (this) {
+                    check.mOwners.remove(owner);
+                }
+            }
+        }
+
+        final List<ContextualCard> cards = new ArrayList<>();
+        for (ContextualCard card : eligibleCards) {
+            if (card != null) {
+                cards.add(card);
+            }
+        }
+        return cards;
+    }
+
+    /**
+     * Expires all cached results, so the next load checks every card again. They are still shown
+     * until the new checks finish.
+     */
+    synchronized void invalidate() {
+        for (Result result : mResults.values()) {
+            result.mExpired = true;
+        }
+    }
+
+    /**
+     * Cancels the checks {@code owner} is waiting for, unless other callers wait for them too or
+     * they refresh a card already shown.
+     */
+    synchronized void cancelPendingChecks(Object owner) {
+        final List<Check> checks = new ArrayList<>();
+        for (Check check : mPendingChecks.values()) {
+            if (check.mOwners.remove(owner) && check.mOwners.isEmpty()
+                    && check.mRefreshListeners.isEmpty()) {
+                checks.add(check);
+            }
+        }
+        for (Check check : checks) {
+            mPendingChecks.remove(check.mUri);
+            check.cancel(true /* mayInterruptIfRunning */);
+        }
+    }
+
+    private void addRefreshListener(Check check, @Nullable Runnable listener) {
+        if (listener != null && !check.mRefreshListeners.contains(listener)) {
+            check.mRefreshListeners.add(listener);
+        }
+    }
+
+    private Check getOrStartCheck(Context context, ContextualCard card) {
+        final Uri uri = card.getSliceUri();
+        final Check pendingCheck = mPendingChecks.get(uri);
+        if (pendingCheck != null) {
+            return pendingCheck;
+        }
+        final Callable<ContextualCard> checker = mCheckerFactory.apply(context, card);
+        final AtomicBoolean changed = new AtomicBoolean();
+        final Check check = new Check(uri, () -> {
+            final long startTime = SystemClock.elapsedRealtime();
+            final ContextualCard result = checker.call();
+            if (!Thread.currentThread().isInterrupted()) {
+                synchronized (CardEligibilityEvaluator.this) {
+                    final Result previous = mResults.put(uri,
+                            new Result(result, SystemClock.elapsedRealtime()));
+                    changed.set(previous == null ? result != null
+                            : (previous.mCard == null) != (result == null));
+                }
+                ContextualCardLogUtils.logEligibilityLatency(uri.toString(),
+                        SystemClock.elapsedRealtime() - startTime);
+            }
+            return result;
+        }, changed);
+        mPendingChecks.put(uri, check);
+        mExecutor.execute(check);
+        return check;
+    }
+
+    private class Check extends FutureTask<ContextualCard> {
+        final Uri mUri;
+        // The callers waiting for the result of this check.
+        final Set<Object> mOwners = new ArraySet<>();
+        // The callers that didn't wait for this check and need to know if it changed the result.
+        final List<Runnable> mRefreshListeners = new ArrayList<>();
+        private final AtomicBoolean mChanged;
+
+        Check(Uri uri, Callable<ContextualCard> callable, AtomicBoolean changed) {
+            super(callable);
+            mUri = uri;
+            mChanged = changed;
+        }
+
+        @Override
+        protected void done() {
+            final List<Runnable> listeners;
+            synchronized (CardEligibilityEvaluator.this) {
+                if (mPendingChecks.get(mUri) == this) {
+                    mPendingChecks.remove(mUri);
+                }
+                listeners = new ArrayList<>(mRefreshListeners);
+            }
+            if (!isCancelled() && mChanged.get()) {
+                for (Runnable listener : listeners) {
+                    listener.run();
+                }
+            }
+        }
+    }
+
+    private static class Result {
+        @Nullable
+        final ContextualCard mCard;
+        final long mTime;
+        boolean mExpired;
+
+        Result(@Nullable ContextualCard card, long time) {
+            mCard = card;
+            mTime = time;
+        }
+
+        @Nullable
+        ContextualCard applyTo(ContextualCard candidate) {
+            return mCard == null ? null : applyTo(candidate, mCard);
+        }
+
+        /** Returns {@code candidate} with the eligibility state of {@code checkedCard}. */
+        static ContextualCard applyTo(ContextualCard candidate, ContextualCard checkedCard) {
+            if (candidate.getRankingScore() < 0) {
+                return null;
+            }
+            return candidate.mutate()
+                    .setSlice(checkedCard.getSlice())
+                    .setHasInlineAction(checkedCard.hasInlineAction())
+                    .build();
+        }
+    }
+}
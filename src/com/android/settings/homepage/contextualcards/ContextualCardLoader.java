@@ -41,11 +41,6 @@ import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>> {
 
@@ -58,10 +53,14 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     private static final String TAG = "ContextualCardLoader";
     private static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
 
-    private final ContentObserver mObserver = new ContentObserver(
-            new Handler(Looper.getMainLooper())) {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final ContentObserver mObserver = new ContentObserver(mHandler) {
         @Override
         public void onChange(boolean selfChange, Uri uri) {
+            if (CardContentProvider.REFRESH_CARD_URI.equals(uri)) {
+                CardEligibilityEvaluator.getInstance().invalidate();
+            }
             if (isStarted()) {
                 mNotifyUri = uri;
                 forceLoad();
@@ -69,6 +68,19 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
         }
     };
 
+    // Loads again once a card shown with an old eligibility, or dropped because its check was
+    // too slow, turns out to be eligible differently.
+    private final Runnable mRefreshRunnable = () -> {
+        if (isStarted()) {
+            mNotifyUri = null;
+            forceLoad();
+        }
+    };
+    private final Runnable mOnEligibilityRefreshed = () -> {
+        mHandler.removeCallbacks(mRefreshRunnable);
+        mHandler.post(mRefreshRunnable);
+    };
+
     @VisibleForTesting
     Uri mNotifyUri;
 
@@ -95,6 +107,12 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
         mContext.getContentResolver().unregisterContentObserver(mObserver);
     }
 
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        CardEligibilityEvaluator.getInstance().cancelPendingChecks(this /* owner */);
+    }
+
     @Override
     protected void onDiscardResult(List<ContextualCard> result) {
 
@@ -188,40 +206,8 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
-        final List<ContextualCard> cards = new ArrayList<>();
-        List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
-
-        final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
-                .collect(Collectors.toList());
-        try {
-            eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
-                    TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.w(TAG, "Failed to get eligible states for all cards", e);
-        }
-        executor.shutdown();
-
-        // Collect future and eligible cards
-        for (int i = 0; i < eligibleCards.size(); i++) {
-            final Future<ContextualCard> cardFuture = eligibleCards.get(i);
-            if (cardFuture.isCancelled()) {
-                Log.w(TAG, "Timeout getting eligible state for card: "
-                        + candidates.get(i).getSliceUri());
-                continue;
-            }
-
-            try {
-                final ContextualCard card = cardFuture.get();
-                if (card != null) {
-                    cards.add(card);
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Failed to get eligible state for card", e);
-            }
-        }
-        return cards;
+        return CardEligibilityEvaluator.getInstance().filterEligibleCards(mContext, candidates,
+                ELIGIBILITY_CHECKER_TIMEOUT_MS, this /* owner */, mOnEligibilityRefreshed);
     }
 
     private boolean isLargeCard(ContextualCard card) {
@@ -93,6 +93,10 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             return false;
         }
 
+        if (Thread.currentThread().isInterrupted()) {
+            // The load was cancelled, don't bother binding the slice.
+            return false;
+        }
         final Slice slice = bindSlice(uri);
 
         if (slice == null || slice.hasHint(HINT_ERROR)) {
@@ -16,12 +16,18 @@
 
 package com.android.settings.homepage.contextualcards.logging;
 
+import android.util.ArrayMap;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.slice.widget.EventInfo;
 
 import com.android.settings.homepage.contextualcards.ContextualCard;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,6 +38,13 @@ public class ContextualCardLogUtils {
 
     private static final String TAG = "ContextualCardLogUtils";
 
+    /** Upper bounds of the eligibility latency histogram buckets, the last one is unbounded. */
+    @VisibleForTesting
+    static final long[] ELIGIBILITY_LATENCY_BUCKETS_MS = {50, 100, 200, 400, 800};
+
+    // Eligibility latency histograms (key: slice uri, value: count per bucket)
+    private static final ArrayMap<String, int[]> sEligibilityLatencyHistograms = new ArrayMap<>();
+
     private static final class TapTarget {
         static int TARGET_DEFAULT = 0;
         static int TARGET_TITLE = 1;
@@ -260,4 +273,61 @@ public class ContextualCardLogUtils {
                 return TapTarget.TARGET_DEFAULT;
         }
     }
+
+    /**
+     * Records how long checking the eligibility of the card of {@code sliceUri} took.
+     */
+    public static void logEligibilityLatency(String sliceUri, long latencyMs) {
+        synchronized (sEligibilityLatencyHistograms) {
+            int[] histogram = sEligibilityLatencyHistograms.get(sliceUri);
+            if (histogram == null) {
+                histogram = new int[ELIGIBILITY_LATENCY_BUCKETS_MS.length + 1];
+                sEligibilityLatencyHistograms.put(sliceUri, histogram);
+            }
+            int bucket = 0;
+            while (bucket < ELIGIBILITY_LATENCY_BUCKETS_MS.length
+                    && latencyMs > ELIGIBILITY_LATENCY_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Eligibility of " + sliceUri + " checked in " + latencyMs + " ms");
+        }
+    }
+
+    /**
+     * Returns a copy of the eligibility latency histogram of the card of {@code sliceUri}, with
+     * one count per bucket of {@link #ELIGIBILITY_LATENCY_BUCKETS_MS} plus one for slower checks.
+     */
+    public static int[] getEligibilityLatencyHistogram(String sliceUri) {
+        synchronized (sEligibilityLatencyHistograms) {
+            final int[] histogram = sEligibilityLatencyHistograms.get(sliceUri);
+            return histogram == null ? new int[ELIGIBILITY_LATENCY_BUCKETS_MS.length + 1]
+                    : histogram.clone();
+        }
+    }
+
+    /**
+     * Returns the eligibility latency histograms for the dump, with the bucket upper bounds and
+     * the counts per bucket of each card.
+     */
+    public static JSONObject dumpEligibilityLatency() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        final JSONArray buckets = new JSONArray();
+        for (long bucket : ELIGIBILITY_LATENCY_BUCKETS_MS) {
+            buckets.put(bucket);
+        }
+        obj.put("buckets_ms", buckets);
+        synchronized (sEligibilityLatencyHistograms) {
+            for (int i = 0; i < sEligibilityLatencyHistograms.size(); i++) {
+                final JSONArray counts = new JSONArray();
+                for (int count : sEligibilityLatencyHistograms.valueAt(i)) {
+                    counts.put(count);
+                }
+                obj.put(sEligibilityLatencyHistograms.keyAt(i), counts);
+            }
+        }
+        return obj;
+    }
 }
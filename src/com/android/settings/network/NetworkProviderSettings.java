@@ -78,6 +78,7 @@ import com.android.settings.wifi.LongPressWifiEntryPreference;
 import com.android.settings.wifi.WifiConfigUiBase2;
 import com.android.settings.wifi.WifiConnectListener;
 import com.android.settings.wifi.WifiDialog2;
+import com.android.settings.wifi.WifiEntryListUpdater;
 import com.android.settings.wifi.WifiPickerTrackerHelper;
 import com.android.settings.wifi.WifiUtils;
 import com.android.settings.wifi.details.WifiNetworkDetailsFragment;
@@ -196,6 +197,7 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
     };
 
     private boolean mIsWifiEntryListStale = true;
+    private WifiEntryListUpdater mWifiEntryListUpdater;
     @VisibleForTesting
     final Runnable mUpdateWifiEntryPreferencesRunnable = () -> {
         updateWifiEntryPreferences();
@@ -980,7 +982,9 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
                 return;
             }
             setProgressBarVisible(true);
-            view.postDelayed(mUpdateWifiEntryPreferencesRunnable, 300);
+            // Scan results can come every few seconds, don't redo the list more than once a second.
+            view.postDelayed(mUpdateWifiEntryPreferencesRunnable,
+                    getWifiEntryListUpdater().getUpdateDelay(300 /* minDelay */));
         }
     }
 
@@ -995,7 +999,6 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
         mWifiEntryPreferenceCategory.setVisible(true);
 
         final WifiEntry connectedEntry = mWifiPickerTracker.getConnectedWifiEntry();
@@ -1004,7 +1007,12 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
         if (connectedEntry != null) {
             final LongPressWifiEntryPreference connectedPref =
                     connectedWifiPreferenceCategory.findPreference(connectedEntry.getKey());
-            if (connectedPref == null || connectedPref.getWifiEntry() != connectedEntry) {
+            if (connectedPref != null) {
+                if (connectedPref.getWifiEntry() != connectedEntry) {
+                    // Same network, new object: keep the preference.
+                    connectedPref.setWifiEntry(connectedEntry);
+                }
+            } else {
                 connectedWifiPreferenceCategory.removeAll();
                 final ConnectedWifiEntryPreference pref =
                         createConnectedWifiEntryPreference(connectedEntry);
@@ -1012,8 +1020,9 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
                 pref.refresh();
                 connectedWifiPreferenceCategory.addPreference(pref);
                 pref.setOnPreferenceClickListener(preference -> {
-                    if (connectedEntry.canSignIn()) {
-                        connectedEntry.signIn(null /* callback */);
+                    final WifiEntry wifiEntry = pref.getWifiEntry();
+                    if (wifiEntry.canSignIn()) {
+                        wifiEntry.signIn(null /* callback */);
                     } else {
                         launchNetworkDetailsFragment(pref);
                     }
@@ -1034,57 +1043,54 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
             connectedWifiPreferenceCategory.removeAll();
         }
 
-        int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
-        for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
-            String key = wifiEntry.getKey();
-            LongPressWifiEntryPreference pref =
-                    (LongPressWifiEntryPreference) getCachedPreference(key);
-            if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
-            }
-
-            pref = createLongPressWifiEntryPreference(wifiEntry);
-            pref.setKey(wifiEntry.getKey());
-            pref.setOrder(index++);
-            pref.refresh();
-
-            if (wifiEntry.getHelpUriString() != null) {
-                pref.setOnButtonClickListener(preference -> {
-                    openSubscriptionHelpPage(wifiEntry);
-                });
-            }
-            mWifiEntryPreferenceCategory.addPreference(pref);
-        }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        int index = getWifiEntryListUpdater().update(mWifiEntryPreferenceCategory, wifiEntries,
+                0 /* firstOrder */);
+        final boolean hasAvailableWifiEntries = !wifiEntries.isEmpty();
 
+        final Preference emptyPref =
+                mWifiEntryPreferenceCategory.findPreference(PREF_KEY_EMPTY_WIFI_LIST);
         if (!hasAvailableWifiEntries) {
             setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
-            pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
+            if (emptyPref == null) {
+                Preference pref = new Preference(getPrefContext());
+                pref.setSelectable(false);
+                pref.setSummary(R.string.wifi_empty_list_wifi_on);
+                pref.setOrder(index);
+                pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+                mWifiEntryPreferenceCategory.addPreference(pref);
+            }
+            index++;
         } else {
+            if (emptyPref != null) {
+                mWifiEntryPreferenceCategory.removePreference(emptyPref);
+            }
             // Continuing showing progress bar for an additional delay to overlap with animation
             getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
         }
 
         mAddWifiNetworkPreference.setOrder(index++);
-        mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
+        if (mAddWifiNetworkPreference.getParent() != mWifiEntryPreferenceCategory) {
+            mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
+        }
         setAdditionalSettingsSummaries();
     }
 
+    private WifiEntryListUpdater getWifiEntryListUpdater() {
+        if (mWifiEntryListUpdater == null) {
+            mWifiEntryListUpdater = new WifiEntryListUpdater(this, wifiEntry -> {
+                final LongPressWifiEntryPreference pref =
+                        createLongPressWifiEntryPreference(wifiEntry);
+                // The button is only shown for WifiEntries with a help page.
+                pref.setOnButtonClickListener(preference -> {
+                    openSubscriptionHelpPage(preference.getWifiEntry());
+                });
+                return pref;
+            });
+        }
+        return mWifiEntryListUpdater;
+    }
+
     @VisibleForTesting
     PreferenceCategory getConnectedWifiPreferenceCategory() {
         if (mInternetUpdater.getInternetType() == InternetUpdater.INTERNET_WIFI) {
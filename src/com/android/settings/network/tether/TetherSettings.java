@@ -628,6 +628,12 @@ public class TetherSettings extends RestrictedSettingsFragment
                     return Arrays.asList(sir);
                 }
 
+                @Override
+                public boolean isIndexDataStatic() {
+                    // The page is replaced when the all in one tether flag is on.
+                    return false;
+                }
+
                 @Override
                 protected boolean isPageSearchEnabled(Context context) {
                     return !FeatureFlagUtils.isEnabled(context, FeatureFlags.TETHER_ALL_IN_ONE);
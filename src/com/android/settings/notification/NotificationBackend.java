@@ -27,7 +27,6 @@ import android.app.NotificationChannelGroup;
 import android.app.NotificationHistory;
 import android.app.NotificationManager;
 import android.app.usage.IUsageStatsManager;
-import android.app.usage.UsageEvents;
 import android.companion.ICompanionDeviceManager;
 import android.content.ComponentName;
 import android.content.Context;
@@ -46,7 +45,6 @@ import android.os.ServiceManager;
 import android.os.UserHandle;
 import android.service.notification.ConversationChannelWrapper;
 import android.service.notification.NotificationListenerFilter;
-import android.text.format.DateUtils;
 import android.util.IconDrawableFactory;
 import android.util.Log;
 
@@ -445,47 +443,28 @@ public class NotificationBackend {
     }
 
     protected void recordAggregatedUsageEvents(Context context, AppRow appRow) {
-        long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
-        UsageEvents events = null;
-        try {
-            events = sUsageStatsManager.queryEventsForPackageForUser(
-                    startTime, now, appRow.userId, appRow.pkg, context.getPackageName());
-        } catch (RemoteException e) {
-            e.printStackTrace();
-        }
-        recordAggregatedUsageEvents(events, appRow);
+        recordAggregatedUsageEvents(context, appRow, sUsageStatsManager,
+                NotificationUsageIndex.getInstance());
     }
 
-    protected void recordAggregatedUsageEvents(UsageEvents events, AppRow appRow) {
+    @VisibleForTesting
+    void recordAggregatedUsageEvents(Context context, AppRow appRow,
+            IUsageStatsManager usageStatsManager, NotificationUsageIndex usageIndex) {
         appRow.sentByChannel = new HashMap<>();
         appRow.sentByApp = new NotificationsSentState();
-        if (events != null) {
-            UsageEvents.Event event = new UsageEvents.Event();
-            while (events.hasNextEvent()) {
-                events.getNextEvent(event);
-
-                if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                    String channelId = event.mNotificationChannelId;
-                    if (channelId != null) {
-                        NotificationsSentState stats = appRow.sentByChannel.get(channelId);
-                        if (stats == null) {
-                            stats = new NotificationsSentState();
-                            appRow.sentByChannel.put(channelId, stats);
-                        }
-                        if (event.getTimeStamp() > stats.lastSent) {
-                            stats.lastSent = event.getTimeStamp();
-                            appRow.sentByApp.lastSent = event.getTimeStamp();
-                        }
-                        stats.sentCount++;
-                        appRow.sentByApp.sentCount++;
-                        calculateAvgSentCounts(stats);
-                    }
-                }
-
-            }
-            calculateAvgSentCounts(appRow.sentByApp);
-        }
+        final Map<String, NotificationUsageIndex.SentStats> sentStats =
+                usageIndex.getSentStatsByChannel(usageStatsManager, appRow.userId, appRow.pkg,
+                        context.getPackageName());
+        for (Map.Entry<String, NotificationUsageIndex.SentStats> entry : sentStats.entrySet()) {
+            NotificationsSentState stats = new NotificationsSentState();
+            stats.sentCount = entry.getValue().sentCount;
+            stats.lastSent = entry.getValue().lastSent;
+            calculateAvgSentCounts(stats);
+            appRow.sentByChannel.put(entry.getKey(), stats);
+            appRow.sentByApp.sentCount += stats.sentCount;
+            appRow.sentByApp.lastSent = Math.max(appRow.sentByApp.lastSent, stats.lastSent);
+        }
+        calculateAvgSentCounts(appRow.sentByApp);
     }
 
     public static CharSequence getSentSummary(Context context, NotificationsSentState state,
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user index of the notification interruptions sent by each package and channel during the
+ * last {@link #DAYS_TO_CHECK} days.
+ *
+ * <p>The first lookup for a user reads the whole window from UsageStatsManager. Later lookups only
+ * read the events logged since the previous one and expire the hourly buckets that fell out of the
+ * window, so the app list and the per-app notification screens share one cheap refresh.
+ */
+public final class NotificationUsageIndex {
+    private static final String TAG = "NotificationUsageIndex";
+
+    static final int DAYS_TO_CHECK = 7;
+    /** Upper bound of the channels tracked per user, each holding at most a week of buckets. */
+    private static final int MAX_TRACKED_CHANNELS = 2048;
+
+    private static final long WINDOW_MILLIS = DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK;
+
+    private static NotificationUsageIndex sInstance;
+
+    private final LongSupplier mClock;
+    private final SparseArray<UserIndex> mUserIndexes = new SparseArray<>();
+
+    private int mRefreshCount;
+    private int mLastRefreshEvents;
+    private long mTotalRefreshEvents;
+    private long mLastRefreshMillis;
+    private long mMaxRefreshMillis;
+    private long mTotalRefreshMillis;
+
+    /** How many notifications were sent and when the latest one was sent. */
+    public static final class SentStats {
+        public int sentCount;
+        public long lastSent;
+    }
+
+    public static synchronized NotificationUsageIndex getInstance() {
+        if (sInstance == null) {
+            sInstance = new NotificationUsageIndex(System::currentTimeMillis);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public NotificationUsageIndex(LongSupplier clock) {
+        mClock = clock;
+    }
+
+    /** Returns the stats of every package of {@code userId} that sent notifications. */
+    public synchronized Map<String, SentStats> getSentStatsByPackage(
+            IUsageStatsManager usageStatsManager, int userId, String callingPackage) {
+        final UserIndex index = refresh(usageStatsManager, userId, callingPackage);
+        final int size = index.mPackages.size();
+        final ArrayMap<String, SentStats> result = new ArrayMap<>(size);
+        for (int i = 0; i < size; i++) {
+            result.put(index.mPackages.keyAt(i), sumChannels(index.mPackages.valueAt(i)));
+        }
+        return result;
+    }
+
+    /** Returns the stats of {@code pkg}, or {@code null} if it didn't send notifications. */
+    public synchronized SentStats getSentStatsForPackage(IUsageStatsManager usageStatsManager,
+            int userId, String pkg, String callingPackage) {
+        final UserIndex index = refresh(usageStatsManager, userId, callingPackage);
+        final ArrayMap<String, ChannelCounts> channels = index.mPackages.get(pkg);
+        return channels == null ? null : sumChannels(channels);
+    }
+
+    /**
+     * Returns the stats of each channel of {@code pkg}. Interruptions without a channel are left
+     * out, as they can't be attributed to any of them.
+     */
+    public synchronized Map<String, SentStats> getSentStatsByChannel(
+            IUsageStatsManager usageStatsManager, int userId, String pkg,
+            String callingPackage) {
+        final UserIndex index = refresh(usageStatsManager, userId, callingPackage);
+        final ArrayMap<String, SentStats> result = new ArrayMap<>();
+        final ArrayMap<String, ChannelCounts> channels = index.mPackages.get(pkg);
+        if (channels != null) {
+            for (int i = 0; i < channels.size(); i++) {
+                final String channelId = channels.keyAt(i);
+                if (channelId != null) {
+                    result.put(channelId, channels.valueAt(i).toSentStats());
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Drops the index of every user, the next lookup reads the whole window again. */
+    public synchronized void clear() {
+        mUserIndexes.clear();
+    }
+
+    /** Returns the index size and refresh cost, for {@code dumpsys activity service Settings}. */
+    public synchronized JSONObject dumpStats() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("refreshes", mRefreshCount);
+        obj.put("last_events", mLastRefreshEvents);
+        obj.put("total_events", mTotalRefreshEvents);
+        obj.put("last_ms", mLastRefreshMillis);
+        obj.put("max_ms", mMaxRefreshMillis);
+        obj.put("total_ms", mTotalRefreshMillis);
+        final JSONObject users = new JSONObject();
+        for (int i = 0; i < mUserIndexes.size(); i++) {
+            final UserIndex index = mUserIndexes.valueAt(i);
+            int bucketCount = 0;
+            for (int p = 0; p < index.mPackages.size(); p++) {
+                final ArrayMap<String, ChannelCounts> channels = index.mPackages.valueAt(p);
+                for (int c = 0; c < channels.size(); c++) {
+                    bucketCount += channels.valueAt(c).mHourlyCounts.size();
+                }
+            }
+            final JSONObject userObj = new JSONObject();
+            userObj.put("packages", index.mPackages.size());
+            userObj.put("channels", index.mChannelCount);
+            userObj.put("buckets", bucketCount);
+            userObj.put("high_water_mark", index.mHighWaterMark);
+            users.put(String.valueOf(mUserIndexes.keyAt(i)), userObj);
+        }
+        obj.put("users", users);
+        return obj;
+    }
+
+    private UserIndex refresh(IUsageStatsManager usageStatsManager, int userId,
+            String callingPackage) {
+        final long now = mClock.getAsLong();
+        final long windowStart = now - WINDOW_MILLIS;
+        UserIndex index = mUserIndexes.get(userId);
+        // Rebuild if the clock went backwards, the stored events could be in the future now.
+        if (index == null || now < index.mHighWaterMark) {
+            index = new UserIndex(windowStart);
+            mUserIndexes.put(userId, index);
+        }
+        index.trim(getHour(windowStart));
+
+        final long startTime = Math.max(index.mHighWaterMark, windowStart);
+        final long refreshStart = SystemClock.elapsedRealtime();
+        UsageEvents events = null;
+        try {
+            events = usageStatsManager.queryEventsForUser(
+                    startTime, now, userId, callingPackage);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Failed to query usage events for user " + userId, e);
+        }
+        if (events == null) {
+            return index;
+        }
+        int eventCount = 0;
+        final UsageEvents.Event event = new UsageEvents.Event();
+        while (events.hasNextEvent()) {
+            events.getNextEvent(event);
+            if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
+                index.add(event.getPackageName(), event.mNotificationChannelId,
+                        event.getTimeStamp());
+                eventCount++;
+            }
+        }
+        // The end of the query range is exclusive, so the next refresh starts right there.
+        index.mHighWaterMark = now;
+
+        final long elapsedTime = SystemClock.elapsedRealtime() - refreshStart;
+        mRefreshCount++;
+        mLastRefreshEvents = eventCount;
+        mTotalRefreshEvents += eventCount;
+        mLastRefreshMillis = elapsedTime;
+        mMaxRefreshMillis = Math.max(mMaxRefreshMillis, elapsedTime);
+        mTotalRefreshMillis += elapsedTime;
+        return index;
+    }
+
+    private static SentStats sumChannels(ArrayMap<String, ChannelCounts> channels) {
+        final SentStats stats = new SentStats();
+        for (int i = 0; i < channels.size(); i++) {
+            final ChannelCounts counts = channels.valueAt(i);
+            stats.sentCount += counts.mSentCount;
+            stats.lastSent = Math.max(stats.lastSent, counts.mLastSent);
+        }
+        return stats;
+    }
+
+    private static int getHour(long timestamp) {
+        return (int) Math.max(0, timestamp / DateUtils.HOUR_IN_MILLIS);
+    }
+
+    private static final class UserIndex {
+        final ArrayMap<String, ArrayMap<String, ChannelCounts>> mPackages = new ArrayMap<>();
+        long mHighWaterMark;
+        int mChannelCount;
+
+        UserIndex(long highWaterMark) {
+            mHighWaterMark = highWaterMark;
+        }
+
+        void add(String pkg, String channelId, long timestamp) {
+            ArrayMap<String, ChannelCounts> channels = mPackages.get(pkg);
+            if (channels == null) {
+                channels = new ArrayMap<>();
+                mPackages.put(pkg, channels);
+            }
+            ChannelCounts counts = channels.get(channelId);
+            if (counts == null) {
+                if (mChannelCount >= MAX_TRACKED_CHANNELS) {
+                    evictOldestChannel();
+                    // The package itself may have been evicted.
+                    channels = mPackages.get(pkg);
+                    if (channels == null) {
+                        channels = new ArrayMap<>();
+                        mPackages.put(pkg, channels);
+                    }
+                }
+                counts = new ChannelCounts();
+                channels.put(channelId, counts);
+                mChannelCount++;
+            }
+            counts.add(timestamp);
+        }
+
+        void trim(int minHour) {
+            for (int p = mPackages.size() - 1; p >= 0; p--) {
+                final ArrayMap<String, ChannelCounts> channels = mPackages.valueAt(p);
+                for (int c = channels.size() - 1; c >= 0; c--) {
+                    final ChannelCounts counts = channels.valueAt(c);
+                    counts.trim(minHour);
+                    if (counts.mSentCount == 0) {
+                        channels.removeAt(c);
+                        mChannelCount--;
+                    }
+                }
+                if (channels.isEmpty()) {
+                    mPackages.removeAt(p);
+                }
+            }
+        }
+
+        private void evictOldestChannel() {
+            int oldestPackage = -1;
+            int oldestChannel = -1;
+            long oldestLastSent = Long.MAX_VALUE;
+            for (int p = 0; p < mPackages.size(); p++) {
+                final ArrayMap<String, ChannelCounts> channels = mPackages.valueAt(p);
+                for (int c = 0; c < channels.size(); c++) {
+                    if (channels.valueAt(c).mLastSent < oldestLastSent) {
+                        oldestLastSent = channels.valueAt(c).mLastSent;
+                        oldestPackage = p;
+                        oldestChannel = c;
+                    }
+                }
+            }
+            if (oldestPackage < 0) {
+                return;
+            }
+            final ArrayMap<String, ChannelCounts> channels = mPackages.valueAt(oldestPackage);
+            channels.removeAt(oldestChannel);
+            mChannelCount--;
+            if (channels.isEmpty()) {
+                mPackages.removeAt(oldestPackage);
+            }
+        }
+    }
+
+    /** Interruption counts of one channel, bucketed by the hour they were sent in. */
+    private static final class ChannelCounts {
+        final SparseIntArray mHourlyCounts = new SparseIntArray();
+        int mSentCount;
+        long mLastSent;
+
+        void add(long timestamp) {
+            final int hour = getHour(timestamp);
+            mHourlyCounts.put(hour, mHourlyCounts.get(hour) + 1);
+            mSentCount++;
+            mLastSent = Math.max(mLastSent, timestamp);
+        }
+
+        void trim(int minHour) {
+            int expired = 0;
+            while (expired < mHourlyCounts.size() && mHourlyCounts.keyAt(expired) < minHour) {
+                mSentCount -= mHourlyCounts.valueAt(expired);
+                expired++;
+            }
+            for (int i = expired - 1; i >= 0; i--) {
+                mHourlyCounts.removeAt(i);
+            }
+        }
+
+        SentStats toSentStats() {
+            final SentStats stats = new SentStats();
+            stats.sentCount = mSentCount;
+            stats.lastSent = mLastSent;
+            return stats;
+        }
+    }
+}
@@ -18,26 +18,52 @@ package com.android.settings.notification.history;
 
 import android.app.NotificationHistory;
 import android.app.NotificationHistory.HistoricalNotification;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.LocaleList;
 import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.LruCache;
 import android.util.Slog;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.notification.NotificationBackend;
+import com.android.settingslib.applications.AppIconCacheManager;
 import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class HistoryLoader {
     private static final String TAG = "HistoryLoader";
+
+    // Packages are published in pages, so the most recent ones show up before the labels and
+    // icons of all the others are loaded.
+    @VisibleForTesting
+    static final int PAGE_SIZE = 8;
+    private static final int MAX_CACHED_LABELS = 64;
+
+    // Labels are shared by all loaders, icons are cached by the AppIconCacheManager. All labels
+    // are dropped when the locales change, and those of a package when it is updated or removed.
+    private static final LruCache<String, CharSequence> sLabelCache =
+            new LruCache<>(MAX_CACHED_LABELS);
+    private static LocaleList sLabelLocales;
+    private static BroadcastReceiver sPackageChangeReceiver;
+
     private final Context mContext;
     private final NotificationBackend mBackend;
     private final PackageManager mPm;
+    private volatile boolean mCanceled;
 
     public HistoryLoader(Context context, NotificationBackend backend, PackageManager pm) {
         mContext = context;
@@ -45,55 +71,154 @@ public class HistoryLoader {
         mPm = pm;
     }
 
+    /**
+     * Loads the notification history grouped by package, and delivers it to {@code listener} in
+     * pages, most recent packages first. An empty history is delivered as a single empty page.
+     */
     public void load(OnHistoryLoaderListener listener) {
         ThreadUtils.postOnBackgroundThread(() -> {
             try {
-                Map<String, NotificationHistoryPackage> historicalNotifications = new HashMap<>();
                 NotificationHistory history =
                         mBackend.getNotificationHistory(mContext.getPackageName(),
                                 mContext.getAttributionTag());
-                while (history.hasNextNotification()) {
-                    HistoricalNotification hn = history.getNextNotification();
-
-                    String key = hn.getPackage() + "|" + hn.getUid();
-                    NotificationHistoryPackage hnsForPackage = historicalNotifications.getOrDefault(
-                            key,
-                            new NotificationHistoryPackage(hn.getPackage(), hn.getUid()));
-                    hnsForPackage.notifications.add(hn);
-                    historicalNotifications.put(key, hnsForPackage);
+                List<NotificationHistoryPackage> packages = groupByPackage(history);
+                if (packages.isEmpty()) {
+                    postPage(listener, packages, 0 /* startIndex */);
+                    return;
                 }
-                List<NotificationHistoryPackage> packages =
-                        new ArrayList<>(historicalNotifications.values());
-                Collections.sort(packages,
-                        (o1, o2) -> -1 * Long.compare(o1.getMostRecent(), o2.getMostRecent()));
-                for (NotificationHistoryPackage nhp : packages) {
-                    ApplicationInfo info;
-                    try {
-                        info = mPm.getApplicationInfoAsUser(
-                                nhp.pkgName,
-                                PackageManager.MATCH_UNINSTALLED_PACKAGES
-                                        | PackageManager.MATCH_DISABLED_COMPONENTS
-                                        | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
-                                        | PackageManager.MATCH_DIRECT_BOOT_AWARE,
-                                UserHandle.getUserId(nhp.uid));
-                        if (info != null) {
-                            nhp.label = String.valueOf(mPm.getApplicationLabel(info));
-                            nhp.icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
-                                    UserHandle.of(UserHandle.getUserId(nhp.uid)));
-                        }
-                    } catch (PackageManager.NameNotFoundException e) {
-                        // app is gone, just show package name and generic icon
-                        nhp.icon = mPm.getDefaultActivityIcon();
+                prepareLabelCache(mContext);
+                for (int start = 0; start < packages.size(); start += PAGE_SIZE) {
+                    if (mCanceled) {
+                        return;
                     }
+                    List<NotificationHistoryPackage> page = new ArrayList<>(packages.subList(
+                            start, Math.min(start + PAGE_SIZE, packages.size())));
+                    for (NotificationHistoryPackage nhp : page) {
+                        loadLabelAndIcon(nhp);
+                    }
+                    postPage(listener, page, start);
                 }
-                ThreadUtils.postOnMainThread(() -> listener.onHistoryLoaded(packages));
             } catch (Exception e) {
                 Slog.e(TAG, "Error loading history", e);
             }
         });
     }
 
+    /** Stops delivering pages, e.g. when the history is loaded again. */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    private void postPage(OnHistoryLoaderListener listener,
+            List<NotificationHistoryPackage> page, int startIndex) {
+        ThreadUtils.postOnMainThread(() -> {
+            if (!mCanceled) {
+                listener.onHistoryLoaded(page, startIndex);
+            }
+        });
+    }
+
+    private static synchronized void prepareLabelCache(Context context) {
+        final LocaleList locales = context.getResources().getConfiguration().getLocales();
+        if (!locales.equals(sLabelLocales)) {
+            sLabelCache.evictAll();
+            sLabelLocales = locales;
+        }
+        if (sPackageChangeReceiver == null) {
+            sPackageChangeReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    final Uri data = intent.getData();
+                    if (data != null) {
+                        onPackageChanged(data.getSchemeSpecificPart());
+                    }
+                }
+            };
+            final IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.getApplicationContext().registerReceiverAsUser(sPackageChangeReceiver,
+                    UserHandle.ALL, filter, null /* broadcastPermission */, null /* scheduler */);
+        }
+    }
+
+    /** Drops the labels of {@code packageName} of all users. */
+    @VisibleForTesting
+    static void onPackageChanged(String packageName) {
+        final String prefix = packageName + "|";
+        for (String key : sLabelCache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                sLabelCache.remove(key);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static List<NotificationHistoryPackage> groupByPackage(NotificationHistory history) {
+        SparseArray<Map<String, NotificationHistoryPackage>> packagesByUid = new SparseArray<>();
+        List<NotificationHistoryPackage> packages = new ArrayList<>();
+        while (history.hasNextNotification()) {
+            HistoricalNotification hn = history.getNextNotification();
+
+            Map<String, NotificationHistoryPackage> packagesForUid = packagesByUid.get(hn.getUid());
+            if (packagesForUid == null) {
+                packagesForUid = new ArrayMap<>();
+                packagesByUid.put(hn.getUid(), packagesForUid);
+            }
+            NotificationHistoryPackage hnsForPackage = packagesForUid.get(hn.getPackage());
+            if (hnsForPackage == null) {
+                hnsForPackage = new NotificationHistoryPackage(hn.getPackage(), hn.getUid());
+                packagesForUid.put(hn.getPackage(), hnsForPackage);
+                packages.add(hnsForPackage);
+            }
+            hnsForPackage.notifications.add(hn);
+        }
+        Collections.sort(packages,
+                (o1, o2) -> -1 * Long.compare(o1.getMostRecent(), o2.getMostRecent()));
+        return packages;
+    }
+
+    private void loadLabelAndIcon(NotificationHistoryPackage nhp) {
+        final int userId = UserHandle.getUserId(nhp.uid);
+        final String labelKey = nhp.pkgName + "|" + userId;
+        final CharSequence cachedLabel = sLabelCache.get(labelKey);
+        final Drawable cachedIcon = AppIconCacheManager.getInstance().get(nhp.pkgName, nhp.uid);
+        if (cachedLabel != null && cachedIcon != null) {
+            nhp.label = cachedLabel;
+            nhp.icon = cachedIcon;
+            return;
+        }
+        ApplicationInfo info;
+        try {
+            info = mPm.getApplicationInfoAsUser(
+                    nhp.pkgName,
+                    PackageManager.MATCH_UNINSTALLED_PACKAGES
+                            | PackageManager.MATCH_DISABLED_COMPONENTS
+                            | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
+                            | PackageManager.MATCH_DIRECT_BOOT_AWARE,
+                    userId);
+            if (info != null) {
+                nhp.label = String.valueOf(mPm.getApplicationLabel(info));
+                nhp.icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
+                        UserHandle.of(userId));
+                sLabelCache.put(labelKey, nhp.label);
+                AppIconCacheManager.getInstance().put(nhp.pkgName, nhp.uid, nhp.icon);
+            }
+        } catch (PackageManager.NameNotFoundException e) {
+            // app is gone, just show package name and generic icon
+            nhp.icon = mPm.getDefaultActivityIcon();
+        }
+    }
+
     interface OnHistoryLoaderListener {
-        void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage);
+        /**
+         * Called on the main thread for each page of packages, in order.
+         *
+         * @param startIndex the index of the first package of the page in the whole history
+         */
+        void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage,
+                int startIndex);
     }
 }
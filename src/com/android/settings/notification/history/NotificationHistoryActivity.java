@@ -156,10 +156,14 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         }
     }
 
-    private HistoryLoader.OnHistoryLoaderListener mOnHistoryLoaderListener = notifications -> {
-        findViewById(R.id.today_list).setVisibility(
-                notifications.isEmpty() ? View.GONE : View.VISIBLE);
-        mCountdownLatch.countDown();
+    private HistoryLoader.OnHistoryLoaderListener mOnHistoryLoaderListener =
+            (notifications, firstIndex) -> {
+        // Packages are delivered in pages, only the first one completes the loading.
+        if (firstIndex == 0) {
+            findViewById(R.id.today_list).setVisibility(
+                    notifications.isEmpty() ? View.GONE : View.VISIBLE);
+            mCountdownLatch.countDown();
+        }
         View recyclerView = mTodayView.findViewById(R.id.apps);
         recyclerView.setClipToOutline(true);
         mTodayView.setOutlineProvider(mOutlineProvider);
@@ -184,7 +188,7 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
             header.setStateDescription(container.getVisibility() == View.VISIBLE
                     ? getString(R.string.condition_expand_hide)
                     : getString(R.string.condition_expand_show));
-            int finalI = i;
+            int finalI = firstIndex + i;
             header.setOnClickListener(v -> {
                 container.setVisibility(container.getVisibility() == View.VISIBLE
                         ? View.GONE : View.VISIBLE);
@@ -267,6 +271,9 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         mCountdownLatch = new CountDownLatch(2);
 
         mTodayView.removeAllViews();
+        if (mHistoryLoader != null) {
+            mHistoryLoader.cancel();
+        }
         mHistoryLoader = new HistoryLoader(this, new NotificationBackend(), mPm);
         mHistoryLoader.load(mOnHistoryLoaderListener);
 
@@ -303,6 +310,9 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
 
     @Override
     public void onPause() {
+        if (mHistoryLoader != null) {
+            mHistoryLoader.cancel();
+        }
         try {
             mListener.unregisterAsSystemService();
         } catch (RemoteException e) {
@@ -55,6 +55,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.panel.PanelLoggingContract.PanelClosedKeys;
+import com.android.settings.slices.SliceBackgroundWorker;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -105,6 +106,7 @@ public class PanelFragment extends Fragment {
     private ProgressBar mProgressBar;
 
     private final Map<Uri, LiveData<Slice>> mSliceLiveData = new LinkedHashMap<>();
+    private List<Uri> mForegroundSliceUris;
 
     @VisibleForTesting
     PanelSlicesLoaderCountdownLatch mPanelSlicesLoaderCountdownLatch;
@@ -329,6 +331,9 @@ public class PanelFragment extends Fragment {
     private void loadAllSlices() {
         mSliceLiveData.clear();
         final List<Uri> sliceUris = mPanel.getSlices();
+        clearForegroundSlices();
+        mForegroundSliceUris = sliceUris;
+        SliceBackgroundWorker.setForegroundSlices(mForegroundSliceUris, true /* foreground */);
         mPanelSlicesLoaderCountdownLatch = new PanelSlicesLoaderCountdownLatch(sliceUris.size());
 
         for (Uri uri : sliceUris) {
@@ -386,6 +391,14 @@ public class PanelFragment extends Fragment {
         }
     }
 
+    private void clearForegroundSlices() {
+        if (mForegroundSliceUris != null) {
+            SliceBackgroundWorker.setForegroundSlices(mForegroundSliceUris,
+                    false /* foreground */);
+            mForegroundSliceUris = null;
+        }
+    }
+
     private void removeSliceLiveData(Uri uri) {
         final List<String> allowList = Arrays.asList(
                 getResources().getStringArray(
@@ -467,6 +480,7 @@ public class PanelFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        clearForegroundSlices();
 
         if (TextUtils.isEmpty(mPanelClosedKey)) {
             mPanelClosedKey = PanelClosedKeys.KEY_OTHERS;
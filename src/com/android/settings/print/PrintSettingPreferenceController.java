@@ -30,6 +30,7 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationSources;
 import com.android.settingslib.RestrictedPreference;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnStart;
@@ -65,6 +66,12 @@ public class PrintSettingPreferenceController extends BasePreferenceController i
                 ? AVAILABLE : UNSUPPORTED_ON_DEVICE;
     }
 
+    @Override
+    protected InvalidationSources getAvailabilityInvalidationSources() {
+        // Neither the printing feature nor the print manager of the user change at runtime.
+        return new InvalidationSources.Builder().build();
+    }
+
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
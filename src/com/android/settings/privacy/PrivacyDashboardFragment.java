@@ -103,6 +103,12 @@ public class PrivacyDashboardFragment extends DashboardFragment {
                     return super.getXmlResourcesToIndex(context, enabled);
                 }
 
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Gated on the Safety Center state.
+                    return false;
+                }
+
                 @Override
                 public List<AbstractPreferenceController> createPreferenceControllers(
                         Context context) {
@@ -138,6 +138,12 @@ public class MoreSecurityPrivacyFragment extends DashboardFragment {
                     return super.getXmlResourcesToIndex(context, enabled);
                 }
 
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Gated on the Safety Center state.
+                    return false;
+                }
+
                 @Override
                 public List<AbstractPreferenceController> createPreferenceControllers(
                         Context context) {
@@ -29,9 +29,11 @@ import android.provider.SearchIndexableResource;
 import android.util.Log;
 
 import androidx.annotation.CallSuper;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.InvalidationSources;
 import com.android.settings.core.PreferenceControllerListHelper;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.core.PreferenceXmlParserUtils;
@@ -76,6 +78,16 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
         return null;
     }
 
+    /**
+     * Returns whether {@link #getXmlResourcesToIndex} and {@link #getRawDataToIndex} only depend
+     * on the build, the locales and the resource overlays, so their results can be kept in the
+     * {@link SearchIndexSnapshot}. Providers that gate them on flags, settings or installed
+     * packages must return {@code false}, or changes of that state won't reach search.
+     */
+    public boolean isIndexDataStatic() {
+        return true;
+    }
+
     @Override
     @CallSuper
     public List<SearchIndexableRaw> getDynamicRawDataToIndex(Context context, boolean enabled) {
@@ -167,6 +179,16 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
         return null;
     }
 
+    /**
+     * Returns the sources that invalidate {@link #getNonIndexableKeys(Context)}, or null if the
+     * keys can't be cached and must be recomputed for every query. Package and user changes
+     * always invalidate the keys and don't need to be declared.
+     */
+    @Nullable
+    public InvalidationSources getNonIndexableKeysInvalidationSources(Context context) {
+        return null;
+    }
+
     /**
      * Returns true if the page should be considered in search query. If return false, entire page
      * will be suppressed during search query.
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.InvalidationMonitor;
+import com.android.settings.core.InvalidationSources;
+import com.android.settingslib.search.Indexable;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes the non-indexable keys of all search index providers on a bounded worker pool, with
+ * a deadline per provider so one slow controller can't stall the whole query.
+ *
+ * <p>Results of providers that declare their invalidation sources through
+ * {@link BaseSearchIndexProvider#getNonIndexableKeysInvalidationSources(Context)} are cached
+ * until one of those sources fires. Package and user changes drop all results.
+ *
+ * <p>A provider that misses its deadline keeps running in the background, and the query uses its
+ * last keys meanwhile, if they are recent and weren't invalidated since. Otherwise the query
+ * waits for the result, since leaving its keys out would index unavailable settings.
+ */
+public class NonIndexableKeysCache {
+
+    private static final String TAG = "NonIndexableKeysCache";
+
+    private static final long PROVIDER_TIMEOUT_MS = 1000;
+    // Upper bound for a provider waiting in the queue behind slow providers.
+    private static final long QUERY_TIMEOUT_MS = 5000;
+    private static final int MAX_THREADS = 4;
+    // Oldest keys a provider that missed its deadline may fall back to.
+    @VisibleForTesting
+    static final long LAST_KEYS_MAX_AGE_MS = 5 * 60 * 1000;
+
+    private static final Collection<String> INVALID_KEYS;
+
+    static {
+        INVALID_KEYS = new ArraySet<>();
+        INVALID_KEYS.add(null);
+        INVALID_KEYS.add("");
+    }
+
+    private static NonIndexableKeysCache sInstance;
+
+    private final long mProviderTimeoutMs;
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private final Map<String, ProviderStats> mStats = new ConcurrentHashMap<>();
+
+    private boolean mMonitoringPackagesAndUsers;
+
+    /** Returns the process-wide instance. */
+    public static synchronized NonIndexableKeysCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new NonIndexableKeysCache(PROVIDER_TIMEOUT_MS);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NonIndexableKeysCache(long providerTimeoutMs) {
+        mProviderTimeoutMs = providerTimeoutMs;
+        final int threads = Math.max(1,
+                Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        mExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the combined non-indexable keys of all {@code bundles}, reusing cached results of
+     * providers whose invalidation sources haven't fired since they were computed.
+     */
+    public List<String> getNonIndexableKeys(Context context,
+            Collection<SearchIndexableData> bundles) {
+        monitorPackagesAndUsersIfNeeded(context);
+        final long queryStartTime = SystemClock.elapsedRealtime();
+        final List<String> nonIndexableKeys = new ArrayList<>();
+        final List<ProviderTask> tasks = new ArrayList<>();
+
+        for (SearchIndexableData bundle : bundles) {
+            final String name = bundle.getTargetClass().getName();
+            final Entry entry = mEntries.get(name);
+            final List<String> cachedKeys = entry != null && entry.mValid ? entry.mKeys : null;
+            if (cachedKeys != null) {
+                getStats(name).mCacheHits.incrementAndGet();
+                nonIndexableKeys.addAll(cachedKeys);
+                continue;
+            }
+            final ProviderTask task = new ProviderTask(context, name,
+                    bundle.getSearchIndexProvider());
+            task.mFuture = mExecutor.submit(task::compute);
+            tasks.add(task);
+        }
+
+        for (ProviderTask task : tasks) {
+            final List<String> keys = task.await(queryStartTime);
+            if (keys != null) {
+                nonIndexableKeys.addAll(keys);
+            }
+        }
+        return nonIndexableKeys;
+    }
+
+    /** Drops all cached results, including the last keys used after a missed deadline. */
+    public void invalidateAll() {
+        for (Entry entry : mEntries.values()) {
+            entry.invalidate();
+        }
+    }
+
+    /** Returns the per-provider timing, for {@code SettingsDumpService}. */
+    public JSONObject dumpStats() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        for (Map.Entry<String, ProviderStats> stats : mStats.entrySet()) {
+            final ProviderStats value = stats.getValue();
+            final JSONObject providerObj = new JSONObject();
+            providerObj.put("computed", value.mComputeCount.get());
+            providerObj.put("cache_hits", value.mCacheHits.get());
+            providerObj.put("timeouts", value.mTimeouts.get());
+            providerObj.put("errors", value.mErrors.get());
+            providerObj.put("last_ms", value.mLastMillis.get());
+            providerObj.put("max_ms", value.mMaxMillis.get());
+            providerObj.put("total_ms", value.mTotalMillis.get());
+            obj.put(stats.getKey(), providerObj);
+        }
+        return obj;
+    }
+
+    private ProviderStats getStats(String name) {
+        return mStats.computeIfAbsent(name, key -> new ProviderStats());
+    }
+
+    private synchronized void monitorPackagesAndUsersIfNeeded(Context context) {
+        if (mMonitoringPackagesAndUsers) {
+            return;
+        }
+        mMonitoringPackagesAndUsers = true;
+        // Most keys come from controller availability, which often depends on installed
+        // packages or on the user, so these invalidate every provider.
+        InvalidationMonitor.getInstance(context).register(new InvalidationSources.Builder()
+                .addFlags(InvalidationSources.FLAG_PACKAGES | InvalidationSources.FLAG_USERS)
+                .build(), this::invalidateAll);
+    }
+
+    private Entry getEntry(Context context, String name,
+            @Nullable InvalidationSources sources) {
+        return mEntries.computeIfAbsent(name, key -> {
+            final Entry entry = new Entry(sources != null);
+            if (sources != null) {
+                InvalidationMonitor.getInstance(context).register(sources, entry::invalidate);
+            }
+            return entry;
+        });
+    }
+
+    private static class Entry {
+        // Whether the provider declared its invalidation sources, so its keys can be cached.
+        final boolean mCacheable;
+        final AtomicInteger mGeneration = new AtomicInteger();
+        volatile List<String> mKeys;
+        volatile long mComputedTime;
+        volatile boolean mValid;
+
+        Entry(boolean cacheable) {
+            mCacheable = cacheable;
+        }
+
+        synchronized void invalidate() {
+            mGeneration.incrementAndGet();
+            mValid = false;
+            mKeys = null;
+        }
+
+        /** Keeps {@code keys} unless the entry was invalidated since {@code generation}. */
+        synchronized void set(List<String> keys, int generation, long computedTime) {
+            if (generation != mGeneration.get()) {
+                return;
+            }
+            mKeys = keys;
+            mComputedTime = computedTime;
+            mValid = mCacheable;
+        }
+
+        @Nullable
+        List<String> getLastKeys(long now) {
+            final List<String> keys = mKeys;
+            return keys != null && now - mComputedTime <= LAST_KEYS_MAX_AGE_MS ? keys : null;
+        }
+    }
+
+    private static class ProviderStats {
+        final AtomicInteger mComputeCount = new AtomicInteger();
+        final AtomicInteger mCacheHits = new AtomicInteger();
+        final AtomicInteger mTimeouts = new AtomicInteger();
+        final AtomicInteger mErrors = new AtomicInteger();
+        final AtomicLong mLastMillis = new AtomicLong();
+        final AtomicLong mMaxMillis = new AtomicLong();
+        final AtomicLong mTotalMillis = new AtomicLong();
+    }
+
+    private class ProviderTask {
+        private final Context mContext;
+        private final String mName;
+        private final Indexable.SearchIndexProvider mProvider;
+        private volatile long mStartTime;
+        private Future<List<String>> mFuture;
+
+        ProviderTask(Context context, String name, Indexable.SearchIndexProvider provider) {
+            mContext = context;
+            mName = name;
+            mProvider = provider;
+        }
+
+        List<String> compute() {
+            mStartTime = SystemClock.elapsedRealtime();
+            InvalidationSources sources = null;
+            if (mProvider instanceof BaseSearchIndexProvider) {
+                sources = ((BaseSearchIndexProvider) mProvider)
+                        .getNonIndexableKeysInvalidationSources(mContext);
+            }
+            final Entry entry = getEntry(mContext, mName, sources);
+            final int generation = entry.mGeneration.get();
+
+            final List<String> keys = mProvider.getNonIndexableKeys(mContext);
+            final List<String> result = keys == null ? new ArrayList<>() : keys;
+            if (result.removeAll(INVALID_KEYS)) {
+                Log.v(TAG, mProvider + " tried to add an empty non-indexable key");
+            }
+
+            final long duration = SystemClock.elapsedRealtime() - mStartTime;
+            final ProviderStats stats = getStats(mName);
+            stats.mComputeCount.incrementAndGet();
+            stats.mLastMillis.set(duration);
+            stats.mMaxMillis.accumulateAndGet(duration, Math::max);
+            stats.mTotalMillis.addAndGet(duration);
+            if (SettingsSearchIndexablesProvider.DEBUG) {
+                Log.d(TAG, mName + ": non-indexables " + result.size() + ", total time "
+                        + duration);
+            }
+
+            entry.set(result, generation, SystemClock.elapsedRealtime());
+            return result;
+        }
+
+        @Nullable
+        List<String> await(long queryStartTime) {
+            boolean waitForResult = false;
+            while (true) {
+                final long now = SystemClock.elapsedRealtime();
+                final long startTime = mStartTime;
+                final long deadline = startTime == 0
+                        ? queryStartTime + QUERY_TIMEOUT_MS
+                        : Math.min(startTime + mProviderTimeoutMs,
+                                queryStartTime + QUERY_TIMEOUT_MS);
+                try {
+                    if (waitForResult) {
+                        return mFuture.get();
+                    }
+                    return mFuture.get(Math.max(0, deadline - now), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (startTime == 0 && mStartTime != 0
+                            && SystemClock.elapsedRealtime() < queryStartTime + QUERY_TIMEOUT_MS) {
+                        // Started while waiting in the queue, give it its own deadline.
+                        continue;
+                    }
+                    getStats(mName).mTimeouts.incrementAndGet();
+                    final Entry entry = mEntries.get(mName);
+                    final List<String> lastKeys = entry == null
+                            ? null : entry.getLastKeys(SystemClock.elapsedRealtime());
+                    if (lastKeys == null) {
+                        // Without current keys of this provider, its unavailable settings would
+                        // be indexed, so wait for the result.
+                        Log.w(TAG, "Waiting for non-indexable keys from: " + mName);
+                        waitForResult = true;
+                        continue;
+                    }
+                    // Let the computation finish in the background, the next query can use it.
+                    Log.w(TAG, "Timed out getting non-indexable keys from: " + mName);
+                    return lastKeys;
+                } catch (ExecutionException e) {
+                    return onError(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+
+        @Nullable
+        private List<String> onError(Throwable e) {
+            // Catch a generic crash. In the absence of the catch, the background thread will
+            // silently fail anyway, so we aren't losing information by catching the exception.
+            // We crash when the system property exists so that we can test if crashes need to
+            // be fixed.
+            // The gain is that if there is a crash in a specific controller, we don't lose all
+            // non-indexable keys, but we can still find specific crashes in development.
+            if (System.getProperty(SettingsSearchIndexablesProvider.SYSPROP_CRASH_ON_ERROR)
+                    != null) {
+                throw new RuntimeException(e);
+            }
+            getStats(mName).mErrors.incrementAndGet();
+            Log.e(TAG, "Error trying to get non-indexable keys from: " + mName, e);
+            return null;
+        }
+    }
+}
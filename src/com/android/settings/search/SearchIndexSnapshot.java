@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.PreferenceMetadataCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Persistent snapshot of the static part of the search index served by
+ * {@link SettingsSearchIndexablesProvider}: the xml resource rows and the raw data rows.
+ *
+ * <p>The snapshot is keyed by build fingerprint, locales and resource overlays, so it is
+ * rebuilt after an OTA, a locale change or an overlay change, and reused otherwise. It only
+ * holds the rows of providers whose data depends on nothing else, see
+ * {@link BaseSearchIndexProvider#isIndexDataStatic()}.
+ */
+public class SearchIndexSnapshot {
+
+    private static final String TAG = "SearchIndexSnapshot";
+
+    @VisibleForTesting
+    static final String FILE_NAME = "search_index_snapshot";
+    @VisibleForTesting
+    static final int VERSION = 2;
+
+    private static final int SECTION_ABSENT = -1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_STRING = 3;
+
+    private final File mFile;
+    private final String mKey;
+
+    private boolean mLoaded;
+    private List<Object[]> mXmlResourceRows;
+    private List<Object[]> mRawRows;
+
+    public SearchIndexSnapshot(Context context) {
+        this(new File(context.getCacheDir(), FILE_NAME), computeKey(context));
+    }
+
+    @VisibleForTesting
+    SearchIndexSnapshot(File file, String key) {
+        mFile = file;
+        mKey = key;
+    }
+
+    /**
+     * Returns the xml resource rows from the snapshot, building and persisting them with
+     * {@code builder} when the snapshot doesn't have them yet.
+     */
+    public synchronized List<Object[]> getXmlResourceRows(Supplier<List<Object[]>> builder) {
+        loadIfNeeded();
+        if (mXmlResourceRows == null) {
+            mXmlResourceRows = Collections.unmodifiableList(builder.get());
+            save();
+        }
+        return mXmlResourceRows;
+    }
+
+    /**
+     * Returns the raw data rows from the snapshot, building and persisting them with
+     * {@code builder} when the snapshot doesn't have them yet.
+     */
+    public synchronized List<Object[]> getRawRows(Supplier<List<Object[]>> builder) {
+        loadIfNeeded();
+        if (mRawRows == null) {
+            mRawRows = Collections.unmodifiableList(builder.get());
+            save();
+        }
+        return mRawRows;
+    }
+
+    /** Returns whether the configuration changed since this snapshot was created. */
+    public boolean isStale(Context context) {
+        return !mKey.equals(computeKey(context));
+    }
+
+    /** Drops the in-memory and on-disk snapshot, the next query rebuilds it. */
+    public synchronized void invalidate() {
+        mLoaded = true;
+        mXmlResourceRows = null;
+        mRawRows = null;
+        if (mFile.exists() && !mFile.delete()) {
+            Log.w(TAG, "Failed to delete " + mFile);
+        }
+    }
+
+    @VisibleForTesting
+    static String computeKey(Context context) {
+        final StringBuilder key = new StringBuilder()
+                .append(Build.FINGERPRINT)
+                .append('|')
+                .append(context.getResources().getConfiguration().getLocales().toLanguageTags());
+        key.append('|').append(PreferenceMetadataCache.getOverlayKey(context));
+        return key.toString();
+    }
+
+    private void loadIfNeeded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != VERSION || !mKey.equals(in.readUTF())) {
+                Log.d(TAG, "Snapshot is stale, rebuilding");
+                return;
+            }
+            final List<Object[]> xmlResourceRows = readSection(in);
+            final List<Object[]> rawRows = readSection(in);
+            mXmlResourceRows = xmlResourceRows == null
+                    ? null : Collections.unmodifiableList(xmlResourceRows);
+            mRawRows = rawRows == null ? null : Collections.unmodifiableList(rawRows);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to read snapshot, rebuilding", e);
+            mXmlResourceRows = null;
+            mRawRows = null;
+        }
+    }
+
+    private void save() {
+        final File tmpFile = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(VERSION);
+            out.writeUTF(mKey);
+            writeSection(out, mXmlResourceRows);
+            writeSection(out, mRawRows);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write snapshot", e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(mFile)) {
+            Log.w(TAG, "Failed to commit snapshot");
+            tmpFile.delete();
+        }
+    }
+
+    @Nullable
+    private static List<Object[]> readSection(DataInputStream in) throws IOException {
+        final int rowCount = in.readInt();
+        if (rowCount == SECTION_ABSENT) {
+            return null;
+        }
+        final List<Object[]> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            final Object[] row = new Object[in.readInt()];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = readValue(in);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void writeSection(DataOutputStream out, @Nullable List<Object[]> rows)
+            throws IOException {
+        if (rows == null) {
+            out.writeInt(SECTION_ABSENT);
+            return;
+        }
+        out.writeInt(rows.size());
+        for (Object[] row : rows) {
+            out.writeInt(row.length);
+            for (Object value : row) {
+                writeValue(out, value);
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_STRING:
+                return in.readUTF();
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof CharSequence) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF(value.toString());
+        } else {
+            throw new IOException("Unsupported value type " + value.getClass());
+        }
+    }
+}
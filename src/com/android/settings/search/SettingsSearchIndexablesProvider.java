@@ -56,7 +56,6 @@ import android.provider.SearchIndexablesProvider;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
 import android.util.ArrayMap;
-import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -95,16 +94,11 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
     private static final String TAG = "SettingsSearchProvider";
 
-    private static final Collection<String> INVALID_KEYS;
-
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
 
-    static {
-        INVALID_KEYS = new ArraySet<>();
-        INVALID_KEYS.add(null);
-        INVALID_KEYS.add("");
-    }
+    // Static xml resources and raw data, persisted across reindexes
+    private SearchIndexSnapshot mSnapshot;
 
     @Override
     public boolean onCreate() {
@@ -115,18 +109,13 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryXmlResources(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_XML_RES_COLUMNS);
-        final List<SearchIndexableResource> resources =
-                getSearchIndexableResourcesFromProvider(getContext());
-        for (SearchIndexableResource val : resources) {
-            final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
-            ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
-            ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
-            ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = val.className;
-            ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
-            ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // intent target class
-            cursor.addRow(ref);
+        final List<Object[]> rows = getSnapshot().getXmlResourceRows(
+                () -> createXmlResourceRows(getContext(), true /* staticData */));
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        for (Object[] row : createXmlResourceRows(getContext(), false /* staticData */)) {
+            cursor.addRow(row);
         }
 
         return cursor;
@@ -138,9 +127,13 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryRawData(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
-        final List<SearchIndexableRaw> raws = getSearchIndexableRawFromProvider(getContext());
-        for (SearchIndexableRaw val : raws) {
-            cursor.addRow(createIndexableRawColumnObjects(val));
+        final List<Object[]> rows = getSnapshot().getRawRows(
+                () -> createRawRows(getContext(), true /* staticData */));
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        for (Object[] row : createRawRows(getContext(), false /* staticData */)) {
+            cursor.addRow(row);
         }
 
         return cursor;
@@ -270,64 +263,59 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return cursor;
     }
 
-    private List<String> getNonIndexableKeysFromProvider(Context context) {
-        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
-                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
-        for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
-            }
-
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
-            }
-
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
-            }
+    @VisibleForTesting
+    synchronized SearchIndexSnapshot getSnapshot() {
+        if (mSnapshot == null || mSnapshot.isStale(getContext())) {
+            mSnapshot = new SearchIndexSnapshot(getContext());
+        }
+        return mSnapshot;
+    }
 
-            if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
-            }
+    private List<Object[]> createXmlResourceRows(Context context, boolean staticData) {
+        final List<SearchIndexableResource> resources =
+                getSearchIndexableResourcesFromProvider(context, staticData);
+        final List<Object[]> rows = new ArrayList<>(resources.size());
+        for (SearchIndexableResource val : resources) {
+            final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
+            ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
+            ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
+            ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = val.className;
+            ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
+            ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
+            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
+            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // intent target class
+            rows.add(ref);
+        }
+        return rows;
+    }
 
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+    private List<Object[]> createRawRows(Context context, boolean staticData) {
+        final List<SearchIndexableRaw> raws = getSearchIndexableRawFromProvider(context,
+                staticData);
+        final List<Object[]> rows = new ArrayList<>(raws.size());
+        for (SearchIndexableRaw val : raws) {
+            rows.add(createIndexableRawColumnObjects(val));
         }
+        return rows;
+    }
 
-        return nonIndexableKeys;
+    private List<String> getNonIndexableKeysFromProvider(Context context) {
+        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
+                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
+        return NonIndexableKeysCache.getInstance().getNonIndexableKeys(context, bundles);
     }
 
-    private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
+    private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context,
+            boolean staticData) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
         List<SearchIndexableResource> resourceList = new ArrayList<>();
 
         for (SearchIndexableData bundle : bundles) {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+            if (isIndexDataStatic(provider) != staticData) {
+                continue;
+            }
             final List<SearchIndexableResource> resList =
                     provider.getXmlResourcesToIndex(context, true);
 
@@ -347,13 +335,17 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return resourceList;
     }
 
-    private List<SearchIndexableRaw> getSearchIndexableRawFromProvider(Context context) {
+    private List<SearchIndexableRaw> getSearchIndexableRawFromProvider(Context context,
+            boolean staticData) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
         final List<SearchIndexableRaw> rawList = new ArrayList<>();
 
         for (SearchIndexableData bundle : bundles) {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+            if (isIndexDataStatic(provider) != staticData) {
+                continue;
+            }
             final List<SearchIndexableRaw> providerRaws = provider.getRawDataToIndex(context,
                     true /* enabled */);
 
@@ -372,6 +364,16 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return rawList;
     }
 
+    /**
+     * Returns whether the xml resources and raw data of {@code provider} can be kept in the
+     * {@link SearchIndexSnapshot}. Providers not built on {@link BaseSearchIndexProvider} can't
+     * tell, so they are queried every time.
+     */
+    private static boolean isIndexDataStatic(Indexable.SearchIndexProvider provider) {
+        return provider instanceof BaseSearchIndexProvider
+                && ((BaseSearchIndexProvider) provider).isIndexDataStatic();
+    }
+
     private List<SearchIndexableRaw> getDynamicSearchIndexableRawData(Context context,
             SearchIndexableData bundle) {
         final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
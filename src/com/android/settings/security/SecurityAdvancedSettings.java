@@ -141,6 +141,12 @@ public class SecurityAdvancedSettings extends DashboardFragment {
                     return super.getXmlResourcesToIndex(context, enabled);
                 }
 
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Gated on the Safety Center state.
+                    return false;
+                }
+
                 @Override
                 public List<AbstractPreferenceController> createPreferenceControllers(
                         Context context) {
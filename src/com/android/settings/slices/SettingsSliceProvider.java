@@ -29,7 +29,9 @@ import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Binder;
+import android.os.LocaleList;
 import android.os.StrictMode;
+import android.os.SystemClock;
 import android.os.UserManager;
 import android.provider.Settings;
 import android.provider.SettingsSlicesContract;
@@ -56,6 +58,8 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.SliceBroadcastRelay;
 import com.android.settingslib.utils.ThreadUtils;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -132,15 +136,28 @@ public class SettingsSliceProvider extends SliceProvider {
 
     private static final KeyValueListParser KEY_VALUE_LIST_PARSER = new KeyValueListParser(',');
 
+    /**
+     * Maximum number of descendant slices whose data is prefetched after
+     * {@link #onGetSliceDescendants(Uri)}.
+     */
+    @VisibleForTesting
+    static final int PREFETCH_LIMIT = 16;
+
     @VisibleForTesting
     SlicesDatabaseAccessor mSlicesDatabaseAccessor;
 
     @VisibleForTesting
     Map<Uri, SliceData> mSliceWeakDataCache;
 
+    @VisibleForTesting
+    final SliceDataCache mSliceDataCache = SliceDataCache.getInstance();
+
     @VisibleForTesting
     final Map<Uri, SliceBackgroundWorker> mPinnedWorkers = new ArrayMap<>();
 
+    // Uris for which a stub was returned and that must be notified once loaded.
+    private final Set<Uri> mStubUris = new ArraySet<>();
+
     private Boolean mNightMode;
     private boolean mFirstSlicePinned;
     private boolean mFirstSliceBound;
@@ -210,6 +227,7 @@ public class SettingsSliceProvider extends SliceProvider {
         if (!mFirstSliceBound) {
             Log.d(TAG, "onBindSlice start: " + sliceUri);
         }
+        final long startBindTime = SystemClock.elapsedRealtime();
         final StrictMode.ThreadPolicy oldPolicy = StrictMode.getThreadPolicy();
         try {
             if (!ThreadUtils.isMainThread()) {
@@ -272,14 +290,21 @@ public class SettingsSliceProvider extends SliceProvider {
                         .createWifiCallingPreferenceSlice(sliceUri);
             }
 
-            final SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
             if (cachedSliceData == null) {
+                cachedSliceData = mSliceDataCache.get(sliceUri, getLocales());
                 loadSliceInBackground(sliceUri);
-                return getSliceStub(sliceUri);
+                if (cachedSliceData == null) {
+                    synchronized (mStubUris) {
+                        mStubUris.add(sliceUri);
+                    }
+                    return getSliceStub(sliceUri);
+                }
             }
             return SliceBuilderUtils.buildSlice(getContext(), cachedSliceData);
         } finally {
             StrictMode.setThreadPolicy(oldPolicy);
+            mSliceDataCache.recordBindLatency(SystemClock.elapsedRealtime() - startBindTime);
             if (!mFirstSliceBound) {
                 Log.v(TAG, "onBindSlice end");
                 mFirstSliceBound = true;
@@ -356,6 +381,7 @@ public class SettingsSliceProvider extends SliceProvider {
             descendants.addAll(customSlices);
         }
         grantAllowlistedPackagePermissions(getContext(), descendants);
+        prefetchSliceData(descendants);
         return descendants;
     }
 
@@ -393,6 +419,13 @@ public class SettingsSliceProvider extends SliceProvider {
         }
     }
 
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        mSliceDataCache.dump(writer);
+        SliceNotifyScheduler.getInstance().dump(writer);
+    }
+
     @Override
     public void shutdown() {
         ThreadUtils.postOnMainThread(() -> {
@@ -408,12 +441,17 @@ public class SettingsSliceProvider extends SliceProvider {
         }
         long startBuildTime = System.currentTimeMillis();
 
-        final SliceData sliceData;
-        try {
-            sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
-        } catch (IllegalStateException e) {
-            Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
-            return;
+        final LocaleList locales = getLocales();
+        SliceData sliceData = mSliceDataCache.get(uri, locales);
+        final boolean loadedFromCache = sliceData != null;
+        if (!loadedFromCache) {
+            try {
+                sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
+                return;
+            }
+            mSliceDataCache.put(uri, sliceData, locales);
         }
 
         final BasePreferenceController controller = SliceBuilderUtils.getPreferenceController(
@@ -433,7 +471,13 @@ public class SettingsSliceProvider extends SliceProvider {
         ThreadUtils.postOnMainThread(() -> startBackgroundWorker(controller, uri));
 
         mSliceWeakDataCache.put(uri, sliceData);
-        getContext().getContentResolver().notifyChange(uri, null /* content observer */);
+        final boolean stubReturned;
+        synchronized (mStubUris) {
+            stubReturned = mStubUris.remove(uri);
+        }
+        if (stubReturned || !loadedFromCache) {
+            getContext().getContentResolver().notifyChange(uri, null /* content observer */);
+        }
 
         Log.d(TAG, "Built slice (" + uri + ") in: " +
                 (System.currentTimeMillis() - startBuildTime));
@@ -444,6 +488,43 @@ public class SettingsSliceProvider extends SliceProvider {
         ThreadUtils.postOnBackgroundThread(() -> loadSlice(uri));
     }
 
+    /**
+     * Warms {@link #mSliceDataCache} with the data of the first {@link #PREFETCH_LIMIT}
+     * database backed {@param uris}, so binding them later doesn't return a stub.
+     */
+    @VisibleForTesting
+    void prefetchSliceData(List<Uri> uris) {
+        final List<Uri> toPrefetch = new ArrayList<>();
+        for (Uri uri : uris) {
+            if (toPrefetch.size() >= PREFETCH_LIMIT) {
+                break;
+            }
+            if (CustomSliceRegistry.isValidUri(uri) || mSliceDataCache.contains(uri)
+                    || SliceBuilderUtils.getPathData(uri) == null) {
+                continue;
+            }
+            toPrefetch.add(uri);
+        }
+        if (toPrefetch.isEmpty()) {
+            return;
+        }
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final LocaleList locales = getLocales();
+            for (Uri uri : toPrefetch) {
+                try {
+                    mSliceDataCache.put(uri, mSlicesDatabaseAccessor.getSliceDataFromUri(uri),
+                            locales);
+                } catch (IllegalStateException e) {
+                    Log.d(TAG, "Could not prefetch slicedata for uri: " + uri);
+                }
+            }
+        });
+    }
+
+    private LocaleList getLocales() {
+        return getContext().getResources().getConfiguration().getLocales();
+    }
+
     @VisibleForTesting
     /**
      * Registers an IntentFilter in SysUI to notify changes to {@param sliceUri} when broadcasts to
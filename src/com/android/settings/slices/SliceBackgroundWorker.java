@@ -20,22 +20,16 @@ import android.annotation.MainThread;
 import android.annotation.Nullable;
 import android.content.Context;
 import android.net.Uri;
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
-import android.os.Message;
-import android.os.Process;
-import android.os.SystemClock;
-import android.util.ArrayMap;
 import android.util.Log;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The Slice background worker is used to make Settings Slices be able to work with data that is
@@ -54,9 +48,8 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
 
     private static final String TAG = "SliceBackgroundWorker";
 
-    private static final long SLICE_UPDATE_THROTTLE_INTERVAL = 300L;
-
-    private static final Map<Uri, SliceBackgroundWorker> LIVE_WORKERS = new ArrayMap<>();
+    private static final ConcurrentMap<Uri, SliceBackgroundWorker> LIVE_WORKERS =
+            new ConcurrentHashMap<>();
 
     private final Context mContext;
     private final Uri mUri;
@@ -91,14 +84,12 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
      * CustomSliceable}
      */
     static SliceBackgroundWorker getInstance(Context context, Sliceable sliceable, Uri uri) {
-        SliceBackgroundWorker worker = getInstance(uri);
-        if (worker == null) {
-            final Class<? extends SliceBackgroundWorker> workerClass =
-                    sliceable.getBackgroundWorkerClass();
-            worker = createInstance(context.getApplicationContext(), uri, workerClass);
-            LIVE_WORKERS.put(uri, worker);
+        final SliceBackgroundWorker worker = getInstance(uri);
+        if (worker != null) {
+            return worker;
         }
-        return worker;
+        return LIVE_WORKERS.computeIfAbsent(uri, key -> createInstance(
+                context.getApplicationContext(), key, sliceable.getBackgroundWorkerClass()));
     }
 
     private static SliceBackgroundWorker createInstance(Context context, Uri uri,
@@ -114,14 +105,26 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
     }
 
     static void shutdown() {
-        for (SliceBackgroundWorker worker : LIVE_WORKERS.values()) {
+        for (Uri uri : LIVE_WORKERS.keySet()) {
+            final SliceBackgroundWorker worker = LIVE_WORKERS.remove(uri);
+            if (worker == null) {
+                continue;
+            }
+            SliceNotifyScheduler.getInstance().cancelSliceUpdate(worker);
             try {
                 worker.close();
             } catch (IOException e) {
                 Log.w(TAG, "Shutting down worker failed", e);
             }
         }
-        LIVE_WORKERS.clear();
+    }
+
+    /**
+     * Marks the slices of {@code uris} as shown in the foreground by Settings, e.g. in a panel, or
+     * no longer shown. Changes of foreground slices are notified before the ones of other hosts.
+     */
+    public static void setForegroundSlices(Collection<Uri> uris, boolean foreground) {
+        SliceNotifyScheduler.getInstance().setForeground(uris, foreground);
     }
 
     /**
@@ -173,76 +176,16 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
      * Notify that data was updated and attempt to sync changes to the Slice.
      */
     protected final void notifySliceChange() {
-        NotifySliceChangeHandler.getInstance().updateSlice(this);
+        SliceNotifyScheduler.getInstance().updateSlice(this);
     }
 
     void pin() {
+        SliceNotifyScheduler.getInstance().onSlicePinned(this);
         onSlicePinned();
     }
 
     void unpin() {
         onSliceUnpinned();
-        NotifySliceChangeHandler.getInstance().cancelSliceUpdate(this);
+        SliceNotifyScheduler.getInstance().cancelSliceUpdate(this);
     }
-
-    private static class NotifySliceChangeHandler extends Handler {
-
-        private static final int MSG_UPDATE_SLICE = 1000;
-
-        private static NotifySliceChangeHandler sHandler;
-
-        private final Map<Uri, Long> mLastUpdateTimeLookup = Collections.synchronizedMap(
-                new ArrayMap<>());
-
-        private static NotifySliceChangeHandler getInstance() {
-            if (sHandler == null) {
-                final HandlerThread workerThread = new HandlerThread("NotifySliceChangeHandler",
-                        Process.THREAD_PRIORITY_BACKGROUND);
-                workerThread.start();
-                sHandler = new NotifySliceChangeHandler(workerThread.getLooper());
-            }
-            return sHandler;
-        }
-
-        private NotifySliceChangeHandler(Looper looper) {
-            super(looper);
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            if (msg.what != MSG_UPDATE_SLICE) {
-                return;
-            }
-
-            final SliceBackgroundWorker worker = (SliceBackgroundWorker) msg.obj;
-            final Uri uri = worker.getUri();
-            final Context context = worker.getContext();
-            mLastUpdateTimeLookup.put(uri, SystemClock.uptimeMillis());
-            context.getContentResolver().notifyChange(uri, null);
-        }
-
-        private void updateSlice(SliceBackgroundWorker worker) {
-            if (hasMessages(MSG_UPDATE_SLICE, worker)) {
-                return;
-            }
-
-            final Message message = obtainMessage(MSG_UPDATE_SLICE, worker);
-            final long lastUpdateTime = mLastUpdateTimeLookup.getOrDefault(worker.getUri(), 0L);
-            if (lastUpdateTime == 0L) {
-                // Postpone the first update triggering by onSlicePinned() to avoid being too close
-                // to the first Slice bind.
-                sendMessageDelayed(message, SLICE_UPDATE_THROTTLE_INTERVAL);
-            } else if (SystemClock.uptimeMillis() - lastUpdateTime
-                    > SLICE_UPDATE_THROTTLE_INTERVAL) {
-                sendMessage(message);
-            } else {
-                sendMessageAtTime(message, lastUpdateTime + SLICE_UPDATE_THROTTLE_INTERVAL);
-            }
-        }
-
-        private void cancelSliceUpdate(SliceBackgroundWorker worker) {
-            removeMessages(MSG_UPDATE_SLICE, worker);
-            mLastUpdateTimeLookup.remove(worker.getUri());
-        }
-    };
 }
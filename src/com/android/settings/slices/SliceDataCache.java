@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.net.Uri;
+import android.os.LocaleList;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+
+/**
+ * Size-bounded cache of {@link SliceData} for {@link SettingsSliceProvider}.
+ *
+ * <p>Unlike the per-pin cache of the provider, entries survive unpinning, so hosts that pin and
+ * unpin often get a full {@link androidx.slice.Slice} on bind instead of a stub followed by a
+ * second bind. The cache is dropped when the locales change, since the indexed titles and
+ * summaries are localized, and after {@link SlicesIndexer} rewrites the index.
+ */
+class SliceDataCache {
+
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 64;
+
+    private static SliceDataCache sInstance;
+
+    private final LruCache<Uri, SliceData> mCache = new LruCache<>(MAX_ENTRIES);
+
+    private LocaleList mLocales;
+    private long mHits;
+    private long mMisses;
+    private long mBindCount;
+    private long mTotalBindMillis;
+    private long mMaxBindMillis;
+
+    static synchronized SliceDataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new SliceDataCache();
+        }
+        return sInstance;
+    }
+
+    /** Returns the cached data of {@code uri}, or null. */
+    @Nullable
+    synchronized SliceData get(Uri uri, LocaleList locales) {
+        if (!locales.equals(mLocales)) {
+            mCache.evictAll();
+            mLocales = locales;
+        }
+        final SliceData data = mCache.get(uri);
+        if (data == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return data;
+    }
+
+    /** Returns whether {@code uri} is cached, without affecting the hit rate. */
+    synchronized boolean contains(Uri uri) {
+        return mCache.get(uri) != null;
+    }
+
+    synchronized void put(Uri uri, SliceData data, LocaleList locales) {
+        if (!locales.equals(mLocales)) {
+            mCache.evictAll();
+            mLocales = locales;
+        }
+        mCache.put(uri, data);
+    }
+
+    synchronized void remove(Uri uri) {
+        mCache.remove(uri);
+    }
+
+    /** Drops all entries, for example when the index they were read from changed. */
+    synchronized void evictAll() {
+        mCache.evictAll();
+    }
+
+    synchronized void recordBindLatency(long millis) {
+        mBindCount++;
+        mTotalBindMillis += millis;
+        mMaxBindMillis = Math.max(mMaxBindMillis, millis);
+    }
+
+    synchronized void dump(PrintWriter writer) {
+        writer.println("SliceData cache: size=" + mCache.size() + "/" + MAX_ENTRIES
+                + " hits=" + mHits + " misses=" + mMisses);
+        writer.println("Binds: count=" + mBindCount
+                + " avgMs=" + (mBindCount == 0 ? 0 : mTotalBindMillis / mBindCount)
+                + " maxMs=" + mMaxBindMillis);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Schedules the change notifications of {@link SliceBackgroundWorker}s.
+ *
+ * <p>Changes of all workers are merged into batches, with due times rounded up to multiples of
+ * {@link #FRAME_INTERVAL_MS}, so that workers updating at about the same time only wake up the
+ * hosts once. Each {@link Uri} is throttled individually: the interval starts at
+ * {@link #BASE_INTERVAL_MS} and grows while the worker keeps changing faster than it, up to
+ * {@link #MAX_INTERVAL_MS}, then falls back once it calms down. Within a batch, the slices shown
+ * in the foreground by Settings itself, e.g. in a panel, are notified before the ones of other
+ * hosts.
+ *
+ * <p>Only pinned slices are scheduled, changes of a worker after it was unpinned are ignored.
+ */
+class SliceNotifyScheduler extends Handler {
+
+    @VisibleForTesting
+    static final long BASE_INTERVAL_MS = 300L;
+    @VisibleForTesting
+    static final long MAX_INTERVAL_MS = 1200L;
+    @VisibleForTesting
+    static final long FRAME_INTERVAL_MS = 16L;
+
+    private static final int MSG_FLUSH = 1000;
+
+    private static SliceNotifyScheduler sInstance;
+
+    private final Map<Uri, UriState> mStates = new ArrayMap<>();
+    private final Set<Uri> mForegroundUris = new ArraySet<>();
+    private long mNextFlushTime;
+
+    static synchronized SliceNotifyScheduler getInstance() {
+        if (sInstance == null) {
+            final HandlerThread workerThread = new HandlerThread("NotifySliceChangeHandler",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            workerThread.start();
+            sInstance = new SliceNotifyScheduler(workerThread.getLooper());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SliceNotifyScheduler(Looper looper) {
+        super(looper);
+    }
+
+    /** Starts scheduling the change notifications of the slice of {@code worker}. */
+    void onSlicePinned(SliceBackgroundWorker worker) {
+        synchronized (mStates) {
+            if (!mStates.containsKey(worker.getUri())) {
+                mStates.put(worker.getUri(), new UriState());
+            }
+        }
+    }
+
+    /**
+     * Schedules a change notification of the slice of {@code worker}. Does nothing if the slice
+     * is not pinned.
+     */
+    void updateSlice(SliceBackgroundWorker worker) {
+        final long now = SystemClock.uptimeMillis();
+        final long dueTime;
+        synchronized (mStates) {
+            final UriState state = mStates.get(worker.getUri());
+            if (state == null) {
+                return;
+            }
+            state.mWorker = worker;
+            if (state.mRequestTime != 0L) {
+                // Already scheduled, this change will be part of the pending notification.
+                state.mCoalesced++;
+                return;
+            }
+            if (state.mLastNotifyTime == 0L) {
+                // Postpone the first update triggering by onSlicePinned() to avoid being too close
+                // to the first Slice bind.
+                state.mDueTime = now + BASE_INTERVAL_MS;
+            } else {
+                final long sinceLastNotify = now - state.mLastNotifyTime;
+                if (sinceLastNotify < state.mInterval) {
+                    state.mInterval = Math.min(state.mInterval * 2, MAX_INTERVAL_MS);
+                } else if (sinceLastNotify > MAX_INTERVAL_MS) {
+                    state.mInterval = BASE_INTERVAL_MS;
+                }
+                state.mDueTime = Math.max(now, state.mLastNotifyTime + state.mInterval);
+            }
+            state.mDueTime = roundUpToFrameInterval(state.mDueTime);
+            state.mRequestTime = now;
+            dueTime = state.mDueTime;
+        }
+        scheduleFlush(dueTime);
+    }
+
+    /**
+     * Cancels the pending notification of {@code worker}, forgets its throttling and ignores its
+     * changes until it is pinned again.
+     */
+    void cancelSliceUpdate(SliceBackgroundWorker worker) {
+        synchronized (mStates) {
+            mStates.remove(worker.getUri());
+        }
+    }
+
+    /** Marks the slices of {@code uris} as shown in the foreground, or no longer shown. */
+    void setForeground(Collection<Uri> uris, boolean foreground) {
+        synchronized (mStates) {
+            if (foreground) {
+                mForegroundUris.addAll(uris);
+            } else {
+                mForegroundUris.removeAll(uris);
+            }
+        }
+    }
+
+    @Override
+    public void handleMessage(Message msg) {
+        if (msg.what != MSG_FLUSH) {
+            return;
+        }
+        final long now = SystemClock.uptimeMillis();
+        final List<SliceBackgroundWorker> batch = new ArrayList<>();
+        long nextDueTime = Long.MAX_VALUE;
+        synchronized (mStates) {
+            mNextFlushTime = 0L;
+            for (UriState state : mStates.values()) {
+                if (state.mRequestTime == 0L || state.mWorker == null) {
+                    continue;
+                }
+                if (state.mDueTime > now) {
+                    nextDueTime = Math.min(nextDueTime, state.mDueTime);
+                    continue;
+                }
+                state.onNotified(now);
+                batch.add(state.mWorker);
+            }
+            if (batch.size() > 1 && !mForegroundUris.isEmpty()) {
+                batch.sort((a, b) -> Boolean.compare(!mForegroundUris.contains(a.getUri()),
+                        !mForegroundUris.contains(b.getUri())));
+            }
+        }
+        if (nextDueTime != Long.MAX_VALUE) {
+            scheduleFlush(nextDueTime);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final Context context = batch.get(0).getContext();
+        for (SliceBackgroundWorker worker : batch) {
+            context.getContentResolver().notifyChange(worker.getUri(), null);
+        }
+    }
+
+    /** Returns the notification stats of {@code uri}, or null if it was never scheduled. */
+    @Nullable
+    @VisibleForTesting
+    UriStats getStats(Uri uri) {
+        synchronized (mStates) {
+            final UriState state = mStates.get(uri);
+            return state == null ? null : state.getStats(SystemClock.uptimeMillis());
+        }
+    }
+
+    void dump(PrintWriter writer) {
+        final long now = SystemClock.uptimeMillis();
+        synchronized (mStates) {
+            writer.println("Slice notifications:");
+            for (Map.Entry<Uri, UriState> entry : mStates.entrySet()) {
+                writer.println("  " + entry.getKey() + ": "
+                        + entry.getValue().getStats(now));
+            }
+        }
+    }
+
+    private void scheduleFlush(long dueTime) {
+        synchronized (mStates) {
+            if (mNextFlushTime != 0L && mNextFlushTime <= dueTime) {
+                return;
+            }
+            mNextFlushTime = dueTime;
+            removeMessages(MSG_FLUSH);
+            sendEmptyMessageAtTime(MSG_FLUSH, dueTime);
+        }
+    }
+
+    /**
+     * Rounds {@code time} up to a multiple of {@link #FRAME_INTERVAL_MS}, so that the changes due
+     * within the same interval are flushed together. This is not synchronized with the display.
+     */
+    private static long roundUpToFrameInterval(long time) {
+        return (time + FRAME_INTERVAL_MS - 1) / FRAME_INTERVAL_MS * FRAME_INTERVAL_MS;
+    }
+
+    private static class UriState {
+        SliceBackgroundWorker mWorker;
+        long mInterval = BASE_INTERVAL_MS;
+        long mRequestTime;
+        long mDueTime;
+        long mLastNotifyTime;
+
+        long mFirstNotifyTime;
+        int mNotifyCount;
+        int mCoalesced;
+        long mTotalLatency;
+        long mMaxLatency;
+
+        void onNotified(long now) {
+            final long latency = now - mRequestTime;
+            mRequestTime = 0L;
+            mLastNotifyTime = now;
+            if (mFirstNotifyTime == 0L) {
+                mFirstNotifyTime = now;
+            }
+            mNotifyCount++;
+            mTotalLatency += latency;
+            mMaxLatency = Math.max(mMaxLatency, latency);
+        }
+
+        UriStats getStats(long now) {
+            final long elapsed = now - mFirstNotifyTime;
+            return new UriStats(mNotifyCount,
+                    mNotifyCount == 0 || elapsed <= 0 ? 0f : mNotifyCount * 60000f / elapsed,
+                    mCoalesced, mNotifyCount == 0 ? 0L : mTotalLatency / mNotifyCount,
+                    mMaxLatency, mInterval);
+        }
+    }
+
+    /** Notification stats of a single slice. */
+    static class UriStats {
+        final int mNotifyCount;
+        final float mNotifyPerMinute;
+        // Changes merged into a notification that was already pending.
+        final int mCoalesced;
+        final long mAverageLatencyMs;
+        final long mMaxLatencyMs;
+        final long mIntervalMs;
+
+        UriStats(int notifyCount, float notifyPerMinute, int coalesced, long averageLatencyMs,
+                long maxLatencyMs, long intervalMs) {
+            mNotifyCount = notifyCount;
+            mNotifyPerMinute = notifyPerMinute;
+            mCoalesced = coalesced;
+            mAverageLatencyMs = averageLatencyMs;
+            mMaxLatencyMs = maxLatencyMs;
+            mIntervalMs = intervalMs;
+        }
+
+        @Override
+        public String toString() {
+            return "notified=" + mNotifyCount
+                    + " perMin=" + mNotifyPerMinute
+                    + " coalesced=" + mCoalesced
+                    + " avgLatencyMs=" + mAverageLatencyMs
+                    + " maxLatencyMs=" + mMaxLatencyMs
+                    + " intervalMs=" + mIntervalMs;
+        }
+    }
+}
@@ -119,14 +119,17 @@ public class SlicesDatabaseAccessor {
     private Cursor getIndexedSliceData(String path) {
         verifyIndexing();
 
-        final String whereClause = buildKeyMatchWhereClause();
-        final SQLiteDatabase database = mHelper.getReadableDatabase();
-        final String[] selection = new String[]{path};
-        final Cursor resultCursor = database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL,
-                whereClause, selection, null /* groupBy */, null /* having */, null /* orderBy */);
-
+        Cursor resultCursor = queryIndexedSliceData(path);
         int numResults = resultCursor.getCount();
 
+        if (numResults == 0 && !mHelper.isSliceDataIndexed()) {
+            // The key may be missing from the index of the previous locale, wait for the update.
+            resultCursor.close();
+            indexSliceData();
+            resultCursor = queryIndexedSliceData(path);
+            numResults = resultCursor.getCount();
+        }
+
         if (numResults == 0) {
             resultCursor.close();
             throw new IllegalStateException("Invalid Slices key from path: " + path);
@@ -142,6 +145,14 @@ public class SlicesDatabaseAccessor {
         return resultCursor;
     }
 
+    private Cursor queryIndexedSliceData(String path) {
+        final String whereClause = buildKeyMatchWhereClause();
+        final SQLiteDatabase database = mHelper.getReadableDatabase();
+        final String[] selection = new String[]{path};
+        return database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL, whereClause, selection,
+                null /* groupBy */, null /* having */, null /* orderBy */);
+    }
+
     private String buildKeyMatchWhereClause() {
         return new StringBuilder(IndexColumns.KEY)
                 .append(" = ?")
@@ -187,7 +198,31 @@ public class SlicesDatabaseAccessor {
                 .build();
     }
 
+    /**
+     * Makes sure the index reflects the current build and locale. When only the locale changed,
+     * the previous index keeps being served while the new one is built in the background. After
+     * a build change the previous index may name resources and controllers that no longer exist,
+     * so it is never served.
+     */
     private void verifyIndexing() {
+        if (mHelper.isSliceDataIndexed()) {
+            return;
+        }
+        final long uidToken = Binder.clearCallingIdentity();
+        try {
+            final SlicesFeatureProvider provider =
+                    FeatureFactory.getFactory(mContext).getSlicesFeatureProvider();
+            if (mHelper.isBuildIndexed() && mHelper.hasSliceData()) {
+                provider.indexSliceDataAsync(mContext);
+            } else {
+                provider.indexSliceData(mContext);
+            }
+        } finally {
+            Binder.restoreCallingIdentity(uidToken);
+        }
+    }
+
+    private void indexSliceData() {
         final long uidToken = Binder.clearCallingIdentity();
         try {
             FeatureFactory.getFactory(
@@ -17,6 +17,7 @@
 package com.android.settings.slices;
 
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
@@ -36,10 +37,11 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
 
-    private static final int DATABASE_VERSION = 9;
+    private static final int DATABASE_VERSION = 10;
 
     public interface Tables {
         String TABLE_SLICES_INDEX = "slices_index";
+        String TABLE_SLICES_INDEX_HASHES = "slices_index_hashes";
     }
 
     public interface IndexColumns {
@@ -110,6 +112,23 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
         String HIGHLIGHT_MENU_RESOURCE = "highlight_menu";
     }
 
+    public interface HashColumns {
+        /**
+         * Primary key of the table. Same key as {@link IndexColumns#KEY}.
+         */
+        String KEY = "key";
+
+        /**
+         * Hash of the indexed {@link SliceData}, used to detect changed rows when reindexing.
+         */
+        String HASH = "hash";
+
+        /**
+         * Row id of the corresponding row in {@link Tables#TABLE_SLICES_INDEX}.
+         */
+        String DOC_ID = "doc_id";
+    }
+
     private static final String CREATE_SLICES_TABLE =
             "CREATE VIRTUAL TABLE " + Tables.TABLE_SLICES_INDEX + " USING fts4"
                     + "("
@@ -141,6 +160,17 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                     + " INTEGER DEFAULT 0 "
                     + ");";
 
+    private static final String CREATE_SLICES_HASHES_TABLE =
+            "CREATE TABLE " + Tables.TABLE_SLICES_INDEX_HASHES
+                    + "("
+                    + HashColumns.KEY
+                    + " TEXT PRIMARY KEY, "
+                    + HashColumns.HASH
+                    + " INTEGER, "
+                    + HashColumns.DOC_ID
+                    + " INTEGER"
+                    + ");";
+
     private final Context mContext;
 
     private static SlicesDatabaseHelper sSingleton;
@@ -155,6 +185,8 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private SlicesDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null /* CursorFactor */, DATABASE_VERSION);
         mContext = context;
+        // Lets readers keep using the previous index while it is being updated.
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
@@ -189,6 +221,11 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
      * a full index of the TABLE_SLICES_INDEX.
      */
     public void setIndexedState() {
+        // Forget previously indexed builds and locales, the index only reflects the current ones.
+        mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
+                .edit()
+                .clear()
+                .apply();
         setBuildIndexed();
         setLocaleIndexed();
     }
@@ -202,13 +239,23 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
         return isBuildIndexed() && isLocaleIndexed();
     }
 
+    /**
+     * Indicates if the database holds any slice data, possibly from a previous build or locale.
+     */
+    public boolean hasSliceData() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(),
+                Tables.TABLE_SLICES_INDEX_HASHES) > 0;
+    }
+
     private void createDatabases(SQLiteDatabase db) {
         db.execSQL(CREATE_SLICES_TABLE);
+        db.execSQL(CREATE_SLICES_HASHES_TABLE);
         Log.d(TAG, "Created databases");
     }
 
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX_HASHES);
     }
 
     private void setBuildIndexed() {
@@ -225,7 +272,11 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                 .apply();
     }
 
-    private boolean isBuildIndexed() {
+    /**
+     * Indicates if the indexed slice data was built by the current build. The resource ids and
+     * controller class names in the index are only valid in that build.
+     */
+    public boolean isBuildIndexed() {
         return mContext.getSharedPreferences(SHARED_PREFS_TAG,
                 Context.MODE_PRIVATE)
                 .getBoolean(getBuildTag(), false /* default */);
@@ -16,9 +16,12 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -26,10 +29,14 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SlicesDatabaseHelper.HashColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
@@ -39,6 +46,36 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String INSERT_ROW_SQL = "INSERT INTO " + Tables.TABLE_SLICES_INDEX
+            + " (" + IndexColumns.KEY
+            + ", " + IndexColumns.SLICE_URI
+            + ", " + IndexColumns.TITLE
+            + ", " + IndexColumns.SUMMARY
+            + ", " + IndexColumns.SCREENTITLE
+            + ", " + IndexColumns.KEYWORDS
+            + ", " + IndexColumns.ICON_RESOURCE
+            + ", " + IndexColumns.FRAGMENT
+            + ", " + IndexColumns.CONTROLLER
+            + ", " + IndexColumns.SLICE_TYPE
+            + ", " + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE
+            + ", " + IndexColumns.PUBLIC_SLICE
+            + ", " + IndexColumns.HIGHLIGHT_MENU_RESOURCE
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_HASH_SQL = "INSERT OR REPLACE INTO "
+            + Tables.TABLE_SLICES_INDEX_HASHES
+            + " (" + HashColumns.KEY + ", " + HashColumns.HASH + ", " + HashColumns.DOC_ID
+            + ") VALUES (?, ?, ?)";
+    private static final String DELETE_ROW_SQL = "DELETE FROM " + Tables.TABLE_SLICES_INDEX
+            + " WHERE docid = ?";
+    private static final String DELETE_HASH_SQL = "DELETE FROM "
+            + Tables.TABLE_SLICES_INDEX_HASHES + " WHERE " + HashColumns.KEY + " = ?";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int INDEXED_ROW_HASH = 0;
+    private static final int INDEXED_ROW_DOC_ID = 1;
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,32 +95,37 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database.
+     *
+     * <p>Only rows whose data changed since the previous index are rewritten, and rows that no
+     * longer exist are deleted, all in one transaction. Readers keep seeing the previous index
+     * until that transaction commits.
      */
-    protected void indexSliceData() {
+    protected synchronized void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
             Log.d(TAG, "Slices already indexed - returning.");
             return;
         }
 
-        final SQLiteDatabase database = mHelper.getWritableDatabase();
-
         long startTime = System.currentTimeMillis();
+        // Collect the data before opening the transaction, the old index stays readable.
+        final List<SliceData> indexData = getSliceData();
+        final SQLiteDatabase database = mHelper.getWritableDatabase();
         database.beginTransaction();
         try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
+            final int changedRows = updateSliceData(database, indexData);
 
             mHelper.setIndexedState();
 
             // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
+            Log.d(TAG, "Indexing slices database took: "
+                    + (System.currentTimeMillis() - startTime) + ", changed rows: " + changedRows);
             database.setTransactionSuccessful();
         } finally {
             database.endTransaction();
         }
+        // Cached slice data may have been read from rows that were just rewritten.
+        SliceDataCache.getInstance().evictAll();
     }
 
     @VisibleForTesting
@@ -94,32 +136,146 @@ class SlicesIndexer implements Runnable {
                 .getSliceData();
     }
 
+    /**
+     * Brings the index in line with {@code indexData}, and returns the number of inserted,
+     * updated and deleted rows. Must be called inside a transaction.
+     */
+    @VisibleForTesting
+    int updateSliceData(SQLiteDatabase database, List<SliceData> indexData) {
+        final Map<String, long[]> indexedRows = getIndexedRows(database);
+        final Set<String> newKeys = new ArraySet<>();
+        final Set<String> unchangedKeys = new ArraySet<>();
+        final List<SliceData> changedData = new ArrayList<>();
+        for (SliceData dataRow : indexData) {
+            if (!newKeys.add(dataRow.getKey())) {
+                Log.w(TAG, "Duplicate slice key, skipping: " + dataRow.getKey());
+                continue;
+            }
+            final long[] indexedRow = indexedRows.get(dataRow.getKey());
+            if (indexedRow != null && indexedRow[INDEXED_ROW_HASH] == computeHash(dataRow)) {
+                unchangedKeys.add(dataRow.getKey());
+            } else {
+                changedData.add(dataRow);
+            }
+        }
+
+        // Delete stale rows and the previous version of changed rows.
+        int deletedRows = 0;
+        try (SQLiteStatement deleteRow = database.compileStatement(DELETE_ROW_SQL);
+             SQLiteStatement deleteHash = database.compileStatement(DELETE_HASH_SQL)) {
+            for (Map.Entry<String, long[]> indexedRow : indexedRows.entrySet()) {
+                final String key = indexedRow.getKey();
+                if (unchangedKeys.contains(key)) {
+                    continue;
+                }
+                deleteRow.bindLong(1, indexedRow.getValue()[INDEXED_ROW_DOC_ID]);
+                deleteRow.executeUpdateDelete();
+                deleteHash.bindString(1, key);
+                deleteHash.executeUpdateDelete();
+                if (!newKeys.contains(key)) {
+                    deletedRows++;
+                }
+            }
+        }
+        insertSliceData(database, changedData);
+        return changedData.size() + deletedRows;
+    }
+
     @VisibleForTesting
     void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
+        try (SQLiteStatement insertRow = database.compileStatement(INSERT_ROW_SQL);
+             SQLiteStatement insertHash = database.compileStatement(INSERT_HASH_SQL)) {
+            for (SliceData dataRow : indexData) {
+                insertRow.clearBindings();
+                bindString(insertRow, 1, dataRow.getKey());
+                bindString(insertRow, 2, dataRow.getUri().toString());
+                bindString(insertRow, 3, dataRow.getTitle());
+                bindString(insertRow, 4, dataRow.getSummary());
+                final CharSequence screenTitle = dataRow.getScreenTitle();
+                bindString(insertRow, 5, screenTitle != null ? screenTitle.toString() : null);
+                bindString(insertRow, 6, dataRow.getKeywords());
+                insertRow.bindLong(7, dataRow.getIconResource());
+                bindString(insertRow, 8, dataRow.getFragmentClassName());
+                bindString(insertRow, 9, dataRow.getPreferenceController());
+                insertRow.bindLong(10, dataRow.getSliceType());
+                bindString(insertRow, 11, dataRow.getUnavailableSliceSubtitle());
+                insertRow.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+                insertRow.bindLong(13, dataRow.getHighlightMenuRes());
+                final long docId = insertRow.executeInsert();
 
-        for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+                insertHash.bindString(1, dataRow.getKey());
+                insertHash.bindLong(2, computeHash(dataRow));
+                insertHash.bindLong(3, docId);
+                insertHash.executeInsert();
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-            values.put(IndexColumns.HIGHLIGHT_MENU_RESOURCE, dataRow.getHighlightMenuRes());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+        }
+    }
+
+    /** Returns the indexed rows as a map of key to {hash, docid}. */
+    private static Map<String, long[]> getIndexedRows(SQLiteDatabase database) {
+        final Map<String, long[]> indexedRows = new ArrayMap<>();
+        final String[] columns = {HashColumns.KEY, HashColumns.HASH, HashColumns.DOC_ID};
+        try (Cursor cursor = database.query(Tables.TABLE_SLICES_INDEX_HASHES, columns,
+                null /* selection */, null /* selectionArgs */, null /* groupBy */,
+                null /* having */, null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                indexedRows.put(cursor.getString(0),
+                        new long[]{cursor.getLong(1), cursor.getLong(2)});
+            }
+        }
+        return indexedRows;
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of every indexed field of {@code dataRow}. A collision keeps a
+     * stale row, so this doesn't combine the 32-bit {@link Object#hashCode()} of the fields.
+     */
+    @VisibleForTesting
+    static long computeHash(SliceData dataRow) {
+        final CharSequence screenTitle = dataRow.getScreenTitle();
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, dataRow.getKey());
+        hash = hash(hash, dataRow.getUri() != null ? dataRow.getUri().toString() : null);
+        hash = hash(hash, dataRow.getTitle());
+        hash = hash(hash, dataRow.getSummary());
+        hash = hash(hash, screenTitle != null ? screenTitle.toString() : null);
+        hash = hash(hash, dataRow.getKeywords());
+        hash = hash(hash, dataRow.getIconResource());
+        hash = hash(hash, dataRow.getFragmentClassName());
+        hash = hash(hash, dataRow.getPreferenceController());
+        hash = hash(hash, dataRow.getSliceType());
+        hash = hash(hash, dataRow.getUnavailableSliceSubtitle());
+        hash = hash(hash, dataRow.isPublicSlice() ? 1 : 0);
+        hash = hash(hash, dataRow.getHighlightMenuRes());
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        // The length keeps null apart from "", and each field apart from the next one.
+        if (value == null) {
+            return hash(hash, -1L);
+        }
+        hash = hash(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash ^ ((value >>> (i * Byte.SIZE)) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
     }
 }
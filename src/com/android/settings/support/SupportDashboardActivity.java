@@ -20,6 +20,7 @@ import android.content.Context;
 import android.os.Bundle;
 
 import com.android.settings.R;
+import com.android.settings.core.InvalidationSources;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.overlay.SupportFeatureProvider;
 import com.android.settings.search.BaseSearchIndexProvider;
@@ -87,5 +88,12 @@ public class SupportDashboardActivity extends Activity implements Indexable {
                     }
                     return keys;
                 }
+
+                @Override
+                public InvalidationSources getNonIndexableKeysInvalidationSources(
+                        Context context) {
+                    // Only depends on resources.
+                    return new InvalidationSources.Builder().build();
+                }
             };
 }
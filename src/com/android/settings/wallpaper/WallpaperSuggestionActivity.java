@@ -90,5 +90,11 @@ public class WallpaperSuggestionActivity extends StyleSuggestionActivityBase imp
                     result.add(data);
                     return result;
                 }
+
+                @Override
+                public boolean isIndexDataStatic() {
+                    // Depends on the installed wallpaper picker.
+                    return false;
+                }
             };
 }
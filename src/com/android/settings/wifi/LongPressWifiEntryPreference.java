@@ -54,6 +54,15 @@ public class LongPressWifiEntryPreference extends WifiEntryPreference {
         setEnabled(shouldEnabled());
     }
 
+    @Override
+    public void setWifiEntry(WifiEntry wifiEntry) {
+        super.setWifiEntry(wifiEntry);
+        if (isDisabledByAdmin() && !wifiEntry.hasAdminRestrictions()) {
+            setDisabledByAdmin(null);
+        }
+        checkRestrictionAndSetDisabled();
+    }
+
     @VisibleForTesting
     boolean shouldEnabled() {
         WifiEntry wifiEntry = getWifiEntry();
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroup;
+
+import com.android.settings.core.ControllerLatencyTracker;
+import com.android.wifitrackerlib.WifiEntry;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Updates the {@link LongPressWifiEntryPreference}s of a Wi-Fi picker to match the
+ * {@link WifiEntry}s of the tracker, touching only what changed.
+ *
+ * <p>Preferences are matched to WifiEntries by key. A preference whose network got a new
+ * WifiEntry object is kept and given the new object, only the preferences whose position changed
+ * get a new order, and only the networks that are gone are removed. Updates driven by scan
+ * results are spaced by at least {@link #MIN_UPDATE_INTERVAL_MS}, see {@link #getUpdateDelay}.
+ *
+ * <p>The cost of each update is kept by {@link ControllerLatencyTracker} under the name of the
+ * owner, so it shows up in traces and in {@code SettingsDumpService}.
+ */
+public class WifiEntryListUpdater {
+
+    private static final String TAG = "WifiEntryListUpdater";
+
+    @VisibleForTesting
+    static final String PHASE_UPDATE = "updateWifiEntries";
+    @VisibleForTesting
+    static final long MIN_UPDATE_INTERVAL_MS = 1000;
+
+    private final String mOwnerName;
+    private final Function<WifiEntry, LongPressWifiEntryPreference> mPreferenceFactory;
+    private final ControllerLatencyTracker mLatencyTracker;
+    private long mLastUpdateTime = -MIN_UPDATE_INTERVAL_MS;
+
+    // Counts of the last update, for logging and tests.
+    @VisibleForTesting
+    int mAddedCount;
+    @VisibleForTesting
+    int mRemovedCount;
+    @VisibleForTesting
+    int mMovedCount;
+    @VisibleForTesting
+    int mReboundCount;
+
+    /**
+     * @param owner             the fragment showing the list, used to report the update costs
+     * @param preferenceFactory creates the preference of a new network
+     */
+    public WifiEntryListUpdater(Object owner,
+            Function<WifiEntry, LongPressWifiEntryPreference> preferenceFactory) {
+        this(owner.getClass().getName(), preferenceFactory,
+                ControllerLatencyTracker.getInstance());
+    }
+
+    @VisibleForTesting
+    WifiEntryListUpdater(String ownerName,
+            Function<WifiEntry, LongPressWifiEntryPreference> preferenceFactory,
+            ControllerLatencyTracker latencyTracker) {
+        mOwnerName = ownerName;
+        mPreferenceFactory = preferenceFactory;
+        mLatencyTracker = latencyTracker;
+    }
+
+    /**
+     * Returns how long to wait before the next update, at least {@code minDelay} and enough to
+     * keep {@link #MIN_UPDATE_INTERVAL_MS} since the last one.
+     */
+    public long getUpdateDelay(long minDelay) {
+        return Math.max(minDelay,
+                mLastUpdateTime + MIN_UPDATE_INTERVAL_MS - SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Makes the WifiEntry preferences of {@code group} show {@code wifiEntries} in order, starting
+     * at {@code firstOrder}. Preferences of other types in the group are left alone.
+     *
+     * @return the order following the last WifiEntry preference
+     */
+    public int update(PreferenceGroup group, List<WifiEntry> wifiEntries, int firstOrder) {
+        final long token = mLatencyTracker.begin(PHASE_UPDATE, mOwnerName);
+        mAddedCount = 0;
+        mRemovedCount = 0;
+        mMovedCount = 0;
+        mReboundCount = 0;
+
+        final int count = group.getPreferenceCount();
+        final ArrayMap<String, LongPressWifiEntryPreference> oldPreferences =
+                new ArrayMap<>(count);
+        for (int i = 0; i < count; i++) {
+            final Preference preference = group.getPreference(i);
+            if (preference instanceof LongPressWifiEntryPreference) {
+                oldPreferences.put(preference.getKey(), (LongPressWifiEntryPreference) preference);
+            }
+        }
+
+        int order = firstOrder;
+        for (WifiEntry wifiEntry : wifiEntries) {
+            final String key = wifiEntry.getKey();
+            LongPressWifiEntryPreference pref = oldPreferences.remove(key);
+            if (pref == null) {
+                pref = mPreferenceFactory.apply(wifiEntry);
+                pref.setKey(key);
+                pref.setOrder(order);
+                group.addPreference(pref);
+                mAddedCount++;
+            } else {
+                if (pref.getWifiEntry() != wifiEntry) {
+                    // Same network, new object: keep the preference and its view.
+                    pref.setWifiEntry(wifiEntry);
+                    mReboundCount++;
+                }
+                if (pref.getOrder() != order) {
+                    pref.setOrder(order);
+                    mMovedCount++;
+                }
+            }
+            order++;
+        }
+        for (int i = 0; i < oldPreferences.size(); i++) {
+            group.removePreference(oldPreferences.valueAt(i));
+            mRemovedCount++;
+        }
+
+        mLastUpdateTime = SystemClock.uptimeMillis();
+        mLatencyTracker.end(PHASE_UPDATE, mOwnerName, token);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Updated " + wifiEntries.size() + " entries: " + mAddedCount + " added, "
+                    + mRemovedCount + " removed, " + mMovedCount + " moved, " + mReboundCount
+                    + " rebound");
+        }
+        return order;
+    }
+}
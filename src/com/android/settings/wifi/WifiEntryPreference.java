@@ -96,6 +96,17 @@ public class WifiEntryPreference extends RestrictedPreference implements
         return mWifiEntry;
     }
 
+    /**
+     * Shows {@code wifiEntry} instead of the current WifiEntry, e.g. when the tracker replaced the
+     * object of the same network, and refreshes the preference.
+     */
+    public void setWifiEntry(@NonNull WifiEntry wifiEntry) {
+        mWifiEntry.setListener(null);
+        mWifiEntry = wifiEntry;
+        mWifiEntry.setListener(this);
+        refresh();
+    }
+
     @Override
     public void onBindViewHolder(final PreferenceViewHolder view) {
         super.onBindViewHolder(view);
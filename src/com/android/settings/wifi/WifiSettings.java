@@ -167,6 +167,7 @@ public class WifiSettings extends RestrictedSettingsFragment
     }
 
     private boolean mIsWifiEntryListStale = true;
+    private WifiEntryListUpdater mWifiEntryListUpdater;
     private final Runnable mUpdateWifiEntryPreferencesRunnable = () -> {
         updateWifiEntryPreferences();
     };
@@ -754,7 +755,9 @@ public class WifiSettings extends RestrictedSettingsFragment
                 return;
             }
             setProgressBarVisible(true);
-            view.postDelayed(mUpdateWifiEntryPreferencesRunnable, 300);
+            // Scan results can come every few seconds, don't redo the list more than once a second.
+            view.postDelayed(mUpdateWifiEntryPreferencesRunnable,
+                    getWifiEntryListUpdater().getUpdateDelay(300 /* minDelay */));
         }
     }
 
@@ -764,7 +767,6 @@ public class WifiSettings extends RestrictedSettingsFragment
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
         mStatusMessagePreference.setVisible(false);
         mWifiEntryPreferenceCategory.setVisible(true);
 
@@ -773,7 +775,12 @@ public class WifiSettings extends RestrictedSettingsFragment
         if (connectedEntry != null) {
             final LongPressWifiEntryPreference connectedPref =
                     mConnectedWifiEntryPreferenceCategory.findPreference(connectedEntry.getKey());
-            if (connectedPref == null || connectedPref.getWifiEntry() != connectedEntry) {
+            if (connectedPref != null) {
+                if (connectedPref.getWifiEntry() != connectedEntry) {
+                    // Same network, new object: keep the preference.
+                    connectedPref.setWifiEntry(connectedEntry);
+                }
+            } else {
                 mConnectedWifiEntryPreferenceCategory.removeAll();
                 final ConnectedWifiEntryPreference pref =
                         new ConnectedWifiEntryPreference(getPrefContext(), connectedEntry, this);
@@ -781,8 +788,9 @@ public class WifiSettings extends RestrictedSettingsFragment
                 pref.refresh();
                 mConnectedWifiEntryPreferenceCategory.addPreference(pref);
                 pref.setOnPreferenceClickListener(preference -> {
-                    if (connectedEntry.canSignIn()) {
-                        connectedEntry.signIn(null /* callback */);
+                    final WifiEntry wifiEntry = pref.getWifiEntry();
+                    if (wifiEntry.canSignIn()) {
+                        wifiEntry.signIn(null /* callback */);
                     } else {
                         launchNetworkDetailsFragment(pref);
                     }
@@ -801,57 +809,54 @@ public class WifiSettings extends RestrictedSettingsFragment
             mConnectedWifiEntryPreferenceCategory.removeAll();
         }
 
-        int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
-        for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
-            String key = wifiEntry.getKey();
-            LongPressWifiEntryPreference pref =
-                    (LongPressWifiEntryPreference) getCachedPreference(key);
-            if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
-            }
-
-            pref = createLongPressWifiEntryPreference(wifiEntry);
-            pref.setKey(wifiEntry.getKey());
-            pref.setOrder(index++);
-            pref.refresh();
-
-            if (wifiEntry.getHelpUriString() != null) {
-                pref.setOnButtonClickListener(preference -> {
-                    openSubscriptionHelpPage(wifiEntry);
-                });
-            }
-            mWifiEntryPreferenceCategory.addPreference(pref);
-        }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        int index = getWifiEntryListUpdater().update(mWifiEntryPreferenceCategory, wifiEntries,
+                0 /* firstOrder */);
+        final boolean hasAvailableWifiEntries = !wifiEntries.isEmpty();
 
+        final Preference emptyPref =
+                mWifiEntryPreferenceCategory.findPreference(PREF_KEY_EMPTY_WIFI_LIST);
         if (!hasAvailableWifiEntries) {
             setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
-            pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
+            if (emptyPref == null) {
+                Preference pref = new Preference(getPrefContext());
+                pref.setSelectable(false);
+                pref.setSummary(R.string.wifi_empty_list_wifi_on);
+                pref.setOrder(index);
+                pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+                mWifiEntryPreferenceCategory.addPreference(pref);
+            }
+            index++;
         } else {
+            if (emptyPref != null) {
+                mWifiEntryPreferenceCategory.removePreference(emptyPref);
+            }
             // Continuing showing progress bar for an additional delay to overlap with animation
             getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
         }
 
         mAddWifiNetworkPreference.setOrder(index++);
-        mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
+        if (mAddWifiNetworkPreference.getParent() != mWifiEntryPreferenceCategory) {
+            mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
+        }
         setAdditionalSettingsSummaries();
     }
 
+    private WifiEntryListUpdater getWifiEntryListUpdater() {
+        if (mWifiEntryListUpdater == null) {
+            mWifiEntryListUpdater = new WifiEntryListUpdater(this, wifiEntry -> {
+                final LongPressWifiEntryPreference pref =
+                        createLongPressWifiEntryPreference(wifiEntry);
+                // The button is only shown for WifiEntries with a help page.
+                pref.setOnButtonClickListener(preference -> {
+                    openSubscriptionHelpPage(preference.getWifiEntry());
+                });
+                return pref;
+            });
+        }
+        return mWifiEntryListUpdater;
+    }
+
     private void launchNetworkDetailsFragment(LongPressWifiEntryPreference pref) {
         final WifiEntry wifiEntry = pref.getWifiEntry();
         final Context context = getContext();
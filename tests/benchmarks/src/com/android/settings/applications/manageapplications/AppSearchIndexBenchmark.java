@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.applications.manageapplications.ManageApplications.ApplicationsAdapter.AppEntryDiffCallback;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Measures the per-keystroke cost of filtering an app list of {@link #APP_COUNT} entries, as the
+ * search filter of {@link ManageApplications} does while a query is typed.
+ *
+ * <p>Each iteration types {@link #QUERY} one character at a time, then clears it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppSearchIndexBenchmark {
+
+    private static final int APP_COUNT = 1000;
+    private static final String QUERY = "settings";
+    private static final String[] WORDS = {
+            "Settings", "Camera", "Café", "Calendar", "Münzen", "Maps", "Clock", "Señal",
+            "Photos", "Files", "Crème", "Notes", "Music", "Weather", "Éditeur", "Browser"};
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private ArrayList<AppEntry> mEntries;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mEntries = new ArrayList<>(APP_COUNT);
+        for (int i = 0; i < APP_COUNT; i++) {
+            final ApplicationInfo info = new ApplicationInfo();
+            info.packageName = "com.example.app" + i;
+            // The label is set below, don't load it from an apk.
+            info.sourceDir = "/nonexistent";
+            final AppEntry entry = new AppEntry(context, info, i);
+            entry.label = WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length]
+                    + " " + i;
+            mEntries.add(entry);
+        }
+    }
+
+    @Test
+    public void search_typing() {
+        final AppSearchIndex index = new AppSearchIndex(mEntries, Locale.US);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            for (int i = 1; i <= QUERY.length(); i++) {
+                index.search(QUERY.subSequence(0, i));
+            }
+            index.search("");
+        }
+    }
+
+    @Test
+    public void filter_typing() {
+        final AppSearchIndex index = new AppSearchIndex(mEntries, Locale.US);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            ArrayList<AppEntry> shownEntries = mEntries;
+            for (int i = 1; i <= QUERY.length(); i++) {
+                final ArrayList<AppEntry> matchedEntries = index.search(QUERY.subSequence(0, i));
+                if (!shownEntries.isEmpty() && !matchedEntries.isEmpty()) {
+                    DiffUtil.calculateDiff(new AppEntryDiffCallback(shownEntries, matchedEntries),
+                            false /* detectMoves */);
+                }
+                shownEntries = matchedEntries;
+            }
+            index.search("");
+        }
+    }
+
+    /** The filter before the search index, which lowercased every label on every keystroke. */
+    @Test
+    public void search_typing_lowercaseEveryLabel() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            for (int i = 1; i <= QUERY.length(); i++) {
+                final CharSequence query = QUERY.subSequence(0, i);
+                final ArrayList<AppEntry> matchedEntries = new ArrayList<>();
+                for (AppEntry entry : mEntries) {
+                    if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
+                        matchedEntries.add(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void buildIndex() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            new AppSearchIndex(mEntries, Locale.US);
+        }
+    }
+}
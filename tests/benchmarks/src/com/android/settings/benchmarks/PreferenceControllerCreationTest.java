@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmarks;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceControllerListHelper;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures creating the preference controllers declared in the XML of frequently opened screens,
+ * as done by every DashboardFragment creation and by search and slice indexing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PreferenceControllerCreationTest {
+
+    private static final int[] SCREENS = {
+            R.xml.top_level_settings,
+            R.xml.network_provider_internet,
+            R.xml.display_settings,
+    };
+    private static final String[] SCREEN_NAMES = {
+            "top_level_settings",
+            "network_provider_internet",
+            "display_settings",
+    };
+    private static final long[] sFirstCreationNanos = new long[SCREENS.length];
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    /**
+     * Creates the controllers of each screen once before any other test, while their classes are
+     * not loaded yet in the freshly started Settings process, like on a cold start.
+     */
+    @BeforeClass
+    public static void createControllersFirstTime() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (int i = 0; i < SCREENS.length; i++) {
+                final long start = SystemClock.elapsedRealtimeNanos();
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(context,
+                        SCREENS[i]);
+                sFirstCreationNanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+            }
+        });
+    }
+
+    @Test
+    public void createControllers_coldStart() {
+        final Bundle status = new Bundle();
+        for (int i = 0; i < SCREENS.length; i++) {
+            status.putLong(SCREEN_NAMES[i] + "_cold_ns", sFirstCreationNanos[i]);
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(Activity.RESULT_OK, status);
+    }
+
+    @Test
+    public void createControllers_topLevelSettings() {
+        createControllers(R.xml.top_level_settings);
+    }
+
+    @Test
+    public void createControllers_networkProviderInternet() {
+        createControllers(R.xml.network_provider_internet);
+    }
+
+    @Test
+    public void createControllers_displaySettings() {
+        createControllers(R.xml.display_settings);
+    }
+
+    private void createControllers(int xmlResId) {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        // Controllers may create handlers, so they are created on the main thread like in the app.
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            while (state.keepRunning()) {
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(context, xmlResId);
+            }
+        });
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.os.Build;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+/**
+ * Measures {@link PreferenceXmlParserUtils#extractMetadata} over a few preference screens: parsing
+ * the xml, copying the metadata out of {@link PreferenceMetadataCache}, and reading the cache file
+ * as the background preload does at process start.
+ *
+ * <p>This uses the cache of the app, and clears it when done. The app parses the xml again on its
+ * next request.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PreferenceMetadataCacheBenchmark {
+
+    private static final int[] XML_RES_IDS = {
+            R.xml.top_level_settings,
+            R.xml.display_settings,
+            R.xml.sound_settings,
+    };
+    private static final int FLAGS = MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_TYPE
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+            | MetadataFlag.FLAG_NEED_PREF_TITLE
+            | MetadataFlag.FLAG_NEED_PREF_SUMMARY
+            | MetadataFlag.FLAG_NEED_PREF_ICON
+            | MetadataFlag.FLAG_NEED_KEYWORDS;
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private Context mContext;
+    private PreferenceMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mCache = PreferenceMetadataCache.getInstance(mContext);
+        mCache.loadIfNeeded();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+    }
+
+    @Test
+    public void extractMetadata_notCached() throws Exception {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            mCache.clear();
+            state.resumeTiming();
+
+            extractMetadata();
+        }
+    }
+
+    @Test
+    public void extractMetadata_cached() throws Exception {
+        extractMetadata();
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            extractMetadata();
+        }
+    }
+
+    @Test
+    public void loadFile() throws Exception {
+        extractMetadata();
+        mCache.write();
+        final File file = new File(mContext.getCacheDir(), PreferenceMetadataCache.FILE_NAME);
+        final String fileKey =
+                Build.FINGERPRINT + "|" + PreferenceMetadataCache.getOverlayKey(mContext);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            new PreferenceMetadataCache(file, fileKey).loadIfNeeded();
+        }
+    }
+
+    private void extractMetadata() throws Exception {
+        for (int xmlResId : XML_RES_IDS) {
+            PreferenceXmlParserUtils.extractMetadata(mContext, xmlResId, FLAGS);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import android.app.Activity;
+import android.app.settings.SettingsEnums;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures logging the events of a user rapidly toggling a preference, on the caller's thread.
+ *
+ * <p>The events are logged in batches of {@link SettingsIntelligenceLogWriter#CACHE_LOG_THRESHOLD},
+ * the last of which makes the worker thread drain the ring buffer. The benchmark waits for that
+ * outside of the measured time, so the ring buffer never fills up and the events are measured on
+ * the path taken in the app, rather than on the fallback for a worker thread far behind.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SettingsIntelligenceLogWriterBenchmark {
+
+    private static final String KEY = "toggle_preference";
+    private static final int BATCH_SIZE = SettingsIntelligenceLogWriter.CACHE_LOG_THRESHOLD;
+    private static final int ALLOCATION_BATCHES = 100;
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private HandlerThread mWorkerThread;
+    private Handler mWorkerHandler;
+    private File mSpillFile;
+    private SettingsIntelligenceLogWriter mWriter;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mWorkerThread = new HandlerThread("SettingsIntelligenceLogWriterBenchmark");
+        mWorkerThread.start();
+        mWorkerHandler = new Handler(mWorkerThread.getLooper());
+        // Don't touch the logs of the app.
+        mSpillFile = new File(context.getCacheDir(), "benchmark_logs");
+        mWriter = new SettingsIntelligenceLogWriter(mWorkerThread.getLooper(), mSpillFile);
+    }
+
+    @After
+    public void tearDown() {
+        mWorkerThread.quitSafely();
+        mSpillFile.delete();
+    }
+
+    @Test
+    public void action_rapidToggle() throws InterruptedException {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        int events = 0;
+        while (state.keepRunning()) {
+            if (events == BATCH_SIZE) {
+                state.pauseTiming();
+                waitForWorker();
+                events = 0;
+                state.resumeTiming();
+            }
+            logToggle(events++);
+        }
+    }
+
+    @Test
+    public void action_rapidToggle_allocations() throws InterruptedException {
+        Debug.resetThreadAllocCount();
+        for (int batch = 0; batch < ALLOCATION_BATCHES; batch++) {
+            Debug.startAllocCounting();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                logToggle(i);
+            }
+            Debug.stopAllocCounting();
+            waitForWorker();
+        }
+
+        final int events = ALLOCATION_BATCHES * BATCH_SIZE;
+        final Bundle status = new Bundle();
+        status.putDouble("allocations_per_event", (double) Debug.getThreadAllocCount() / events);
+        status.putDouble("allocated_bytes_per_event",
+                (double) Debug.getThreadAllocSize() / events);
+        InstrumentationRegistry.getInstrumentation().sendStatus(Activity.RESULT_OK, status);
+    }
+
+    private void logToggle(int index) {
+        mWriter.action(SettingsEnums.SETTINGS_GESTURES,
+                SettingsEnums.ACTION_SETTINGS_PREFERENCE_CHANGE, SettingsEnums.PAGE_UNKNOWN, KEY,
+                index & 1);
+    }
+
+    /** Waits for the worker thread to send, and so drain, the batch that was just logged. */
+    private void waitForWorker() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mWorkerHandler.post(latch::countDown);
+        latch.await();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.os.Debug;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+import android.text.format.DateUtils;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures drawing the hourly {@link BatteryChartView} of a day, as done on every hover and
+ * selection change.
+ *
+ * <p>The cached variant draws with the geometry computed by the previous frame. The updated
+ * variant resizes the view before every frame, so the geometry is computed again as it was on
+ * every frame before it was cached. The allocation test reports the objects and bytes allocated by
+ * one frame with the cached geometry.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatteryChartViewBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 600;
+    private static final int LEVEL_COUNT = 13;
+    private static final int ALLOCATION_RUNS = 100;
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private BatteryChartView mChartView;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final List<Integer> levels = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            levels.add(100 - i * 5);
+            timestamps.add(i * 2 * DateUtils.HOUR_IN_MILLIS);
+        }
+        final BatteryChartViewModel viewModel = new BatteryChartViewModel(levels, timestamps,
+                BatteryChartViewModel.AxisLabelPosition.BETWEEN_TRAPEZOIDS,
+                new BatteryChartViewModel.LabelTextGenerator() {
+                    @Override
+                    public String generateText(List<Long> timestamps, int index) {
+                        return index * 2 + "h";
+                    }
+
+                    @Override
+                    public String generateFullText(List<Long> timestamps, int index) {
+                        return index * 2 + " hours";
+                    }
+                });
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            mChartView = new BatteryChartView(context, /* attrs= */ null);
+            mChartView.setViewModel(viewModel);
+            mChartView.layout(0, 0, WIDTH, HEIGHT);
+        });
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void draw_cachedGeometry() {
+        mChartView.draw(mCanvas);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            mChartView.draw(mCanvas);
+        }
+    }
+
+    @Test
+    public void draw_updatedGeometry() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        int frame = 0;
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            mChartView.layout(0, 0, WIDTH - frame++ % 2, HEIGHT);
+            state.resumeTiming();
+
+            mChartView.draw(mCanvas);
+        }
+    }
+
+    @Test
+    public void draw_cachedGeometry_allocations() {
+        mChartView.draw(mCanvas);
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int run = 0; run < ALLOCATION_RUNS; run++) {
+            mChartView.draw(mCanvas);
+        }
+        Debug.stopAllocCounting();
+        final Bundle status = new Bundle();
+        status.putDouble("allocations_per_frame",
+                (double) Debug.getThreadAllocCount() / ALLOCATION_RUNS);
+        status.putDouble("allocated_bytes_per_frame",
+                (double) Debug.getThreadAllocSize() / ALLOCATION_RUNS);
+        InstrumentationRegistry.getInstrumentation().sendStatus(Activity.RESULT_OK, status);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.app.Activity;
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Debug;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Measures processing a week of battery history of {@link #CONSUMER_COUNT} apps into hourly slots
+ * and their usage diff, as the battery usage page does when it opens.
+ *
+ * <p>The table variants keep the processed history in a {@link BatteryHistoryTable}. The map
+ * variants go through the map entry points, which also create an entry per slot and app and a map
+ * per slot, as the processing did before the table. The allocation tests report the objects and
+ * bytes allocated by one run of each.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatteryHistoryProcessingBenchmark {
+
+    private static final int CONSUMER_COUNT = 150;
+    private static final int DAYS = 7;
+    private static final int ALLOCATION_RUNS = 10;
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private Context mContext;
+    private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // Records a few minutes past every hour, as the periodic job does, up to now.
+        final long now = System.currentTimeMillis();
+        final long startTimestamp = now - DAYS * DateUtils.DAY_IN_MILLIS;
+        final long bootTime = startTimestamp - DateUtils.DAY_IN_MILLIS;
+        mBatteryHistoryMap = new ArrayMap<>();
+        int hour = 0;
+        for (long timestamp = startTimestamp; timestamp < now;
+                timestamp += DateUtils.HOUR_IN_MILLIS + 3 * DateUtils.MINUTE_IN_MILLIS) {
+            final Map<String, BatteryHistEntry> entryMap = new ArrayMap<>();
+            for (int uid = 0; uid < CONSUMER_COUNT; uid++) {
+                final BatteryHistEntry entry =
+                        createEntry(10000 + uid, timestamp, timestamp - bootTime, hour);
+                entryMap.put(entry.getKey(), entry);
+            }
+            mBatteryHistoryMap.put(timestamp, entryMap);
+            hour++;
+        }
+    }
+
+    @Test
+    public void processHistory_table() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            processWithTable();
+        }
+    }
+
+    @Test
+    public void processHistory_maps() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            processWithMaps();
+        }
+    }
+
+    @Test
+    public void processHistory_table_allocations() {
+        processWithTable();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int run = 0; run < ALLOCATION_RUNS; run++) {
+            processWithTable();
+        }
+        Debug.stopAllocCounting();
+        sendAllocationStatus();
+    }
+
+    @Test
+    public void processHistory_maps_allocations() {
+        processWithMaps();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int run = 0; run < ALLOCATION_RUNS; run++) {
+            processWithMaps();
+        }
+        Debug.stopAllocCounting();
+        sendAllocationStatus();
+    }
+
+    private void processWithTable() {
+        final BatteryHistoryTable table =
+                DataProcessor.getHistoryTableWithExpectedTimestamps(mContext, mBatteryHistoryMap);
+        final BatteryLevelData batteryLevelData =
+                DataProcessor.getLevelDataThroughProcessedHistoryTable(mContext, table);
+        DataProcessor.getBatteryDiffDataMap(mContext,
+                batteryLevelData.getHourlyBatteryLevelsPerDay(), table,
+                /* appUsagePeriodMap= */ null, Set.of(), Set.of());
+    }
+
+    private void processWithMaps() {
+        final Map<Long, Map<String, BatteryHistEntry>> processedMap =
+                DataProcessor.getHistoryMapWithExpectedTimestamps(mContext, mBatteryHistoryMap);
+        final BatteryLevelData batteryLevelData =
+                DataProcessor.getLevelDataThroughProcessedHistoryMap(mContext, processedMap);
+        DataProcessor.getBatteryDiffDataMap(mContext,
+                batteryLevelData.getHourlyBatteryLevelsPerDay(), processedMap,
+                /* appUsagePeriodMap= */ null, Set.of(), Set.of());
+    }
+
+    private static void sendAllocationStatus() {
+        final Bundle status = new Bundle();
+        status.putDouble("allocations_per_run",
+                (double) Debug.getThreadAllocCount() / ALLOCATION_RUNS);
+        status.putDouble("allocated_bytes_per_run",
+                (double) Debug.getThreadAllocSize() / ALLOCATION_RUNS);
+        InstrumentationRegistry.getInstrumentation().sendStatus(Activity.RESULT_OK, status);
+    }
+
+    private static BatteryHistEntry createEntry(
+            int uid, long timestamp, long bootTimestamp, int hour) {
+        // Usage grows every hour, more for the first apps.
+        final double consumePower = hour * (CONSUMER_COUNT - uid % CONSUMER_COUNT) * 0.01;
+        final DeviceBatteryState deviceBatteryState =
+                DeviceBatteryState
+                        .newBuilder()
+                        .setBatteryLevel(100 - hour % 100)
+                        .build();
+        final BatteryInformation batteryInformation =
+                BatteryInformation
+                        .newBuilder()
+                        .setDeviceBatteryState(deviceBatteryState)
+                        .setBootTimestamp(bootTimestamp)
+                        .setAppLabel("App " + uid)
+                        .setConsumePower(consumePower)
+                        .setForegroundUsageConsumePower(consumePower / 2)
+                        .setBackgroundUsageConsumePower(consumePower / 2)
+                        .setForegroundUsageTimeInMs(hour * DateUtils.MINUTE_IN_MILLIS)
+                        .setBackgroundUsageTimeInMs(hour * DateUtils.SECOND_IN_MILLIS)
+                        .build();
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_UID, (long) uid);
+        values.put(BatteryHistEntry.KEY_USER_ID, 0L);
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, "com.example.app" + uid);
+        values.put(BatteryHistEntry.KEY_TIMESTAMP, timestamp);
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, ConvertUtils.CONSUMER_TYPE_UID_BATTERY);
+        values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION,
+                ConvertUtils.convertBatteryInformationToString(batteryInformation));
+        return new BatteryHistEntry(values);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.content.Context;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Measures building the usage of six days of stored {@link BatteryUsageSlot}s of
+ * {@link #CONSUMER_COUNT} apps, as the battery usage page does when it opens: loading the slots,
+ * converting them to {@link BatteryDiffData} and accumulating the daily and all-time usage.
+ *
+ * <p>The cold variant clears {@link BatteryUsageSlotCache} before every run, as on the first open
+ * in a process. The warm variant reuses it, as on the later opens.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatteryUsageSlotCacheBenchmark {
+
+    private static final int CONSUMER_COUNT = 150;
+    private static final int DAYS = 6;
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private final List<BatteryUsageSlot> mStoredSlots = new ArrayList<>();
+
+    private Context mContext;
+    private Calendar mCalendar;
+    private BatteryLevelData mBatteryLevelData;
+    private BatteryUsageSlotCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mCalendar = Calendar.getInstance();
+        final long now = mCalendar.getTimeInMillis();
+        final Map<Long, Integer> batteryLevelMap = new ArrayMap<>();
+        for (long timestamp = now - DAYS * DateUtils.DAY_IN_MILLIS; timestamp <= now;
+                timestamp += DateUtils.HOUR_IN_MILLIS) {
+            batteryLevelMap.put(timestamp, 50);
+        }
+        mBatteryLevelData = new BatteryLevelData(batteryLevelMap);
+        for (BatteryLevelData.PeriodBatteryLevelData hourlyData :
+                mBatteryLevelData.getHourlyBatteryLevelsPerDay()) {
+            final List<Long> timestamps = hourlyData.getTimestamps();
+            for (int i = 0; i < timestamps.size() - 1; i++) {
+                mStoredSlots.add(createSlot(timestamps.get(i), timestamps.get(i + 1)));
+            }
+        }
+        mCache = new BatteryUsageSlotCache((context, calendar, startTimestamp) -> {
+            final List<BatteryUsageSlot> slots = new ArrayList<>();
+            for (BatteryUsageSlot slot : mStoredSlots) {
+                if (slot.getStartTimestamp() >= startTimestamp) {
+                    slots.add(slot);
+                }
+            }
+            return slots;
+        }, DataProcessor::getAccumulatedUsageDiffData);
+        BatteryUsageSlotCache.setTestInstance(mCache);
+    }
+
+    @After
+    public void tearDown() {
+        BatteryUsageSlotCache.setTestInstance(null);
+    }
+
+    @Test
+    public void openPage_cold() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            mCache.clear();
+            state.resumeTiming();
+
+            openPage();
+        }
+    }
+
+    @Test
+    public void openPage_warm() {
+        openPage();
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            openPage();
+        }
+    }
+
+    private void openPage() {
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
+        for (BatteryUsageSlot slot : mCache.getBatteryUsageSlots(
+                mContext, mCalendar, /* rawStartTimestamp= */ 0L)) {
+            batteryDiffDataMap.put(slot.getStartTimestamp(),
+                    mCache.getBatteryDiffData(mContext, slot, Set.of(), Set.of()));
+        }
+        DataProcessor.generateBatteryUsageMap(mContext, batteryDiffDataMap, mBatteryLevelData);
+    }
+
+    private static BatteryUsageSlot createSlot(long startTimestamp, long endTimestamp) {
+        final BatteryUsageSlot.Builder builder = BatteryUsageSlot.newBuilder()
+                .setStartTimestamp(startTimestamp)
+                .setEndTimestamp(endTimestamp)
+                .setStartBatteryLevel(50)
+                .setEndBatteryLevel(50);
+        for (int uid = 0; uid < CONSUMER_COUNT; uid++) {
+            final double consumePower = (CONSUMER_COUNT - uid) * 0.01;
+            builder.addAppUsage(BatteryUsageDiff.newBuilder()
+                    .setUid(10000 + uid)
+                    .setPackageName("com.example.app" + uid)
+                    .setLabel("App " + uid)
+                    .setKey(String.valueOf(10000 + uid))
+                    .setConsumerType(ConvertUtils.CONSUMER_TYPE_UID_BATTERY)
+                    .setConsumePower(consumePower)
+                    .setForegroundUsageConsumePower(consumePower / 2)
+                    .setBackgroundUsageConsumePower(consumePower / 2)
+                    .setForegroundUsageTime(DateUtils.MINUTE_IN_MILLIS)
+                    .setBackgroundUsageTime(DateUtils.SECOND_IN_MILLIS));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Measures the static index queries of {@link SettingsSearchIndexablesProvider}: without a
+ * snapshot, with the snapshot loaded from disk, and with the snapshot in memory.
+ *
+ * <p>This uses the snapshot file of the app, and deletes it when done. The app rebuilds it on its
+ * next query.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchIndexSnapshotBenchmark {
+
+    private static final Supplier<List<Object[]>> NO_BUILDER = () -> {
+        throw new IllegalStateException("Snapshot not on disk");
+    };
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private Context mContext;
+    private SettingsSearchIndexablesProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mProvider = new SettingsSearchIndexablesProvider();
+        final ProviderInfo info = new ProviderInfo();
+        info.authority = mContext.getPackageName() + ".benchmark.search";
+        mProvider.attachInfo(mContext, info);
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.getSnapshot().invalidate();
+    }
+
+    @Test
+    public void queryStaticIndex_cold() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            mProvider.getSnapshot().invalidate();
+            state.resumeTiming();
+
+            queryStaticIndex();
+        }
+    }
+
+    @Test
+    public void loadSnapshot_fromDisk() {
+        queryStaticIndex();
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            final SearchIndexSnapshot snapshot = new SearchIndexSnapshot(mContext);
+            snapshot.getXmlResourceRows(NO_BUILDER);
+            snapshot.getRawRows(NO_BUILDER);
+        }
+    }
+
+    @Test
+    public void queryStaticIndex_warm() {
+        queryStaticIndex();
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            queryStaticIndex();
+        }
+    }
+
+    private void queryStaticIndex() {
+        mProvider.queryXmlResources(null /* projection */).close();
+        mProvider.queryRawData(null /* projection */).close();
+    }
+}
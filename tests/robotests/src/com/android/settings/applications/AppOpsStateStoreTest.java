@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.SparseArray;
+
+import com.android.settings.applications.AppStateAppOpsBridge.PermissionState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public final class AppOpsStateStoreTest {
+
+    private static final String KEY = "key";
+    private static final String PKG = "pkg";
+
+    private AppOpsStateStore mStore;
+    private SparseArray<ArrayMap<String, PermissionState>> mEntries;
+
+    @Before
+    public void setUp() {
+        mStore = new AppOpsStateStore();
+        mEntries = new SparseArray<>();
+    }
+
+    @Test
+    public void getSnapshot_noSnapshot_returnsNull() {
+        assertThat(mStore.getSnapshot(KEY, new ArraySet<>())).isNull();
+    }
+
+    @Test
+    public void getSnapshot_afterPut_returnsStoredEntries() {
+        final Set<String> invalidPackages = new ArraySet<>();
+        mStore.putSnapshot(KEY, mEntries);
+
+        assertThat(mStore.getSnapshot(KEY, invalidPackages)).isSameInstanceAs(mEntries);
+        assertThat(invalidPackages).isEmpty();
+    }
+
+    @Test
+    public void invalidatePackage_returnsPackageOnlyOnce() {
+        mStore.putSnapshot(KEY, mEntries);
+        mStore.invalidatePackage(PKG);
+
+        final Set<String> invalidPackages = new ArraySet<>();
+        mStore.getSnapshot(KEY, invalidPackages);
+        assertThat(invalidPackages).containsExactly(PKG);
+
+        invalidPackages.clear();
+        mStore.getSnapshot(KEY, invalidPackages);
+        assertThat(invalidPackages).isEmpty();
+    }
+
+    @Test
+    public void invalidatePackage_notifiesListeners() {
+        final AppOpsStateStore.Listener listener = mock(AppOpsStateStore.Listener.class);
+        final AppOpsStateStore.Listener removedListener = mock(AppOpsStateStore.Listener.class);
+        mStore.addListener(listener);
+        mStore.addListener(removedListener);
+        mStore.removeListener(removedListener);
+
+        mStore.invalidatePackage(PKG);
+
+        verify(listener).onPackageInvalidated(PKG);
+        verify(removedListener, never()).onPackageInvalidated(PKG);
+    }
+
+    @Test
+    public void clear_dropsSnapshots() {
+        mStore.putSnapshot(KEY, mEntries);
+
+        mStore.clear();
+
+        assertThat(mStore.getSnapshot(KEY, new ArraySet<>())).isNull();
+    }
+}
@@ -16,18 +16,29 @@
 
 package com.android.settings.applications;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.Manifest;
 import android.app.AppOpsManager;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.IPackageManager;
+import android.os.Looper;
+import android.os.Process;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
 
+import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 
 import com.google.common.truth.Truth;
@@ -38,6 +49,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 
 @RunWith(RobolectricTestRunner.class)
 public final class AppStateAppOpsBridgeTest {
@@ -46,12 +61,18 @@ public final class AppStateAppOpsBridgeTest {
     @Mock private UserManager mUserManager;
     @Mock private IPackageManager mPackageManagerService;
     @Mock private AppOpsManager mAppOpsManager;
+    @Mock private ApplicationsState mAppState;
+    @Mock private ApplicationsState.Session mSession;
+    @Mock private AppStateBaseBridge.Callback mCallback;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         when(mContext.getSystemService(Context.USER_SERVICE)).thenReturn(mUserManager);
         when(mContext.getSystemService(Context.APP_OPS_SERVICE)).thenReturn(mAppOpsManager);
+        when(mContext.getApplicationContext()).thenReturn(RuntimeEnvironment.application);
+        when(mAppState.newSession(any())).thenReturn(mSession);
+        when(mAppState.getBackgroundLooper()).thenReturn(Looper.getMainLooper());
     }
 
     @Test
@@ -63,6 +84,39 @@ public final class AppStateAppOpsBridgeTest {
         // should not crash
     }
 
+    @Test
+    public void invalidatePackage_resumed_updatesEntryOfEachUserWithItsUid() {
+        final int ownerUid = UserHandle.getUid(0 /* userId */, 10123);
+        final int workUid = UserHandle.getUid(10 /* userId */, 10123);
+        final AppEntry ownerApp = getMockAppEntry("pkg1", ownerUid);
+        final AppEntry workApp = getMockAppEntry("pkg1", workUid);
+        final AppEntry otherApp = getMockAppEntry("pkg2", ownerUid + 1);
+        when(mSession.getAllApps()).thenReturn(
+                new ArrayList<>(Arrays.asList(ownerApp, workApp, otherApp)));
+        final AppStateAppOpsBridge bridge = new TestAppStateAppOpsBridge(mAppState, mCallback);
+        bridge.resume(false /* forceLoadAllApps */);
+
+        try {
+            AppOpsStateStore.getInstance().invalidatePackage("pkg1");
+            shadowOf(Looper.getMainLooper()).idle();
+        } finally {
+            bridge.pause();
+        }
+
+        assertThat(((AppStateAppOpsBridge.PermissionState) ownerApp.extraInfo).userHandle)
+                .isEqualTo(UserHandle.of(0));
+        assertThat(((AppStateAppOpsBridge.PermissionState) workApp.extraInfo).userHandle)
+                .isEqualTo(UserHandle.of(10));
+        assertThat(otherApp.extraInfo).isNull();
+        verify(mAppOpsManager)
+                .getOpsForPackage(ownerUid, "pkg1", AppOpsManager.OP_SYSTEM_ALERT_WINDOW);
+        verify(mAppOpsManager)
+                .getOpsForPackage(workUid, "pkg1", AppOpsManager.OP_SYSTEM_ALERT_WINDOW);
+        verify(mAppOpsManager, never()).getOpsForPackage(
+                Process.INVALID_UID, "pkg1", AppOpsManager.OP_SYSTEM_ALERT_WINDOW);
+        verify(mCallback).onExtraInfoUpdated();
+    }
+
     @Test
     public void permissionState_modeDefault_IsPermissible() {
         AppStateAppOpsBridge.PermissionState permissionState =
@@ -115,15 +169,28 @@ public final class AppStateAppOpsBridgeTest {
         Truth.assertThat(permissionState.isPermissible()).isFalse();
     }
 
+    private AppEntry getMockAppEntry(String pkg, int uid) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = pkg;
+        entry.info.uid = uid;
+        return entry;
+    }
+
     private class TestAppStateAppOpsBridge extends AppStateAppOpsBridge {
         private TestAppStateAppOpsBridge() {
-            super(mContext, null, null, AppOpsManager.OP_SYSTEM_ALERT_WINDOW,
+            this(null, null);
+        }
+
+        private TestAppStateAppOpsBridge(ApplicationsState appState, Callback callback) {
+            super(mContext, appState, callback, AppOpsManager.OP_SYSTEM_ALERT_WINDOW,
                 new String[] {Manifest.permission.SYSTEM_ALERT_WINDOW},
                 mPackageManagerService);
         }
 
         @Override
         protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
+            app.extraInfo = getPermissionInfo(pkg, uid);
         }
     }
 }
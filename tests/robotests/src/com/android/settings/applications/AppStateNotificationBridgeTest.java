@@ -54,6 +54,7 @@ import android.widget.Switch;
 import com.android.settings.R;
 import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationUsageIndex;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 
@@ -100,8 +101,10 @@ public class AppStateNotificationBridgeTest {
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
         mContext = RuntimeEnvironment.application.getApplicationContext();
 
+        // The events below are sent right after the epoch, keep them inside the index window.
         mBridge = new AppStateNotificationBridge(mContext, mState,
-                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend);
+                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend,
+                new NotificationUsageIndex(() -> DAY_IN_MILLIS));
     }
 
     private AppEntry getMockAppEntry(String pkg) {
@@ -287,7 +290,8 @@ public class AppStateNotificationBridgeTest {
         when(mUserManager.getProfiles(anyInt())).thenReturn(Arrays.asList(
                 new UserInfo(1, "", UserInfo.FLAG_MANAGED_PROFILE | UserInfo.FLAG_PROFILE)));
         mBridge = new AppStateNotificationBridge(mContext, mState,
-                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend);
+                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend,
+                new NotificationUsageIndex(() -> DAY_IN_MILLIS));
 
         List<Event> eventsProfileOwner = new ArrayList<>();
         for (int i = 0; i < 8; i++) {
@@ -340,12 +344,12 @@ public class AppStateNotificationBridgeTest {
 
     @Test
     public void testUpdateExtraInfo_noEvents() throws RemoteException {
-        when(mUsageStats.queryEventsForPackageForUser(
-                anyLong(), anyLong(), anyInt(), anyString(), anyString()))
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
                 .thenReturn(mock(UsageEvents.class));
         AppEntry entry = getMockAppEntry(PKG1);
 
         mBridge.updateExtraInfo(entry, "", 0);
+        verify(mUsageStats).queryEventsForUser(anyLong(), anyLong(), eq(0), anyString());
         assertThat(entry.extraInfo).isNull();
     }
 
@@ -361,8 +365,8 @@ public class AppStateNotificationBridgeTest {
         }
 
         UsageEvents usageEvents = getUsageEvents(events);
-        when(mUsageStats.queryEventsForPackageForUser(
-                anyLong(), anyLong(), anyInt(), anyString(), anyString())).thenReturn(usageEvents);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(usageEvents);
 
         AppEntry entry = getMockAppEntry(PKG1);
         mBridge.updateExtraInfo(entry, "", 0);
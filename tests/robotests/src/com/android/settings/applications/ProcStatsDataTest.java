@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import com.android.internal.app.procstats.IProcessStats;
+import com.android.internal.app.procstats.ProcessStats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+
+@RunWith(RobolectricTestRunner.class)
+public class ProcStatsDataTest {
+
+    private static final long DURATION = 3 * 60 * 60 * 1000L;
+    private static final long OTHER_DURATION = 24 * 60 * 60 * 1000L;
+    private static final String PACKAGE = "com.example.app";
+    private static final String OTHER_PACKAGE = "com.example.other";
+
+    @Mock
+    private IProcessStats mProcessStats;
+
+    private Context mContext;
+    private long mNow;
+    private ProcStatsData.StatsCache mStatsCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mStatsCache = new ProcStatsData.StatsCache(() -> mNow);
+        ProcStatsData.setStatsCache(mStatsCache);
+    }
+
+    @After
+    public void tearDown() {
+        ProcStatsData.setStatsCache(new ProcStatsData.StatsCache(SystemClock::elapsedRealtime));
+    }
+
+    @Test
+    public void statsCache_withinMaxAge_shouldReturnStats() {
+        final ProcessStats stats = new ProcessStats(false);
+        mStatsCache.put(DURATION, stats);
+
+        mNow += ProcStatsData.MAX_STATS_AGE_MS;
+
+        assertThat(mStatsCache.get(DURATION).mStats).isSameInstanceAs(stats);
+    }
+
+    @Test
+    public void statsCache_olderThanMaxAge_shouldDropStats() {
+        mStatsCache.put(DURATION, new ProcessStats(false));
+
+        mNow += ProcStatsData.MAX_STATS_AGE_MS + 1;
+
+        assertThat(mStatsCache.get(DURATION)).isNull();
+    }
+
+    @Test
+    public void statsCache_clockWentBack_shouldDropStats() {
+        mNow = 1000L;
+        mStatsCache.put(DURATION, new ProcessStats(false));
+
+        mNow = 0L;
+
+        assertThat(mStatsCache.get(DURATION)).isNull();
+    }
+
+    @Test
+    public void refreshStats_cachedResult_shouldNotReadStats() throws RemoteException {
+        cacheResult(DURATION, PACKAGE);
+        final ProcStatsData data = new ProcStatsData(mContext, mProcessStats, false);
+        data.setDuration(DURATION);
+
+        data.refreshStats(false);
+
+        verify(mProcessStats, never()).getStatsOverTime(anyLong());
+        assertThat(data.getEntries()).hasSize(1);
+        assertThat(data.getEntries().get(0).mPackage).isEqualTo(PACKAGE);
+    }
+
+    @Test
+    public void setDuration_cachedDuration_shouldNotReadStats() throws RemoteException {
+        cacheResult(DURATION, PACKAGE);
+        cacheResult(OTHER_DURATION, OTHER_PACKAGE);
+        final ProcStatsData data = new ProcStatsData(mContext, mProcessStats, false);
+        data.setDuration(DURATION);
+
+        data.setDuration(OTHER_DURATION);
+
+        verify(mProcessStats, never()).getStatsOverTime(anyLong());
+        assertThat(data.getDuration()).isEqualTo(OTHER_DURATION);
+        assertThat(data.getEntries().get(0).mPackage).isEqualTo(OTHER_PACKAGE);
+    }
+
+    @Test
+    public void refreshStats_cachedResult_shouldApplyCopies() {
+        cacheResult(DURATION, PACKAGE);
+        final ProcStatsData data = new ProcStatsData(mContext, mProcessStats, false);
+        final ProcStatsData otherData = new ProcStatsData(mContext, mProcessStats, false);
+        data.setDuration(DURATION);
+        otherData.setDuration(DURATION);
+
+        assertThat(data.getEntries()).isNotSameInstanceAs(otherData.getEntries());
+        assertThat(data.getEntries().get(0))
+                .isNotSameInstanceAs(otherData.getEntries().get(0));
+        assertThat(data.getMemInfo()).isNotSameInstanceAs(otherData.getMemInfo());
+
+        // Sorting or clearing the list of one screen leaves the others untouched.
+        data.getEntries().clear();
+
+        assertThat(otherData.getEntries()).hasSize(1);
+        final ProcStatsData newData = new ProcStatsData(mContext, mProcessStats, false);
+        newData.setDuration(DURATION);
+        assertThat(newData.getEntries()).hasSize(1);
+    }
+
+    private void cacheResult(long duration, String packageName) {
+        final ArrayList<ProcStatsPackageEntry> entries = new ArrayList<>();
+        entries.add(new ProcStatsPackageEntry(packageName, /* windowLength= */ 100L));
+        final ProcStatsData.MemInfo memInfo = mock(ProcStatsData.MemInfo.class);
+        ReflectionHelpers.setField(memInfo, "mMemStateWeights",
+                new double[ProcessStats.STATE_COUNT]);
+        mStatsCache.put(duration, new ProcessStats(false)).setResult(ProcessStats.ALL_MEM_ADJ,
+                ProcessStats.BACKGROUND_PROC_STATES, entries, memInfo, /* memTotalTime= */ 100L);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.android.settings.applications.RunningState.CONTENTS_UPDATE_DELAY;
+import static com.android.settings.applications.RunningState.MAX_CONTENTS_UPDATE_DELAY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class RunningStateTest {
+
+    private static final ComponentName SERVICE = new ComponentName("pkg", "pkg.Service");
+    private static final ComponentName OTHER_SERVICE =
+            new ComponentName("other", "other.Service");
+
+    private RunningState.ServiceInfoCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new RunningState.ServiceInfoCache();
+    }
+
+    @Test
+    public void getNextContentsUpdateDelay_unchanged_shouldBackOffUpToMax() {
+        long delay = CONTENTS_UPDATE_DELAY;
+
+        delay = RunningState.getNextContentsUpdateDelay(delay, false /* changed */);
+        assertThat(delay).isEqualTo(CONTENTS_UPDATE_DELAY * 2);
+
+        for (int i = 0; i < 10; i++) {
+            delay = RunningState.getNextContentsUpdateDelay(delay, false /* changed */);
+        }
+        assertThat(delay).isEqualTo(MAX_CONTENTS_UPDATE_DELAY);
+    }
+
+    @Test
+    public void getNextContentsUpdateDelay_changed_shouldPollQuicklyAgain() {
+        assertThat(RunningState.getNextContentsUpdateDelay(MAX_CONTENTS_UPDATE_DELAY,
+                true /* changed */)).isEqualTo(CONTENTS_UPDATE_DELAY);
+    }
+
+    @Test
+    public void serviceInfoCache_shouldBeKeyedByUser() {
+        final RunningState.CachedServiceInfo info = createInfo(SERVICE);
+        mCache.put(0 /* userId */, SERVICE, info);
+
+        assertThat(mCache.get(0 /* userId */, SERVICE)).isSameInstanceAs(info);
+        assertThat(mCache.get(10 /* userId */, SERVICE)).isNull();
+    }
+
+    @Test
+    public void evictPackage_shouldOnlyDropServicesOfPackage() {
+        mCache.put(0 /* userId */, SERVICE, createInfo(SERVICE));
+        mCache.put(10 /* userId */, SERVICE, createInfo(SERVICE));
+        mCache.put(0 /* userId */, OTHER_SERVICE, createInfo(OTHER_SERVICE));
+
+        mCache.evictPackage("pkg");
+
+        assertThat(mCache.get(0 /* userId */, SERVICE)).isNull();
+        assertThat(mCache.get(10 /* userId */, SERVICE)).isNull();
+        assertThat(mCache.get(0 /* userId */, OTHER_SERVICE)).isNotNull();
+    }
+
+    @Test
+    public void packageChangeReceiver_packageUpdated_shouldDropItsServices() {
+        mCache.put(0 /* userId */, SERVICE, createInfo(SERVICE));
+        final Intent intent = new Intent(Intent.ACTION_PACKAGE_ADDED,
+                Uri.fromParts("package", "pkg", null /* fragment */))
+                .putExtra(Intent.EXTRA_REPLACING, true);
+
+        new RunningState.PackageChangeReceiver(mCache)
+                .onReceive(RuntimeEnvironment.application, intent);
+
+        assertThat(mCache.get(0 /* userId */, SERVICE)).isNull();
+    }
+
+    private static RunningState.CachedServiceInfo createInfo(ComponentName service) {
+        final ServiceInfo serviceInfo = new ServiceInfo();
+        serviceInfo.packageName = service.getPackageName();
+        serviceInfo.name = service.getClassName();
+        return new RunningState.CachedServiceInfo(serviceInfo, service.getClassName());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppSearchIndexTest {
+
+    @Test
+    public void normalize_shouldFoldCaseAndDiacritics() {
+        assertThat(AppSearchIndex.normalize("Café Élan", Locale.US)).isEqualTo("cafe elan");
+    }
+
+    @Test
+    public void normalize_null_shouldReturnEmpty() {
+        assertThat(AppSearchIndex.normalize(null, Locale.US)).isEmpty();
+    }
+
+    @Test
+    public void search_shouldIgnoreCaseAndDiacritics() {
+        final AppSearchIndex index = new AppSearchIndex(
+                getTestAppList("Café", "Calendar", "Maps"), Locale.US);
+
+        final List<AppEntry> entries = index.search("CAFE");
+
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).label).isEqualTo("Café");
+    }
+
+    @Test
+    public void search_emptyQuery_shouldReturnAllEntries() {
+        final ArrayList<AppEntry> appList = getTestAppList("Café", "Calendar", "Maps");
+        final AppSearchIndex index = new AppSearchIndex(appList, Locale.US);
+
+        assertThat(index.search("")).isSameInstanceAs(appList);
+    }
+
+    @Test
+    public void search_extendedQuery_shouldNarrowPreviousResults() {
+        final AppSearchIndex index = new AppSearchIndex(
+                getTestAppList("Calculator", "Calendar", "Camera", "Maps"), Locale.US);
+
+        assertThat(index.search("ca")).hasSize(3);
+        final List<AppEntry> entries = index.search("cal");
+
+        assertThat(entries).hasSize(2);
+        assertThat(entries.get(0).label).isEqualTo("Calculator");
+        assertThat(entries.get(1).label).isEqualTo("Calendar");
+    }
+
+    @Test
+    public void search_shorterQuery_shouldSearchAllEntries() {
+        final AppSearchIndex index = new AppSearchIndex(
+                getTestAppList("Calculator", "Calendar", "Camera", "Maps"), Locale.US);
+
+        index.search("cal");
+        final List<AppEntry> entries = index.search("a");
+
+        assertThat(entries).hasSize(4);
+    }
+
+    private static ArrayList<AppEntry> getTestAppList(String... appNames) {
+        final ArrayList<AppEntry> appList = new ArrayList<>();
+        for (String name : appNames) {
+            final AppEntry appEntry = mock(AppEntry.class);
+            appEntry.label = name;
+            appList.add(appEntry);
+        }
+        return appList;
+    }
+}
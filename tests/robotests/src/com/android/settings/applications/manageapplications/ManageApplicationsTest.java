@@ -448,6 +448,27 @@ public class ManageApplicationsTest {
         assertThat(adapter.getAppEntry(2).label).isEqualTo("Mango");
     }
 
+    @Test
+    public void applicationsAdapter_filterSearch_shownList_shouldOnlyNotifyRemovedItems() {
+        final ManageApplications.ApplicationsAdapter adapter =
+                new ManageApplications.ApplicationsAdapter(
+                        mState, mFragment, mock(AppFilterItem.class), Bundle.EMPTY);
+        final String[] appNames = {"Apricot", "Banana", "Cantaloupe", "Fig", "Mango"};
+        final ArrayList<AppEntry> appList = getTestAppList(appNames);
+        ReflectionHelpers.setField(adapter, "mOriginalEntries", appList);
+        ReflectionHelpers.setField(adapter, "mEntries", appList);
+        final RecyclerView.AdapterDataObserver observer =
+                mock(RecyclerView.AdapterDataObserver.class);
+        adapter.registerAdapterDataObserver(observer);
+
+        adapter.filterSearch("an");
+
+        verify(observer).onItemRangeRemoved(3, 1);
+        verify(observer).onItemRangeRemoved(0, 1);
+        verify(observer, never()).onChanged();
+        assertThat(adapter.getItemCount()).isEqualTo(3);
+    }
+
     @Test
     public void sortOrderSavedOnRebuild() {
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.BasePreferenceController.AVAILABLE;
+import static com.android.settings.core.BasePreferenceController.UNSUPPORTED_ON_DEVICE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+import android.provider.Settings;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class AvailabilityCacheTest {
+
+    private static final Uri URI = Settings.Global.getUriFor("test_setting");
+    private static final String KEY = "key";
+
+    private Context mContext;
+    private InvalidationMonitor mMonitor;
+    private AvailabilityCache mCache;
+    private FakeController mController;
+    private InvalidationSources mSources;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = RuntimeEnvironment.application;
+        mMonitor = new InvalidationMonitor(mContext);
+        mCache = new AvailabilityCache(mMonitor);
+        mController = new FakeController(mContext, KEY);
+        mSources = new InvalidationSources.Builder().addUri(URI).build();
+    }
+
+    @Test
+    public void getAvailabilityStatus_calledTwice_shouldComputeOnce() {
+        assertThat(mCache.getAvailabilityStatus(mContext, mController, mSources))
+                .isEqualTo(AVAILABLE);
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+
+        assertThat(mCache.getAvailabilityStatus(mContext, mController, mSources))
+                .isEqualTo(AVAILABLE);
+        assertThat(mController.mComputeCount).isEqualTo(1);
+    }
+
+    @Test
+    public void getAvailabilityStatus_otherControllerSameKey_shouldShareStatus() {
+        mCache.getAvailabilityStatus(mContext, mController, mSources);
+        final FakeController otherController = new FakeController(mContext, KEY);
+
+        mCache.getAvailabilityStatus(mContext, otherController, mSources);
+
+        assertThat(otherController.mComputeCount).isEqualTo(0);
+    }
+
+    @Test
+    public void getAvailabilityStatus_sourceChanged_shouldRecompute() {
+        mCache.getAvailabilityStatus(mContext, mController, mSources);
+        mController.mStatus = UNSUPPORTED_ON_DEVICE;
+
+        mMonitor.dispatchUriChanged(URI);
+
+        assertThat(mCache.getAvailabilityStatus(mContext, mController, mSources))
+                .isEqualTo(UNSUPPORTED_ON_DEVICE);
+        assertThat(mController.mComputeCount).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidateAll_shouldRecompute() {
+        mCache.getAvailabilityStatus(mContext, mController, mSources);
+
+        mCache.invalidateAll();
+        mCache.getAvailabilityStatus(mContext, mController, mSources);
+
+        assertThat(mController.mComputeCount).isEqualTo(2);
+    }
+
+    @Test
+    public void dumpStats_shouldCountComputationsAndHits() throws Exception {
+        mCache.getAvailabilityStatus(mContext, mController, mSources);
+        mCache.getAvailabilityStatus(mContext, mController, mSources);
+        mCache.getAvailabilityStatus(mContext, mController, mSources);
+
+        final JSONObject stats = mCache.dumpStats()
+                .getJSONObject(FakeController.class.getName() + "/" + KEY);
+        assertThat(stats.getInt("computed")).isEqualTo(1);
+        assertThat(stats.getInt("cache_hits")).isEqualTo(2);
+    }
+
+    private static class FakeController extends BasePreferenceController {
+
+        private int mStatus = AVAILABLE;
+        private int mComputeCount;
+
+        FakeController(Context context, String key) {
+            super(context, key);
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            mComputeCount++;
+            return mStatus;
+        }
+    }
+}
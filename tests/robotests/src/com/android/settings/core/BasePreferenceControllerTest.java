@@ -25,6 +25,7 @@ import static com.android.settings.core.BasePreferenceController.UNSUPPORTED_ON_
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -34,8 +35,10 @@ import android.content.Context;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.slices.FakePreferenceController;
 import com.android.settings.slices.SliceData;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -59,6 +62,10 @@ public class BasePreferenceControllerTest {
         mPreferenceController = new FakeBasePreferenceController(mContext, KEY);
     }
 
+    @After
+    public void tearDown() {
+        PreferenceControllerRegistry.setFactory(null);
+    }
 
     @Test(expected = IllegalArgumentException.class)
     public void newController_noKey_shouldCrash() {
@@ -215,6 +222,101 @@ public class BasePreferenceControllerTest {
         assertThat(category).isEqualTo(SettingsEnums.DISPLAY);
     }
 
+    @Test
+    public void createInstance_knownController_usesGeneratedFactory() {
+        final PreferenceControllerRegistry.Factory factory =
+                mock(PreferenceControllerRegistry.Factory.class);
+        when(factory.isKnown("controller")).thenReturn(true);
+        when(factory.create(eq("controller"), eq(mContext), eq(KEY)))
+                .thenReturn(mPreferenceController);
+        PreferenceControllerRegistry.setFactory(factory);
+
+        assertThat(BasePreferenceController.createInstance(mContext, "controller", KEY))
+                .isSameInstanceAs(mPreferenceController);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void createInstance_knownControllerWithoutConstructor_shouldCrash() {
+        final PreferenceControllerRegistry.Factory factory =
+                mock(PreferenceControllerRegistry.Factory.class);
+        when(factory.isKnown("controller")).thenReturn(true);
+        PreferenceControllerRegistry.setFactory(factory);
+
+        BasePreferenceController.createInstance(mContext, "controller");
+    }
+
+    @Test
+    public void createInstance_unknownController_usesReflection() {
+        PreferenceControllerRegistry.setFactory(
+                mock(PreferenceControllerRegistry.Factory.class));
+
+        final BasePreferenceController controller = BasePreferenceController.createInstance(
+                mContext, FakePreferenceController.class.getName(), KEY, true /* isWorkProfile */);
+
+        assertThat(controller).isInstanceOf(FakePreferenceController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo(KEY);
+    }
+
+    @Test
+    public void registryCreate_keyedConstructorOnly_usesKeyedConstructor() {
+        final PreferenceControllerRegistry.Factory factory =
+                mock(PreferenceControllerRegistry.Factory.class);
+        when(factory.isKnown("controller")).thenReturn(true);
+        when(factory.create(eq("controller"), eq(mContext), eq(KEY)))
+                .thenReturn(mPreferenceController);
+        PreferenceControllerRegistry.setFactory(factory);
+
+        assertThat(PreferenceControllerRegistry.create(mContext, "controller", KEY,
+                false /* isWorkProfile */)).isSameInstanceAs(mPreferenceController);
+    }
+
+    @Test
+    public void registryCreate_contextConstructor_ignoresKey() {
+        final PreferenceControllerRegistry.Factory factory =
+                mock(PreferenceControllerRegistry.Factory.class);
+        when(factory.isKnown("controller")).thenReturn(true);
+        when(factory.create(eq("controller"), eq(mContext))).thenReturn(mPreferenceController);
+        PreferenceControllerRegistry.setFactory(factory);
+
+        assertThat(PreferenceControllerRegistry.create(mContext, "controller", null /* key */,
+                false /* isWorkProfile */)).isSameInstanceAs(mPreferenceController);
+    }
+
+    @Test
+    public void registryCreate_knownControllerWithoutConstructor_returnsNull() {
+        final PreferenceControllerRegistry.Factory factory =
+                mock(PreferenceControllerRegistry.Factory.class);
+        when(factory.isKnown("controller")).thenReturn(true);
+        PreferenceControllerRegistry.setFactory(factory);
+
+        assertThat(PreferenceControllerRegistry.create(mContext, "controller", KEY,
+                false /* isWorkProfile */)).isNull();
+        assertThat(PreferenceControllerRegistry.isKnown("controller")).isTrue();
+    }
+
+    @Test
+    public void registryCreate_constructorThrows_returnsNull() {
+        final PreferenceControllerRegistry.Factory factory =
+                mock(PreferenceControllerRegistry.Factory.class);
+        when(factory.isKnown("controller")).thenReturn(true);
+        when(factory.create(eq("controller"), eq(mContext)))
+                .thenThrow(new IllegalArgumentException());
+        PreferenceControllerRegistry.setFactory(factory);
+
+        assertThat(PreferenceControllerRegistry.create(mContext, "controller", KEY,
+                false /* isWorkProfile */)).isNull();
+    }
+
+    @Test
+    public void registryCreate_unknownController_returnsNull() {
+        PreferenceControllerRegistry.setFactory(
+                mock(PreferenceControllerRegistry.Factory.class));
+
+        assertThat(PreferenceControllerRegistry.create(mContext, "controller", KEY,
+                false /* isWorkProfile */)).isNull();
+        assertThat(PreferenceControllerRegistry.isKnown("controller")).isFalse();
+    }
+
     private class FakeBasePreferenceController extends BasePreferenceController {
 
         private int mAvailable;
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.ControllerLatencyTracker.BUDGET_MS;
+import static com.android.settings.core.ControllerLatencyTracker.MAX_SAMPLES;
+import static com.android.settings.core.ControllerLatencyTracker.PHASE_DISPLAY;
+import static com.android.settings.core.ControllerLatencyTracker.PHASE_UPDATE_STATE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import android.os.SystemProperties;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowTrace;
+
+@RunWith(RobolectricTestRunner.class)
+public class ControllerLatencyTrackerTest {
+
+    private static final String CONTROLLER = "com.android.settings.FakeController";
+
+    private ControllerLatencyTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mTracker = spy(new ControllerLatencyTracker());
+        doReturn(false).when(mTracker).isTraceEnabled();
+    }
+
+    @After
+    public void tearDown() {
+        SystemProperties.set(ControllerLatencyTracker.PROPERTY, "false");
+    }
+
+    @Test
+    public void begin_disabled_shouldNotKeepDuration() throws Exception {
+        mTracker.setEnabled(false);
+
+        final long token = mTracker.begin(PHASE_DISPLAY, CONTROLLER);
+        mTracker.end(PHASE_DISPLAY, CONTROLLER, token);
+
+        assertThat(token).isEqualTo(0);
+        assertThat(mTracker.dumpStats().has(CONTROLLER)).isFalse();
+    }
+
+    @Test
+    public void begin_enabled_shouldKeepDuration() throws Exception {
+        mTracker.setEnabled(true);
+
+        mTracker.end(PHASE_DISPLAY, CONTROLLER, mTracker.begin(PHASE_DISPLAY, CONTROLLER));
+
+        final JSONObject phase = mTracker.dumpStats().getJSONObject(CONTROLLER)
+                .getJSONObject(PHASE_DISPLAY);
+        assertThat(phase.getInt("count")).isEqualTo(1);
+    }
+
+    @Test
+    public void end_tracingTurnedOnAfterBegin_shouldNotEndSection() {
+        final long token = mTracker.begin(PHASE_DISPLAY, CONTROLLER);
+        doReturn(true).when(mTracker).isTraceEnabled();
+
+        mTracker.end(PHASE_DISPLAY, CONTROLLER, token);
+
+        assertThat(ShadowTrace.getCurrentSections()).isEmpty();
+    }
+
+    @Test
+    public void end_tracingTurnedOffAfterBegin_shouldEndSection() {
+        doReturn(true).when(mTracker).isTraceEnabled();
+        final long token = mTracker.begin(PHASE_DISPLAY, CONTROLLER);
+        assertThat(ShadowTrace.getCurrentSections()).hasSize(1);
+        doReturn(false).when(mTracker).isTraceEnabled();
+
+        mTracker.end(PHASE_DISPLAY, CONTROLLER, token);
+
+        assertThat(ShadowTrace.getCurrentSections()).isEmpty();
+    }
+
+    @Test
+    public void begin_tracing_shouldKeepDuration() throws Exception {
+        mTracker.setEnabled(true);
+        doReturn(true).when(mTracker).isTraceEnabled();
+
+        mTracker.end(PHASE_DISPLAY, CONTROLLER, mTracker.begin(PHASE_DISPLAY, CONTROLLER));
+
+        final JSONObject phase = mTracker.dumpStats().getJSONObject(CONTROLLER)
+                .getJSONObject(PHASE_DISPLAY);
+        assertThat(phase.getInt("count")).isEqualTo(1);
+        assertThat(phase.getLong("max_us")).isAtLeast(0L);
+    }
+
+    @Test
+    public void setEnabled_shouldPersistState() {
+        mTracker.setEnabled(true);
+
+        assertThat(new ControllerLatencyTracker().isEnabled()).isTrue();
+    }
+
+    @Test
+    public void dumpStats_shouldReportLatestSamplesPerPhase() throws Exception {
+        mTracker.setEnabled(true);
+        // Pushed out of the samples by the ones below, but still counted.
+        mTracker.record(PHASE_UPDATE_STATE, CONTROLLER, BUDGET_MS * 1000 + 1);
+        for (int i = 1; i <= MAX_SAMPLES; i++) {
+            mTracker.record(PHASE_UPDATE_STATE, CONTROLLER, i);
+        }
+
+        final JSONObject phase = mTracker.dumpStats().getJSONObject(CONTROLLER)
+                .getJSONObject(PHASE_UPDATE_STATE);
+        assertThat(phase.getInt("count")).isEqualTo(MAX_SAMPLES + 1);
+        assertThat(phase.getLong("p50_us")).isEqualTo(MAX_SAMPLES / 2 + 1);
+        assertThat(phase.getLong("max_us")).isEqualTo(BUDGET_MS * 1000 + 1);
+        assertThat(phase.getInt("over_budget")).isEqualTo(1);
+    }
+}
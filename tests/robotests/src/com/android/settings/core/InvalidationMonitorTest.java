@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.net.Uri;
+import android.provider.Settings;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class InvalidationMonitorTest {
+
+    private static final Uri URI = Settings.Global.getUriFor("test_setting");
+    private static final Uri OTHER_URI = Settings.Global.getUriFor("other_setting");
+
+    private Context mContext;
+    private InvalidationMonitor mMonitor;
+    private InvalidationMonitor.Listener mListener;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mMonitor = new InvalidationMonitor(mContext);
+        mListener = mock(InvalidationMonitor.Listener.class);
+    }
+
+    @Test
+    public void uriChanged_registeredUri_shouldNotifyListener() {
+        mMonitor.register(new InvalidationSources.Builder().addUri(URI).build(), mListener);
+
+        mContext.getContentResolver().notifyChange(URI, null);
+
+        verify(mListener).onInvalidated();
+    }
+
+    @Test
+    public void uriChanged_otherUri_shouldNotNotifyListener() {
+        mMonitor.register(new InvalidationSources.Builder().addUri(URI).build(), mListener);
+
+        mMonitor.dispatchUriChanged(OTHER_URI);
+
+        verify(mListener, never()).onInvalidated();
+    }
+
+    @Test
+    public void packagesChanged_registeredForPackages_shouldNotifyListener() {
+        mMonitor.register(new InvalidationSources.Builder()
+                .addFlags(InvalidationSources.FLAG_PACKAGES).build(), mListener);
+
+        mMonitor.dispatchPackagesChanged();
+
+        verify(mListener).onInvalidated();
+    }
+
+    @Test
+    public void usersChanged_registeredForPackagesOnly_shouldNotNotifyListener() {
+        mMonitor.register(new InvalidationSources.Builder()
+                .addFlags(InvalidationSources.FLAG_PACKAGES).build(), mListener);
+
+        mMonitor.dispatchUsersChanged();
+
+        verify(mListener, never()).onInvalidated();
+    }
+
+    @Test
+    public void carrierConfigChanged_registeredForCarrierConfig_shouldNotifyListener() {
+        mMonitor.register(new InvalidationSources.Builder()
+                .addFlags(InvalidationSources.FLAG_CARRIER_CONFIG).build(), mListener);
+
+        mMonitor.dispatchCarrierConfigChanged();
+
+        verify(mListener).onInvalidated();
+    }
+
+    @Test
+    public void unregister_shouldNotNotifyListener() {
+        mMonitor.register(new InvalidationSources.Builder().addUri(URI)
+                .addFlags(InvalidationSources.FLAG_USERS).build(), mListener);
+
+        mMonitor.unregister(mListener);
+        mMonitor.dispatchUriChanged(URI);
+        mMonitor.dispatchUsersChanged();
+
+        verify(mListener, never()).onInvalidated();
+    }
+}
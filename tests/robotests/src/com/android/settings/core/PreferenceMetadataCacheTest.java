@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_ICON;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_TITLE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+
+import com.android.settings.core.PreferenceMetadataCache.CompiledPreference;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceMetadataCacheTest {
+
+    private static final String KEY = "1|en-rUS-v34|0|0";
+    private static final String OTHER_KEY = "2|en-rUS-v34|0|0";
+    private static final String FILE_KEY = "fingerprint|0|0";
+
+    private Context mContext;
+    private File mFile;
+    private PreferenceMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFile = new File(mContext.getCacheDir(), PreferenceMetadataCache.FILE_NAME);
+        mFile.delete();
+        mCache = new PreferenceMetadataCache(mFile, FILE_KEY);
+    }
+
+    @Test
+    public void get_notCached_shouldReturnNull() {
+        assertThat(mCache.get(KEY)).isNull();
+    }
+
+    @Test
+    public void put_shouldBeReturnedByGet() {
+        final List<CompiledPreference> preferences = createPreferences();
+
+        mCache.put(KEY, preferences);
+
+        assertThat(mCache.get(KEY)).containsExactlyElementsIn(preferences);
+    }
+
+    @Test
+    public void write_shouldBeReadByNewCache() {
+        mCache.put(KEY, createPreferences());
+        mCache.write();
+
+        final PreferenceMetadataCache cache = new PreferenceMetadataCache(mFile, FILE_KEY);
+        cache.loadIfNeeded();
+        final List<CompiledPreference> preferences = cache.get(KEY);
+
+        assertThat(preferences).hasSize(2);
+        final CompiledPreference preference = preferences.get(1);
+        assertThat(preference.mType).isEqualTo("SwitchPreference");
+        assertThat(preference.mKey).isEqualTo("key");
+        assertThat(preference.mController).isEqualTo("com.example.Controller");
+        assertThat(preference.mTitle).isEqualTo("title");
+        assertThat(preference.mSummary).isNull();
+        assertThat(preference.mIcon).isEqualTo(42);
+        assertThat(preference.mSearchable).isFalse();
+        assertThat(preference.mForWork).isTrue();
+    }
+
+    @Test
+    public void write_otherOverlays_shouldNotBeRead() {
+        mCache.put(KEY, createPreferences());
+        mCache.write();
+
+        final PreferenceMetadataCache cache =
+                new PreferenceMetadataCache(mFile, "fingerprint|1|2");
+        cache.loadIfNeeded();
+
+        assertThat(cache.get(KEY)).isNull();
+    }
+
+    @Test
+    public void get_fileNotLoaded_shouldNotReadFile() {
+        mCache.put(KEY, createPreferences());
+        mCache.write();
+
+        assertThat(new PreferenceMetadataCache(mFile, FILE_KEY).get(KEY)).isNull();
+    }
+
+    @Test
+    public void write_fileNotLoaded_shouldKeepEntriesOfFile() {
+        mCache.put(KEY, createPreferences());
+        mCache.write();
+        final PreferenceMetadataCache cache = new PreferenceMetadataCache(mFile, FILE_KEY);
+        cache.put(OTHER_KEY, createPreferences());
+
+        cache.write();
+
+        final PreferenceMetadataCache newCache = new PreferenceMetadataCache(mFile, FILE_KEY);
+        newCache.loadIfNeeded();
+        assertThat(newCache.get(KEY)).hasSize(2);
+        assertThat(newCache.get(OTHER_KEY)).hasSize(2);
+    }
+
+    @Test
+    public void clear_shouldDropEntries() {
+        mCache.put(KEY, createPreferences());
+        mCache.write();
+
+        mCache.clear();
+
+        assertThat(mCache.get(KEY)).isNull();
+        final PreferenceMetadataCache cache = new PreferenceMetadataCache(mFile, FILE_KEY);
+        cache.loadIfNeeded();
+        assertThat(cache.get(KEY)).isNull();
+    }
+
+    @Test
+    public void toBundle_shouldOnlyContainRequestedMetadata() {
+        final CompiledPreference preference = createPreferences().get(1);
+
+        final Bundle bundle = preference.toBundle(
+                MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_SEARCHABLE);
+
+        assertThat(bundle.keySet()).containsExactly(METADATA_KEY, METADATA_SEARCHABLE);
+        assertThat(bundle.getString(METADATA_KEY)).isEqualTo("key");
+        assertThat(bundle.getBoolean(METADATA_SEARCHABLE)).isFalse();
+    }
+
+    @Test
+    public void toBundle_allFlags_shouldContainMetadata() {
+        final CompiledPreference preference = createPreferences().get(1);
+
+        final Bundle bundle = preference.toBundle(MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+                | MetadataFlag.FLAG_NEED_PREF_TITLE | MetadataFlag.FLAG_NEED_PREF_ICON);
+
+        assertThat(bundle.getString(METADATA_CONTROLLER)).isEqualTo("com.example.Controller");
+        assertThat(bundle.getString(METADATA_TITLE)).isEqualTo("title");
+        assertThat(bundle.getInt(METADATA_ICON)).isEqualTo(42);
+    }
+
+    @Test
+    public void getKey_sameConfiguration_shouldBeStable() {
+        assertThat(PreferenceMetadataCache.getKey(mContext, 1))
+                .isEqualTo(PreferenceMetadataCache.getKey(mContext, 1));
+        assertThat(PreferenceMetadataCache.getKey(mContext, 1))
+                .isNotEqualTo(PreferenceMetadataCache.getKey(mContext, 2));
+    }
+
+    @Test
+    public void getKey_qualifierChanged_shouldChange() {
+        final Configuration config =
+                new Configuration(mContext.getResources().getConfiguration());
+        config.orientation = config.orientation == Configuration.ORIENTATION_LANDSCAPE
+                ? Configuration.ORIENTATION_PORTRAIT : Configuration.ORIENTATION_LANDSCAPE;
+        final Context configContext = mContext.createConfigurationContext(config);
+
+        assertThat(PreferenceMetadataCache.getKey(configContext, 1))
+                .isNotEqualTo(PreferenceMetadataCache.getKey(mContext, 1));
+    }
+
+    @Test
+    public void getKey_overlaysChanged_shouldChange() {
+        final String key = PreferenceMetadataCache.getKey(mContext, 1);
+
+        mContext.getApplicationInfo().overlayPaths = new String[] {"/product/overlay/a.apk"};
+
+        assertThat(PreferenceMetadataCache.getKey(mContext, 1)).isNotEqualTo(key);
+    }
+
+    private static List<CompiledPreference> createPreferences() {
+        final List<CompiledPreference> preferences = new ArrayList<>();
+        preferences.add(new CompiledPreference("PreferenceScreen", true, "screen", null,
+                "screen title", null, 0, null, true, false, null, false, null));
+        preferences.add(new CompiledPreference("SwitchPreference", false, "key",
+                "com.example.Controller", "title", null, 42, "keywords", false, false, null,
+                true, null));
+        return preferences;
+    }
+}
@@ -18,29 +18,134 @@ package com.android.settings.core.instrumentation;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.robolectric.Shadows.shadowOf;
+
 import android.app.settings.SettingsEnums;
 import android.content.Context;
+import android.os.Looper;
 
 import com.android.settings.intelligence.LogProto.SettingsLog;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
 import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
+@RunWith(RobolectricTestRunner.class)
 public class SettingsIntelligenceLogWriterTest {
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
     private Context mContext;
+    private ShadowLooper mLooper;
+    private File mSpillFile;
 
     @Before
-    public void setUp() {
+    public void setUp() throws IOException {
         MockitoAnnotations.initMocks(this);
         mContext = RuntimeEnvironment.application;
+        mLooper = shadowOf(Looper.getMainLooper());
+        mSpillFile = new File(mTemporaryFolder.newFolder(), "logs");
+    }
+
+    @Test
+    public void action_afterSpillDelay_shouldDrainEventsInOrder() {
+        final SettingsIntelligenceLogWriter writer =
+                new SettingsIntelligenceLogWriter(Looper.getMainLooper(), mSpillFile);
+
+        writer.action(SettingsEnums.DASHBOARD_SUMMARY, SettingsEnums.ACTION_SET_NEW_PASSWORD,
+                SettingsEnums.SET_NEW_PASSWORD_ACTIVITY, "first", 1);
+        writer.action(SettingsEnums.DASHBOARD_SUMMARY, SettingsEnums.ACTION_SET_NEW_PASSWORD,
+                SettingsEnums.SET_NEW_PASSWORD_ACTIVITY, "second", 0);
+        mLooper.idleFor(Duration.ofMillis(SettingsIntelligenceLogWriter.SPILL_DELAY));
+
+        final List<SettingsLog> logs = writer.getPendingLogs();
+        assertThat(logs).hasSize(2);
+        assertThat(logs.get(0).getChangedPreferenceKey()).isEqualTo("first");
+        assertThat(logs.get(0).getChangedPreferenceIntValue()).isEqualTo(1);
+        assertThat(logs.get(0).getTimestamp()).isNotEmpty();
+        assertThat(logs.get(1).getChangedPreferenceKey()).isEqualTo("second");
+        assertThat(mSpillFile.exists()).isTrue();
+    }
+
+    @Test
+    public void newWriter_spilledLogs_shouldRestoreThem() throws IOException {
+        final SettingsIntelligenceLogWriter writer =
+                new SettingsIntelligenceLogWriter(Looper.getMainLooper(), mSpillFile);
+        writer.action(SettingsEnums.DASHBOARD_SUMMARY, SettingsEnums.ACTION_SET_NEW_PASSWORD,
+                SettingsEnums.SET_NEW_PASSWORD_ACTIVITY, "first", 1);
+        writer.action(SettingsEnums.DASHBOARD_SUMMARY, SettingsEnums.ACTION_SET_NEW_PASSWORD,
+                SettingsEnums.SET_NEW_PASSWORD_ACTIVITY, "second", 0);
+        mLooper.idleFor(Duration.ofMillis(SettingsIntelligenceLogWriter.SPILL_DELAY));
+        // A record cut short by the process dying.
+        try (FileOutputStream output = new FileOutputStream(mSpillFile, true /* append */)) {
+            output.write(new byte[] {0, 0});
+        }
+
+        final SettingsIntelligenceLogWriter newWriter =
+                new SettingsIntelligenceLogWriter(Looper.getMainLooper(), mSpillFile);
+        // Only run the restore, before the restored logs are sent.
+        mLooper.runOneTask();
+
+        final List<SettingsLog> logs = newWriter.getPendingLogs();
+        assertThat(logs).hasSize(2);
+        assertThat(logs.get(0).getChangedPreferenceKey()).isEqualTo("first");
+        assertThat(logs.get(1).getChangedPreferenceKey()).isEqualTo("second");
+    }
+
+    @Test
+    public void newWriter_negativeLengthInSpilledLogs_shouldKeepRecordsBeforeIt()
+            throws IOException {
+        final SettingsIntelligenceLogWriter writer =
+                new SettingsIntelligenceLogWriter(Looper.getMainLooper(), mSpillFile);
+        writer.action(SettingsEnums.DASHBOARD_SUMMARY, SettingsEnums.ACTION_SET_NEW_PASSWORD,
+                SettingsEnums.SET_NEW_PASSWORD_ACTIVITY, "first", 1);
+        mLooper.idleFor(Duration.ofMillis(SettingsIntelligenceLogWriter.SPILL_DELAY));
+        final long validLength = mSpillFile.length();
+        // A garbage tail left by a power loss.
+        try (DataOutputStream output =
+                new DataOutputStream(new FileOutputStream(mSpillFile, true /* append */))) {
+            output.writeInt(-1);
+            output.write(new byte[16]);
+        }
+
+        final SettingsIntelligenceLogWriter newWriter =
+                new SettingsIntelligenceLogWriter(Looper.getMainLooper(), mSpillFile);
+        mLooper.runOneTask();
+
+        final List<SettingsLog> logs = newWriter.getPendingLogs();
+        assertThat(logs).hasSize(1);
+        assertThat(logs.get(0).getChangedPreferenceKey()).isEqualTo("first");
+        assertThat(mSpillFile.length()).isEqualTo(validLength);
+    }
+
+    @Test
+    public void newWriter_zeroFilledSpilledLogs_shouldDropThem() throws IOException {
+        try (FileOutputStream output = new FileOutputStream(mSpillFile)) {
+            output.write(new byte[64]);
+        }
+
+        final SettingsIntelligenceLogWriter newWriter =
+                new SettingsIntelligenceLogWriter(Looper.getMainLooper(), mSpillFile);
+        mLooper.runOneTask();
+
+        assertThat(newWriter.getPendingLogs()).isEmpty();
+        assertThat(mSpillFile.exists()).isFalse();
     }
 
     @Test
@@ -76,6 +76,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
@@ -83,6 +84,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(RobolectricTestRunner.class)
 public class DashboardFragmentTest {
@@ -285,6 +287,91 @@ public class DashboardFragmentTest {
         verify(mTestFragment.getContentResolver()).unregisterContentObserver(observer);
     }
 
+    @Test
+    public void applyObserverUpdates_allLoaded_shouldUpdateUiOfAllObservers() {
+        final TestFragment fragment = spy(mTestFragment);
+        when(fragment.isAdded()).thenReturn(true);
+        final TestDynamicDataObserver observer1 = new TestDynamicDataObserver();
+        final TestDynamicDataObserver observer2 = new TestDynamicDataObserver();
+
+        fragment.applyObserverUpdates("tag", Arrays.asList(observer1, observer2));
+
+        assertThat(observer1.mUiUpdated).isTrue();
+        assertThat(observer2.mUiUpdated).isTrue();
+    }
+
+    @Test
+    public void applyObserverUpdates_lastObserverLoads_shouldUpdateUiOfAllObservers() {
+        final TestFragment fragment = spy(mTestFragment);
+        when(fragment.isAdded()).thenReturn(true);
+        final TestDynamicDataObserver observer1 = new TestDynamicDataObserver();
+        final PendingDynamicDataObserver observer2 = new PendingDynamicDataObserver();
+
+        fragment.applyObserverUpdates("tag", Arrays.asList(observer1, observer2));
+        assertThat(observer1.mUiUpdated).isFalse();
+        observer2.load();
+
+        assertThat(observer1.mUiUpdated).isTrue();
+        assertThat(observer2.mUiUpdated).isTrue();
+    }
+
+    @Test
+    public void applyObserverUpdates_timeout_shouldUpdateUiOfLoadedObservers() {
+        final TestFragment fragment = spy(mTestFragment);
+        when(fragment.isAdded()).thenReturn(true);
+        final TestDynamicDataObserver observer1 = new TestDynamicDataObserver();
+        final PendingDynamicDataObserver observer2 = new PendingDynamicDataObserver();
+
+        fragment.applyObserverUpdates("tag", Arrays.asList(observer1, observer2));
+        ShadowLooper.idleMainLooper(50, TimeUnit.MILLISECONDS);
+
+        assertThat(observer1.mUiUpdated).isTrue();
+        assertThat(observer2.mUiUpdated).isFalse();
+
+        observer2.load();
+
+        assertThat(observer2.mUiUpdated).isTrue();
+    }
+
+    @Test
+    public void applyObserverUpdates_notAdded_shouldNotUpdateUi() {
+        final TestDynamicDataObserver observer = new TestDynamicDataObserver();
+
+        mTestFragment.applyObserverUpdates("tag", Arrays.asList(observer));
+        ShadowLooper.idleMainLooper(50, TimeUnit.MILLISECONDS);
+
+        assertThat(observer.mUiUpdated).isFalse();
+    }
+
+    @Test
+    public void applyObserverUpdates_staleUnregisteredObserver_shouldNotUpdateUi() {
+        final TestFragment fragment = spy(mTestFragment);
+        when(fragment.isAdded()).thenReturn(true);
+        final PendingDynamicDataObserver observer1 = new PendingDynamicDataObserver();
+        final TestDynamicDataObserver observer2 = new TestDynamicDataObserver();
+
+        fragment.applyObserverUpdates("tag", Arrays.asList(observer1));
+        fragment.applyObserverUpdates("tag", Arrays.asList(observer2));
+        observer1.load();
+
+        assertThat(observer1.mUiUpdated).isFalse();
+        assertThat(observer2.mUiUpdated).isTrue();
+    }
+
+    @Test
+    public void applyObserverUpdates_staleRegisteredObserver_shouldUpdateUi() {
+        final TestFragment fragment = spy(mTestFragment);
+        when(fragment.isAdded()).thenReturn(true);
+        final PendingDynamicDataObserver observer1 = new PendingDynamicDataObserver();
+        fragment.registerDynamicDataObservers(Arrays.asList(observer1));
+
+        fragment.applyObserverUpdates("tag", Arrays.asList(observer1));
+        fragment.applyObserverUpdates("tag", Arrays.asList(new TestDynamicDataObserver()));
+        observer1.load();
+
+        assertThat(observer1.mUiUpdated).isTrue();
+    }
+
     @Test
     public void updateState_skipUnavailablePrefs() {
         final List<AbstractPreferenceController> preferenceControllers = mTestFragment.mControllers;
@@ -597,6 +684,8 @@ public class DashboardFragmentTest {
 
     private static class TestDynamicDataObserver extends DynamicDataObserver {
 
+        boolean mUiUpdated;
+
         @Override
         public Uri getUri() {
             return Uri.parse("content://abc");
@@ -604,6 +693,25 @@ public class DashboardFragmentTest {
 
         @Override
         public void onDataChanged() {
+            post(() -> mUiUpdated = true);
+        }
+    }
+
+    /** An observer whose data arrives when {@link #load()} is called. */
+    private static class PendingDynamicDataObserver extends TestDynamicDataObserver {
+
+        private boolean mLoaded;
+
+        void load() {
+            mLoaded = true;
+            onDataChanged();
+        }
+
+        @Override
+        public void onDataChanged() {
+            if (mLoaded) {
+                super.onDataChanged();
+            }
         }
     }
 
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.os.Bundle;
+import android.provider.Settings;
+import android.util.Pair;
+
+import com.android.settingslib.drawer.ActivityTile;
+import com.android.settingslib.drawer.CategoryKey;
+import com.android.settingslib.drawer.Tile;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class DashboardTileCacheTest {
+
+    private Context mContext;
+    private File mFile;
+    private DashboardTileCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFile = new File(mContext.getCacheDir(), DashboardTileCache.FILE_NAME);
+        mFile.delete();
+        mCache = new DashboardTileCache(mFile);
+    }
+
+    @Test
+    public void read_noCache_shouldReturnNull() {
+        assertThat(mCache.read(mContext)).isNull();
+    }
+
+    @Test
+    public void write_shouldBeReadByNewCache() {
+        mCache.write(mContext, Arrays.asList(createEntry()), mCache.getGeneration());
+
+        final List<DashboardTileCache.Entry> entries =
+                new DashboardTileCache(mFile).read(mContext);
+
+        assertThat(entries).hasSize(1);
+        final DashboardTileCache.Entry entry = entries.get(0);
+        assertThat(entry.mKey).isEqualTo(new Pair<>(mContext.getPackageName(), "class"));
+        assertThat(entry.mCategory).isEqualTo(CategoryKey.CATEGORY_HOMEPAGE);
+        assertThat(entry.mTile.getMetaData().getString("key")).isEqualTo("value");
+    }
+
+    @Test
+    public void write_invalidatedSinceGeneration_shouldNotWrite() {
+        final int generation = mCache.getGeneration();
+        mCache.invalidate();
+
+        mCache.write(mContext, Arrays.asList(createEntry()), generation);
+
+        assertThat(mFile.exists()).isFalse();
+    }
+
+    @Test
+    public void write_packageGone_shouldNotWrite() {
+        final ActivityInfo activityInfo = createActivityInfo("com.example.gone");
+        final Tile tile = new ActivityTile(activityInfo, CategoryKey.CATEGORY_HOMEPAGE);
+
+        mCache.write(mContext, Arrays.asList(new DashboardTileCache.Entry(
+                new Pair<>(activityInfo.packageName, activityInfo.name),
+                CategoryKey.CATEGORY_HOMEPAGE, tile)), mCache.getGeneration());
+
+        assertThat(mCache.read(mContext)).isNull();
+    }
+
+    @Test
+    public void read_afterReboot_shouldReturnNull() {
+        Settings.Global.putInt(mContext.getContentResolver(), Settings.Global.BOOT_COUNT, 1);
+        mCache.write(mContext, Arrays.asList(createEntry()), mCache.getGeneration());
+
+        Settings.Global.putInt(mContext.getContentResolver(), Settings.Global.BOOT_COUNT, 2);
+
+        assertThat(new DashboardTileCache(mFile).read(mContext)).isNull();
+    }
+
+    @Test
+    public void invalidate_shouldDeleteCache() {
+        mCache.write(mContext, Arrays.asList(createEntry()), mCache.getGeneration());
+
+        mCache.invalidate();
+
+        assertThat(mCache.read(mContext)).isNull();
+    }
+
+    private DashboardTileCache.Entry createEntry() {
+        final ActivityInfo activityInfo = createActivityInfo(mContext.getPackageName());
+        final Tile tile = new ActivityTile(activityInfo, CategoryKey.CATEGORY_HOMEPAGE);
+        return new DashboardTileCache.Entry(
+                new Pair<>(activityInfo.packageName, activityInfo.name),
+                CategoryKey.CATEGORY_HOMEPAGE, tile);
+    }
+
+    private static ActivityInfo createActivityInfo(String packageName) {
+        final ActivityInfo activityInfo = new ActivityInfo();
+        activityInfo.packageName = packageName;
+        activityInfo.name = "class";
+        activityInfo.applicationInfo = new ApplicationInfo();
+        activityInfo.metaData = new Bundle();
+        activityInfo.metaData.putString("key", "value");
+        return activityInfo;
+    }
+}
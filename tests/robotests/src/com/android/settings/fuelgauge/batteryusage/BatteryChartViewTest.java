@@ -20,6 +20,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.spy;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.os.LocaleList;
 import android.view.View;
 
@@ -90,4 +92,29 @@ public final class BatteryChartViewTest {
         mBatteryChartView.onClick(mMockView);
         assertThat(selectedIndex[0]).isEqualTo(BatteryChartViewModel.SELECTED_INDEX_ALL);
     }
+
+    @Test
+    public void draw_reusesGeometryUntilSizeChanged() {
+        final BatteryChartView chartView = new BatteryChartView(mContext, /*attrs=*/ null);
+        chartView.setViewModel(new BatteryChartViewModel(
+                List.of(90, 80, 70, 60), List.of(0L, 0L, 0L, 0L),
+                BatteryChartViewModel.AxisLabelPosition.BETWEEN_TRAPEZOIDS, null));
+        chartView.layout(0, 0, 1000, 500);
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(1000, 500, Bitmap.Config.ARGB_8888));
+
+        chartView.draw(canvas);
+        final float left = chartView.mTrapezoidSlots[1].mLeft;
+        assertThat(left).isGreaterThan(0f);
+
+        // The geometry is reused by the next frames.
+        chartView.mTrapezoidSlots[1].mLeft = -1f;
+        chartView.draw(canvas);
+        assertThat(chartView.mTrapezoidSlots[1].mLeft).isEqualTo(-1f);
+
+        // And computed again once the size changed.
+        chartView.layout(0, 0, 500, 500);
+        chartView.draw(canvas);
+        assertThat(chartView.mTrapezoidSlots[1].mLeft).isGreaterThan(0f);
+        assertThat(chartView.mTrapezoidSlots[1].mLeft).isLessThan(left);
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryHistoryTableTest {
+
+    private static final long[] TIMESTAMPS = {100L, 200L, 300L};
+
+    @Test
+    public void setRecords_keepsValuesAndRecord() {
+        final BatteryHistoryTable table = new BatteryHistoryTable(TIMESTAMPS);
+        final BatteryHistEntry entry = createEntry(/* consumePower= */ 5, /* batteryLevel= */ 90);
+
+        table.setRecords(/* slot= */ 1, Map.of("key", entry));
+
+        final int keyId = table.internKey("key");
+        assertThat(table.hasRecords(1)).isTrue();
+        assertThat(table.hasRecords(0)).isFalse();
+        assertThat(table.getConsumePower(1, keyId)).isEqualTo(5);
+        assertThat(table.getBatteryLevel(1, keyId)).isEqualTo(90);
+        assertThat(table.getRecord(1, keyId)).isSameInstanceAs(entry);
+        assertThat(table.toEntry(1, keyId)).isSameInstanceAs(entry);
+        assertThat(table.getRecord(0, keyId)).isNull();
+        assertThat(table.getConsumePower(0, keyId)).isEqualTo(0);
+    }
+
+    @Test
+    public void setInterpolatedRecord_sameAsBatteryHistEntryInterpolate() {
+        final BatteryHistoryTable table = new BatteryHistoryTable(TIMESTAMPS);
+        final BatteryHistEntry lowerEntry =
+                createEntry(/* consumePower= */ 10, /* batteryLevel= */ 90);
+        final BatteryHistEntry upperEntry =
+                createEntry(/* consumePower= */ 20, /* batteryLevel= */ 81);
+
+        table.setInterpolatedRecord(/* slot= */ 1, "key", /* upperTimestamp= */ 250L,
+                /* ratio= */ 0.25, lowerEntry, upperEntry);
+
+        final BatteryHistEntry expectedEntry = BatteryHistEntry.interpolate(
+                /* slotTimestamp= */ 200L, /* upperTimestamp= */ 250L, /* ratio= */ 0.25,
+                lowerEntry, upperEntry);
+        final BatteryHistEntry entry = table.toEntry(/* slot= */ 1, table.internKey("key"));
+        assertThat(entry.mTimestamp).isEqualTo(expectedEntry.mTimestamp);
+        assertThat(entry.mBootTimestamp).isEqualTo(expectedEntry.mBootTimestamp);
+        assertThat(entry.mConsumePower).isEqualTo(expectedEntry.mConsumePower);
+        assertThat(entry.mBatteryLevel).isEqualTo(expectedEntry.mBatteryLevel);
+        assertThat(table.getRecord(1, table.internKey("key"))).isSameInstanceAs(upperEntry);
+    }
+
+    @Test
+    public void internKey_manyKeys_keepsValues() {
+        final BatteryHistoryTable table = new BatteryHistoryTable(TIMESTAMPS);
+        for (int i = 0; i < 100; i++) {
+            table.setRecord(/* slot= */ i % TIMESTAMPS.length, "key" + i,
+                    createEntry(/* consumePower= */ i, /* batteryLevel= */ 50));
+        }
+
+        assertThat(table.getKeyCount()).isEqualTo(100);
+        for (int i = 0; i < 100; i++) {
+            final int keyId = table.internKey("key" + i);
+            assertThat(table.getConsumePower(i % TIMESTAMPS.length, keyId)).isEqualTo(i);
+            assertThat(table.getRecord((i + 1) % TIMESTAMPS.length, keyId)).isNull();
+        }
+    }
+
+    @Test
+    public void setCurrentTimeRecords_fillsMarkedSlot() {
+        final BatteryHistoryTable table = new BatteryHistoryTable(TIMESTAMPS);
+        table.setRecords(/* slot= */ 0,
+                Map.of("key", createEntry(/* consumePower= */ 1, /* batteryLevel= */ 90)));
+        table.markCurrentTime(/* slot= */ 2);
+        assertThat(table.isCurrentTime(2)).isTrue();
+        assertThat(table.hasRecords(2)).isTrue();
+
+        table.setCurrentTimeRecords(
+                Map.of("new_key", createEntry(/* consumePower= */ 3, /* batteryLevel= */ 80)));
+
+        assertThat(table.isCurrentTime(2)).isFalse();
+        assertThat(table.getConsumePower(2, table.internKey("new_key"))).isEqualTo(3);
+        assertThat(table.getConsumePower(0, table.internKey("key"))).isEqualTo(1);
+        assertThat(table.getRecord(0, table.internKey("new_key"))).isNull();
+    }
+
+    @Test
+    public void setCurrentTimeRecords_empty_slotWithoutRecords() {
+        final BatteryHistoryTable table = new BatteryHistoryTable(TIMESTAMPS);
+        table.markCurrentTime(/* slot= */ 2);
+
+        table.setCurrentTimeRecords(Map.of());
+
+        assertThat(table.hasRecords(2)).isFalse();
+    }
+
+    @Test
+    public void getSlot_returnsSlotOfTimestamp() {
+        final BatteryHistoryTable table = new BatteryHistoryTable(TIMESTAMPS);
+
+        assertThat(table.getSlot(200L)).isEqualTo(1);
+        assertThat(table.getSlot(250L)).isLessThan(0);
+    }
+
+    private static BatteryHistEntry createEntry(double consumePower, int batteryLevel) {
+        final DeviceBatteryState deviceBatteryState =
+                DeviceBatteryState
+                        .newBuilder()
+                        .setBatteryLevel(batteryLevel)
+                        .build();
+        final BatteryInformation batteryInformation =
+                BatteryInformation
+                        .newBuilder()
+                        .setDeviceBatteryState(deviceBatteryState)
+                        .setBootTimestamp(1000L)
+                        .setConsumePower(consumePower)
+                        .build();
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_TIMESTAMP, 250L);
+        values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION,
+                ConvertUtils.convertBatteryInformationToString(batteryInformation));
+        return new BatteryHistEntry(values);
+    }
+}
@@ -28,6 +28,7 @@ import android.net.Uri;
 
 import androidx.test.core.app.ApplicationProvider;
 
+import com.android.settings.fuelgauge.batteryusage.bugreport.BatteryUsageLogUtils;
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventEntity;
 import com.android.settings.fuelgauge.batteryusage.db.BatteryEventEntity;
 import com.android.settings.fuelgauge.batteryusage.db.BatteryState;
@@ -41,6 +42,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -100,6 +103,9 @@ public final class BatteryUsageContentProviderTest {
         assertThrows(
                 IllegalArgumentException.class,
                 () -> mProvider.insert(uri, /*contentValues=*/ null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> mProvider.bulkInsert(uri, new ContentValues[0]));
     }
 
     @Test
@@ -442,6 +448,65 @@ public final class BatteryUsageContentProviderTest {
         assertThat(cursor2.getCount()).isEqualTo(0);
     }
 
+    @Test
+    public void bulkInsert_batteryEvent_insertsAllRows() {
+        mProvider.onCreate();
+        final ContentValues[] allValues = new ContentValues[3];
+        for (int i = 0; i < allValues.length; i++) {
+            allValues[i] = new ContentValues();
+            allValues[i].put(BatteryEventEntity.KEY_TIMESTAMP, 10001L + i);
+            allValues[i].put(BatteryEventEntity.KEY_BATTERY_EVENT_TYPE,
+                    BatteryEventType.POWER_CONNECTED.getNumber());
+            allValues[i].put(BatteryEventEntity.KEY_BATTERY_LEVEL, 60 + i);
+        }
+
+        final int size = mProvider.bulkInsert(DatabaseUtils.BATTERY_EVENT_URI, allValues);
+
+        assertThat(size).isEqualTo(3);
+        final List<BatteryEventEntity> entities =
+                BatteryStateDatabase.getInstance(mContext).batteryEventDao().getAll();
+        assertThat(entities).hasSize(3);
+        assertThat(entities.get(0).timestamp).isEqualTo(10003L);
+        assertThat(entities.get(0).batteryLevel).isEqualTo(62);
+    }
+
+    @Test
+    public void bulkInsert_batteryUsageSlot_insertsAllRows() {
+        mProvider.onCreate();
+        final ContentValues[] allValues = new ContentValues[2];
+        for (int i = 0; i < allValues.length; i++) {
+            allValues[i] = new ContentValues();
+            allValues[i].put(BatteryUsageSlotEntity.KEY_TIMESTAMP, 10001L + i);
+            allValues[i].put(BatteryUsageSlotEntity.KEY_BATTERY_USAGE_SLOT, "TEST_STRING" + i);
+        }
+
+        final int size = mProvider.bulkInsert(DatabaseUtils.BATTERY_USAGE_SLOT_URI, allValues);
+
+        assertThat(size).isEqualTo(2);
+        final List<BatteryUsageSlotEntity> entities =
+                BatteryStateDatabase.getInstance(mContext).batteryUsageSlotDao().getAll();
+        assertThat(entities).hasSize(2);
+        assertThat(entities.get(1).batteryUsageSlot).isEqualTo("TEST_STRING1");
+    }
+
+    @Test
+    public void bulkInsert_batteryState_writesHistoricalLog() {
+        mProvider.onCreate();
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, "fake_data");
+        values.put(BatteryHistEntry.KEY_TIMESTAMP, 2100022L);
+
+        final int size = mProvider.bulkInsert(
+                VALID_BATTERY_STATE_CONTENT_URI, new ContentValues[] {values});
+
+        assertThat(size).isEqualTo(1);
+        assertThat(BatteryStateDatabase.getInstance(mContext).batteryStateDao().getAllAfter(0))
+                .hasSize(1);
+        final StringWriter stringWriter = new StringWriter();
+        BatteryUsageLogUtils.printHistoricalLog(mContext, new PrintWriter(stringWriter));
+        assertThat(stringWriter.toString()).contains("bulkInsert() BatteryState size=1");
+    }
+
     @Test
     public void delete_throwsUnsupportedOperationException() {
         assertThrows(
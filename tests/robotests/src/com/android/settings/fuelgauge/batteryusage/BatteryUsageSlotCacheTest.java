@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.text.format.DateUtils;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+
+/** Tests for {@link BatteryUsageSlotCache}. */
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryUsageSlotCacheTest {
+
+    private final List<BatteryUsageSlot> mStoredSlots = new ArrayList<>();
+    private final List<Long> mLoadTimestamps = new ArrayList<>();
+    private final List<List<BatteryDiffData>> mAccumulatedLists = new ArrayList<>();
+
+    private Context mContext;
+    private Calendar mCalendar;
+    private long mStartTimestamp;
+    private BatteryUsageSlotCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        FakeFeatureFactory.setupForTest();
+        mCalendar = Calendar.getInstance();
+        mStartTimestamp = DatabaseUtils.getTimestampSixDaysAgo(mCalendar);
+        mCache = new BatteryUsageSlotCache((context, calendar, startTimestamp) -> {
+            mLoadTimestamps.add(startTimestamp);
+            final List<BatteryUsageSlot> slots = new ArrayList<>();
+            for (BatteryUsageSlot slot : mStoredSlots) {
+                if (slot.getStartTimestamp() >= startTimestamp) {
+                    slots.add(slot);
+                }
+            }
+            return slots;
+        }, (context, diffDataList) -> {
+            mAccumulatedLists.add(new ArrayList<>(diffDataList));
+            long screenOnTime = 0;
+            for (BatteryDiffData diffData : diffDataList) {
+                screenOnTime += diffData == null ? 0 : diffData.getScreenOnTime();
+            }
+            return createDiffData(screenOnTime);
+        });
+    }
+
+    @Test
+    public void getBatteryUsageSlots_firstLoad_loadsAllSlots() {
+        storeSlots(0, 3);
+
+        final List<BatteryUsageSlot> slots =
+                mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+
+        assertThat(slots).hasSize(3);
+        assertThat(mLoadTimestamps).containsExactly(mStartTimestamp);
+    }
+
+    @Test
+    public void getBatteryUsageSlots_secondLoad_onlyLoadsNewSlots() {
+        storeSlots(0, 3);
+        mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+        storeSlots(3, 5);
+
+        final List<BatteryUsageSlot> slots =
+                mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+
+        assertThat(slots).hasSize(5);
+        assertThat(slots.get(4).getStartTimestamp()).isEqualTo(getSlotTimestamp(4));
+        assertThat(mLoadTimestamps)
+                .containsExactly(mStartTimestamp, getSlotTimestamp(2)).inOrder();
+    }
+
+    @Test
+    public void getBatteryUsageSlots_laterStartTimestamp_dropsOlderSlots() {
+        storeSlots(0, 3);
+        mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+
+        final List<BatteryUsageSlot> slots =
+                mCache.getBatteryUsageSlots(mContext, mCalendar, getSlotTimestamp(1));
+
+        assertThat(slots).hasSize(2);
+        assertThat(slots.get(0).getStartTimestamp()).isEqualTo(getSlotTimestamp(1));
+    }
+
+    @Test
+    public void getBatteryUsageSlots_earlierStartTimestamp_reloadsAllSlots() {
+        storeSlots(0, 3);
+        mCache.getBatteryUsageSlots(mContext, mCalendar, getSlotTimestamp(2));
+
+        final List<BatteryUsageSlot> slots =
+                mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+
+        assertThat(slots).hasSize(3);
+        assertThat(mLoadTimestamps)
+                .containsExactly(getSlotTimestamp(2), mStartTimestamp).inOrder();
+    }
+
+    @Test
+    public void getBatteryUsageSlots_slotsChanged_reloadsFromChangedSlot() {
+        storeSlots(0, 5);
+        mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+        final BatteryUsageSlot changedSlot = mStoredSlots.get(1).toBuilder()
+                .setScreenOnTime(100L)
+                .build();
+        mStoredSlots.set(1, changedSlot);
+
+        mCache.onSlotsChanged(getSlotTimestamp(1));
+        final List<BatteryUsageSlot> slots =
+                mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+
+        assertThat(slots).hasSize(5);
+        assertThat(slots.get(1)).isSameInstanceAs(changedSlot);
+        assertThat(mLoadTimestamps)
+                .containsExactly(mStartTimestamp, getSlotTimestamp(1)).inOrder();
+    }
+
+    @Test
+    public void getBatteryDiffData_cachedSlot_convertsOnce() {
+        storeSlots(0, 1);
+        final BatteryUsageSlot slot =
+                mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp).get(0);
+
+        final BatteryDiffData diffData =
+                mCache.getBatteryDiffData(mContext, slot, Set.of(), Set.of());
+
+        assertThat(mCache.getBatteryDiffData(mContext, slot, Set.of(), Set.of()))
+                .isSameInstanceAs(diffData);
+        assertThat(mCache.getBatteryDiffData(mContext, slot, Set.of("package"), Set.of()))
+                .isNotSameInstanceAs(diffData);
+    }
+
+    @Test
+    public void getAccumulatedDiffData_cachedDiffData_accumulatesOnce() {
+        storeSlots(0, 3);
+        final List<BatteryDiffData> diffDataList = new ArrayList<>();
+        for (BatteryUsageSlot slot :
+                mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp)) {
+            diffDataList.add(mCache.getBatteryDiffData(mContext, slot, Set.of(), Set.of()));
+        }
+
+        final BatteryDiffData rollup = mCache.getAccumulatedDiffData(mContext, diffDataList);
+
+        assertThat(mCache.getAccumulatedDiffData(mContext, diffDataList))
+                .isSameInstanceAs(rollup);
+        assertThat(mAccumulatedLists).containsExactly(diffDataList);
+    }
+
+    @Test
+    public void getAccumulatedDiffData_uncachedDiffData_reusesCachedRollup() {
+        storeSlots(0, 3);
+        final List<BatteryDiffData> diffDataList = new ArrayList<>();
+        for (BatteryUsageSlot slot :
+                mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp)) {
+            diffDataList.add(mCache.getBatteryDiffData(mContext, slot, Set.of(), Set.of()));
+        }
+        final BatteryDiffData rollup = mCache.getAccumulatedDiffData(mContext, diffDataList);
+        final BatteryDiffData openHourDiffData = createDiffData(/* screenOnTime= */ 10L);
+        diffDataList.add(openHourDiffData);
+
+        final BatteryDiffData accumulatedDiffData =
+                mCache.getAccumulatedDiffData(mContext, diffDataList);
+
+        assertThat(accumulatedDiffData.getScreenOnTime()).isEqualTo(10L);
+        assertThat(mAccumulatedLists).hasSize(2);
+        assertThat(mAccumulatedLists.get(1)).containsExactly(openHourDiffData, rollup);
+    }
+
+    @Test
+    public void clear_reloadsAllSlots() {
+        storeSlots(0, 3);
+        mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp);
+        mStoredSlots.clear();
+
+        mCache.clear();
+
+        assertThat(mCache.getBatteryUsageSlots(mContext, mCalendar, mStartTimestamp)).isEmpty();
+    }
+
+    private void storeSlots(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            mStoredSlots.add(BatteryUsageSlot.newBuilder()
+                    .setStartTimestamp(getSlotTimestamp(i))
+                    .setEndTimestamp(getSlotTimestamp(i + 1))
+                    .build());
+        }
+    }
+
+    private BatteryDiffData createDiffData(long screenOnTime) {
+        return new BatteryDiffData(mContext, mStartTimestamp, mStartTimestamp,
+                /* startBatteryLevel= */ 100, /* endBatteryLevel= */ 100, screenOnTime,
+                new ArrayList<>(), new ArrayList<>(), Set.of(), Set.of(),
+                /* isAccumulated= */ true);
+    }
+
+    private long getSlotTimestamp(int index) {
+        return mStartTimestamp + index * DateUtils.HOUR_IN_MILLIS;
+    }
+}
@@ -103,7 +103,7 @@ public final class DataProcessManagerTest {
                 mContext, /*handler=*/ null,  /*rawStartTimestamp=*/ 0L,
                 /*lastFullChargeTimestamp=*/ 0L, /*callbackFunction=*/ null,
                 /*hourlyBatteryLevelsPerDay=*/ new ArrayList<>(),
-                /*batteryHistoryMap=*/ new HashMap<>());
+                /*batteryHistoryTable=*/ new BatteryHistoryTable(new long[0]));
     }
 
     @After
@@ -209,7 +209,8 @@ public final class DataProcessManagerTest {
         final DataProcessManager dataProcessManager = new DataProcessManager(
                 mContext, /*handler=*/ null, /*rawStartTimestamp=*/ 2L,
                 /*lastFullChargeTimestamp=*/ 1L, /*callbackFunction=*/ null,
-                hourlyBatteryLevelsPerDay, /*batteryHistoryMap=*/ new HashMap<>());
+                hourlyBatteryLevelsPerDay,
+                /*batteryHistoryTable=*/ new BatteryHistoryTable(new long[0]));
         dataProcessManager.start();
 
         assertThat(dataProcessManager.getIsCurrentAppUsageLoaded()).isTrue();
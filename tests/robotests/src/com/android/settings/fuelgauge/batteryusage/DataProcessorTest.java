@@ -773,6 +773,22 @@ public final class DataProcessorTest {
         assertThat(results).isEqualTo(new long[] {40L, 0L});
     }
 
+    @Test
+    public void findNearestTimestamp_sortedArray_returnExpectedResult() {
+        final long[] timestamps = new long[] {10L, 20L, 30L, 40L};
+
+        assertThat(DataProcessor.findNearestTimestamp(timestamps, /*target=*/ 15L))
+                .isEqualTo(new long[] {10L, 20L});
+        assertThat(DataProcessor.findNearestTimestamp(timestamps, /*target=*/ 10L))
+                .isEqualTo(new long[] {10L, 10L});
+        assertThat(DataProcessor.findNearestTimestamp(timestamps, /*target=*/ 5L))
+                .isEqualTo(new long[] {0L, 10L});
+        assertThat(DataProcessor.findNearestTimestamp(timestamps, /*target=*/ 50L))
+                .isEqualTo(new long[] {40L, 0L});
+        assertThat(DataProcessor.findNearestTimestamp(new long[0], /*target=*/ 50L))
+                .isEqualTo(new long[] {0L, 0L});
+    }
+
     @Test
     public void getBatteryDiffDataMap_emptyHistoryMap_returnEmpty() {
         final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay =
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class CardEligibilityEvaluatorTest {
+
+    private static final long TIMEOUT_MS = 200;
+
+    private Context mContext;
+    private AtomicInteger mCheckCount;
+    private Set<Uri> mIneligibleUris;
+    private Set<Uri> mSlowUris;
+    private CountDownLatch mSlowLatch;
+    private CardEligibilityEvaluator mEvaluator;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCheckCount = new AtomicInteger();
+        mIneligibleUris = ConcurrentHashMap.newKeySet();
+        mSlowUris = ConcurrentHashMap.newKeySet();
+        mSlowLatch = new CountDownLatch(1);
+        mEvaluator = new CardEligibilityEvaluator((context, card) -> () -> {
+            mCheckCount.incrementAndGet();
+            if (mSlowUris.contains(card.getSliceUri())) {
+                mSlowLatch.await(10, TimeUnit.SECONDS);
+            }
+            return mIneligibleUris.contains(card.getSliceUri()) ? null : card;
+        });
+    }
+
+    @Test
+    public void filterEligibleCards_shouldDropIneligibleCards() {
+        final ContextualCard eligible = createCard("eligible");
+        final ContextualCard ineligible = createCard("ineligible");
+        mIneligibleUris.add(ineligible.getSliceUri());
+
+        final List<ContextualCard> cards =
+                filterEligibleCards(Arrays.asList(eligible, ineligible));
+
+        assertThat(cards).hasSize(1);
+        assertThat(cards.get(0).getSliceUri()).isEqualTo(eligible.getSliceUri());
+    }
+
+    @Test
+    public void filterEligibleCards_freshResult_shouldNotCheckAgain() {
+        final List<ContextualCard> candidates = Arrays.asList(createCard("card"));
+
+        filterEligibleCards(candidates);
+        final List<ContextualCard> cards = filterEligibleCards(candidates);
+
+        assertThat(mCheckCount.get()).isEqualTo(1);
+        assertThat(cards).hasSize(1);
+    }
+
+    @Test
+    public void filterEligibleCards_invalidated_shouldCheckAgain() throws InterruptedException {
+        final List<ContextualCard> candidates = Arrays.asList(createCard("card"));
+
+        filterEligibleCards(candidates);
+        mEvaluator.invalidate();
+        filterEligibleCards(candidates);
+
+        waitForCheckCount(2);
+    }
+
+    @Test
+    public void filterEligibleCards_expiredResult_shouldUseItWithoutWaiting()
+            throws InterruptedException {
+        final ContextualCard card = createCard("slow");
+        final List<ContextualCard> candidates = Arrays.asList(card);
+        filterEligibleCards(candidates);
+        mEvaluator.invalidate();
+        mSlowUris.add(card.getSliceUri());
+
+        final long startTime = System.nanoTime();
+        final List<ContextualCard> cards = mEvaluator.filterEligibleCards(mContext, candidates,
+                10000L /* timeoutMs */, this /* owner */, null /* onRefreshed */);
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        mSlowLatch.countDown();
+
+        assertThat(cards).hasSize(1);
+        assertThat(elapsedMs).isLessThan(5000L);
+        waitForCheckCount(2);
+    }
+
+    @Test
+    public void filterEligibleCards_expiredResultChanged_shouldNotifyRefresh()
+            throws InterruptedException {
+        final ContextualCard card = createCard("card");
+        final List<ContextualCard> candidates = Arrays.asList(card);
+        filterEligibleCards(candidates);
+        mEvaluator.invalidate();
+        mIneligibleUris.add(card.getSliceUri());
+        final CountDownLatch refreshed = new CountDownLatch(1);
+
+        final List<ContextualCard> cards = mEvaluator.filterEligibleCards(mContext, candidates,
+                TIMEOUT_MS, this /* owner */, refreshed::countDown);
+
+        assertThat(cards).hasSize(1);
+        assertThat(refreshed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(filterEligibleCards(candidates)).isEmpty();
+    }
+
+    @Test
+    public void filterEligibleCards_timeoutThenEligible_shouldNotifyRefresh()
+            throws InterruptedException {
+        final ContextualCard card = createCard("slow");
+        mSlowUris.add(card.getSliceUri());
+        final CountDownLatch refreshed = new CountDownLatch(1);
+
+        final List<ContextualCard> cards = mEvaluator.filterEligibleCards(mContext,
+                Arrays.asList(card), TIMEOUT_MS, this /* owner */, refreshed::countDown);
+        mSlowLatch.countDown();
+
+        assertThat(cards).isEmpty();
+        assertThat(refreshed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void cancelPendingChecks_shouldOnlyCancelChecksOfOwner() throws Exception {
+        final ContextualCard card = createCard("slow");
+        mSlowUris.add(card.getSliceUri());
+        final Object owner = new Object();
+        final FutureTask<List<ContextualCard>> load = new FutureTask<>(
+                () -> mEvaluator.filterEligibleCards(mContext, Arrays.asList(card),
+                        10000L /* timeoutMs */, owner, null /* onRefreshed */));
+        new Thread(load).start();
+        waitForCheckCount(1);
+
+        mEvaluator.cancelPendingChecks(new Object());
+        assertThat(load.isDone()).isFalse();
+
+        mEvaluator.cancelPendingChecks(owner);
+        assertThat(load.get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    public void filterEligibleCards_timeoutWithoutLastKnownResult_shouldDropCard() {
+        final ContextualCard slow = createCard("slow");
+        mSlowUris.add(slow.getSliceUri());
+
+        final List<ContextualCard> cards =
+                filterEligibleCards(Arrays.asList(slow, createCard("fast")));
+        mSlowLatch.countDown();
+
+        assertThat(cards).hasSize(1);
+        assertThat(cards.get(0).getSliceUri()).isNotEqualTo(slow.getSliceUri());
+    }
+
+    @Test
+    public void filterEligibleCards_negativeScore_shouldDropCachedCard() {
+        final ContextualCard card = createCard("card");
+        filterEligibleCards(Arrays.asList(card));
+
+        final List<ContextualCard> cards =
+                filterEligibleCards(Arrays.asList(card.mutate().setRankingScore(-1).build()));
+
+        assertThat(cards).isEmpty();
+    }
+
+    private List<ContextualCard> filterEligibleCards(List<ContextualCard> candidates) {
+        return mEvaluator.filterEligibleCards(mContext, candidates, TIMEOUT_MS,
+                this /* owner */, null /* onRefreshed */);
+    }
+
+    private void waitForCheckCount(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && mCheckCount.get() < count; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(mCheckCount.get()).isEqualTo(count);
+    }
+
+    private static ContextualCard createCard(String name) {
+        return new ContextualCard.Builder()
+                .setName(name)
+                .setSliceUri(Uri.parse("content://com.android.settings.test/" + name))
+                .setRankingScore(0.5)
+                .build();
+    }
+}
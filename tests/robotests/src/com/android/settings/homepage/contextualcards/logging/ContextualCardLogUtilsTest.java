@@ -22,6 +22,7 @@ import android.net.Uri;
 
 import com.android.settings.homepage.contextualcards.ContextualCard;
 
+import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -41,6 +42,30 @@ public class ContextualCardLogUtilsTest {
                     .setRankingScore(TEST_SCORE)
                     .build();
 
+    @Test
+    public void logEligibilityLatency_shouldCountInMatchingBucket() {
+        final String uri = "content://test/latency";
+
+        ContextualCardLogUtils.logEligibilityLatency(uri, 10);
+        ContextualCardLogUtils.logEligibilityLatency(uri, 150);
+        ContextualCardLogUtils.logEligibilityLatency(uri, 5000);
+
+        assertThat(ContextualCardLogUtils.getEligibilityLatencyHistogram(uri))
+                .asList().containsExactly(1, 0, 1, 0, 0, 1).inOrder();
+    }
+
+    @Test
+    public void dumpEligibilityLatency_shouldContainHistogram() throws Exception {
+        final String uri = "content://test/dump";
+        ContextualCardLogUtils.logEligibilityLatency(uri, 60);
+
+        final JSONObject dump = ContextualCardLogUtils.dumpEligibilityLatency();
+
+        assertThat(dump.getJSONArray("buckets_ms").length())
+                .isEqualTo(ContextualCardLogUtils.ELIGIBILITY_LATENCY_BUCKETS_MS.length);
+        assertThat(dump.getJSONArray(uri).toString()).isEqualTo("[0,1,0,0,0,0]");
+    }
+
     @Test
     public void parseCardDismissLog_notValid_returnNull() {
         assertThat(ContextualCardLogUtils.parseCardDismissLog(TEST_URI + "|" + TEST_URI)).isNull();
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import static android.text.format.DateUtils.DAY_IN_MILLIS;
+import static android.text.format.DateUtils.HOUR_IN_MILLIS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.usage.IUsageStatsManager;
+import android.app.usage.UsageEvents;
+import android.os.Parcel;
+
+import com.android.settings.notification.NotificationUsageIndex.SentStats;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationUsageIndexTest {
+
+    private static final String PKG = "pkg";
+    private static final String CALLING_PKG = "com.android.settings";
+    private static final int USER_ID = 0;
+    private static final long START_TIME = 30 * DAY_IN_MILLIS;
+
+    @Mock
+    private IUsageStatsManager mUsageStats;
+
+    private long mNow;
+    private NotificationUsageIndex mIndex;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mNow = START_TIME;
+        mIndex = new NotificationUsageIndex(() -> mNow);
+    }
+
+    @Test
+    public void getSentStatsByPackage_countsEventsOfAllChannels() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(
+                        createEvent("channel1", START_TIME - 2 * HOUR_IN_MILLIS),
+                        createEvent(null, START_TIME - HOUR_IN_MILLIS)));
+
+        final Map<String, SentStats> stats =
+                mIndex.getSentStatsByPackage(mUsageStats, USER_ID, CALLING_PKG);
+
+        assertThat(stats.get(PKG).sentCount).isEqualTo(2);
+        assertThat(stats.get(PKG).lastSent).isEqualTo(START_TIME - HOUR_IN_MILLIS);
+    }
+
+    @Test
+    public void getSentStatsByChannel_skipsEventsWithoutChannel() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(
+                        createEvent("channel1", START_TIME - 3 * HOUR_IN_MILLIS),
+                        createEvent("channel1", START_TIME - 2 * HOUR_IN_MILLIS),
+                        createEvent(null, START_TIME - HOUR_IN_MILLIS)));
+
+        final Map<String, SentStats> stats =
+                mIndex.getSentStatsByChannel(mUsageStats, USER_ID, PKG, CALLING_PKG);
+
+        assertThat(stats).hasSize(1);
+        assertThat(stats.get("channel1").sentCount).isEqualTo(2);
+        assertThat(stats.get("channel1").lastSent).isEqualTo(START_TIME - 2 * HOUR_IN_MILLIS);
+    }
+
+    @Test
+    public void getSentStatsForPackage_secondLookup_onlyReadsNewEvents() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(createEvent("channel1", START_TIME - HOUR_IN_MILLIS)),
+                        getUsageEvents(createEvent("channel1", START_TIME + HOUR_IN_MILLIS)));
+        mIndex.getSentStatsForPackage(mUsageStats, USER_ID, PKG, CALLING_PKG);
+        mNow = START_TIME + 2 * HOUR_IN_MILLIS;
+
+        final SentStats stats =
+                mIndex.getSentStatsForPackage(mUsageStats, USER_ID, PKG, CALLING_PKG);
+
+        verify(mUsageStats).queryEventsForUser(
+                START_TIME - 7 * DAY_IN_MILLIS, START_TIME, USER_ID, CALLING_PKG);
+        verify(mUsageStats).queryEventsForUser(START_TIME, mNow, USER_ID, CALLING_PKG);
+        assertThat(stats.sentCount).isEqualTo(2);
+        assertThat(stats.lastSent).isEqualTo(START_TIME + HOUR_IN_MILLIS);
+    }
+
+    @Test
+    public void getSentStatsForPackage_eventsOutOfWindow_dropsPackage() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(createEvent("channel1", START_TIME - HOUR_IN_MILLIS)),
+                        getUsageEvents());
+        mIndex.getSentStatsForPackage(mUsageStats, USER_ID, PKG, CALLING_PKG);
+        mNow = START_TIME + 8 * DAY_IN_MILLIS;
+
+        assertThat(mIndex.getSentStatsForPackage(mUsageStats, USER_ID, PKG, CALLING_PKG))
+                .isNull();
+    }
+
+    @Test
+    public void getSentStatsForPackage_clockWentBackwards_rebuildsIndex() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(createEvent("channel1", START_TIME - HOUR_IN_MILLIS)),
+                        getUsageEvents(createEvent("channel1", START_TIME - 3 * HOUR_IN_MILLIS)));
+        mIndex.getSentStatsForPackage(mUsageStats, USER_ID, PKG, CALLING_PKG);
+        mNow = START_TIME - 2 * HOUR_IN_MILLIS;
+
+        final SentStats stats =
+                mIndex.getSentStatsForPackage(mUsageStats, USER_ID, PKG, CALLING_PKG);
+
+        verify(mUsageStats).queryEventsForUser(
+                eq(mNow - 7 * DAY_IN_MILLIS), eq(mNow), eq(USER_ID), eq(CALLING_PKG));
+        assertThat(stats.sentCount).isEqualTo(1);
+        assertThat(stats.lastSent).isEqualTo(START_TIME - 3 * HOUR_IN_MILLIS);
+    }
+
+    @Test
+    public void dumpStats_reportsIndexSize() throws Exception {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(
+                        createEvent("channel1", START_TIME - 2 * HOUR_IN_MILLIS),
+                        createEvent("channel2", START_TIME - HOUR_IN_MILLIS)));
+        mIndex.getSentStatsByPackage(mUsageStats, USER_ID, CALLING_PKG);
+
+        final JSONObject dump = mIndex.dumpStats();
+
+        assertThat(dump.getInt("refreshes")).isEqualTo(1);
+        assertThat(dump.getInt("last_events")).isEqualTo(2);
+        final JSONObject user = dump.getJSONObject("users").getJSONObject("0");
+        assertThat(user.getInt("packages")).isEqualTo(1);
+        assertThat(user.getInt("channels")).isEqualTo(2);
+        assertThat(user.getInt("buckets")).isEqualTo(2);
+        assertThat(user.getLong("high_water_mark")).isEqualTo(START_TIME);
+    }
+
+    private static UsageEvents.Event createEvent(String channelId, long timestamp) {
+        UsageEvents.Event event = new UsageEvents.Event();
+        event.mEventType = UsageEvents.Event.NOTIFICATION_INTERRUPTION;
+        event.mPackage = PKG;
+        event.mNotificationChannelId = channelId;
+        event.mTimeStamp = timestamp;
+        return event;
+    }
+
+    private static UsageEvents getUsageEvents(UsageEvents.Event... events) {
+        List<UsageEvents.Event> eventList = new ArrayList<>(List.of(events));
+        UsageEvents usageEvents = new UsageEvents(eventList, new String[] {PKG});
+        Parcel parcel = Parcel.obtain();
+        parcel.setDataPosition(0);
+        usageEvents.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        return UsageEvents.CREATOR.createFromParcel(parcel);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.NotificationHistory;
+import android.app.NotificationHistory.HistoricalNotification;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Parcel;
+import android.os.UserHandle;
+
+import com.android.settings.notification.NotificationBackend;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowThreadUtils.class)
+public class HistoryLoaderTest {
+
+    private static final int UID = UserHandle.getUid(0, 10001);
+    private static final int WORK_UID = UserHandle.getUid(10, 10001);
+
+    @Mock
+    private NotificationBackend mBackend;
+    @Mock
+    private PackageManager mPm;
+
+    private Context mContext;
+    private HistoryLoader mLoader;
+    private final List<List<NotificationHistoryPackage>> mPages = new ArrayList<>();
+    private final List<Integer> mStartIndexes = new ArrayList<>();
+
+    @Before
+    public void setUp() throws PackageManager.NameNotFoundException {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mLoader = new HistoryLoader(mContext, mBackend, mPm);
+        when(mPm.getApplicationInfoAsUser(anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> {
+                    final ApplicationInfo info = new ApplicationInfo();
+                    info.packageName = invocation.getArgument(0);
+                    return info;
+                });
+        when(mPm.getApplicationLabel(any())).thenAnswer(
+                invocation -> ((ApplicationInfo) invocation.getArgument(0)).packageName);
+        when(mPm.getApplicationIcon(any(ApplicationInfo.class))).thenReturn(new ColorDrawable());
+        when(mPm.getUserBadgedIcon(any(), any())).thenReturn(new ColorDrawable());
+    }
+
+    @Test
+    public void groupByPackage_shouldGroupByUidAndPackageMostRecentFirst() {
+        final NotificationHistory history = createHistory(
+                createNotification("group.a", UID, 100),
+                createNotification("group.b", UID, 300),
+                createNotification("group.a", UID, 200),
+                createNotification("group.a", WORK_UID, 400));
+
+        final List<NotificationHistoryPackage> packages = HistoryLoader.groupByPackage(history);
+
+        assertThat(packages).hasSize(3);
+        assertThat(packages.get(0).pkgName).isEqualTo("group.a");
+        assertThat(packages.get(0).uid).isEqualTo(WORK_UID);
+        assertThat(packages.get(1).pkgName).isEqualTo("group.b");
+        assertThat(packages.get(2).pkgName).isEqualTo("group.a");
+        assertThat(packages.get(2).uid).isEqualTo(UID);
+        assertThat(packages.get(2).notifications).hasSize(2);
+        assertThat(packages.get(2).getMostRecent()).isEqualTo(200);
+    }
+
+    @Test
+    public void load_emptyHistory_shouldDeliverOneEmptyPage() {
+        when(mBackend.getNotificationHistory(any(), any())).thenReturn(createHistory());
+
+        mLoader.load(this::onPage);
+
+        assertThat(mPages).hasSize(1);
+        assertThat(mPages.get(0)).isEmpty();
+        assertThat(mStartIndexes).containsExactly(0);
+    }
+
+    @Test
+    public void load_morePackagesThanPage_shouldDeliverPagesInOrder() {
+        final int count = HistoryLoader.PAGE_SIZE + 2;
+        final HistoricalNotification[] notifications = new HistoricalNotification[count];
+        for (int i = 0; i < count; i++) {
+            notifications[i] = createNotification("paging.p" + i, UID, count - i);
+        }
+        when(mBackend.getNotificationHistory(any(), any()))
+                .thenReturn(createHistory(notifications));
+
+        mLoader.load(this::onPage);
+
+        assertThat(mPages).hasSize(2);
+        assertThat(mPages.get(0)).hasSize(HistoryLoader.PAGE_SIZE);
+        assertThat(mPages.get(1)).hasSize(2);
+        assertThat(mStartIndexes).containsExactly(0, HistoryLoader.PAGE_SIZE).inOrder();
+        assertThat(mPages.get(0).get(0).pkgName).isEqualTo("paging.p0");
+        assertThat(mPages.get(0).get(0).label.toString()).isEqualTo("paging.p0");
+        assertThat(mPages.get(1).get(1).pkgName).isEqualTo("paging.p" + (count - 1));
+    }
+
+    @Test
+    public void load_canceled_shouldNotDeliverPages() {
+        when(mBackend.getNotificationHistory(any(), any()))
+                .thenReturn(createHistory(createNotification("cancel.a", UID, 100)));
+
+        mLoader.cancel();
+        mLoader.load(this::onPage);
+
+        assertThat(mPages).isEmpty();
+    }
+
+    @Test
+    public void load_twice_shouldReuseLabel() {
+        when(mBackend.getNotificationHistory(any(), any())).thenAnswer(
+                invocation -> createHistory(createNotification("reuse.a", UID, 100)));
+
+        mLoader.load(this::onPage);
+        new HistoryLoader(mContext, mBackend, mPm).load(this::onPage);
+
+        verify(mPm, times(1)).getApplicationLabel(any());
+        assertThat(mPages.get(1).get(0).label.toString()).isEqualTo("reuse.a");
+    }
+
+    @Test
+    public void load_afterPackageChanged_shouldLoadLabelAgain() {
+        when(mBackend.getNotificationHistory(any(), any())).thenAnswer(
+                invocation -> createHistory(createNotification("changed.a", UID, 100)));
+        mLoader.load(this::onPage);
+
+        HistoryLoader.onPackageChanged("changed.a");
+        new HistoryLoader(mContext, mBackend, mPm).load(this::onPage);
+
+        verify(mPm, times(2)).getApplicationLabel(any());
+    }
+
+    @Test
+    public void load_afterLocaleChanged_shouldLoadLabelAgain() {
+        when(mBackend.getNotificationHistory(any(), any())).thenAnswer(
+                invocation -> createHistory(createNotification("locale.a", UID, 100)));
+        mLoader.load(this::onPage);
+
+        RuntimeEnvironment.setQualifiers("fr");
+        new HistoryLoader(mContext, mBackend, mPm).load(this::onPage);
+
+        verify(mPm, times(2)).getApplicationLabel(any());
+    }
+
+    private void onPage(List<NotificationHistoryPackage> page, int startIndex) {
+        mPages.add(page);
+        mStartIndexes.add(startIndex);
+    }
+
+    private static HistoricalNotification createNotification(String pkg, int uid,
+            long postedTime) {
+        return new HistoricalNotification.Builder()
+                .setPackage(pkg)
+                .setUid(uid)
+                .setUserId(UserHandle.getUserId(uid))
+                .setChannelId("channel")
+                .setChannelName("Channel")
+                .setPostedTimeMs(postedTime)
+                .setTitle("title")
+                .setText("text")
+                .build();
+    }
+
+    /** Returns a history to read, as received from the notification manager. */
+    private static NotificationHistory createHistory(HistoricalNotification... notifications) {
+        final NotificationHistory history = new NotificationHistory();
+        for (HistoricalNotification notification : notifications) {
+            history.addNotificationToWrite(notification);
+        }
+        history.poolStringsFromNotifications();
+        final Parcel parcel = Parcel.obtain();
+        try {
+            history.writeToParcel(parcel, 0 /* flags */);
+            parcel.setDataPosition(0);
+            return NotificationHistory.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.provider.Settings;
+
+import com.android.settings.core.InvalidationMonitor;
+import com.android.settings.core.InvalidationSources;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class NonIndexableKeysCacheTest {
+
+    private static final long TIMEOUT_MS = 100;
+    private static final Uri SETTING_URI = Settings.Global.getUriFor("test_setting");
+
+    private Context mContext;
+    private NonIndexableKeysCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new NonIndexableKeysCache(TIMEOUT_MS);
+        ReflectionHelpers.setStaticField(InvalidationMonitor.class, "sInstance", null);
+    }
+
+    @Test
+    public void getNonIndexableKeys_shouldCombineAllProviders() {
+        final List<SearchIndexableData> bundles = Arrays.asList(
+                new SearchIndexableData(String.class, new FakeProvider("key1")),
+                new SearchIndexableData(Integer.class, new FakeProvider("key2", "")));
+
+        assertThat(mCache.getNonIndexableKeys(mContext, bundles))
+                .containsExactly("key1", "key2");
+    }
+
+    @Test
+    public void getNonIndexableKeys_shouldRecomputeEveryQuery() {
+        final FakeProvider provider = new FakeProvider("key");
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, provider));
+
+        mCache.getNonIndexableKeys(mContext, bundles);
+        final List<String> keys = mCache.getNonIndexableKeys(mContext, bundles);
+
+        assertThat(provider.mComputeCount.get()).isEqualTo(2);
+        assertThat(keys).containsExactly("key");
+    }
+
+    @Test
+    public void getNonIndexableKeys_withInvalidationSources_shouldUseCache() {
+        final FakeProvider provider = new FakeProvider("key");
+        provider.mSources = new InvalidationSources.Builder().addUri(SETTING_URI).build();
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, provider));
+
+        mCache.getNonIndexableKeys(mContext, bundles);
+        final List<String> keys = mCache.getNonIndexableKeys(mContext, bundles);
+
+        assertThat(provider.mComputeCount.get()).isEqualTo(1);
+        assertThat(keys).containsExactly("key");
+    }
+
+    @Test
+    public void getNonIndexableKeys_sourceChanged_shouldRecompute() {
+        final FakeProvider provider = new FakeProvider("key");
+        provider.mSources = new InvalidationSources.Builder().addUri(SETTING_URI).build();
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, provider));
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        mContext.getContentResolver().notifyChange(SETTING_URI, null /* observer */);
+        ShadowLooper.idleMainLooper();
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        assertThat(provider.mComputeCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_packageChanged_shouldRecompute() {
+        final FakeProvider provider = new FakeProvider("key");
+        provider.mSources = new InvalidationSources.Builder().build();
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, provider));
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_ADDED,
+                Uri.fromParts("package", "com.example", null /* fragment */)));
+        ShadowLooper.idleMainLooper();
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        assertThat(provider.mComputeCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_invalidateAll_shouldRecompute() {
+        final FakeProvider provider = new FakeProvider("key");
+        provider.mSources = new InvalidationSources.Builder().addUri(SETTING_URI).build();
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, provider));
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        mCache.invalidateAll();
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        assertThat(provider.mComputeCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getNonIndexableKeys_slowProvider_shouldUseLastKeys() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicBoolean slow = new AtomicBoolean();
+        final FakeProvider slowProvider = new FakeProvider("slow") {
+            @Override
+            public List<String> getNonIndexableKeys(Context context) {
+                if (slow.get()) {
+                    try {
+                        latch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getNonIndexableKeys(context);
+            }
+        };
+        final List<SearchIndexableData> bundles = Arrays.asList(
+                new SearchIndexableData(String.class, slowProvider),
+                new SearchIndexableData(Integer.class, new FakeProvider("fast")));
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        slow.set(true);
+        final List<String> keys = mCache.getNonIndexableKeys(mContext, bundles);
+        latch.countDown();
+
+        assertThat(keys).containsExactly("slow", "fast");
+    }
+
+    @Test
+    public void getNonIndexableKeys_slowProviderAfterPackageChange_shouldWaitForKeys() {
+        final AtomicBoolean slow = new AtomicBoolean();
+        final FakeProvider slowProvider = new SlowProvider("old", slow);
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, slowProvider));
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_REMOVED,
+                Uri.fromParts("package", "com.example", null /* fragment */)));
+        ShadowLooper.idleMainLooper();
+        slow.set(true);
+        slowProvider.mKeys = Arrays.asList("new");
+
+        assertThat(mCache.getNonIndexableKeys(mContext, bundles)).containsExactly("new");
+    }
+
+    @Test
+    public void getNonIndexableKeys_slowProviderWithOldKeys_shouldWaitForKeys() {
+        final AtomicBoolean slow = new AtomicBoolean();
+        final FakeProvider slowProvider = new SlowProvider("old", slow);
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, slowProvider));
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        ShadowLooper.idleMainLooper(NonIndexableKeysCache.LAST_KEYS_MAX_AGE_MS + 1,
+                TimeUnit.MILLISECONDS);
+        slow.set(true);
+        slowProvider.mKeys = Arrays.asList("new");
+
+        assertThat(mCache.getNonIndexableKeys(mContext, bundles)).containsExactly("new");
+    }
+
+    @Test
+    public void getNonIndexableKeys_slowFirstComputation_shouldWaitForIt() {
+        final FakeProvider slowProvider = new FakeProvider("slow") {
+            @Override
+            public List<String> getNonIndexableKeys(Context context) {
+                try {
+                    Thread.sleep(TIMEOUT_MS * 3);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getNonIndexableKeys(context);
+            }
+        };
+        final List<SearchIndexableData> bundles = Arrays.asList(
+                new SearchIndexableData(String.class, slowProvider),
+                new SearchIndexableData(Integer.class, new FakeProvider("fast")));
+
+        assertThat(mCache.getNonIndexableKeys(mContext, bundles))
+                .containsExactly("slow", "fast");
+    }
+
+    @Test
+    public void getNonIndexableKeys_providerThrows_shouldSkipProvider() {
+        final FakeProvider brokenProvider = new FakeProvider("broken") {
+            @Override
+            public List<String> getNonIndexableKeys(Context context) {
+                throw new IllegalStateException();
+            }
+        };
+        final List<SearchIndexableData> bundles = Arrays.asList(
+                new SearchIndexableData(String.class, brokenProvider),
+                new SearchIndexableData(Integer.class, new FakeProvider("key")));
+
+        assertThat(mCache.getNonIndexableKeys(mContext, bundles)).containsExactly("key");
+    }
+
+    @Test
+    public void dumpStats_shouldReportPerProvider() throws JSONException {
+        final List<SearchIndexableData> bundles =
+                Arrays.asList(new SearchIndexableData(String.class, new FakeProvider("key")));
+        mCache.getNonIndexableKeys(mContext, bundles);
+        mCache.getNonIndexableKeys(mContext, bundles);
+
+        final JSONObject stats = mCache.dumpStats().getJSONObject(String.class.getName());
+
+        assertThat(stats.getInt("computed")).isEqualTo(2);
+        assertThat(stats.getInt("cache_hits")).isEqualTo(0);
+        assertThat(stats.getInt("timeouts")).isEqualTo(0);
+        assertThat(stats.getInt("errors")).isEqualTo(0);
+    }
+
+    private static class FakeProvider extends BaseSearchIndexProvider {
+        volatile List<String> mKeys;
+        InvalidationSources mSources;
+        final AtomicInteger mComputeCount = new AtomicInteger();
+
+        FakeProvider(String... keys) {
+            mKeys = Arrays.asList(keys);
+        }
+
+        @Override
+        public List<String> getNonIndexableKeys(Context context) {
+            mComputeCount.incrementAndGet();
+            return new ArrayList<>(mKeys);
+        }
+
+        @Override
+        public InvalidationSources getNonIndexableKeysInvalidationSources(Context context) {
+            return mSources;
+        }
+    }
+
+    /** Takes longer than its deadline while {@code slow} is set. */
+    private static class SlowProvider extends FakeProvider {
+        private final AtomicBoolean mSlow;
+
+        SlowProvider(String key, AtomicBoolean slow) {
+            super(key);
+            mSlow = slow;
+        }
+
+        @Override
+        public List<String> getNonIndexableKeys(Context context) {
+            if (mSlow.get()) {
+                try {
+                    Thread.sleep(TIMEOUT_MS * 3);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getNonIndexableKeys(context);
+        }
+    }
+}
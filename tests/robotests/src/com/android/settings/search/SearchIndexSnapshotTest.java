@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexSnapshotTest {
+
+    private static final String KEY = "fingerprint|en-US|0|0";
+
+    private Context mContext;
+    private File mFile;
+    private AtomicInteger mBuildCount;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFile = new File(mContext.getCacheDir(), SearchIndexSnapshot.FILE_NAME);
+        mFile.delete();
+        mBuildCount = new AtomicInteger();
+    }
+
+    @Test
+    public void getRawRows_noSnapshot_shouldBuildRows() {
+        final SearchIndexSnapshot snapshot = new SearchIndexSnapshot(mFile, KEY);
+
+        final List<Object[]> rows = snapshot.getRawRows(this::buildRows);
+
+        assertThat(mBuildCount.get()).isEqualTo(1);
+        assertThat(rows).hasSize(2);
+        assertThat(mFile.exists()).isTrue();
+    }
+
+    @Test
+    public void getRawRows_calledTwice_shouldBuildOnce() {
+        final SearchIndexSnapshot snapshot = new SearchIndexSnapshot(mFile, KEY);
+
+        snapshot.getRawRows(this::buildRows);
+        snapshot.getRawRows(this::buildRows);
+
+        assertThat(mBuildCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void getRawRows_persistedSnapshot_shouldNotRebuild() {
+        new SearchIndexSnapshot(mFile, KEY).getRawRows(this::buildRows);
+
+        final List<Object[]> rows = new SearchIndexSnapshot(mFile, KEY).getRawRows(
+                this::buildRows);
+
+        assertThat(mBuildCount.get()).isEqualTo(1);
+        assertThat(rows.get(0)).asList().containsExactly(1, "title", null, 2L).inOrder();
+        assertThat(rows.get(1)).asList().containsExactly(3, "other", "summary", 4L).inOrder();
+    }
+
+    @Test
+    public void getXmlResourceRows_onlyRawRowsPersisted_shouldBuildXmlRows() {
+        new SearchIndexSnapshot(mFile, KEY).getRawRows(this::buildRows);
+
+        new SearchIndexSnapshot(mFile, KEY).getXmlResourceRows(this::buildRows);
+
+        assertThat(mBuildCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getRawRows_keyChanged_shouldRebuild() {
+        new SearchIndexSnapshot(mFile, KEY).getRawRows(this::buildRows);
+
+        new SearchIndexSnapshot(mFile, "other|fr-FR|0|0").getRawRows(this::buildRows);
+
+        assertThat(mBuildCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getRawRows_corruptedFile_shouldRebuild() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(new byte[] {0, 0, 0, SearchIndexSnapshot.VERSION, 0, 1});
+        }
+
+        final List<Object[]> rows = new SearchIndexSnapshot(mFile, KEY).getRawRows(
+                this::buildRows);
+
+        assertThat(mBuildCount.get()).isEqualTo(1);
+        assertThat(rows).hasSize(2);
+    }
+
+    @Test
+    public void invalidate_shouldDeleteSnapshot() {
+        final SearchIndexSnapshot snapshot = new SearchIndexSnapshot(mFile, KEY);
+        snapshot.getRawRows(this::buildRows);
+
+        snapshot.invalidate();
+        snapshot.getRawRows(this::buildRows);
+
+        assertThat(mBuildCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void isStale_sameContext_shouldReturnFalse() {
+        final SearchIndexSnapshot snapshot = new SearchIndexSnapshot(mContext);
+
+        assertThat(snapshot.isStale(mContext)).isFalse();
+    }
+
+    private List<Object[]> buildRows() {
+        mBuildCount.incrementAndGet();
+        final List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {1, "title", null, 2L});
+        rows.add(new Object[] {3, "other", "summary", 4L});
+        return rows;
+    }
+}
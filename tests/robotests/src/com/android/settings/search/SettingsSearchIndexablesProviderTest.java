@@ -16,6 +16,7 @@ import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.provider.SearchIndexableResource;
 import android.provider.SearchIndexablesContract;
 
 import com.android.settings.R;
@@ -221,6 +222,59 @@ public class SettingsSearchIndexablesProviderTest {
         assertThat(mProvider.isEligibleForIndexing(PACKAGE_NAME, activityTile)).isFalse();
     }
 
+    @Test
+    public void queryXmlResources_staticProvider_keptInSnapshot() {
+        final TestIndexProvider indexProvider = new TestIndexProvider(true /* indexDataStatic */);
+        addIndexProvider(indexProvider);
+        mProvider.queryXmlResources(null /* projection */);
+
+        indexProvider.mXmlResId = 0;
+
+        assertThat(mProvider.queryXmlResources(null /* projection */).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void queryXmlResources_dynamicProvider_queriedEveryTime() {
+        final TestIndexProvider indexProvider = new TestIndexProvider(false /* indexDataStatic */);
+        addIndexProvider(indexProvider);
+        assertThat(mProvider.queryXmlResources(null /* projection */).getCount()).isEqualTo(2);
+
+        indexProvider.mXmlResId = 0;
+
+        assertThat(mProvider.queryXmlResources(null /* projection */).getCount()).isEqualTo(1);
+    }
+
+    private void addIndexProvider(TestIndexProvider indexProvider) {
+        mFakeFeatureFactory.searchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeSettingsFragment.class, indexProvider));
+    }
+
+    private static class TestIndexProvider extends BaseSearchIndexProvider {
+
+        private final boolean mIndexDataStatic;
+        private int mXmlResId = R.xml.sound_settings;
+
+        TestIndexProvider(boolean indexDataStatic) {
+            mIndexDataStatic = indexDataStatic;
+        }
+
+        @Override
+        public List<SearchIndexableResource> getXmlResourcesToIndex(Context context,
+                boolean enabled) {
+            if (mXmlResId == 0) {
+                return null;
+            }
+            final SearchIndexableResource sir = new SearchIndexableResource(context);
+            sir.xmlResId = mXmlResId;
+            return Arrays.asList(sir);
+        }
+
+        @Override
+        public boolean isIndexDataStatic() {
+            return mIndexDataStatic;
+        }
+    }
+
     @Implements(CategoryManager.class)
     public static class ShadowCategoryManager {
 
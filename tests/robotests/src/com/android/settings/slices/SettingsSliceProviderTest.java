@@ -149,6 +149,7 @@ public class SettingsSliceProviderTest {
         mProvider = spy(new SettingsSliceProvider());
         ShadowStrictMode.reset();
         mProvider.mSliceWeakDataCache = new HashMap<>();
+        mProvider.mSliceDataCache.evictAll();
         mProvider.mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(mContext);
         when(mProvider.getContext()).thenReturn(mContext);
 
@@ -190,6 +191,18 @@ public class SettingsSliceProviderTest {
         assertThat(data.getTitle()).isEqualTo(SliceTestUtils.FAKE_TITLE);
     }
 
+    @Test
+    public void testBindSlice_afterUnpin_returnsSliceFromDataCache() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        mProvider.loadSlice(INTENT_SLICE_URI);
+        mProvider.mSliceWeakDataCache.clear();
+
+        Slice slice = mProvider.onBindSlice(INTENT_SLICE_URI);
+
+        assertThat(slice.getUri()).isEqualTo(INTENT_SLICE_URI);
+        assertThat(slice.getItems()).isNotEmpty();
+    }
+
     @Test
     public void loadSlice_registersIntentFilter() {
         SliceTestUtils.insertSliceToDb(mContext, KEY);
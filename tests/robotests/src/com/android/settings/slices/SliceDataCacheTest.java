@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.net.Uri;
+import android.os.LocaleList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceDataCacheTest {
+
+    private static final Uri URI = Uri.parse("content://com.android.settings.slices/action/key");
+    private static final LocaleList EN = LocaleList.forLanguageTags("en-US");
+    private static final LocaleList FR = LocaleList.forLanguageTags("fr-FR");
+
+    private SliceDataCache mCache;
+    private SliceData mData;
+
+    @Before
+    public void setUp() {
+        mCache = new SliceDataCache();
+        mData = mock(SliceData.class);
+    }
+
+    @Test
+    public void get_notCached_shouldReturnNull() {
+        assertThat(mCache.get(URI, EN)).isNull();
+    }
+
+    @Test
+    public void put_shouldBeReturnedByGet() {
+        mCache.put(URI, mData, EN);
+
+        assertThat(mCache.get(URI, EN)).isSameInstanceAs(mData);
+        assertThat(mCache.contains(URI)).isTrue();
+    }
+
+    @Test
+    public void get_localesChanged_shouldDropEntries() {
+        mCache.put(URI, mData, EN);
+
+        assertThat(mCache.get(URI, FR)).isNull();
+        assertThat(mCache.contains(URI)).isFalse();
+    }
+
+    @Test
+    public void remove_shouldDropEntry() {
+        mCache.put(URI, mData, EN);
+
+        mCache.remove(URI);
+
+        assertThat(mCache.get(URI, EN)).isNull();
+    }
+
+    @Test
+    public void evictAll_shouldDropEntries() {
+        mCache.put(URI, mData, EN);
+
+        mCache.evictAll();
+
+        assertThat(mCache.contains(URI)).isFalse();
+    }
+
+    @Test
+    public void put_overCapacity_shouldEvictLeastRecentlyUsed() {
+        for (int i = 0; i <= SliceDataCache.MAX_ENTRIES; i++) {
+            mCache.put(URI.buildUpon().appendPath(String.valueOf(i)).build(), mData, EN);
+        }
+
+        assertThat(mCache.contains(URI.buildUpon().appendPath("0").build())).isFalse();
+        assertThat(mCache.contains(URI.buildUpon().appendPath(
+                String.valueOf(SliceDataCache.MAX_ENTRIES)).build())).isTrue();
+    }
+
+    @Test
+    public void dump_shouldReportHitsAndBinds() {
+        mCache.put(URI, mData, EN);
+        mCache.get(URI, EN);
+        mCache.get(Uri.EMPTY, EN);
+        mCache.recordBindLatency(10);
+        mCache.recordBindLatency(30);
+        final StringWriter writer = new StringWriter();
+
+        mCache.dump(new PrintWriter(writer));
+
+        assertThat(writer.toString()).contains("hits=1 misses=1");
+        assertThat(writer.toString()).contains("count=2 avgMs=20 maxMs=30");
+    }
+}
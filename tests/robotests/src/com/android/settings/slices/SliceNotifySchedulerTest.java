@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceNotifySchedulerTest {
+
+    private static final Uri URI = Uri.parse("content://com.android.settings.slices/test");
+    private static final Uri OTHER_URI = Uri.parse("content://com.android.settings.slices/other");
+
+    private Context mContext;
+    private ShadowContentResolver mContentResolver;
+    private ShadowLooper mLooper;
+    private SliceNotifyScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mContentResolver = shadowOf(mContext.getContentResolver());
+        mLooper = shadowOf(Looper.getMainLooper());
+        mScheduler = new SliceNotifyScheduler(Looper.getMainLooper());
+    }
+
+    @Test
+    public void updateSlice_firstUpdate_shouldBePostponed() {
+        mScheduler.updateSlice(pin(new TestWorker(mContext, URI)));
+
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.BASE_INTERVAL_MS / 2));
+        assertThat(mContentResolver.getNotifiedUris()).isEmpty();
+
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.BASE_INTERVAL_MS));
+        assertThat(mContentResolver.getNotifiedUris()).hasSize(1);
+    }
+
+    @Test
+    public void updateSlice_burst_shouldCoalesceIntoOneNotification() {
+        final TestWorker worker = pin(new TestWorker(mContext, URI));
+
+        mScheduler.updateSlice(worker);
+        mScheduler.updateSlice(worker);
+        mScheduler.updateSlice(worker);
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.MAX_INTERVAL_MS));
+
+        assertThat(mContentResolver.getNotifiedUris()).hasSize(1);
+        assertThat(mScheduler.getStats(URI).mCoalesced).isEqualTo(2);
+    }
+
+    @Test
+    public void updateSlice_multipleWorkers_shouldBeNotifiedInSameBatch() {
+        mScheduler.updateSlice(pin(new TestWorker(mContext, URI)));
+        mScheduler.updateSlice(pin(new TestWorker(mContext, OTHER_URI)));
+
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.BASE_INTERVAL_MS
+                + SliceNotifyScheduler.FRAME_INTERVAL_MS));
+
+        assertThat(mContentResolver.getNotifiedUris()).hasSize(2);
+    }
+
+    @Test
+    public void updateSlice_changingFasterThanInterval_shouldIncreaseInterval() {
+        final TestWorker worker = pin(new TestWorker(mContext, URI));
+        mScheduler.updateSlice(worker);
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.MAX_INTERVAL_MS));
+
+        mScheduler.updateSlice(worker);
+
+        assertThat(mScheduler.getStats(URI).mIntervalMs)
+                .isGreaterThan(SliceNotifyScheduler.BASE_INTERVAL_MS);
+    }
+
+    @Test
+    public void cancelSliceUpdate_shouldNotNotify() {
+        final TestWorker worker = pin(new TestWorker(mContext, URI));
+        mScheduler.updateSlice(worker);
+
+        mScheduler.cancelSliceUpdate(worker);
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.MAX_INTERVAL_MS));
+
+        assertThat(mContentResolver.getNotifiedUris()).isEmpty();
+    }
+
+    @Test
+    public void cancelSliceUpdate_shouldForgetUri() {
+        final TestWorker worker = pin(new TestWorker(mContext, URI));
+        mScheduler.updateSlice(worker);
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.MAX_INTERVAL_MS));
+
+        mScheduler.cancelSliceUpdate(worker);
+
+        assertThat(mScheduler.getStats(URI)).isNull();
+    }
+
+    @Test
+    public void getStats_shouldReportLatency() {
+        mScheduler.updateSlice(pin(new TestWorker(mContext, URI)));
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.MAX_INTERVAL_MS));
+
+        final SliceNotifyScheduler.UriStats stats = mScheduler.getStats(URI);
+
+        assertThat(stats.mNotifyCount).isEqualTo(1);
+        assertThat(stats.mAverageLatencyMs).isAtLeast(SliceNotifyScheduler.BASE_INTERVAL_MS);
+    }
+
+    @Test
+    public void updateSlice_notPinned_shouldIgnore() {
+        mScheduler.updateSlice(new TestWorker(mContext, URI));
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.MAX_INTERVAL_MS));
+
+        assertThat(mContentResolver.getNotifiedUris()).isEmpty();
+        assertThat(mScheduler.getStats(URI)).isNull();
+    }
+
+    @Test
+    public void updateSlice_afterUnpinned_shouldIgnore() {
+        final TestWorker worker = pin(new TestWorker(mContext, URI));
+        mScheduler.cancelSliceUpdate(worker);
+
+        mScheduler.updateSlice(worker);
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.MAX_INTERVAL_MS));
+
+        assertThat(mContentResolver.getNotifiedUris()).isEmpty();
+        assertThat(mScheduler.getStats(URI)).isNull();
+    }
+
+    @Test
+    public void updateSlice_foregroundSlice_shouldBeNotifiedFirst() {
+        mScheduler.setForeground(Arrays.asList(OTHER_URI), true /* foreground */);
+        mScheduler.updateSlice(pin(new TestWorker(mContext, URI)));
+        mScheduler.updateSlice(pin(new TestWorker(mContext, OTHER_URI)));
+
+        mLooper.idleFor(Duration.ofMillis(SliceNotifyScheduler.BASE_INTERVAL_MS
+                + SliceNotifyScheduler.FRAME_INTERVAL_MS));
+
+        assertThat(mContentResolver.getNotifiedUris()).hasSize(2);
+        assertThat(mContentResolver.getNotifiedUris().get(0).uri).isEqualTo(OTHER_URI);
+    }
+
+    private TestWorker pin(TestWorker worker) {
+        mScheduler.onSlicePinned(worker);
+        return worker;
+    }
+
+    private static class TestWorker extends SliceBackgroundWorker<String> {
+
+        TestWorker(Context context, Uri uri) {
+            super(context, uri);
+        }
+
+        @Override
+        protected void onSlicePinned() {
+        }
+
+        @Override
+        protected void onSliceUnpinned() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -26,17 +26,20 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.LocaleList;
 
+import com.android.settings.slices.SlicesDatabaseHelper.HashColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
+import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 import com.android.settings.testutils.DatabaseTestUtils;
 
 import org.junit.After;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -58,6 +61,7 @@ public class SlicesIndexerTest {
     private static final int HIGHLIGHT_MENU_KEY = 5678; // I declare a thumb war
 
     private Context mContext;
+    private SQLiteDatabase mDatabase;
 
     private SlicesIndexer mManager;
 
@@ -65,16 +69,21 @@ public class SlicesIndexerTest {
     @Before
     public void setUp() {
         mContext = RuntimeEnvironment.application;
+        mDatabase = createDatabase();
+        final SlicesDatabaseHelper helper = spy(SlicesDatabaseHelper.getInstance(mContext));
+        doReturn(mDatabase).when(helper).getWritableDatabase();
+        doReturn(mDatabase).when(helper).getReadableDatabase();
         mManager = spy(new SlicesIndexer(mContext));
+        ReflectionHelpers.setField(mManager, "mHelper", helper);
     }
 
     @After
     public void cleanUp() {
+        mDatabase.close();
         DatabaseTestUtils.clearDb(mContext);
     }
 
     @Test
-    @Ignore
     public void testAlreadyIndexed_doesNotIndexAgain() {
         String newKey = "newKey";
         String newTitle = "newTitle";
@@ -84,15 +93,12 @@ public class SlicesIndexerTest {
         // Attempt indexing - should not do anything.
         mManager.run();
 
-        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
-        try (final Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+        try (Cursor cursor = mDatabase.rawQuery("SELECT * FROM slices_index", null)) {
             cursor.moveToFirst();
             assertThat(cursor.getCount()).isEqualTo(1);
             assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.KEY))).isEqualTo(newKey);
             assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.TITLE)))
                     .isEqualTo(newTitle);
-        } finally {
-            db.close();
         }
     }
 
@@ -108,15 +114,25 @@ public class SlicesIndexerTest {
     }
 
     @Test
-    @Ignore
+    public void testIndexSliceData_shouldEvictSliceDataCache() {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        doReturn(sliceData).when(mManager).getSliceData();
+        final SliceDataCache cache = SliceDataCache.getInstance();
+        cache.put(sliceData.get(0).getUri(), sliceData.get(0), LocaleList.getDefault());
+
+        mManager.run();
+
+        assertThat(cache.contains(sliceData.get(0).getUri())).isFalse();
+    }
+
+    @Test
     public void testInsertSliceData_nonPublicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(false);
         doReturn(sliceData).when(mManager).getSliceData();
 
         mManager.run();
 
-        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
-        try (final Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+        try (Cursor cursor = mDatabase.rawQuery("SELECT * FROM slices_index", null)) {
             assertThat(cursor.getCount()).isEqualTo(sliceData.size());
 
             cursor.moveToFirst();
@@ -151,21 +167,17 @@ public class SlicesIndexerTest {
                         .isEqualTo(HIGHLIGHT_MENU_KEY);
                 cursor.moveToNext();
             }
-        } finally {
-            db.close();
         }
     }
 
     @Test
-    @Ignore
     public void insertSliceData_publicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(true);
         doReturn(sliceData).when(mManager).getSliceData();
 
         mManager.run();
 
-        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
-        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+        try (Cursor cursor = mDatabase.rawQuery("SELECT * FROM slices_index", null)) {
             assertThat(cursor.getCount()).isEqualTo(sliceData.size());
 
             cursor.moveToFirst();
@@ -200,24 +212,188 @@ public class SlicesIndexerTest {
                         .isEqualTo(HIGHLIGHT_MENU_KEY);
                 cursor.moveToNext();
             }
-        } finally {
-            db.close();
         }
     }
 
+    @Test
+    public void computeHash_sameData_sameHash() {
+        final List<SliceData> first = getMockIndexableData(false);
+        final List<SliceData> second = getMockIndexableData(false);
+
+        assertThat(SlicesIndexer.computeHash(first.get(0)))
+                .isEqualTo(SlicesIndexer.computeHash(second.get(0)));
+    }
+
+    @Test
+    public void computeHash_differentTitle_differentHash() {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        final SliceData changed = new SliceData.Builder()
+                .setKey(KEYS[0])
+                .setTitle("new title")
+                .setSummary(SUMMARY)
+                .setScreenTitle(SCREEN_TITLE)
+                .setKeywords(KEYWORDS)
+                .setFragmentName(FRAGMENT_NAME)
+                .setIcon(ICON)
+                .setUri(URI)
+                .setPreferenceControllerClassName(PREF_CONTROLLER)
+                .setSliceType(SLICE_TYPE)
+                .setUnavailableSliceSubtitle(UNAVAILABLE_SLICE_SUBTITLE)
+                .setHighlightMenuRes(HIGHLIGHT_MENU_KEY)
+                .build();
+
+        assertThat(SlicesIndexer.computeHash(changed))
+                .isNotEqualTo(SlicesIndexer.computeHash(sliceData.get(0)));
+    }
+
+    @Test
+    public void computeHash_differentVisibility_differentHash() {
+        final List<SliceData> privateData = getMockIndexableData(false);
+        final List<SliceData> publicData = getMockIndexableData(true);
+
+        assertThat(SlicesIndexer.computeHash(privateData.get(0)))
+                .isNotEqualTo(SlicesIndexer.computeHash(publicData.get(0)));
+    }
+
+    @Test
+    public void updateSliceData_unchangedData_doesNotRewriteRows() {
+        mManager.updateSliceData(mDatabase, getMockIndexableData(false));
+        final List<Long> docIds = getDocIds();
+
+        assertThat(mManager.updateSliceData(mDatabase, getMockIndexableData(false))).isEqualTo(0);
+        assertThat(getDocIds()).isEqualTo(docIds);
+    }
+
+    @Test
+    public void updateSliceData_removedKey_deletesStaleRow() {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        mManager.updateSliceData(mDatabase, sliceData);
+
+        final int changedRows = mManager.updateSliceData(mDatabase, sliceData.subList(0, 2));
+
+        assertThat(changedRows).isEqualTo(1);
+        assertThat(getIndexedKeys()).containsExactly(KEYS[0], KEYS[1]);
+        try (Cursor cursor = mDatabase.rawQuery("SELECT * FROM slices_index_hashes", null)) {
+            assertThat(cursor.getCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void updateSliceData_changedRow_rewritesOnlyThatRow() {
+        mManager.updateSliceData(mDatabase, getMockIndexableData(false));
+        final List<Long> docIds = getDocIds();
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        sliceData.set(1, new SliceData.Builder()
+                .setKey(KEYS[1])
+                .setTitle("new title")
+                .setFragmentName(FRAGMENT_NAME)
+                .setUri(URI)
+                .setPreferenceControllerClassName(PREF_CONTROLLER)
+                .build());
+
+        final int changedRows = mManager.updateSliceData(mDatabase, sliceData);
+
+        assertThat(changedRows).isEqualTo(1);
+        final List<Long> newDocIds = getDocIds();
+        assertThat(newDocIds).hasSize(3);
+        assertThat(newDocIds).containsAtLeast(docIds.get(0), docIds.get(2));
+        assertThat(newDocIds).doesNotContain(docIds.get(1));
+        try (Cursor cursor = mDatabase.rawQuery(
+                "SELECT title FROM slices_index WHERE key = ?", new String[]{KEYS[1]})) {
+            assertThat(cursor.getCount()).isEqualTo(1);
+            cursor.moveToFirst();
+            assertThat(cursor.getString(0)).isEqualTo("new title");
+        }
+    }
+
+    @Test
+    public void updateSliceData_newKey_insertsRow() {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        mManager.updateSliceData(mDatabase, sliceData.subList(0, 2));
+
+        final int changedRows = mManager.updateSliceData(mDatabase, sliceData);
+
+        assertThat(changedRows).isEqualTo(1);
+        assertThat(getIndexedKeys()).containsExactly(KEYS[0], KEYS[1], KEYS[2]);
+    }
+
+    @Test
+    public void updateSliceData_duplicateKey_indexesFirstRow() {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        sliceData.add(new SliceData.Builder()
+                .setKey(KEYS[0])
+                .setTitle("duplicate")
+                .setFragmentName(FRAGMENT_NAME)
+                .setUri(URI)
+                .setPreferenceControllerClassName(PREF_CONTROLLER)
+                .build());
+
+        mManager.updateSliceData(mDatabase, sliceData);
+
+        assertThat(getIndexedKeys()).containsExactly(KEYS[0], KEYS[1], KEYS[2]);
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
         values.put(IndexColumns.TITLE, title);
-        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
-        db.beginTransaction();
+        mDatabase.beginTransaction();
         try {
-            db.replaceOrThrow(SlicesDatabaseHelper.Tables.TABLE_SLICES_INDEX, null, values);
-            db.setTransactionSuccessful();
+            mDatabase.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null, values);
+            mDatabase.setTransactionSuccessful();
         } finally {
-            db.endTransaction();
+            mDatabase.endTransaction();
         }
-        db.close();
+    }
+
+    private List<Long> getDocIds() {
+        final List<Long> docIds = new ArrayList<>();
+        try (Cursor cursor = mDatabase.rawQuery(
+                "SELECT docid FROM slices_index ORDER BY key", null)) {
+            while (cursor.moveToNext()) {
+                docIds.add(cursor.getLong(0));
+            }
+        }
+        return docIds;
+    }
+
+    private List<String> getIndexedKeys() {
+        final List<String> keys = new ArrayList<>();
+        try (Cursor cursor = mDatabase.rawQuery("SELECT key FROM slices_index", null)) {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Robolectric can't create the fts4 table of {@link SlicesDatabaseHelper}, so the index goes
+     * into a plain table with the same columns. Its docid column is an alias of the row id, as
+     * in fts4.
+     */
+    private static SQLiteDatabase createDatabase() {
+        final SQLiteDatabase database = SQLiteDatabase.create(null /* factory */);
+        database.execSQL("CREATE TABLE " + Tables.TABLE_SLICES_INDEX + "("
+                + "docid INTEGER PRIMARY KEY, "
+                + IndexColumns.KEY + ", "
+                + IndexColumns.SLICE_URI + ", "
+                + IndexColumns.TITLE + ", "
+                + IndexColumns.SUMMARY + ", "
+                + IndexColumns.SCREENTITLE + ", "
+                + IndexColumns.KEYWORDS + ", "
+                + IndexColumns.ICON_RESOURCE + ", "
+                + IndexColumns.FRAGMENT + ", "
+                + IndexColumns.CONTROLLER + ", "
+                + IndexColumns.SLICE_TYPE + ", "
+                + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+                + IndexColumns.PUBLIC_SLICE + ", "
+                + IndexColumns.HIGHLIGHT_MENU_RESOURCE + " INTEGER DEFAULT 0)");
+        database.execSQL("CREATE TABLE " + Tables.TABLE_SLICES_INDEX_HASHES + "("
+                + HashColumns.KEY + " TEXT PRIMARY KEY, "
+                + HashColumns.HASH + " INTEGER, "
+                + HashColumns.DOC_ID + " INTEGER)");
+        return database;
     }
 
     private List<SliceData> getMockIndexableData(boolean isPublicSlice) {
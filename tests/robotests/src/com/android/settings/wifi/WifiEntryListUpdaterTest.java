@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+
+import androidx.fragment.app.Fragment;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.core.ControllerLatencyTracker;
+import com.android.wifitrackerlib.WifiEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowRestrictedPreference.class)
+public class WifiEntryListUpdaterTest {
+
+    private static final int SCAN_SIZE = 200;
+
+    private Context mContext;
+    private Fragment mFragment;
+    private PreferenceCategory mCategory;
+    private WifiEntryListUpdater mUpdater;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mFragment = mock(Fragment.class);
+        final PreferenceScreen screen =
+                new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        mCategory = new PreferenceCategory(mContext);
+        screen.addPreference(mCategory);
+        mUpdater = new WifiEntryListUpdater("test",
+                wifiEntry -> new LongPressWifiEntryPreference(mContext, wifiEntry, mFragment),
+                new ControllerLatencyTracker());
+    }
+
+    @Test
+    public void update_firstScan_addsAllEntriesInOrder() {
+        final List<WifiEntry> scan = createScan(SCAN_SIZE);
+
+        final int nextOrder = mUpdater.update(mCategory, scan, 0 /* firstOrder */);
+
+        assertThat(nextOrder).isEqualTo(SCAN_SIZE);
+        assertThat(mUpdater.mAddedCount).isEqualTo(SCAN_SIZE);
+        assertThat(mCategory.getPreferenceCount()).isEqualTo(SCAN_SIZE);
+        for (int i = 0; i < SCAN_SIZE; i++) {
+            final LongPressWifiEntryPreference pref = mCategory.findPreference(key(i));
+            assertThat(pref.getWifiEntry()).isSameInstanceAs(scan.get(i));
+            assertThat(pref.getOrder()).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void update_sameNetworksNewObjects_reusesPreferences() {
+        mUpdater.update(mCategory, createScan(SCAN_SIZE), 0 /* firstOrder */);
+        final List<Preference> before = getPreferences();
+        final List<WifiEntry> rescan = createScan(SCAN_SIZE);
+
+        mUpdater.update(mCategory, rescan, 0 /* firstOrder */);
+
+        assertThat(mUpdater.mAddedCount).isEqualTo(0);
+        assertThat(mUpdater.mRemovedCount).isEqualTo(0);
+        assertThat(mUpdater.mMovedCount).isEqualTo(0);
+        assertThat(mUpdater.mReboundCount).isEqualTo(SCAN_SIZE);
+        assertThat(getPreferences()).containsExactlyElementsIn(before);
+        for (int i = 0; i < SCAN_SIZE; i++) {
+            final LongPressWifiEntryPreference pref = mCategory.findPreference(key(i));
+            assertThat(pref.getWifiEntry()).isSameInstanceAs(rescan.get(i));
+        }
+    }
+
+    @Test
+    public void update_sameObjects_touchesNothing() {
+        final List<WifiEntry> scan = createScan(SCAN_SIZE);
+        mUpdater.update(mCategory, scan, 0 /* firstOrder */);
+
+        mUpdater.update(mCategory, scan, 0 /* firstOrder */);
+
+        assertThat(mUpdater.mAddedCount).isEqualTo(0);
+        assertThat(mUpdater.mRemovedCount).isEqualTo(0);
+        assertThat(mUpdater.mMovedCount).isEqualTo(0);
+        assertThat(mUpdater.mReboundCount).isEqualTo(0);
+    }
+
+    @Test
+    public void update_networksGoneAndAppeared_onlyChangesThose() {
+        final List<WifiEntry> scan = createScan(SCAN_SIZE);
+        mUpdater.update(mCategory, scan, 0 /* firstOrder */);
+        // The last 20 networks are out of range, 10 new ones show up at the end.
+        final List<WifiEntry> rescan = new ArrayList<>(scan.subList(0, SCAN_SIZE - 20));
+        for (int i = SCAN_SIZE; i < SCAN_SIZE + 10; i++) {
+            rescan.add(createEntry(i));
+        }
+
+        mUpdater.update(mCategory, rescan, 0 /* firstOrder */);
+
+        assertThat(mUpdater.mAddedCount).isEqualTo(10);
+        assertThat(mUpdater.mRemovedCount).isEqualTo(20);
+        assertThat(mUpdater.mMovedCount).isEqualTo(0);
+        assertThat(mCategory.getPreferenceCount()).isEqualTo(SCAN_SIZE - 10);
+        assertThat((Preference) mCategory.findPreference(key(SCAN_SIZE - 1))).isNull();
+        assertThat(((Preference) mCategory.findPreference(key(SCAN_SIZE))).getOrder())
+                .isEqualTo(SCAN_SIZE - 20);
+    }
+
+    @Test
+    public void update_shuffledScans_matchesEveryScan() {
+        final Random random = new Random(0 /* seed */);
+        final List<WifiEntry> scan = createScan(SCAN_SIZE);
+        mUpdater.update(mCategory, scan, 0 /* firstOrder */);
+
+        for (int round = 0; round < 10; round++) {
+            Collections.shuffle(scan, random);
+            final List<WifiEntry> rescan = new ArrayList<>(scan.subList(0, SCAN_SIZE / 2));
+
+            mUpdater.update(mCategory, rescan, 0 /* firstOrder */);
+
+            assertThat(mUpdater.mAddedCount).isAtMost(SCAN_SIZE / 2);
+            assertThat(mCategory.getPreferenceCount()).isEqualTo(rescan.size());
+            for (int i = 0; i < rescan.size(); i++) {
+                final LongPressWifiEntryPreference pref =
+                        mCategory.findPreference(rescan.get(i).getKey());
+                assertThat(pref.getWifiEntry()).isSameInstanceAs(rescan.get(i));
+                assertThat(pref.getOrder()).isEqualTo(i);
+            }
+        }
+    }
+
+    @Test
+    public void update_otherPreferences_leftAlone() {
+        final Preference other = new Preference(mContext);
+        other.setKey("other");
+        mCategory.addPreference(other);
+
+        mUpdater.update(mCategory, createScan(3), 0 /* firstOrder */);
+        mUpdater.update(mCategory, new ArrayList<>(), 0 /* firstOrder */);
+
+        assertThat(mCategory.getPreferenceCount()).isEqualTo(1);
+        assertThat(mCategory.getPreference(0)).isSameInstanceAs(other);
+    }
+
+    @Test
+    public void update_firstOrder_offsetsOrders() {
+        final int nextOrder = mUpdater.update(mCategory, createScan(3), 5 /* firstOrder */);
+
+        assertThat(nextOrder).isEqualTo(8);
+        assertThat(((Preference) mCategory.findPreference(key(0))).getOrder()).isEqualTo(5);
+    }
+
+    @Test
+    public void getUpdateDelay_noUpdateYet_returnsMinDelay() {
+        assertThat(mUpdater.getUpdateDelay(300 /* minDelay */)).isEqualTo(300);
+    }
+
+    @Test
+    public void getUpdateDelay_justUpdated_waitsForMinInterval() {
+        mUpdater.update(mCategory, createScan(1), 0 /* firstOrder */);
+
+        final long delay = mUpdater.getUpdateDelay(300 /* minDelay */);
+
+        assertThat(delay).isGreaterThan(300L);
+        assertThat(delay).isAtMost(WifiEntryListUpdater.MIN_UPDATE_INTERVAL_MS);
+    }
+
+    private List<Preference> getPreferences() {
+        final List<Preference> preferences = new ArrayList<>();
+        for (int i = 0; i < mCategory.getPreferenceCount(); i++) {
+            preferences.add(mCategory.getPreference(i));
+        }
+        return preferences;
+    }
+
+    private static List<WifiEntry> createScan(int size) {
+        final List<WifiEntry> scan = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            scan.add(createEntry(i));
+        }
+        return scan;
+    }
+
+    private static WifiEntry createEntry(int index) {
+        final WifiEntry wifiEntry = mock(WifiEntry.class);
+        when(wifiEntry.getKey()).thenReturn(key(index));
+        when(wifiEntry.getTitle()).thenReturn("AP " + index);
+        when(wifiEntry.canConnect()).thenReturn(true);
+        return wifiEntry;
+    }
+
+    private static String key(int index) {
+        return "StandardWifiEntry:AP" + index + ",2";
+    }
+}
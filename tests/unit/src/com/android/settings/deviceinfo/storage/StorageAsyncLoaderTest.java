@@ -25,6 +25,8 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -80,6 +82,7 @@ public class StorageAsyncLoaderTest {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        StorageAsyncLoader.clearCache();
         mContext = spy(ApplicationProvider.getApplicationContext());
         mInfo = new ArrayList<>();
         mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager);
@@ -208,6 +211,42 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(33L);
     }
 
+    @Test
+    public void testDuplicateCodeSizeAcrossUsers() throws Exception {
+        UserInfo info = new UserInfo();
+        info.id = SECONDARY_USER_ID;
+        mUsers.add(info);
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.get(PRIMARY_USER_ID).duplicateCodeSize).isEqualTo(0L);
+        assertThat(result.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(1L);
+    }
+
+    @Test
+    public void testCacheQuotaIsReusedForUnchangedPackage() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        mLoader.loadInBackground();
+        mLoader.loadInBackground();
+
+        verify(mSource, times(1)).getCacheQuotaBytes(anyString(), anyInt());
+    }
+
+    @Test
+    public void testCacheQuotaIsQueriedAgainForUpdatedPackage() throws Exception {
+        ApplicationInfo info =
+                addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        mLoader.loadInBackground();
+        info.longVersionCode = 2;
+        mLoader.loadInBackground();
+
+        verify(mSource, times(2)).getCacheQuotaBytes(anyString(), anyInt());
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
         StorageStatsSource.AppStorageStats storageStats =
@@ -0,0 +1,419 @@
+#!/usr/bin/env python3
+#
+# Copyright (C) 2023 The Android Open Source Project
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+"""Generates GeneratedPreferenceControllerFactory from the preference XML.
+
+Every controller named by a settings:controller attribute is looked up in the given Java and
+Kotlin sources. Controllers that are public, concrete, extend BasePreferenceController and have a
+public (Context) and/or (Context, String) constructor get a direct constructor call in the
+generated factory, so BasePreferenceController.createInstance() does not need reflection for them.
+Controllers that cannot be resolved from the sources are left out and keep being created by
+reflection.
+"""
+
+import argparse
+import os
+import re
+import sys
+
+CONTROLLER_ATTR = re.compile(r'settings:controller\s*=\s*"([\w.$]+)"')
+PACKAGE_DECL = re.compile(r'^\s*package\s+([\w.]+)', re.MULTILINE)
+ANNOTATION = re.compile(r'@[\w.]+(\([^)]*\))?')
+COMMENTS = re.compile(r'//[^\n]*|/\*.*?\*/', re.DOTALL)
+IMPORT_DECL = re.compile(r'^\s*import\s+([\w.]+?)(\.\*)?\s*;?\s*$', re.MULTILINE)
+GENERICS = r'(?:\s*<(?:[^<>]|<(?:[^<>]|<[^<>]*>)*>)*>)?'
+
+BASE_CONTROLLER = 'com.android.settings.core.BasePreferenceController'
+
+CONTEXT_TYPES = ('Context', 'android.content.Context')
+STRING_TYPES = ('String', 'java.lang.String', 'String?')
+
+HEADER = """/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Generated by tools/gen_controller_registry.py. Do not edit.
+
+package com.android.settings.core;
+
+import android.content.Context;
+
+/** Creates the preference controllers named in the preference XML without reflection. */
+public final class GeneratedPreferenceControllerFactory
+        implements PreferenceControllerRegistry.Factory {
+"""
+
+
+class Source(object):
+    """A Java or Kotlin source file, read lazily."""
+
+    def __init__(self, path, package):
+        self.path = path
+        self.package = package
+        self.kotlin = path.endswith('.kt')
+        self._text = None
+        self._imports = None
+
+    @property
+    def text(self):
+        if self._text is None:
+            with open(self.path, encoding='utf-8') as f:
+                self._text = COMMENTS.sub(' ', f.read())
+        return self._text
+
+    @property
+    def imports(self):
+        """Returns the single type imports by simple name and the on-demand imports."""
+        if self._imports is None:
+            single = {}
+            on_demand = []
+            for match in IMPORT_DECL.finditer(self.text):
+                if match.group(2):
+                    on_demand.append(match.group(1))
+                else:
+                    single[match.group(1).rsplit('.', 1)[-1]] = match.group(1)
+            self._imports = (single, on_demand)
+        return self._imports
+
+    def declares(self, simple_name):
+        return class_modifiers(self.text, simple_name) is not None
+
+
+def read_package(path):
+    with open(path, encoding='utf-8') as f:
+        for line in f:
+            match = PACKAGE_DECL.match(line)
+            if match:
+                return match.group(1)
+    return None
+
+
+def index_sources(paths):
+    """Returns the Java sources by outer class name and the Kotlin sources by package."""
+    java = {}
+    kotlin = {}
+    for path in paths:
+        if path.endswith('.java'):
+            package = read_package(path)
+            if package:
+                name = os.path.splitext(os.path.basename(path))[0]
+                java[package + '.' + name] = Source(path, package)
+        elif path.endswith('.kt'):
+            package = read_package(path)
+            if package:
+                kotlin.setdefault(package, []).append(Source(path, package))
+    return java, kotlin
+
+
+def find_controllers(paths):
+    controllers = set()
+    for path in paths:
+        with open(path, encoding='utf-8') as f:
+            controllers.update(CONTROLLER_ATTR.findall(f.read()))
+    return controllers
+
+
+def split_params(params):
+    params = ANNOTATION.sub(' ', params).strip()
+    return [p.strip() for p in params.split(',')] if params else []
+
+
+def java_param_types(params):
+    types = []
+    for param in split_params(params):
+        words = [w for w in param.split() if w != 'final']
+        if len(words) != 2:
+            return None
+        types.append(words[0])
+    return types
+
+
+def kotlin_param_types(params):
+    types = []
+    for param in split_params(params):
+        if '=' in param:
+            # Default values do not create Java overloads without @JvmOverloads.
+            return None
+        name, sep, kind = param.partition(':')
+        if not sep:
+            return None
+        modifiers = name.split()[:-1]
+        if any(m not in ('private', 'protected', 'public', 'val', 'var') for m in modifiers):
+            return None
+        types.append(kind.strip())
+    return types
+
+
+def class_modifiers(text, simple_name):
+    match = re.search(r'((?:\b[a-z]+\s+)*)(?:class)\s+' + re.escape(simple_name) + r'\b', text)
+    return match.group(1).split() if match else None
+
+
+def resolve_java(source, names):
+    """Returns the supported constructor arities of the class, or None if not usable."""
+    text = source.text
+    for i, name in enumerate(names):
+        modifiers = class_modifiers(text, name)
+        if modifiers is None or 'public' not in modifiers or 'abstract' in modifiers:
+            return None
+        if i > 0 and 'static' not in modifiers:
+            return None
+    simple_name = names[-1]
+    arities = set()
+    for match in re.finditer(
+            r'\bpublic\s+' + re.escape(simple_name) + r'\s*\(([^)]*)\)', text):
+        types = java_param_types(match.group(1))
+        if types is None:
+            continue
+        if len(types) == 1 and types[0] in CONTEXT_TYPES:
+            arities.add(1)
+        elif len(types) == 2 and types[0] in CONTEXT_TYPES and types[1] in STRING_TYPES:
+            arities.add(2)
+    return arities or None
+
+
+def resolve_kotlin(sources, names):
+    if len(names) > 1:
+        return None
+    simple_name = names[0]
+    for source in sources:
+        text = source.text
+        modifiers = class_modifiers(text, simple_name)
+        if modifiers is None:
+            continue
+        if any(m in modifiers for m in ('private', 'internal', 'abstract', 'sealed', 'inner')):
+            return None
+        match = re.search(r'\bclass\s+' + re.escape(simple_name)
+                          + r'\s*(?:(?:public\s+)?constructor\s*)?\(([^)]*)\)', text)
+        if not match:
+            return None
+        types = kotlin_param_types(match.group(1))
+        if types is None:
+            return None
+        if len(types) == 1 and types[0] in CONTEXT_TYPES:
+            return {1}
+        if len(types) == 2 and types[0] in CONTEXT_TYPES and types[1] in STRING_TYPES:
+            return {2}
+        return None
+    return None
+
+
+def java_superclass(text, simple_name):
+    match = re.search(r'\bclass\s+' + re.escape(simple_name) + r'\b' + GENERICS
+                      + r'\s+extends\s+([\w.]+)', text)
+    return match.group(1) if match else None
+
+
+def skip_balanced(text, pos, open_char, close_char):
+    """Returns the position after the bracket closing the one at pos."""
+    depth = 0
+    for i in range(pos, len(text)):
+        if text[i] == open_char:
+            depth += 1
+        elif text[i] == close_char:
+            depth -= 1
+            if depth == 0:
+                return i + 1
+    return len(text)
+
+
+def kotlin_superclass(text, simple_name):
+    match = re.search(r'\bclass\s+' + re.escape(simple_name) + r'\b' + GENERICS, text)
+    if not match:
+        return None
+    # Skip the primary constructor and whatever precedes it, e.g. "@JvmOverloads constructor".
+    pos = match.end()
+    while pos < len(text) and text[pos] not in '(:{':
+        pos += 1
+    if pos < len(text) and text[pos] == '(':
+        pos = skip_balanced(text, pos, '(', ')')
+    supertypes = re.match(r'\s*:', text[pos:])
+    if not supertypes:
+        return None
+    pos += supertypes.end()
+    # Only the superclass is followed by constructor arguments, interfaces are not.
+    while pos < len(text):
+        match = re.match(r'\s*([\w.]+)' + GENERICS + r'\s*(\(|,)?', text[pos:])
+        if not match:
+            return None
+        if match.group(2) == '(':
+            return match.group(1)
+        if match.group(2) != ',':
+            return None
+        pos += match.end()
+    return None
+
+
+class Hierarchy(object):
+    """Resolves which classes of the sources extend BasePreferenceController."""
+
+    def __init__(self, java, kotlin):
+        self.java = java
+        self.kotlin = kotlin
+        self.extends_base = {}
+
+    def lookup(self, name):
+        """Returns the source declaring the fully qualified class name and its simple name."""
+        parts = name.split('.')
+        for i in range(len(parts), 0, -1):
+            source = self.java.get('.'.join(parts[:i]))
+            if source:
+                return (source, parts[-1]) if source.declares(parts[-1]) else None
+        for source in self.kotlin.get('.'.join(parts[:-1]), []):
+            if source.declares(parts[-1]):
+                return source, parts[-1]
+        return None
+
+    def candidates(self, source, name):
+        """Returns the fully qualified names a type name used in the source may refer to."""
+        first, _, rest = name.partition('.')
+        rest = '.' + rest if rest else ''
+        single, on_demand = source.imports
+        names = []
+        if source.declares(first):
+            if source.kotlin:
+                names.append(source.package + '.' + name)
+            else:
+                outer = os.path.splitext(os.path.basename(source.path))[0]
+                names.append(source.package + '.' + (name if first == outer
+                                                      else outer + '.' + name))
+        if first in single:
+            names.append(single[first] + rest)
+        names.append(source.package + '.' + name)
+        names.extend(package + '.' + name for package in on_demand)
+        names.append(name)
+        return names
+
+    def is_controller(self, source, simple_name):
+        key = (source.path, simple_name)
+        if key not in self.extends_base:
+            # Guards against cycles while the superclass is being resolved.
+            self.extends_base[key] = False
+            self.extends_base[key] = self.resolve_superclass(source, simple_name)
+        return self.extends_base[key]
+
+    def resolve_superclass(self, source, simple_name):
+        superclass = (kotlin_superclass if source.kotlin else java_superclass)(
+            source.text, simple_name)
+        if not superclass:
+            return False
+        for name in self.candidates(source, superclass):
+            if name == BASE_CONTROLLER:
+                return True
+            found = self.lookup(name)
+            if found:
+                return self.is_controller(*found)
+        # The superclass isn't in the sources, e.g. a SettingsLib class.
+        return False
+
+
+def resolve(controller, java, kotlin, hierarchy):
+    outer, _, nested = controller.partition('$')
+    names = [outer.rsplit('.', 1)[-1]] + (nested.split('$') if nested else [])
+    if outer in java:
+        source = java[outer]
+        arities = resolve_java(source, names)
+    else:
+        package = outer.rsplit('.', 1)[0]
+        source = next((s for s in kotlin.get(package, []) if s.declares(names[-1])), None)
+        arities = resolve_kotlin(kotlin.get(package, []), names)
+    if not arities or not hierarchy.is_controller(source, names[-1]):
+        return None
+    return arities
+
+
+def write_switch(out, resolved, arity, signature, args):
+    out.write('\n    @Override\n')
+    out.write('    public BasePreferenceController create(%s) {\n' % signature)
+    out.write('        switch (controllerName) {\n')
+    for controller, arities in resolved:
+        if arity in arities:
+            out.write('            case "%s":\n' % controller)
+            out.write('                return new %s(%s);\n' % (controller.replace('$', '.'), args))
+    out.write('            default:\n')
+    out.write('                return null;\n')
+    out.write('        }\n')
+    out.write('    }\n')
+
+
+def walk(directory, extensions):
+    for root, _, files in os.walk(directory):
+        for name in files:
+            if name.endswith(extensions):
+                yield os.path.join(root, name)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__)
+    parser.add_argument('--out', required=True, help='Java file to generate')
+    # The build passes the app directory rather than every file, since the list of files is
+    # longer than a single command line argument may be.
+    parser.add_argument('--root', help='Directory holding res/xml and the src directory')
+    parser.add_argument('inputs', nargs='*', help='Preference XML and Java/Kotlin sources')
+    args = parser.parse_args()
+
+    inputs = list(args.inputs)
+    if args.root:
+        inputs.extend(walk(os.path.join(args.root, 'res', 'xml'), ('.xml',)))
+        inputs.extend(walk(os.path.join(args.root, 'src'), ('.java', '.kt')))
+    if not inputs:
+        parser.error('no inputs given')
+
+    xml = [p for p in inputs if p.endswith('.xml')]
+    java, kotlin = index_sources([p for p in inputs if p.endswith(('.java', '.kt'))])
+
+    hierarchy = Hierarchy(java, kotlin)
+    resolved = []
+    for controller in sorted(find_controllers(xml)):
+        arities = resolve(controller, java, kotlin, hierarchy)
+        if arities:
+            resolved.append((controller, arities))
+
+    os.makedirs(os.path.dirname(os.path.abspath(args.out)), exist_ok=True)
+    with open(args.out, 'w', encoding='utf-8') as out:
+        out.write(HEADER)
+        out.write('\n    @Override\n')
+        out.write('    public boolean isKnown(String controllerName) {\n')
+        out.write('        switch (controllerName) {\n')
+        for controller, _ in resolved:
+            out.write('            case "%s":\n' % controller)
+        if resolved:
+            out.write('                return true;\n')
+        out.write('            default:\n')
+        out.write('                return false;\n')
+        out.write('        }\n')
+        out.write('    }\n')
+        write_switch(out, resolved, 2, 'String controllerName, Context context, String key',
+                     'context, key')
+        write_switch(out, resolved, 1, 'String controllerName, Context context', 'context')
+        out.write('}\n')
+    return 0
+
+
+if __name__ == '__main__':
+    sys.exit(main())